@@ -0,0 +1,65 @@
+package com.typeiisoft.lct;
+
+import com.typeiisoft.lct.db.FeatureFile;
+import com.typeiisoft.lct.features.FeatureTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class finds the program's data assets for the tests and benchmarks.
+ * The build passes the asset directory in the lct.assets system property.
+ * It should only be used via the static methods as instantiation is not
+ * allowed.
+ *
+ * @author Michael Reuter
+ */
+public final class TestAssets {
+	/** Name of the binary feature catalog. */
+	public static final String CATALOG_NAME = "moon.lcf";
+	/** Name of the Moon information database. */
+	public static final String DATABASE_NAME = "moon.db";
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private TestAssets() {
+	}
+
+	/**
+	 * This function finds an asset file.
+	 * @param name : The name of the asset.
+	 * @return : The location of the asset.
+	 */
+	public static File get(String name) {
+		return new File(System.getProperty("lct.assets", "../assets"), name);
+	}
+
+	/**
+	 * This function maps the binary feature catalog read-only.
+	 * @return : The mapped catalog file.
+	 * @throws IOException
+	 */
+	public static MappedByteBuffer mapCatalog() throws IOException {
+		RandomAccessFile file = new RandomAccessFile(TestAssets.get(CATALOG_NAME), "r");
+		try {
+			FileChannel channel = file.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * This function reads the binary feature catalog.
+	 * @return : The feature table in file order.
+	 * @throws IOException
+	 */
+	public static FeatureTable readCatalog() throws IOException {
+		return FeatureFile.read(TestAssets.mapCatalog());
+	}
+}
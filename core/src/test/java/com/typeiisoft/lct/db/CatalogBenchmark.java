@@ -0,0 +1,105 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.TestAssets;
+import com.typeiisoft.lct.features.FeatureComparator;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures loading and sorting the feature catalog. The load is
+ * measured from an already mapped file and with the file opened and mapped
+ * each time. The sorts put the whole catalog in the feature list order as
+ * feature objects and as table rows.
+ *
+ * @author Michael Reuter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+	/** The mapped catalog file. */
+	private MappedByteBuffer mapped;
+	/** The catalog in file order. */
+	private FeatureTable table;
+	/** The catalog as feature objects in file order. */
+	private List<LunarFeature> features;
+	/** Every row of the catalog. */
+	private int[] allRows;
+
+	/**
+	 * This function maps and reads the catalog.
+	 * @throws IOException
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.mapped = TestAssets.mapCatalog();
+		this.table = FeatureFile.read(this.mapped);
+		this.features = new ArrayList<LunarFeature>(this.table.size());
+		this.allRows = new int[this.table.size()];
+		for (int i = 0; i < this.table.size(); i++) {
+			this.features.add(this.table.getFeature(i));
+			this.allRows[i] = i;
+		}
+	}
+
+	/**
+	 * This function reads the catalog from the mapped file.
+	 * @return : The feature table.
+	 * @throws IOException
+	 */
+	@Benchmark
+	public FeatureTable readMapped() throws IOException {
+		return FeatureFile.read(this.mapped);
+	}
+
+	/**
+	 * This function opens, maps and reads the catalog file.
+	 * @return : The feature table.
+	 * @throws IOException
+	 */
+	@Benchmark
+	public FeatureTable mapAndRead() throws IOException {
+		return TestAssets.readCatalog();
+	}
+
+	/**
+	 * This function sorts the feature objects with the feature comparator.
+	 * @return : The sorted features.
+	 */
+	@Benchmark
+	public List<LunarFeature> sortFeatures() {
+		List<LunarFeature> sorted = new ArrayList<LunarFeature>(this.features);
+		Collections.sort(sorted, new FeatureComparator());
+		return sorted;
+	}
+
+	/**
+	 * This function builds a sorted table holding every catalog row.
+	 * @return : The sorted feature table.
+	 */
+	@Benchmark
+	public FeatureTable selectSorted() {
+		return this.table.select(this.allRows);
+	}
+}
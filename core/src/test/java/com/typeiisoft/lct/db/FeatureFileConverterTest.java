@@ -0,0 +1,168 @@
+package com.typeiisoft.lct.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.typeiisoft.lct.TestAssets;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class checks the round trip from the Moon information database
+ * through the binary feature catalog against the SQLite source.
+ *
+ * @author Michael Reuter
+ */
+public class FeatureFileConverterTest {
+	/** Folder for the written files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * This function converts the database and checks every row of the
+	 * written catalog against it.
+	 * @throws Exception
+	 */
+	@Test
+	public void roundTripMatchesDatabase() throws Exception {
+		File database = this.copyDatabase();
+		FeatureTable expected = FeatureFileConverter.readDatabase(database.getPath());
+		File catalog = this.folder.newFile(TestAssets.CATALOG_NAME);
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(catalog));
+		try {
+			FeatureFile.write(expected, output);
+		}
+		finally {
+			output.close();
+		}
+		FeatureFileConverterTest.assertSameFeatures(expected,
+				FeatureFileConverterTest.map(catalog));
+	}
+
+	/**
+	 * This function checks that the shipped catalog was rebuilt after the
+	 * last change to the shipped database.
+	 * @throws Exception
+	 */
+	@Test
+	public void shippedCatalogMatchesDatabase() throws Exception {
+		File database = this.copyDatabase();
+		FeatureFileConverterTest.assertSameFeatures(
+				FeatureFileConverter.readDatabase(database.getPath()),
+				TestAssets.readCatalog());
+	}
+
+	/**
+	 * This function checks the precomputed visibility columns written to
+	 * the database against the feature table.
+	 * @throws Exception
+	 */
+	@Test
+	public void updateDatabaseFillsPrecomputedColumns() throws Exception {
+		File database = this.copyDatabase();
+		FeatureTable features = FeatureFileConverter.readDatabase(database.getPath());
+		FeatureFileConverter.updateDatabase(database.getPath(), features);
+		Connection connection = DriverManager.getConnection(
+				"jdbc:sqlite:" + database.getPath());
+		try {
+			PreparedStatement query = connection.prepareStatement(
+					"SELECT Min_Longitude, Max_Longitude, No_Cutoff, Limb_Zone " +
+					"FROM Features WHERE _id = ?");
+			for (int i = 0; i < features.size(); i++) {
+				query.setInt(1, features.getId(i));
+				ResultSet results = query.executeQuery();
+				assertTrue(results.next());
+				assertEquals(features.getMinLongitude(i), results.getDouble(1), 0.0);
+				assertEquals(features.getMaxLongitude(i), results.getDouble(2), 0.0);
+				assertEquals(features.isNoCutoff(i), 1 == results.getInt(3));
+				assertEquals(features.isInLimbZone(i), 1 == results.getInt(4));
+				results.close();
+			}
+			query.close();
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * This function copies the shipped database, so the tests never change
+	 * the asset.
+	 * @return : The copy of the database.
+	 * @throws IOException
+	 */
+	private File copyDatabase() throws IOException {
+		File copy = new File(this.folder.getRoot(), TestAssets.DATABASE_NAME);
+		Files.copy(TestAssets.get(TestAssets.DATABASE_NAME).toPath(), copy.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		return copy;
+	}
+
+	/**
+	 * This function maps a catalog file and reads it.
+	 * @param catalog : The catalog file.
+	 * @return : The feature table in file order.
+	 * @throws IOException
+	 */
+	static FeatureTable map(File catalog) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(catalog, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			return FeatureFile.read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()));
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * This function checks that two tables hold the same features in the
+	 * same order.
+	 * @param expected : The expected features.
+	 * @param actual : The features to check.
+	 */
+	static void assertSameFeatures(FeatureTable expected, FeatureTable actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			LunarFeature lf1 = expected.getFeature(i);
+			LunarFeature lf2 = actual.getFeature(i);
+			String row = "Row " + i;
+			assertEquals(row, expected.getId(i), actual.getId(i));
+			assertEquals(row, lf1.getName(), lf2.getName());
+			assertEquals(row, lf1.getDiameter(), lf2.getDiameter(), 0.0);
+			assertEquals(row, lf1.getLatitude(), lf2.getLatitude(), 0.0);
+			assertEquals(row, lf1.getLongitude(), lf2.getLongitude(), 0.0);
+			assertEquals(row, lf1.getDeltaLatitude(), lf2.getDeltaLatitude(), 0.0);
+			assertEquals(row, lf1.getDeltaLongitude(), lf2.getDeltaLongitude(), 0.0);
+			assertEquals(row, lf1.getFeatureType(), lf2.getFeatureType());
+			assertEquals(row, lf1.getQuadName(), lf2.getQuadName());
+			assertEquals(row, lf1.getQuadCode(), lf2.getQuadCode());
+			assertEquals(row, lf1.getCodeName(), lf2.getCodeName());
+			assertEquals(row, lf1.getClubType(), lf2.getClubType());
+			assertEquals(row, expected.getCosLatitude(i), actual.getCosLatitude(i), 0.0);
+			assertEquals(row, expected.getMinLongitude(i), actual.getMinLongitude(i), 0.0);
+			assertEquals(row, expected.getMaxLongitude(i), actual.getMaxLongitude(i), 0.0);
+			assertEquals(row, expected.isInLimbZone(i), actual.isInLimbZone(i));
+			assertEquals(row, expected.isNoCutoff(i), actual.isNoCutoff(i));
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.typeiisoft.lct.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.typeiisoft.lct.features.FeatureTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * This class checks the feature tables read in place from the binary
+ * feature catalog layout.
+ *
+ * @author Michael Reuter
+ */
+public class FeatureFileTest {
+	/**
+	 * This function makes a small table with a null string and a name that
+	 * is not ASCII.
+	 * @return : The feature table in the order added.
+	 */
+	private static FeatureTable sample() {
+		return new FeatureTable.Builder()
+				.add(3, "Tycho", 85.0, -43.3, -11.2, "Crater", 2.8, 3.9,
+						"Southwest", "SW", "Lunar", "Naked Eye")
+				.add(1, "Mare Imbrium", 1123.0, 32.8, -15.6, "Mare", 37.0, 44.0,
+						"Northwest", "NW", "Both", null)
+				.add(2, "Ångström", 9.5, 29.9, -41.6, "Crater", 0.3, 0.4,
+						"Northwest", "NW", "LunarII", null)
+				.build();
+	}
+
+	/**
+	 * This function writes a table in the catalog layout.
+	 * @param table : The table to write.
+	 * @return : The catalog file contents.
+	 * @throws IOException
+	 */
+	private static byte[] write(FeatureTable table) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		FeatureFile.write(table, output);
+		return output.toByteArray();
+	}
+
+	/**
+	 * This function checks that every column reads back in place.
+	 * @throws IOException
+	 */
+	@Test
+	public void readsColumnsInPlace() throws IOException {
+		FeatureTable expected = FeatureFileTest.sample();
+		FeatureTable actual = FeatureFile.read(ByteBuffer.wrap(
+				FeatureFileTest.write(expected)).asReadOnlyBuffer());
+		FeatureFileConverterTest.assertSameFeatures(expected, actual);
+		assertNull(actual.getClubType(1));
+		assertEquals("Ångström", actual.getName(2));
+	}
+
+	/**
+	 * This function checks that a selection of a mapped table is in the
+	 * feature list order and reads the same values.
+	 * @throws IOException
+	 */
+	@Test
+	public void selectSortsRows() throws IOException {
+		FeatureTable table = FeatureFile.read(ByteBuffer.wrap(
+				FeatureFileTest.write(FeatureFileTest.sample())));
+		FeatureTable selected = table.select(new int[] {0, 1, 2});
+		int[] ids = new int[selected.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = selected.getId(i);
+		}
+		// Craters before mare, then north to south within a type
+		assertEquals(Arrays.toString(new int[] {2, 3, 1}), Arrays.toString(ids));
+		assertEquals("Mare Imbrium", selected.getFeature(2).getName());
+		assertTrue(selected.isNoCutoff(2));
+
+		FeatureTable reselected = selected.select(new int[] {2, 0});
+		assertEquals(2, reselected.getId(0));
+		assertEquals(1, reselected.getId(1));
+	}
+
+	/**
+	 * This function checks that a cut short file is refused.
+	 * @throws IOException
+	 */
+	@Test
+	public void rejectsTruncatedFile() throws IOException {
+		byte[] data = FeatureFileTest.write(FeatureFileTest.sample());
+		FeatureFileTest.assertRejected(Arrays.copyOf(data, data.length - 1));
+		FeatureFileTest.assertRejected(Arrays.copyOf(data, 40));
+		FeatureFileTest.assertRejected(Arrays.copyOf(data, 8));
+	}
+
+	/**
+	 * This function checks that a string index outside the pool is refused
+	 * when the file is read rather than when the row is used.
+	 * @throws IOException
+	 */
+	@Test
+	public void rejectsBadStringIndex() throws IOException {
+		byte[] data = FeatureFileTest.write(FeatureFileTest.sample());
+		// The name column follows the header, the double columns and the ids
+		int nameColumn = 16 + 5 * 8 * 3 + 4 * 3;
+		ByteBuffer.wrap(data).putInt(nameColumn, 1000);
+		FeatureFileTest.assertRejected(data);
+	}
+
+	/**
+	 * This function checks that reading some bytes fails with an
+	 * IOException.
+	 * @param data : The bytes to read.
+	 */
+	private static void assertRejected(byte[] data) {
+		try {
+			FeatureFile.read(ByteBuffer.wrap(data));
+			fail("Expected the catalog to be refused.");
+		}
+		catch (IOException e) {
+			// Expected
+		}
+	}
+}
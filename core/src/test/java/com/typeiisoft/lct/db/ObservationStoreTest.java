@@ -0,0 +1,359 @@
+package com.typeiisoft.lct.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.typeiisoft.lct.features.Observation;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class checks the observation journal and store: replaying the
+ * journal after a torn or damaged write, skipping entries already in the
+ * store, and merging new observations into the store. The store is checked
+ * against a plain sorted list of everything logged.
+ *
+ * @author Michael Reuter
+ */
+public class ObservationStoreTest {
+	/** Seed for the random observations, so failures can be repeated. */
+	private static final long SEED = 20130501L;
+	/** Clubs of the random observations, in no particular order. */
+	private static final String[] CLUBS = {"Lunar", "LunarII", "Both"};
+	/** Largest catalog identifier of the random observations. */
+	private static final int MAX_FEATURE_ID = 20;
+	/** Time of the first random observation in milliseconds. */
+	private static final long START_TIME = 1325376000000L;
+	/** Milliseconds in an hour. */
+	private static final long HOUR = 3600000L;
+	/** The store order: club, feature and time. */
+	private static final Comparator<Observation> ORDER = new Comparator<Observation>() {
+		@Override
+		public int compare(Observation arg0, Observation arg1) {
+			int value = arg0.getClub().compareTo(arg1.getClub());
+			if (0 == value) {
+				value = Integer.valueOf(arg0.getFeatureId()).compareTo(arg1.getFeatureId());
+			}
+			if (0 == value) {
+				value = Long.valueOf(arg0.getUtcTime()).compareTo(arg1.getUtcTime());
+			}
+			return value;
+		}
+	};
+	/** Folder for the log files. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	/** The random observations. */
+	private final Random random = new Random(SEED);
+
+	/**
+	 * This function makes a random observation. Only a few times are used,
+	 * so the same club, feature and time often comes up more than once.
+	 * @param club : The observing club.
+	 * @return : The observation.
+	 */
+	private Observation randomObservation(String club) {
+		int featureId = this.random.nextInt(MAX_FEATURE_ID) + 1;
+		String notes = this.random.nextBoolean() ? "" :
+			"Seeing " + this.random.nextInt(5) + ", Ångström visible";
+		return new Observation(featureId, "Feature " + featureId, club,
+				START_TIME + this.random.nextInt(30) * HOUR,
+				new ObservingSite("Site " + this.random.nextInt(3), 40.5, -74.25, -5),
+				"80mm", notes);
+	}
+
+	/**
+	 * This function makes a batch of random journal entries.
+	 * @param firstSequence : The sequence number of the first entry.
+	 * @param size : The number of entries.
+	 * @param clubs : The clubs to pick from.
+	 * @return : The entries.
+	 */
+	private List<ObservationJournal.Entry> randomEntries(long firstSequence, int size,
+			String[] clubs) {
+		List<ObservationJournal.Entry> entries = new ArrayList<ObservationJournal.Entry>();
+		for (int i = 0; i < size; i++) {
+			entries.add(new ObservationJournal.Entry(firstSequence + i,
+					this.randomObservation(clubs[this.random.nextInt(clubs.length)])));
+		}
+		return entries;
+	}
+
+	/**
+	 * This function makes text holding every field of an observation, so
+	 * observations can be compared.
+	 * @param observation : The observation.
+	 * @return : The text.
+	 */
+	private static String describe(Observation observation) {
+		return observation.getFeatureId() + "|" + observation.getFeatureName() + "|" +
+				observation.getClub() + "|" + observation.getUtcTime() + "|" +
+				observation.getSite() + "|" + observation.getInstrument() + "|" +
+				observation.getNotes();
+	}
+
+	/**
+	 * This function makes the text of a list of observations.
+	 * @param observations : The observations.
+	 * @return : The text of each observation in order.
+	 */
+	private static List<String> describe(List<Observation> observations) {
+		List<String> text = new ArrayList<String>();
+		for (Observation observation : observations) {
+			text.add(ObservationStoreTest.describe(observation));
+		}
+		return text;
+	}
+
+	/**
+	 * This function checks that journal entries match, sequence numbers
+	 * included.
+	 * @param expected : The expected entries.
+	 * @param actual : The read entries.
+	 */
+	private static void assertSameEntries(List<ObservationJournal.Entry> expected,
+			List<ObservationJournal.Entry> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).sequence, actual.get(i).sequence);
+			assertEquals(ObservationStoreTest.describe(expected.get(i).observation),
+					ObservationStoreTest.describe(actual.get(i).observation));
+		}
+	}
+
+	/**
+	 * This function reads a journal file from the start.
+	 * @param file : The journal file.
+	 * @param afterSequence : The last sequence number to skip.
+	 * @return : The entries read back.
+	 * @throws IOException
+	 */
+	private static List<ObservationJournal.Entry> replay(File file, long afterSequence)
+			throws IOException {
+		ObservationJournal journal = new ObservationJournal(file);
+		try {
+			return journal.replay(afterSequence);
+		}
+		finally {
+			journal.close();
+		}
+	}
+
+	/**
+	 * This function checks a store against every observation logged, using
+	 * a stable sort of the log for the store order.
+	 * @param store : The store to check.
+	 * @param logged : The observations in the order logged.
+	 * @param clubs : Every club that may be asked about.
+	 * @throws IOException
+	 */
+	private static void assertStoreMatches(ObservationStore store,
+			List<Observation> logged, String[] clubs) throws IOException {
+		List<Observation> expected = new ArrayList<Observation>(logged);
+		Collections.sort(expected, ORDER);
+		final List<Observation> visited = new ArrayList<Observation>();
+		store.forEach(new ObservationVisitor() {
+			@Override
+			public void visit(Observation observation) {
+				visited.add(observation);
+			}
+		});
+		assertEquals(ObservationStoreTest.describe(expected),
+				ObservationStoreTest.describe(visited));
+		assertEquals(expected.size(), store.size());
+
+		Map<String, BitSet> observed = new HashMap<String, BitSet>();
+		for (Observation observation : expected) {
+			BitSet ids = observed.get(observation.getClub());
+			if (null == ids) {
+				ids = new BitSet();
+				observed.put(observation.getClub(), ids);
+			}
+			ids.set(observation.getFeatureId());
+		}
+		assertEquals(observed, store.getObserved());
+
+		for (String club : clubs) {
+			for (int featureId = 0; featureId <= MAX_FEATURE_ID + 1; featureId++) {
+				List<Observation> matching = new ArrayList<Observation>();
+				for (Observation observation : expected) {
+					if (observation.getClub().equals(club) &&
+							observation.getFeatureId() == featureId) {
+						matching.add(observation);
+					}
+				}
+				assertEquals(club + " " + featureId, ObservationStoreTest.describe(matching),
+						ObservationStoreTest.describe(store.getObservations(club, featureId)));
+			}
+		}
+	}
+
+	/**
+	 * This function checks that a record cut short by a crash is dropped on
+	 * replay and that new records follow the last whole one.
+	 * @throws IOException
+	 */
+	@Test
+	public void replayDropsTornRecord() throws IOException {
+		File file = new File(this.folder.getRoot(), "observations.journal");
+		List<ObservationJournal.Entry> first = this.randomEntries(1, 5, CLUBS);
+		List<ObservationJournal.Entry> second = this.randomEntries(6, 5, CLUBS);
+		ObservationJournal journal = new ObservationJournal(file);
+		journal.replay(0);
+		journal.append(first);
+		long firstSize = journal.size();
+		journal.append(second);
+		journal.close();
+		List<ObservationJournal.Entry> all = new ArrayList<ObservationJournal.Entry>(first);
+		all.addAll(second);
+		ObservationStoreTest.assertSameEntries(all, ObservationStoreTest.replay(file, 0));
+
+		// Cut the last record in the middle
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		long fullSize = raw.length();
+		raw.setLength(fullSize - 7);
+		raw.close();
+		journal = new ObservationJournal(file);
+		List<ObservationJournal.Entry> read = journal.replay(0);
+		ObservationStoreTest.assertSameEntries(all.subList(0, 9), read);
+		assertTrue(journal.size() < fullSize - 7);
+		assertTrue(journal.size() > firstSize);
+
+		// New records follow the last whole one
+		List<ObservationJournal.Entry> third = this.randomEntries(10, 3, CLUBS);
+		journal.append(third);
+		journal.close();
+		List<ObservationJournal.Entry> expected =
+				new ArrayList<ObservationJournal.Entry>(all.subList(0, 9));
+		expected.addAll(third);
+		ObservationStoreTest.assertSameEntries(expected, ObservationStoreTest.replay(file, 0));
+	}
+
+	/**
+	 * This function checks that a damaged record and everything after it
+	 * are dropped, as are stray bytes at the end.
+	 * @throws IOException
+	 */
+	@Test
+	public void replayStopsAtDamagedRecord() throws IOException {
+		File file = new File(this.folder.getRoot(), "observations.journal");
+		List<ObservationJournal.Entry> entries = this.randomEntries(1, 3, CLUBS);
+		ObservationJournal journal = new ObservationJournal(file);
+		journal.replay(0);
+		journal.append(entries.subList(0, 1));
+		long firstSize = journal.size();
+		journal.append(entries.subList(1, 3));
+		journal.close();
+
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		raw.seek(raw.length());
+		raw.write(new byte[] {0, 0, 0, 3, 1, 2});
+		raw.close();
+		ObservationStoreTest.assertSameEntries(entries, ObservationStoreTest.replay(file, 0));
+
+		// Change a byte inside the second record so its checksum fails
+		raw = new RandomAccessFile(file, "rw");
+		raw.seek(firstSize + 20);
+		int value = raw.read();
+		raw.seek(firstSize + 20);
+		raw.write(value ^ 0xff);
+		raw.close();
+		ObservationStoreTest.assertSameEntries(entries.subList(0, 1),
+				ObservationStoreTest.replay(file, 0));
+		assertEquals(firstSize, file.length());
+	}
+
+	/**
+	 * This function checks that entries already in the store are skipped.
+	 * @throws IOException
+	 */
+	@Test
+	public void replaySkipsStoredEntries() throws IOException {
+		File file = new File(this.folder.getRoot(), "observations.journal");
+		List<ObservationJournal.Entry> entries = this.randomEntries(11, 10, CLUBS);
+		ObservationJournal journal = new ObservationJournal(file);
+		journal.replay(0);
+		journal.append(entries.subList(0, 4));
+		journal.append(entries.subList(4, 10));
+		journal.close();
+		ObservationStoreTest.assertSameEntries(entries.subList(5, 10),
+				ObservationStoreTest.replay(file, 15));
+		ObservationStoreTest.assertSameEntries(entries.subList(0, 0),
+				ObservationStoreTest.replay(file, 20));
+		ObservationStoreTest.assertSameEntries(entries,
+				ObservationStoreTest.replay(file, 10));
+	}
+
+	/**
+	 * This function merges three sets of observations into the store, with
+	 * the clubs, features and times overlapping and a new club that sorts
+	 * before the old ones, and checks the store after each merge and after
+	 * opening it again.
+	 * @throws IOException
+	 */
+	@Test
+	public void compactionMatchesSortedLog() throws IOException {
+		File file = new File(this.folder.getRoot(), "observations.store");
+		String[] allClubs = {"Both", "Lunar", "LunarII", "Alpha", "Zulu"};
+		ObservationStore store = ObservationStore.open(file);
+		assertEquals(0, store.size());
+		assertEquals(0L, store.getLastSequence());
+		List<Observation> logged = new ArrayList<Observation>();
+		String[][] rounds = {{"Lunar", "LunarII"}, {"Lunar", "Both", "Alpha"},
+				{"Zulu", "LunarII", "Alpha"}};
+		long sequence = 0L;
+		for (String[] clubs : rounds) {
+			List<Observation> newer = new ArrayList<Observation>();
+			for (ObservationJournal.Entry entry : this.randomEntries(sequence + 1, 300, clubs)) {
+				newer.add(entry.observation);
+			}
+			sequence += newer.size();
+			logged.addAll(newer);
+			store = ObservationStore.compact(file, store, newer, sequence);
+			assertEquals(sequence, store.getLastSequence());
+			ObservationStoreTest.assertStoreMatches(store, logged, allClubs);
+		}
+		store = ObservationStore.open(file);
+		assertEquals(sequence, store.getLastSequence());
+		ObservationStoreTest.assertStoreMatches(store, logged, allClubs);
+		assertFalse(new File(this.folder.getRoot(), "observations.store.tmp").exists());
+	}
+
+	/**
+	 * This function checks that long notes are cut so they can be written,
+	 * and that a field too long to write is found before it is written.
+	 */
+	@Test
+	public void findsObservationsTooLargeToWrite() {
+		ObservingSite site = new ObservingSite("Backyard", 40.5, -74.25, -5);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			text.append(i == Observation.MAX_TEXT_LENGTH - 1 ? '\ud83c' : 'å');
+		}
+		Observation capped = new Observation(1, "Tycho", "Lunar", START_TIME, site,
+				text.toString(), text.toString());
+		assertEquals(Observation.MAX_TEXT_LENGTH - 1, capped.getNotes().length());
+		assertEquals(Observation.MAX_TEXT_LENGTH - 1, capped.getInstrument().length());
+		assertTrue(ObservationJournal.isWritable(capped));
+
+		Observation tooLarge = new Observation(1, text.toString(), "Lunar", START_TIME,
+				site, "", "");
+		assertFalse(ObservationJournal.isWritable(tooLarge));
+	}
+}
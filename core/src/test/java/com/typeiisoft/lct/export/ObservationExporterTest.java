@@ -0,0 +1,280 @@
+package com.typeiisoft.lct.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.typeiisoft.lct.db.ObservationSource;
+import com.typeiisoft.lct.db.ObservationVisitor;
+import com.typeiisoft.lct.features.Observation;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * This class checks the observation export formats. Single observations
+ * with text that needs quoting, escaping and folding are checked against
+ * the exact output. A large log is checked to export in bounded memory: the
+ * surefire configuration runs the tests with a 16 MB heap, far less than
+ * the output of a million entries, so an exporter that builds up the
+ * output or the log in memory fails with an OutOfMemoryError. The large
+ * log checks are skipped when the tests run with a bigger heap.
+ *
+ * @author Michael Reuter
+ */
+public class ObservationExporterTest {
+	/** Number of observations in the synthetic log. */
+	private static final int NUM_ROWS = 1000000;
+	/** Largest heap the tests are meant to run in, in bytes. */
+	private static final long HEAP_BUDGET = 16L * 1024L * 1024L;
+	/** Lines written per observation in the iCalendar format. */
+	private static final int ICS_EVENT_LINES = 9;
+	/** Lines written for the iCalendar header and footer. */
+	private static final int ICS_EXTRA_LINES = 5;
+	/** Largest length of an iCalendar line in octets. */
+	private static final int ICS_LINE_OCTETS = 75;
+	/** Time of the single observations (2012-01-01 01:02:03 UTC). */
+	private static final long UTC_TIME = 1325379723000L;
+	/** Observing site of the single observations. */
+	private static final ObservingSite SITE =
+			new ObservingSite("Back \\ yard; 1", 40.5, -74.25, -5);
+	/** Notes of the single observations, with control characters. */
+	private static final String NOTES = "Line one\nTab\there \u0001 \u2028 end";
+
+	/**
+	 * This class is a synthetic observation log that makes its entries as
+	 * they are visited, so it holds nothing in memory itself.
+	 */
+	private static final class SyntheticLog implements ObservationSource {
+		/** Feature names used in turn, including ones that need escaping. */
+		private static final String[] NAMES = {"Tycho", "Mare Imbrium",
+			"Rupes Recta, \"Straight Wall\"", "Ångström"};
+		/** The observing site of every entry. */
+		private final ObservingSite site = new ObservingSite("Backyard", 40.5, -74.25, -5);
+		/** Number of entries to make. */
+		private final int size;
+
+		/**
+		 * This function is the class constructor.
+		 * @param size : The number of entries to make.
+		 */
+		SyntheticLog(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * This function hands every synthetic observation to a visitor.
+		 * @param visitor : The object to hand the observations to.
+		 * @throws IOException
+		 */
+		@Override
+		public void forEach(ObservationVisitor visitor) throws IOException {
+			long utcTime = 1325376000000L;
+			for (int i = 0; i < this.size; i++) {
+				String notes = (0 == i % 2) ? "" : "Rim sharp, seeing 3";
+				visitor.visit(new Observation(i % 159 + 1, NAMES[i % NAMES.length],
+						"Lunar", utcTime + i * 60000L, this.site, "80mm", notes));
+			}
+		}
+	}
+
+	/**
+	 * This class is an output that throws the characters away and only
+	 * counts them and the lines.
+	 */
+	private static final class CountingWriter extends Writer {
+		/** Number of characters written. */
+		private long chars;
+		/** Number of line feeds written. */
+		private long lines;
+
+		/**
+		 * This function counts the characters and line feeds.
+		 * @param cbuf : The characters to write.
+		 * @param off : The offset of the first character.
+		 * @param len : The number of characters.
+		 */
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			this.chars += len;
+			for (int i = off; i < off + len; i++) {
+				if ('\n' == cbuf[i]) {
+					this.lines++;
+				}
+			}
+		}
+
+		/**
+		 * This function does nothing as nothing is buffered.
+		 */
+		@Override
+		public void flush() {
+		}
+
+		/**
+		 * This function does nothing as nothing is held open.
+		 */
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * This function exports the synthetic log in a format.
+	 * @param format : The format to write.
+	 * @return : The output with its counts.
+	 * @throws IOException
+	 */
+	private static CountingWriter export(ExportFormat format) throws IOException {
+		assumeTrue(Runtime.getRuntime().maxMemory() <= HEAP_BUDGET);
+		CountingWriter out = new CountingWriter();
+		ObservationExporter exporter = new ObservationExporter(out, format);
+		assertEquals(NUM_ROWS, exporter.export(new SyntheticLog(NUM_ROWS)));
+		assertTrue(out.chars > HEAP_BUDGET);
+		return out;
+	}
+
+	/**
+	 * This function checks the CSV export of a million entries.
+	 * @throws IOException
+	 */
+	@Test
+	public void exportsLargeLogAsCsv() throws IOException {
+		CountingWriter out = ObservationExporterTest.export(ExportFormat.CSV);
+		assertEquals(NUM_ROWS + 1, out.lines);
+	}
+
+	/**
+	 * This function checks the JSON export of a million entries.
+	 * @throws IOException
+	 */
+	@Test
+	public void exportsLargeLogAsJson() throws IOException {
+		CountingWriter out = ObservationExporterTest.export(ExportFormat.JSON);
+		assertEquals(NUM_ROWS + 2, out.lines);
+	}
+
+	/**
+	 * This function checks the iCalendar export of a million entries.
+	 * @throws IOException
+	 */
+	@Test
+	public void exportsLargeLogAsIcs() throws IOException {
+		CountingWriter out = ObservationExporterTest.export(ExportFormat.ICALENDAR);
+		assertEquals((long)NUM_ROWS * ICS_EVENT_LINES + ICS_EXTRA_LINES, out.lines);
+	}
+
+	/**
+	 * This function exports one observation in a format.
+	 * @param format : The format to write.
+	 * @param observation : The observation to write.
+	 * @return : The whole output.
+	 * @throws IOException
+	 */
+	private static String export(ExportFormat format, final Observation observation)
+			throws IOException {
+		StringWriter out = new StringWriter();
+		ObservationExporter exporter = new ObservationExporter(out, format);
+		assertEquals(1, exporter.export(new ObservationSource() {
+			@Override
+			public void forEach(ObservationVisitor visitor) throws IOException {
+				visitor.visit(observation);
+			}
+		}));
+		return out.toString();
+	}
+
+	/**
+	 * This function makes text from a string repeated.
+	 * @param text : The string to repeat.
+	 * @param count : The number of times.
+	 * @return : The repeated text.
+	 */
+	private static String repeat(String text, int count) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			buf.append(text);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * This function checks the CSV quoting of a feature name with a comma
+	 * and quotes and of notes with a line break.
+	 * @throws IOException
+	 */
+	@Test
+	public void quotesCsvFields() throws IOException {
+		Observation observation = new Observation(42, "Rupes Recta, \"Straight Wall\"",
+				"Lunar", UTC_TIME, SITE, "80mm", NOTES);
+		assertEquals("feature_id,feature,club,utc_time,site,site_latitude," +
+				"site_longitude,instrument,notes\r\n" +
+				"42,\"Rupes Recta, \"\"Straight Wall\"\"\",Lunar,2012-01-01T01:02:03Z," +
+				"Back \\ yard; 1,40.5,-74.25,80mm," +
+				"\"Line one\nTab\there \u0001 \u2028 end\"\r\n",
+				ObservationExporterTest.export(ExportFormat.CSV, observation));
+	}
+
+	/**
+	 * This function checks the JSON escaping of quotes, backslashes, line
+	 * breaks, tabs, control characters and the JavaScript line separators.
+	 * @throws IOException
+	 */
+	@Test
+	public void escapesJsonStrings() throws IOException {
+		Observation observation = new Observation(42, "Rupes Recta, \"Straight Wall\"",
+				"Lunar", UTC_TIME, SITE, "80mm", NOTES);
+		assertEquals("[\n{\"featureId\":42,\"feature\":\"Rupes Recta, \\\"Straight Wall\\\"\"," +
+				"\"club\":\"Lunar\",\"utcTime\":\"2012-01-01T01:02:03Z\"," +
+				"\"site\":{\"name\":\"Back \\\\ yard; 1\",\"latitude\":40.5," +
+				"\"longitude\":-74.25},\"instrument\":\"80mm\"," +
+				"\"notes\":\"Line one\\nTab\\there \\u0001 \\u2028 end\"}\n]\n",
+				ObservationExporterTest.export(ExportFormat.JSON, observation));
+	}
+
+	/**
+	 * This function checks the iCalendar escaping and the folding of a long
+	 * name of two, three and four octet characters. Lines are folded before
+	 * the character that would take them past 75 octets, the leading space
+	 * of a folded line counts toward its length and a character is never
+	 * split.
+	 * @throws IOException
+	 */
+	@Test
+	public void foldsIcsLines() throws IOException {
+		String name = ObservationExporterTest.repeat("\u00c5", 33) + "\u20ac\ud835\udd10" +
+				ObservationExporterTest.repeat("\u00c5", 36) + "x";
+		Observation observation = new Observation(42, name, "Lunar", UTC_TIME, SITE,
+				"80mm", NOTES);
+		String ics = ObservationExporterTest.export(ExportFormat.ICALENDAR, observation)
+				.replaceFirst("DTSTAMP:\\d{8}T\\d{6}Z", "DTSTAMP:stamp");
+		assertEquals("BEGIN:VCALENDAR\r\n" +
+				"VERSION:2.0\r\n" +
+				"PRODID:-//Type II Software//Lunar Club Tools//EN\r\n" +
+				"CALSCALE:GREGORIAN\r\n" +
+				"BEGIN:VEVENT\r\n" +
+				"DTSTAMP:stamp\r\n" +
+				"UID:obs-Lunar-42-1325379723000@lct.typeiisoft.com\r\n" +
+				"DTSTART:20120101T010203Z\r\n" +
+				"SUMMARY:" + ObservationExporterTest.repeat("\u00c5", 33) + "\r\n" +
+				" \u20ac\ud835\udd10" + ObservationExporterTest.repeat("\u00c5", 33) + "\r\n" +
+				" \u00c5\u00c5\u00c5x\r\n" +
+				"LOCATION:Back \\\\ yard\\; 1\r\n" +
+				"GEO:40.5;-74.25\r\n" +
+				"DESCRIPTION:Club: Lunar\\nInstrument: 80mm\\nLine one\\nTab\there " +
+				"\u0001 \u2028 end\r\n" +
+				"END:VEVENT\r\n" +
+				"END:VCALENDAR\r\n", ics);
+
+		Charset utf8 = Charset.forName("UTF-8");
+		for (String line : ics.split("\r\n")) {
+			assertTrue(line, line.getBytes(utf8).length <= ICS_LINE_OCTETS);
+		}
+		assertTrue(ics.replace("\r\n ", "").contains("SUMMARY:" + name + "\r\n"));
+	}
+}
@@ -0,0 +1,192 @@
+package com.typeiisoft.lct.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.typeiisoft.lct.TestAssets;
+import com.typeiisoft.lct.utils.EphemerisCache;
+import com.typeiisoft.lct.utils.MoonInfo;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import com.mhuss.AstroLib.NoInitException;
+import com.mhuss.AstroLib.ObsInfo;
+import com.mhuss.AstroLib.PlanetData;
+import com.mhuss.AstroLib.Planets;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This class checks the best time optimizer against a brute force search
+ * over the same samples. The search makes a MoonInfo for each sample and
+ * checks each feature object on its own, scoring it straight from the
+ * factors in the optimizer's description.
+ *
+ * @author Michael Reuter
+ */
+public class BestTimeOptimizerTest {
+	/** Julian date of 0h UTC on the first night checked (2013-03-14). */
+	private static final double FIRST_NIGHT_JD = 2456365.5;
+	/** Days between the nights checked, covering a lunation. */
+	private static final int[] NIGHTS = {0, 4, 8, 12, 16, 20, 24};
+	/** The night starts at 17h UTC, near local noon at the site. */
+	private static final double NIGHT_START = 17.0 / 24.0;
+	/** The observing site. */
+	private static final ObservingSite SITE =
+			new ObservingSite("Home", 40.5, -74.25, -5);
+	/** Allowed difference in the best scores. */
+	private static final double SCORE_TOLERANCE = 1e-9;
+	/** Allowed difference in the best times in days (a second). */
+	private static final double TIME_TOLERANCE = 1.0 / 86400.0;
+	/** The full feature catalog. */
+	private static FeatureTable table;
+
+	/**
+	 * This function reads the feature catalog.
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void readCatalog() throws IOException {
+		table = TestAssets.readCatalog();
+	}
+
+	/**
+	 * This function makes the date and time of a sample for MoonInfo.
+	 * @param jd : The Julian date of the sample.
+	 * @return : The UTC date and time to the nearest second.
+	 */
+	private static int[] toDateTime(double jd) {
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.setTimeInMillis(Math.round((jd - 2440587.5) * 86400.0) * 1000L);
+		return new int[] {cal.get(Calendar.DATE), cal.get(Calendar.MONTH) + 1,
+				cal.get(Calendar.YEAR), cal.get(Calendar.HOUR_OF_DAY),
+				cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 0};
+	}
+
+	/**
+	 * This function calculates the altitude of the Moon or Sun at the site.
+	 * @param planet : The body to calculate the altitude of.
+	 * @param jd : The Julian date of the sample.
+	 * @return : The altitude in degrees.
+	 * @throws NoInitException
+	 */
+	private static double altitude(int planet, double jd) throws NoInitException {
+		ObsInfo obsInfo = new ObsInfo();
+		obsInfo.setLatitudeDeg(SITE.getLatitude());
+		obsInfo.setLongitudeDeg(SITE.getLongitude());
+		return Math.toDegrees(new PlanetData(planet, jd, obsInfo).getAltAzLat());
+	}
+
+	/**
+	 * This function scores a feature at one sample.
+	 * @param moonInfo : The Moon information for the sample.
+	 * @param feature : The feature to score.
+	 * @param noCutoff : True if the feature has no longitude cutoff.
+	 * @param weight : The Moon altitude and darkness factors for the sample.
+	 * @return : The score, zero if the feature is not visible.
+	 */
+	private static double score(MoonInfo moonInfo, LunarFeature feature,
+			boolean noCutoff, double weight) {
+		if (weight <= 0.0 || !moonInfo.isVisible(feature)) {
+			return 0.0;
+		}
+		if (noCutoff) {
+			return weight;
+		}
+		double halfWidth = Math.abs(feature.getDeltaLongitude()) / 2.0;
+		double selcoLong = moonInfo.selcoLongitude();
+		double distance = moonInfo.isMorning() ?
+				feature.getLongitude() - halfWidth - selcoLong :
+					selcoLong - feature.getLongitude() - halfWidth;
+		double cutoff = MoonInfo.featureCutoff(feature.getLatitude());
+		return weight * Math.max(0.0, 1.0 - distance / cutoff);
+	}
+
+	/**
+	 * This function compares the optimizer with the brute force search for
+	 * nights over a lunation.
+	 * @throws NoInitException
+	 */
+	@Test
+	public void matchesBruteForce() throws NoInitException {
+		int size = table.size();
+		int found = 0;
+		for (int night : NIGHTS) {
+			double startJd = FIRST_NIGHT_JD + night + NIGHT_START;
+			double endJd = startJd + 1.0;
+			EphemerisCache ephemeris = new EphemerisCache(startJd, endJd);
+			List<BestTime> bestTimes = new BestTimeOptimizer(table, SITE, ephemeris)
+					.optimize(startJd, endJd);
+
+			// Brute force over the optimizer's samples
+			int numSteps = (int)Math.ceil((endJd - startJd) / BestTimeOptimizer.DEFAULT_STEP);
+			double stepSize = (endJd - startJd) / numSteps;
+			double[] bestScore = new double[size];
+			double[] bestJd = new double[size];
+			for (int k = 0; k <= numSteps; k++) {
+				double jd = (k == numSteps) ? endJd : startJd + k * stepSize;
+				double moonAltitude = BestTimeOptimizerTest.altitude(Planets.LUNA, jd);
+				double moon = moonAltitude < BestTimeOptimizer.MIN_MOON_ALTITUDE ? 0.0 :
+					Math.sin(Math.toRadians(moonAltitude));
+				double sunAltitude = BestTimeOptimizerTest.altitude(Planets.SUN, jd);
+				double dark = Math.max(0.0, Math.min(1.0,
+						(BestTimeOptimizer.SUNSET_ALTITUDE - sunAltitude) /
+						(BestTimeOptimizer.SUNSET_ALTITUDE - BestTimeOptimizer.DARK_ALTITUDE)));
+				MoonInfo moonInfo = new MoonInfo(BestTimeOptimizerTest.toDateTime(jd),
+						ephemeris);
+				for (int i = 0; i < size; i++) {
+					double score = BestTimeOptimizerTest.score(moonInfo,
+							table.getFeature(i), table.isNoCutoff(i), moon * dark);
+					if (score > bestScore[i]) {
+						bestScore[i] = score;
+						bestJd[i] = jd;
+					}
+				}
+			}
+
+			Map<LunarFeature, BestTime> byFeature = new HashMap<LunarFeature, BestTime>();
+			double lastJd = Double.NEGATIVE_INFINITY;
+			for (BestTime bestTime : bestTimes) {
+				assertTrue(bestTime.getJd() >= lastJd);
+				lastJd = bestTime.getJd();
+				assertFalse(byFeature.containsKey(bestTime.getFeature()));
+				byFeature.put(bestTime.getFeature(), bestTime);
+			}
+			for (int i = 0; i < size; i++) {
+				BestTime bestTime = byFeature.get(table.getFeature(i));
+				String message = "Night " + night + ", " + table.getName(i);
+				if (bestScore[i] <= 0.0) {
+					assertEquals(message, null, bestTime);
+					continue;
+				}
+				assertTrue(message, null != bestTime);
+				assertEquals(message, bestScore[i], bestTime.getScore(), SCORE_TOLERANCE);
+				assertEquals(message, bestJd[i], bestTime.getJd(), TIME_TOLERANCE);
+				found++;
+			}
+			assertEquals(byFeature.size(), bestTimes.size());
+		}
+		assertTrue(found > 0);
+	}
+
+	/**
+	 * This function checks that a night runs from local mean noon to the
+	 * next one.
+	 */
+	@Test
+	public void nightStartsAtLocalNoon() {
+		BestTimeOptimizer optimizer = new BestTimeOptimizer(table, SITE, null);
+		double noon = FIRST_NIGHT_JD + 0.5 - SITE.getLongitude() / 360.0;
+		assertEquals(noon, optimizer.getNightStart(noon + 0.25), 1e-9);
+		assertEquals(noon, optimizer.getNightStart(noon + 0.999), 1e-9);
+		assertEquals(noon + 1.0, optimizer.getNightStart(noon + 1.0), 1e-9);
+	}
+}
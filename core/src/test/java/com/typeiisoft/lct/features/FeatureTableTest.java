@@ -0,0 +1,93 @@
+package com.typeiisoft.lct.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.typeiisoft.lct.TestAssets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * This class checks that a feature table hands out one LunarFeature object
+ * per row, whichever thread or selection of the table it is requested from.
+ *
+ * @author Michael Reuter
+ */
+public class FeatureTableTest {
+	/** Number of threads requesting the features at once. */
+	private static final int NUM_THREADS = 4;
+
+	/**
+	 * This function requests every feature from several threads at once
+	 * and checks that they all get the same objects.
+	 * @throws Exception
+	 */
+	@Test
+	public void sameFeatureFromEveryThread() throws Exception {
+		final FeatureTable table = TestAssets.readCatalog();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			List<Future<LunarFeature[]>> results = new ArrayList<Future<LunarFeature[]>>();
+			for (int t = 0; t < NUM_THREADS; t++) {
+				results.add(executor.submit(new Callable<LunarFeature[]>() {
+					@Override
+					public LunarFeature[] call() throws InterruptedException {
+						start.await();
+						LunarFeature[] features = new LunarFeature[table.size()];
+						for (int i = 0; i < features.length; i++) {
+							features[i] = table.getFeature(i);
+						}
+						return features;
+					}
+				}));
+			}
+			start.countDown();
+			LunarFeature[] first = results.get(0).get();
+			for (Future<LunarFeature[]> result : results) {
+				LunarFeature[] features = result.get();
+				for (int i = 0; i < features.length; i++) {
+					assertSame(first[i], features[i]);
+					assertSame(first[i], table.getFeature(i));
+					assertEquals(table.getId(i), features[i].getId());
+					assertEquals(table.getName(i), features[i].getName());
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * This function checks that a selection shares the feature objects of
+	 * the table it was selected from.
+	 * @throws IOException
+	 */
+	@Test
+	public void selectionSharesFeatures() throws IOException {
+		FeatureTable table = TestAssets.readCatalog();
+		int[] rows = new int[table.size() / 2];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = 2 * i;
+		}
+		FeatureTable selection = table.select(rows);
+		for (int i = 0; i < selection.size(); i++) {
+			LunarFeature feature = selection.getFeature(i);
+			int row = 0;
+			while (table.getId(row) != feature.getId()) {
+				row++;
+			}
+			assertSame(feature, table.getFeature(row));
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package com.typeiisoft.lct.features;
+
+import static org.junit.Assert.assertEquals;
+
+import com.typeiisoft.lct.TestAssets;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * This class checks the spatial index queries against a linear scan of the
+ * features. Random features cover the whole sphere, with some right at the
+ * poles and on the 180 degree meridian, and the real catalog is checked as
+ * well.
+ *
+ * @author Michael Reuter
+ */
+public class SpatialIndexTest {
+	/** Seed for the random features and queries, so failures can be repeated. */
+	private static final long SEED = 20130315L;
+	/** Number of random features. */
+	private static final int NUM_FEATURES = 3000;
+	/** Number of random queries of each kind. */
+	private static final int NUM_QUERIES = 500;
+	/** The random features and queries. */
+	private final Random random = new Random(SEED);
+
+	/**
+	 * This function makes a random latitude, spread evenly over the sphere
+	 * with some at or next to the poles.
+	 * @return : The latitude in degrees.
+	 */
+	private double randomLatitude() {
+		switch (this.random.nextInt(10)) {
+		case 0:
+			return this.random.nextBoolean() ? 90.0 : -90.0;
+		case 1:
+			return (this.random.nextBoolean() ? 1.0 : -1.0) *
+					(90.0 - 5.0 * this.random.nextDouble());
+		default:
+			return Math.toDegrees(Math.asin(2.0 * this.random.nextDouble() - 1.0));
+		}
+	}
+
+	/**
+	 * This function makes a random longitude with some at or next to the
+	 * 180 degree meridian.
+	 * @return : The longitude in degrees from -180 to 180.
+	 */
+	private double randomLongitude() {
+		switch (this.random.nextInt(10)) {
+		case 0:
+			return this.random.nextBoolean() ? 180.0 : -180.0;
+		case 1:
+			return (this.random.nextBoolean() ? 1.0 : -1.0) *
+					(180.0 - 5.0 * this.random.nextDouble());
+		default:
+			return 360.0 * this.random.nextDouble() - 180.0;
+		}
+	}
+
+	/**
+	 * This function makes a table of random features. Some positions are
+	 * repeated so that there are ties in the distances.
+	 * @return : The feature table.
+	 */
+	private FeatureTable randomTable() {
+		FeatureTable.Builder builder = new FeatureTable.Builder();
+		double lat = 0.0;
+		double lon = 0.0;
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			if (0 == i || this.random.nextInt(20) > 0) {
+				lat = this.randomLatitude();
+				lon = this.randomLongitude();
+			}
+			builder.add(i, "Feature " + i, 10.0, lat, lon, "Crater",
+					10.0 * this.random.nextDouble(), 10.0 * this.random.nextDouble(),
+					"", "", "", "");
+		}
+		return builder.build();
+	}
+
+	/**
+	 * This function finds the point on the unit sphere for a position.
+	 * @param latitude : The latitude in degrees.
+	 * @param longitude : The longitude in degrees.
+	 * @return : The point coordinates.
+	 */
+	private static double[] toPoint(double latitude, double longitude) {
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		return new double[] {cosLat * Math.sin(lon), Math.sin(lat),
+				cosLat * Math.cos(lon)};
+	}
+
+	/**
+	 * This function finds the squared distance between two positions.
+	 * @param a : The first point.
+	 * @param b : The second point.
+	 * @return : The squared straight line distance.
+	 */
+	private static double distance2(double[] a, double[] b) {
+		double dx = a[0] - b[0];
+		double dy = a[1] - b[1];
+		double dz = a[2] - b[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * This function finds the squared distances from a position to every
+	 * feature.
+	 * @param table : The features.
+	 * @param target : The point searched around.
+	 * @return : The squared distance of each row.
+	 */
+	private static double[] distances(FeatureTable table, double[] target) {
+		double[] d2 = new double[table.size()];
+		for (int i = 0; i < d2.length; i++) {
+			d2[i] = SpatialIndexTest.distance2(SpatialIndexTest.toPoint(
+					table.getLatitude(i), table.getLongitude(i)), target);
+		}
+		return d2;
+	}
+
+	/**
+	 * This function checks the nearest features. Features at the same
+	 * distance may come back in any order, so the distances are compared.
+	 * @param table : The features.
+	 * @param index : The index over the features.
+	 * @param lat : The latitude searched around.
+	 * @param lon : The longitude searched around.
+	 * @param count : The number of features to find.
+	 */
+	private static void checkNearest(FeatureTable table, SpatialIndex index,
+			double lat, double lon, int count) {
+		double[] d2 = SpatialIndexTest.distances(table,
+				SpatialIndexTest.toPoint(lat, lon));
+		double[] sorted = d2.clone();
+		Arrays.sort(sorted);
+		int[] rows = index.findNearest(lat, lon, count);
+		String message = "Nearest " + count + " to " + lat + "/" + lon;
+		assertEquals(message, Math.min(count, table.size()), rows.length);
+		BitSet seen = new BitSet();
+		for (int i = 0; i < rows.length; i++) {
+			assertEquals(message, false, seen.get(rows[i]));
+			seen.set(rows[i]);
+			assertEquals(message, sorted[i], d2[rows[i]], 0.0);
+		}
+	}
+
+	/**
+	 * This function checks the features within a distance.
+	 * @param table : The features.
+	 * @param index : The index over the features.
+	 * @param lat : The latitude searched around.
+	 * @param lon : The longitude searched around.
+	 * @param radius : The angular distance in degrees.
+	 */
+	private static void checkWithin(FeatureTable table, SpatialIndex index,
+			double lat, double lon, double radius) {
+		double chord = 2.0 * Math.sin(Math.toRadians(Math.min(radius, 180.0)) / 2.0);
+		double[] d2 = SpatialIndexTest.distances(table,
+				SpatialIndexTest.toPoint(lat, lon));
+		BitSet expected = new BitSet();
+		for (int i = 0; i < d2.length; i++) {
+			if (d2[i] <= chord * chord) {
+				expected.set(i);
+			}
+		}
+		BitSet matches = new BitSet();
+		index.findWithin(lat, lon, radius, matches);
+		assertEquals("Within " + radius + " of " + lat + "/" + lon, expected, matches);
+	}
+
+	/**
+	 * This function checks the features inside a range of latitude and
+	 * longitude.
+	 * @param table : The features.
+	 * @param index : The index over the features.
+	 * @param minLat : The southern edge in degrees.
+	 * @param maxLat : The northern edge in degrees.
+	 * @param minLon : The western edge in degrees.
+	 * @param maxLon : The eastern edge in degrees.
+	 */
+	private static void checkBox(FeatureTable table, SpatialIndex index,
+			double minLat, double maxLat, double minLon, double maxLon) {
+		BitSet expected = new BitSet();
+		for (int i = 0; i < table.size(); i++) {
+			double lat = table.getLatitude(i);
+			double lon = table.getLongitude(i);
+			boolean inLongitude = (minLon <= maxLon) ? lon >= minLon && lon <= maxLon :
+				lon >= minLon || lon <= maxLon;
+			if (lat >= minLat && lat <= maxLat && inLongitude) {
+				expected.set(i);
+			}
+		}
+		BitSet matches = new BitSet();
+		index.findInBox(minLat, maxLat, minLon, maxLon, matches);
+		assertEquals("Box " + minLat + "/" + maxLat + " " + minLon + "/" + maxLon,
+				expected, matches);
+	}
+
+	/**
+	 * This function checks the near side features reaching into a rectangle
+	 * of the disk.
+	 * @param table : The features.
+	 * @param index : The index over the features.
+	 * @param minX : The western edge.
+	 * @param maxX : The eastern edge.
+	 * @param minY : The southern edge.
+	 * @param maxY : The northern edge.
+	 */
+	private static void checkOverlapping(FeatureTable table, SpatialIndex index,
+			double minX, double maxX, double minY, double maxY) {
+		BitSet expected = new BitSet();
+		for (int i = 0; i < table.size(); i++) {
+			double[] point = SpatialIndexTest.toPoint(table.getLatitude(i),
+					table.getLongitude(i));
+			double cosLat = Math.cos(Math.toRadians(table.getLatitude(i)));
+			double r = Math.max(Math.toRadians(Math.abs(table.getDeltaLatitude(i))),
+					cosLat * Math.toRadians(Math.abs(table.getDeltaLongitude(i)))) / 2.0;
+			if (point[2] >= 0.0 && point[0] + r >= minX && point[0] - r <= maxX &&
+					point[1] + r >= minY && point[1] - r <= maxY) {
+				expected.set(i);
+			}
+		}
+		BitSet matches = new BitSet();
+		index.findOverlapping(minX, maxX, minY, maxY, matches);
+		assertEquals("Disk " + minX + "/" + maxX + " " + minY + "/" + maxY,
+				expected, matches);
+	}
+
+	/**
+	 * This function runs random queries of every kind against a table.
+	 * @param table : The features.
+	 */
+	private void checkRandomQueries(FeatureTable table) {
+		SpatialIndex index = new SpatialIndex(table);
+		assertEquals(table.size(), index.size());
+		for (int q = 0; q < NUM_QUERIES; q++) {
+			double lat = this.randomLatitude();
+			double lon = this.randomLongitude();
+			SpatialIndexTest.checkNearest(table, index, lat, lon,
+					1 + this.random.nextInt(20));
+			SpatialIndexTest.checkWithin(table, index, lat, lon,
+					30.0 * this.random.nextDouble());
+
+			double lat0 = this.randomLatitude();
+			double lat1 = this.randomLatitude();
+			double lon0 = this.randomLongitude();
+			double lon1 = this.randomLongitude();
+			// Either order of the longitudes, so half cross the meridian
+			SpatialIndexTest.checkBox(table, index, Math.min(lat0, lat1),
+					Math.max(lat0, lat1), lon0, lon1);
+
+			double x0 = 2.2 * this.random.nextDouble() - 1.1;
+			double x1 = 2.2 * this.random.nextDouble() - 1.1;
+			double y0 = 2.2 * this.random.nextDouble() - 1.1;
+			double y1 = 2.2 * this.random.nextDouble() - 1.1;
+			SpatialIndexTest.checkOverlapping(table, index, Math.min(x0, x1),
+					Math.max(x0, x1), Math.min(y0, y1), Math.max(y0, y1));
+		}
+	}
+
+	/**
+	 * This function checks random queries over random features.
+	 */
+	@Test
+	public void randomQueriesMatchLinearScan() {
+		this.checkRandomQueries(this.randomTable());
+	}
+
+	/**
+	 * This function checks random queries over the feature catalog.
+	 * @throws IOException
+	 */
+	@Test
+	public void catalogQueriesMatchLinearScan() throws IOException {
+		this.checkRandomQueries(TestAssets.readCatalog());
+	}
+
+	/**
+	 * This function checks boxes at the poles and across the 180 degree
+	 * meridian, and searches around those places.
+	 */
+	@Test
+	public void polesAndMeridianMatchLinearScan() {
+		FeatureTable table = this.randomTable();
+		SpatialIndex index = new SpatialIndex(table);
+		double[][] boxes = {
+				{80.0, 90.0, -180.0, 180.0},
+				{-90.0, -80.0, -180.0, 180.0},
+				{85.0, 90.0, 170.0, -170.0},
+				{-90.0, -60.0, 90.0, -90.0},
+				{-90.0, 90.0, 179.0, -179.0},
+				{-90.0, 90.0, 180.0, -180.0},
+				{-10.0, 10.0, 180.0, 180.0},
+				{-10.0, 10.0, -180.0, -180.0},
+				{90.0, 90.0, -180.0, 180.0},
+				{-90.0, 90.0, -180.0, 180.0},
+				{-45.0, 45.0, 135.0, -135.0},
+				{10.0, -10.0, -180.0, 180.0},
+		};
+		for (double[] box : boxes) {
+			SpatialIndexTest.checkBox(table, index, box[0], box[1], box[2], box[3]);
+		}
+		double[][] places = {{90.0, 0.0}, {-90.0, 45.0}, {0.0, 180.0}, {0.0, -180.0},
+				{89.0, 179.5}, {-45.0, -179.9}};
+		for (double[] place : places) {
+			SpatialIndexTest.checkNearest(table, index, place[0], place[1], 10);
+			SpatialIndexTest.checkNearest(table, index, place[0], place[1], NUM_FEATURES + 1);
+			for (double radius : new double[] {0.0, 1.0, 10.0, 90.0, 180.0, 200.0}) {
+				SpatialIndexTest.checkWithin(table, index, place[0], place[1], radius);
+			}
+		}
+	}
+}
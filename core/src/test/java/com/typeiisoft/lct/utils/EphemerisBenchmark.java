@@ -0,0 +1,98 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.AstroDate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class compares the AstroLib ephemeris with the low precision series,
+ * both on their own and through the MoonInfo exact and approximate modes.
+ * The MoonInfo benchmarks get the quantities a planning sweep uses.
+ *
+ * @author Michael Reuter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EphemerisBenchmark {
+	/** Julian date of the calculation. */
+	private double jd;
+	/** The array for the calculated values. */
+	private final double[] values = new double[EphemerisCache.Quantity.values().length];
+
+	/**
+	 * This function sets the date of the calculation.
+	 */
+	@Setup
+	public void setUp() {
+		int[] dt = MoonInfoBenchmark.DATE_TIME;
+		this.jd = new AstroDate(dt[0], dt[1], dt[2], dt[3], dt[4], dt[5]).jd();
+	}
+
+	/**
+	 * This function calculates the quantities with AstroLib.
+	 * @return : The calculated values.
+	 */
+	@Benchmark
+	public double[] computeExact() {
+		EphemerisCache.computeExact(this.jd, this.values);
+		return this.values;
+	}
+
+	/**
+	 * This function calculates the quantities with the low precision series.
+	 * @return : The calculated values.
+	 */
+	@Benchmark
+	public double[] computeLowPrecision() {
+		LowPrecisionEphemeris.compute(this.jd, this.values);
+		return this.values;
+	}
+
+	/**
+	 * This function gets the SELCO longitude, librations and illuminated
+	 * fraction from a new exact mode MoonInfo.
+	 * @return : A sum of the values.
+	 */
+	@Benchmark
+	public double moonInfoExact() {
+		return EphemerisBenchmark.sweepValues(new MoonInfo(MoonInfoBenchmark.DATE_TIME,
+				MoonInfo.Mode.EXACT));
+	}
+
+	/**
+	 * This function gets the SELCO longitude, librations and illuminated
+	 * fraction from a new approximate mode MoonInfo.
+	 * @return : A sum of the values.
+	 */
+	@Benchmark
+	public double moonInfoApproximate() {
+		return EphemerisBenchmark.sweepValues(new MoonInfo(MoonInfoBenchmark.DATE_TIME,
+				MoonInfo.Mode.APPROXIMATE));
+	}
+
+	/**
+	 * This function gets the values a planning sweep uses from a MoonInfo.
+	 * @param moonInfo : The Moon information.
+	 * @return : A sum of the values.
+	 */
+	private static double sweepValues(MoonInfo moonInfo) {
+		double[] librations = moonInfo.librations();
+		return moonInfo.selcoLongitude() + librations[0] + librations[1] +
+				moonInfo.illumation();
+	}
+}
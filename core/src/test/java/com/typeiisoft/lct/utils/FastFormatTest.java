@@ -0,0 +1,187 @@
+package com.typeiisoft.lct.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class checks that FastFormat gives the same text as StrFormat over
+ * millions of random values, with extra values on the rounding ties, the
+ * DMS carries and the negative minutes. The checks run in several default
+ * locales and time zones, which are put back afterwards.
+ *
+ * @author Michael Reuter
+ */
+public class FastFormatTest {
+	/** Seed for the random values, so failures can be repeated. */
+	private static final long SEED = 20121120L;
+	/** Number of random numbers per precision in the US locale. */
+	private static final int NUM_NUMBERS = 1000000;
+	/** Number of random values per check in each of the other locales. */
+	private static final int NUM_LOCALE_VALUES = 20000;
+	/** Precisions the program formats numbers with. */
+	private static final int[] PRECISIONS = {1, 2};
+	/** Default locales to check, including ones with other digits and signs. */
+	private static final Locale[] LOCALES = {Locale.US, Locale.GERMANY,
+		Locale.FRANCE, new Locale("de", "CH"), new Locale("ar", "EG"),
+		new Locale("hi", "IN"), new Locale("fa", "IR")};
+	/** Default time zones to check, including a half hour daylight shift. */
+	private static final String[] TIME_ZONES = {"UTC", "America/New_York",
+		"Europe/Berlin", "Asia/Kolkata", "Australia/Lord_Howe"};
+	/** Range of the random dates in milliseconds from 1970 (to 2070). */
+	private static final long DATE_RANGE = 3155760000000L;
+	/** The default locale before the test. */
+	private Locale locale;
+	/** The default time zone before the test. */
+	private TimeZone timeZone;
+	/** The random values. */
+	private Random random;
+
+	/**
+	 * This function keeps the defaults and seeds the random values.
+	 */
+	@Before
+	public void setUp() {
+		this.locale = Locale.getDefault();
+		this.timeZone = TimeZone.getDefault();
+		this.random = new Random(SEED);
+	}
+
+	/**
+	 * This function puts the defaults back.
+	 */
+	@After
+	public void tearDown() {
+		Locale.setDefault(this.locale);
+		TimeZone.setDefault(this.timeZone);
+	}
+
+	/**
+	 * This function makes a random number of varied size, often on or next
+	 * to a rounding tie for the precision.
+	 * @param precision : The number of digits after the decimal.
+	 * @return : The random number.
+	 */
+	private double randomNumber(int precision) {
+		double scale = Math.pow(10.0, precision);
+		double value;
+		switch (this.random.nextInt(4)) {
+		case 0:
+			// A tie, as close as a double gets
+			value = (this.random.nextInt(2000000) + 0.5) / scale;
+			break;
+		case 1:
+			// One ulp either side of a tie
+			value = (this.random.nextInt(2000000) + 0.5) / scale;
+			value = this.random.nextBoolean() ? Math.nextUp(value) : Math.nextAfter(value, 0.0);
+			break;
+		case 2:
+			value = Math.pow(10.0, this.random.nextInt(40) - 20) * this.random.nextDouble();
+			break;
+		default:
+			value = 2000.0 * this.random.nextDouble();
+			break;
+		}
+		return this.random.nextBoolean() ? -value : value;
+	}
+
+	/**
+	 * This function makes a random angle in decimal degrees, often just
+	 * under a minute or second boundary so the seconds round up to 60.
+	 * @return : The random angle.
+	 */
+	private double randomAngle() {
+		double value;
+		if (this.random.nextBoolean()) {
+			value = this.random.nextInt(360) + (this.random.nextInt(60) +
+					(this.random.nextInt(60) + 1.0 - this.random.nextDouble() * 0.1) /
+					60.0) / 60.0;
+		}
+		else {
+			value = 360.0 * this.random.nextDouble();
+		}
+		return this.random.nextBoolean() ? -value : value;
+	}
+
+	/**
+	 * This function checks the numbers, coordinates and DMS text in the
+	 * current default locale.
+	 * @param count : The number of random values per check.
+	 */
+	private void checkNumbers(int count) {
+		String where = " in " + Locale.getDefault();
+		for (int precision : PRECISIONS) {
+			for (int i = 0; i < count; i++) {
+				double value = this.randomNumber(precision);
+				assertEquals(value + where, StrFormat.formatDouble(value, precision),
+						FastFormat.formatDouble(value, precision));
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			double value = this.randomNumber(2) / 10.0;
+			assertEquals(value + where, StrFormat.coordFormat("lat", value),
+					FastFormat.latitude(value));
+			assertEquals(value + where, StrFormat.coordFormat("lon", value),
+					FastFormat.longitude(value));
+		}
+		for (int i = 0; i < count; i++) {
+			double value = this.randomAngle();
+			assertEquals(value + where, StrFormat.dmsFromDd(value, false),
+					FastFormat.dmsFromDd(value, false));
+			assertEquals(value + where, StrFormat.dmsFromDd(value, true),
+					FastFormat.dmsFromDd(value, true));
+		}
+	}
+
+	/**
+	 * This function checks the numbers in the US locale over a million
+	 * values per precision.
+	 */
+	@Test
+	public void matchesNumbers() {
+		Locale.setDefault(Locale.US);
+		this.checkNumbers(NUM_NUMBERS);
+	}
+
+	/**
+	 * This function checks the numbers in the other locales.
+	 */
+	@Test
+	public void matchesNumbersInLocales() {
+		for (Locale locale : LOCALES) {
+			Locale.setDefault(locale);
+			this.checkNumbers(NUM_LOCALE_VALUES);
+		}
+	}
+
+	/**
+	 * This function checks the dates for every pair of default locale and
+	 * time zone, with Calendars in all of the time zones.
+	 */
+	@Test
+	public void matchesDates() {
+		for (Locale locale : LOCALES) {
+			Locale.setDefault(locale);
+			for (String defaultZone : TIME_ZONES) {
+				TimeZone.setDefault(TimeZone.getTimeZone(defaultZone));
+				for (int i = 0; i < NUM_LOCALE_VALUES / 10; i++) {
+					Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(
+							TIME_ZONES[this.random.nextInt(TIME_ZONES.length)]));
+					cal.setTimeInMillis((long)(this.random.nextDouble() * DATE_RANGE));
+					String where = cal.getTimeInMillis() + " in " + locale + " " +
+							defaultZone + " " + cal.getTimeZone().getID();
+					assertEquals(where, StrFormat.dateFormat(cal), FastFormat.dateFormat(cal));
+					assertEquals(where, StrFormat.dateFormatNoSeconds(cal),
+							FastFormat.dateFormatNoSeconds(cal));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.typeiisoft.lct.utils;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the string formatters. Each StrFormat call is paired
+ * with the FastFormat call that gives the same text, and the appending
+ * calls are measured with a reused buffer.
+ *
+ * @author Michael Reuter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+	/** A coordinate to format. */
+	private double coordinate = -23.456789;
+	/** A date to format. */
+	private Calendar date;
+	/** The reused buffer for the appending calls. */
+	private final StringBuilder buf = new StringBuilder(64);
+
+	/**
+	 * This function sets up the date to format.
+	 */
+	@Setup
+	public void setUp() {
+		this.date = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+		this.date.set(2012, Calendar.JUNE, 20, 20, 15, 42);
+	}
+
+	/**
+	 * This function formats a number with StrFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String strFormatDouble() {
+		return StrFormat.formatDouble(this.coordinate, 2);
+	}
+
+	/**
+	 * This function formats a number with FastFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String fastFormatDouble() {
+		return FastFormat.formatDouble(this.coordinate, 2);
+	}
+
+	/**
+	 * This function formats a latitude with StrFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String strFormatLatitude() {
+		return StrFormat.coordFormat("lat", this.coordinate);
+	}
+
+	/**
+	 * This function formats a latitude with FastFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String fastFormatLatitude() {
+		return FastFormat.latitude(this.coordinate);
+	}
+
+	/**
+	 * This function formats degrees, minutes and seconds with StrFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String strFormatDms() {
+		return StrFormat.dmsFromDd(this.coordinate, true);
+	}
+
+	/**
+	 * This function formats degrees, minutes and seconds with FastFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String fastFormatDms() {
+		return FastFormat.dmsFromDd(this.coordinate, true);
+	}
+
+	/**
+	 * This function formats a date with StrFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String strFormatDate() {
+		return StrFormat.dateFormat(this.date);
+	}
+
+	/**
+	 * This function formats a date with FastFormat.
+	 * @return : The text.
+	 */
+	@Benchmark
+	public String fastFormatDate() {
+		return FastFormat.dateFormat(this.date);
+	}
+
+	/**
+	 * This function appends a latitude and a date to a reused buffer.
+	 * @return : The buffer length.
+	 */
+	@Benchmark
+	public int fastFormatAppend() {
+		this.buf.setLength(0);
+		FastFormat.appendLatitude(this.buf, this.coordinate);
+		FastFormat.appendDate(this.buf, this.date, true);
+		return this.buf.length();
+	}
+}
@@ -0,0 +1,55 @@
+package com.typeiisoft.lct.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import com.mhuss.AstroLib.AstroDate;
+
+import org.junit.Test;
+
+/**
+ * This class checks the low precision series against AstroLib. The
+ * differences must stay inside the published error envelope, and the
+ * colongitude must stay well inside the 0.1 degree the visibility checks
+ * need.
+ *
+ * @author Michael Reuter
+ */
+public class LowPrecisionEphemerisTest {
+	/** Accuracy the visibility checks need for the SELCO in degrees. */
+	private static final double SELCO_BUDGET = 0.1;
+
+	/**
+	 * This function compares every quantity every 0.37 days over 2000-2040.
+	 */
+	@Test
+	public void staysInsideErrorEnvelope() {
+		EphemerisCache.Quantity[] quantities = EphemerisCache.Quantity.values();
+		double[] exact = new double[quantities.length];
+		double[] approximate = new double[quantities.length];
+		double[] largest = new double[quantities.length];
+		double start = new AstroDate(1, 1, 2000).jd();
+		double end = new AstroDate(1, 1, 2040).jd();
+		for (double jd = start; jd < end; jd += 0.37) {
+			EphemerisCache.computeExact(jd, exact);
+			LowPrecisionEphemeris.compute(jd, approximate);
+			for (EphemerisCache.Quantity quantity : quantities) {
+				int q = quantity.ordinal();
+				double difference = Math.abs(exact[q] - approximate[q]);
+				if (EphemerisCache.Quantity.COLONGITUDE == quantity) {
+					difference = Math.min(difference, 360.0 - difference);
+				}
+				else if (EphemerisCache.Quantity.PHASE_ANGLE == quantity) {
+					difference = Math.min(difference, 2.0 * Math.PI - difference);
+				}
+				largest[q] = Math.max(largest[q], difference);
+			}
+		}
+		for (EphemerisCache.Quantity quantity : quantities) {
+			double bound = LowPrecisionEphemeris.getErrorBound(quantity);
+			assertTrue(quantity + " error " + largest[quantity.ordinal()] +
+					" is over " + bound, largest[quantity.ordinal()] <= bound);
+		}
+		assertTrue(LowPrecisionEphemeris.getErrorBound(
+				EphemerisCache.Quantity.COLONGITUDE) < SELCO_BUDGET);
+	}
+}
@@ -0,0 +1,132 @@
+package com.typeiisoft.lct.utils;
+
+import com.typeiisoft.lct.TestAssets;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the feature visibility checks over the whole
+ * catalog. The per-feature check, the batch check on the feature table and
+ * the static check with a precomputed Moon state are compared, along with
+ * the full cost of a new Moon state followed by a batch check.
+ *
+ * @author Michael Reuter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoonInfoBenchmark {
+	/** Observation date and time (day, month, year, hours, minutes, seconds, offset). */
+	static final int[] DATE_TIME = {20, 6, 2012, 20, 0, 0, 0};
+	/** The catalog as a feature table. */
+	private FeatureTable table;
+	/** The catalog as feature objects. */
+	private List<LunarFeature> features;
+	/** Moon state with the ephemeris already calculated. */
+	private MoonInfo moonInfo;
+	/** Lunar longitude of the SELCO. */
+	private double selcoLong;
+	/** Flag for morning on the Moon. */
+	private boolean isMorning;
+	/** Libration in latitude. */
+	private double libLatitude;
+	/** Libration in longitude. */
+	private double libLongitude;
+
+	/**
+	 * This function loads the catalog and calculates the Moon state.
+	 * @throws IOException
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.table = TestAssets.readCatalog();
+		this.features = new ArrayList<LunarFeature>(this.table.size());
+		for (int i = 0; i < this.table.size(); i++) {
+			this.features.add(this.table.getFeature(i));
+		}
+		this.moonInfo = new MoonInfo(DATE_TIME);
+		this.selcoLong = this.moonInfo.selcoLongitude();
+		this.isMorning = this.moonInfo.isMorning();
+		double[] librations = this.moonInfo.librations();
+		this.libLatitude = librations[0];
+		this.libLongitude = librations[1];
+	}
+
+	/**
+	 * This function checks each feature object on its own.
+	 * @return : The number of visible features.
+	 */
+	@Benchmark
+	public int isVisibleFeature() {
+		int count = 0;
+		for (LunarFeature feature : this.features) {
+			if (this.moonInfo.isVisible(feature)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This function checks the feature objects in one pass.
+	 * @return : The set of visible features.
+	 */
+	@Benchmark
+	public BitSet evaluateVisibilityFeatures() {
+		return this.moonInfo.evaluateVisibility(this.features);
+	}
+
+	/**
+	 * This function checks the feature table in one pass.
+	 * @return : The set of visible rows.
+	 */
+	@Benchmark
+	public BitSet evaluateVisibilityTable() {
+		return this.moonInfo.evaluateVisibility(this.table);
+	}
+
+	/**
+	 * This function checks each table row against a precomputed Moon state.
+	 * @return : The number of visible rows.
+	 */
+	@Benchmark
+	public int isVisibleTableRow() {
+		int count = 0;
+		for (int i = 0; i < this.table.size(); i++) {
+			if (MoonInfo.isVisible(this.table, i, this.selcoLong, this.isMorning,
+					this.libLatitude, this.libLongitude)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This function calculates a new Moon state and checks the table.
+	 * @return : The set of visible rows.
+	 */
+	@Benchmark
+	public BitSet newMoonInfoAndEvaluate() {
+		return new MoonInfo(DATE_TIME).evaluateVisibility(this.table);
+	}
+}
@@ -0,0 +1,93 @@
+package com.typeiisoft.lct.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * This class checks that the moonrise, transit and moonset times cover the
+ * whole local date, including the dates when daylight time starts and ends.
+ *
+ * @author Michael Reuter
+ */
+public class MoonRiseSetTest {
+	/** The observing site. */
+	private static final ObservingSite SITE =
+			new ObservingSite("Home", 40.5, -74.25, -5);
+	/** An hour in days. */
+	private static final double HOUR = 1.0 / 24.0;
+
+	/**
+	 * This function finds the times for noon on a date in New York.
+	 * @param year : The year.
+	 * @param month : The month, January being zero.
+	 * @param day : The day of the month.
+	 * @return : The times for the date.
+	 */
+	private static MoonRiseSet getTimes(int year, int month, int day) {
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("America/New_York"));
+		cal.clear();
+		cal.set(year, month, day, 12, 0, 0);
+		return MoonRiseSet.getInstance(SITE, cal);
+	}
+
+	/**
+	 * This function checks that each event is on the date.
+	 * @param times : The times for the date.
+	 */
+	private static void assertEventsInDay(MoonRiseSet times) {
+		double[] events = {times.getRiseJd(), times.getTransitJd(), times.getSetJd()};
+		for (double jd : events) {
+			if (!Double.isNaN(jd)) {
+				assertTrue(jd >= times.getDayStartJd());
+				assertTrue(jd <= times.getDayEndJd());
+			}
+		}
+	}
+
+	/**
+	 * This function checks the length of the dates around the daylight time
+	 * changes.
+	 */
+	@Test
+	public void dayRunsToNextMidnight() {
+		MoonRiseSet normal = MoonRiseSetTest.getTimes(2013, Calendar.MARCH, 9);
+		MoonRiseSet spring = MoonRiseSetTest.getTimes(2013, Calendar.MARCH, 10);
+		MoonRiseSet fall = MoonRiseSetTest.getTimes(2013, Calendar.NOVEMBER, 3);
+		assertEquals(24.0 * HOUR, normal.getDayEndJd() - normal.getDayStartJd(), 1e-9);
+		assertEquals(23.0 * HOUR, spring.getDayEndJd() - spring.getDayStartJd(), 1e-9);
+		assertEquals(25.0 * HOUR, fall.getDayEndJd() - fall.getDayStartJd(), 1e-9);
+		assertEquals(normal.getDayEndJd(), spring.getDayStartJd(), 1e-9);
+		MoonRiseSetTest.assertEventsInDay(normal);
+		MoonRiseSetTest.assertEventsInDay(spring);
+		MoonRiseSetTest.assertEventsInDay(fall);
+	}
+
+	/**
+	 * This function checks that every transit over a month is found on
+	 * exactly one date. The Moon crosses the meridian about every 24.8
+	 * hours, so most dates have one and a few have none.
+	 */
+	@Test
+	public void transitsFoundOnce() {
+		int transits = 0;
+		double lastTransit = 0.0;
+		for (int day = 1; day <= 30; day++) {
+			MoonRiseSet times = MoonRiseSetTest.getTimes(2013, Calendar.OCTOBER, day + 5);
+			MoonRiseSetTest.assertEventsInDay(times);
+			double transit = times.getTransitJd();
+			if (!Double.isNaN(transit)) {
+				if (transits > 0) {
+					assertEquals(24.8 * HOUR, transit - lastTransit, 1.5 * HOUR);
+				}
+				lastTransit = transit;
+				transits++;
+			}
+		}
+		assertTrue(transits >= 28 && transits <= 29);
+	}
+}
@@ -0,0 +1,55 @@
+package com.typeiisoft.lct.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.mhuss.AstroLib.Lunar;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * This class checks that a shared Moon information snapshot cannot be
+ * changed through the values it hands out.
+ *
+ * @author Michael Reuter
+ */
+public class MoonStateTest {
+	/** The observing site. */
+	private static final ObservingSite SITE =
+			new ObservingSite("Home", 40.5, -74.25, -5);
+
+	/**
+	 * This function changes the dates handed out and checks that the
+	 * snapshot keeps its own.
+	 */
+	@Test
+	public void datesAreCopies() {
+		MoonState state = MoonState.getInstance(MoonInfoBenchmark.DATE_TIME, SITE);
+		assertSame(state, MoonState.getInstance(MoonInfoBenchmark.DATE_TIME.clone(), SITE));
+
+		Map<Calendar, Integer> phases = state.getNextFourPhases();
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		for (Map.Entry<Calendar, Integer> entry : phases.entrySet()) {
+			expected.put(Long.valueOf(entry.getKey().getTimeInMillis()), entry.getValue());
+			entry.getKey().add(Calendar.YEAR, 1);
+		}
+		phases.clear();
+		Map<Long, Integer> actual = new HashMap<Long, Integer>();
+		for (Map.Entry<Calendar, Integer> entry : state.getNextFourPhases().entrySet()) {
+			actual.put(Long.valueOf(entry.getKey().getTimeInMillis()), entry.getValue());
+		}
+		assertEquals(4, actual.size());
+		assertEquals(expected, actual);
+
+		long local = state.getObsLocal().getTimeInMillis();
+		state.getObsLocal().add(Calendar.YEAR, 1);
+		assertEquals(local, state.getObsLocal().getTimeInMillis());
+		long full = state.getNextPhase(Lunar.FULL).getTimeInMillis();
+		state.getNextPhase(Lunar.FULL).add(Calendar.YEAR, 1);
+		assertEquals(full, state.getNextPhase(Lunar.FULL).getTimeInMillis());
+	}
+}
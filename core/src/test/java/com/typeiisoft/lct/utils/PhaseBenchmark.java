@@ -0,0 +1,126 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.AstroDate;
+import com.mhuss.AstroLib.DateOps;
+import com.mhuss.AstroLib.Lunar;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the phase-finding methods. The MoonInfo calls use
+ * the lunation table inside its years and the AstroLib phase series
+ * outside them, so both paths are measured, along with the bare table and
+ * series lookups.
+ *
+ * @author Michael Reuter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+	/** Observation date and time past the end of the lunation table. */
+	private static final int[] OUTSIDE_TABLE = {20, 6, 2150, 20, 0, 0, 0};
+	/** Moon state inside the lunation table years. */
+	private MoonInfo inTable;
+	/** Moon state outside the lunation table years. */
+	private MoonInfo outsideTable;
+	/** The lunation table. */
+	private LunationTable lunations;
+	/** Julian day of the observation date. */
+	private double jd;
+	/** Day number of the observation date for the AstroLib series. */
+	private long dayNumber;
+
+	/**
+	 * This function creates the Moon states and loads the lunation table.
+	 */
+	@Setup
+	public void setUp() {
+		this.inTable = new MoonInfo(MoonInfoBenchmark.DATE_TIME);
+		this.outsideTable = new MoonInfo(OUTSIDE_TABLE);
+		this.lunations = LunationTable.getInstance();
+		int[] dt = MoonInfoBenchmark.DATE_TIME;
+		AstroDate date = new AstroDate(dt[0], dt[1], dt[2], dt[3], dt[4], dt[5]);
+		this.jd = date.jd();
+		this.dayNumber = DateOps.calendarToDay(date.toGCalendar());
+	}
+
+	/**
+	 * This function finds the next full Moon from the lunation table.
+	 * @return : The date of the phase.
+	 */
+	@Benchmark
+	public Calendar nextFullMoon() {
+		return this.inTable.nextFullMoon();
+	}
+
+	/**
+	 * This function finds the previous new Moon from the lunation table.
+	 * @return : The date of the phase.
+	 */
+	@Benchmark
+	public Calendar previousNewMoon() {
+		return this.inTable.previousNewMoon();
+	}
+
+	/**
+	 * This function finds the next four phases from the lunation table.
+	 * @return : The phase dates.
+	 */
+	@Benchmark
+	public Map<Calendar, Integer> findNextFourPhases() {
+		return this.inTable.findNextFourPhases();
+	}
+
+	/**
+	 * This function finds the next full Moon from the AstroLib series.
+	 * @return : The date of the phase.
+	 */
+	@Benchmark
+	public Calendar nextFullMoonOutsideTable() {
+		return this.outsideTable.nextFullMoon();
+	}
+
+	/**
+	 * This function finds the previous new Moon from the AstroLib series.
+	 * @return : The date of the phase.
+	 */
+	@Benchmark
+	public Calendar previousNewMoonOutsideTable() {
+		return this.outsideTable.previousNewMoon();
+	}
+
+	/**
+	 * This function looks up the next full Moon in the lunation table.
+	 * @return : The Julian day of the phase.
+	 */
+	@Benchmark
+	public double lunationTableNextPhase() {
+		return this.lunations.findNextPhase(this.jd, Lunar.FULL);
+	}
+
+	/**
+	 * This function calculates a full Moon with the AstroLib series.
+	 * @return : The Julian day of the phase.
+	 */
+	@Benchmark
+	public double astroLibGetPhase() {
+		return Lunar.getPhase(this.dayNumber, Lunar.FULL);
+	}
+}
@@ -0,0 +1,106 @@
+package com.typeiisoft.lct.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class checks the Moon phase images. The lit area of each image is
+ * measured from its pixels and compared with the illuminated fraction of
+ * its phase step.
+ *
+ * @author Michael Reuter
+ */
+public class PhaseRendererTest {
+	/** Image sizes to check, from a small icon to the largest screens. */
+	private static final int[] SIZES = {48, 101, 256};
+	/** Allowed difference between the lit and illuminated fractions. */
+	private static final double TOLERANCE = 0.004;
+
+	/**
+	 * This function measures the lit part of an image. The alpha of a
+	 * pixel is the part of it inside the disk and its red channel shows
+	 * how much of that part is lit.
+	 * @param pixels : The image pixels.
+	 * @return : The lit area over the disk area.
+	 */
+	private static double litFraction(int[] pixels) {
+		int darkRed = (PhaseRenderer.DARK_COLOR >> 16) & 0xff;
+		int litRed = (PhaseRenderer.LIT_COLOR >> 16) & 0xff;
+		double disk = 0.0;
+		double lit = 0.0;
+		for (int pixel : pixels) {
+			double alpha = ((pixel >>> 24) & 0xff) / 255.0;
+			int red = (pixel >> 16) & 0xff;
+			disk += alpha;
+			lit += alpha * (red - darkRed) / (double)(litRed - darkRed);
+		}
+		return lit / disk;
+	}
+
+	/**
+	 * This function checks the lit area of every phase step.
+	 */
+	@Test
+	public void litAreaMatchesIllumination() {
+		for (int size : SIZES) {
+			for (int step = 0; step < PhaseRenderer.PHASE_STEPS; step++) {
+				PhaseRenderer.Key key = new PhaseRenderer.Key(
+						2.0 * Math.PI * step / PhaseRenderer.PHASE_STEPS, size);
+				double lit = PhaseRendererTest.litFraction(PhaseRenderer.render(key));
+				assertEquals(key.toString(), key.getIllumination(), lit, TOLERANCE);
+			}
+		}
+	}
+
+	/**
+	 * This function checks that the lit limb is on the right while the
+	 * Moon is waxing and on the left while it is waning.
+	 */
+	@Test
+	public void litLimbFollowsTimeOfDay() {
+		int size = 64;
+		for (double phaseAngle : new double[] {Math.PI / 2.0, 3.0 * Math.PI / 2.0}) {
+			PhaseRenderer.Key key = new PhaseRenderer.Key(phaseAngle, size);
+			int[] pixels = PhaseRenderer.render(key);
+			int middle = size / 2 * size;
+			int left = pixels[middle + 2];
+			int right = pixels[middle + size - 3];
+			int lit = key.isWaxing() ? right : left;
+			int dark = key.isWaxing() ? left : right;
+			assertEquals(PhaseRenderer.LIT_COLOR, lit);
+			assertEquals(PhaseRenderer.DARK_COLOR, dark);
+		}
+	}
+
+	/**
+	 * This function checks that keys only differ by phase step and size.
+	 */
+	@Test
+	public void keysQuantisePhaseAngle() {
+		double step = 2.0 * Math.PI / PhaseRenderer.PHASE_STEPS;
+		PhaseRenderer.Key key = new PhaseRenderer.Key(100.0 * step, 64);
+		PhaseRenderer.Key near = new PhaseRenderer.Key(100.4 * step, 64);
+		assertEquals(key, near);
+		assertEquals(key.hashCode(), near.hashCode());
+		assertEquals(key, new PhaseRenderer.Key(100.0 * step + 2.0 * Math.PI, 64));
+		assertNotEquals(key, new PhaseRenderer.Key(101.0 * step, 64));
+		assertNotEquals(key, new PhaseRenderer.Key(100.0 * step, 65));
+	}
+
+	/**
+	 * This function checks that the libration marker lies on the disk at
+	 * its center for no libration.
+	 */
+	@Test
+	public void markerStaysOnDisk() {
+		float[] marker = PhaseRenderer.getMarker(new double[] {0.0, 0.0}, 100);
+		assertEquals(50.0f, marker[0], 1e-6f);
+		assertEquals(50.0f, marker[1], 1e-6f);
+		marker = PhaseRenderer.getMarker(new double[] {-6.8, 7.9}, 100);
+		assertTrue(marker[0] < 50.0f);
+		assertTrue(marker[1] < 50.0f);
+	}
+}
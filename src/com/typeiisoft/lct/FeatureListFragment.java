@@ -0,0 +1,272 @@
+package com.typeiisoft.lct;
+
+import com.typeiisoft.lct.db.ObservationLog;
+import com.typeiisoft.lct.features.FeatureAdapter;
+import com.typeiisoft.lct.features.FeatureCatalog;
+import com.typeiisoft.lct.features.FeatureDialogFragment;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LiveVisibilityTracker;
+import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.utils.AppPreferences;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+import com.typeiisoft.lct.utils.MoonState;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.ListFragment;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListView;
+import android.widget.TextView;
+
+/**
+ * This class handles the list of visible features for an observing club. 
+ * The features are loaded in the background with a placeholder shown until 
+ * they arrive, the list follows the live mode while it is on and the 
+ * observed features are marked from the observation log. Subclasses supply 
+ * the club and its feature lookups, which are called on the background 
+ * thread.
+ * 
+ * @author Michael Reuter
+ */
+public abstract class FeatureListFragment extends ListFragment
+		implements LiveUpdater.Listener, ObservationLog.Listener {
+	/** Logging identifier. */
+	private static final String TAG = FeatureListFragment.class.getName();
+	/** The load running for the current view. */
+	private BackgroundLoader.Load<ArrayList<LunarFeature>> loadTask;
+	/** The live mode updater for the current view. */
+	private LiveUpdater liveUpdater;
+	/** The observation log the list is listening to. */
+	private ObservationLog observationLog;
+
+	/**
+	 * This function gets the observing club the list is for.
+	 * @return : The club name used for observations.
+	 */
+	protected abstract String getClubName();
+
+	/**
+	 * This function gets all of the features the list can show. It runs on 
+	 * the background thread.
+	 * @param catalog : The feature catalog.
+	 * @return : The feature table for the list.
+	 */
+	protected abstract FeatureTable getFeatureTable(FeatureCatalog catalog);
+
+	/**
+	 * This function gets the features the list shows for a Moon state. It 
+	 * runs on the background thread.
+	 * @param catalog : The feature catalog.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The visible features.
+	 */
+	protected abstract ArrayList<LunarFeature> getVisibleFeatures(
+			FeatureCatalog catalog, MoonState moonState);
+
+	/**
+	 * This function creates the feature list view.
+	 * @param inflater : The object that creates the view.
+	 * @param container : The layout container for the view.
+	 * @param savedInstanceState : Object containing any state information.
+	 * @return : The view for the fragment.
+	 */
+	@Override
+	public View onCreateView(LayoutInflater inflater, ViewGroup container,
+            Bundle savedInstanceState) {
+		Log.i(TAG, "Creating " + this.getClubName() + " tab.");
+		// Inflate the layout for this fragment
+    	return inflater.inflate(R.layout.features, container, false);
+	}
+
+	/**
+	 * This function starts loading the list of features. The placeholder is 
+	 * shown until they arrive. The live mode updater is also set up for the 
+	 * view.
+	 * @param savedInstanceState : Object containing any state information.
+	 */
+	@Override
+	public void onActivityCreated(Bundle savedInstanceState) {
+		super.onActivityCreated(savedInstanceState);
+		this.loadFeatures();
+		final Activity activity = this.getActivity();
+		this.liveUpdater = new LiveUpdater(new Callable<FeatureTable>() {
+			@Override
+			public FeatureTable call() {
+				return FeatureListFragment.this.getFeatureTable(
+						FeatureCatalog.getInstance(activity));
+			}
+		}, this);
+	}
+
+	/**
+	 * This function starts loading the features for the observation time in 
+	 * the preferences.
+	 */
+	private void loadFeatures() {
+		final Activity activity = this.getActivity();
+		AppPreferences appPrefs = new AppPreferences(activity);
+		final int[] dateTime = appPrefs.getDateTime();
+		final ObservingSite site = appPrefs.getObservingSite();
+		this.loadTask = BackgroundLoader.start(new Callable<ArrayList<LunarFeature>>() {
+			@Override
+			public ArrayList<LunarFeature> call() {
+				FeatureCatalog catalog = FeatureCatalog.getInstance(activity);
+				MoonState moonState = MoonState.getInstance(dateTime, site);
+				loadObservationLog(activity);
+				return FeatureListFragment.this.getVisibleFeatures(catalog, moonState);
+			}
+		}, new BackgroundLoader.Callback<ArrayList<LunarFeature>>() {
+			@Override
+			public void onLoaded(ArrayList<LunarFeature> result) {
+				FeatureListFragment.this.showFeatures(result);
+			}
+		});
+	}
+
+	/**
+	 * This function cancels any load still running for the view and stops 
+	 * the live mode updates.
+	 */
+	@Override
+	public void onDestroyView() {
+		this.cancelLoad();
+		if (null != this.liveUpdater) {
+			this.liveUpdater.release();
+			this.liveUpdater = null;
+		}
+		if (null != this.observationLog) {
+			this.observationLog.removeListener(this);
+			this.observationLog = null;
+		}
+		super.onDestroyView();
+	}
+
+	/**
+	 * This function cancels the load for the view if one is running.
+	 */
+	private void cancelLoad() {
+		if (null != this.loadTask) {
+			this.loadTask.cancel();
+			this.loadTask = null;
+		}
+	}
+
+	/**
+	 * This function reads the observation log if it is not loaded yet. It 
+	 * runs on the background thread.
+	 * @param activity : The activity used to find the log files.
+	 */
+	private static void loadObservationLog(Activity activity) {
+		try {
+			ObservationLog.getInstance(activity);
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Unable to read observation log.", e);
+		}
+	}
+
+	/**
+	 * This function sets the loaded features into the list and replaces the 
+	 * placeholder with the empty list message. An existing list is given 
+	 * the new features in place rather than being replaced.
+	 * @param features : The visible features.
+	 */
+	private void showFeatures(ArrayList<LunarFeature> features) {
+		this.loadTask = null;
+		View view = this.getView();
+		if (null == view) {
+			return;
+		}
+		view.findViewById(R.id.loading_pb).setVisibility(View.GONE);
+		((TextView)view.findViewById(R.id.empty_tv)).setText(R.string.empty);
+		FeatureAdapter adapter = (FeatureAdapter)this.getListAdapter();
+		if (null != adapter) {
+			adapter.setFeatures(features);
+		}
+		else {
+			adapter = new FeatureAdapter(this.getActivity().getApplicationContext(), 
+					features);
+			this.setListAdapter(adapter);
+		}
+		if (null == this.observationLog) {
+			this.observationLog = ObservationLog.getLoadedInstance();
+			if (null != this.observationLog) {
+				this.observationLog.addListener(this);
+				this.onObservationsChanged();
+			}
+		}
+	}
+
+	/**
+	 * This function updates how the observed features are shown in the list.
+	 */
+	@Override
+	public void onObservationsChanged() {
+		FeatureAdapter adapter = (FeatureAdapter)this.getListAdapter();
+		if (null != adapter && null != this.observationLog) {
+			adapter.setObservationLog(this.observationLog, this.getClubName(), 
+					new AppPreferences(this.getActivity()).isHideObserved());
+		}
+	}
+
+	/**
+	 * This function replaces the list with the live mode features.
+	 * @param features : The features visible now.
+	 */
+	@Override
+	public void onLiveStarted(ArrayList<LunarFeature> features) {
+		this.cancelLoad();
+		this.showFeatures(features);
+	}
+
+	/**
+	 * This function updates the list with the features that were added and 
+	 * removed in the live mode.
+	 * @param changes : The changes to the visible features.
+	 */
+	@Override
+	public void onLiveChanged(LiveVisibilityTracker.Changes changes) {
+		FeatureAdapter adapter = (FeatureAdapter)this.getListAdapter();
+		if (null != adapter) {
+			adapter.applyChanges(changes);
+		}
+	}
+
+	/**
+	 * This function goes back to the features for the observation time in 
+	 * the preferences when the live mode stops. A load still running is 
+	 * cancelled first so that it cannot replace the new one's features.
+	 */
+	@Override
+	public void onLiveStopped() {
+		this.cancelLoad();
+		this.loadFeatures();
+	}
+
+	/**
+	 * This function shows detailed information on the feature when a list item 
+	 * is clicked.
+	 * @param l : The current ListView
+	 * @param v : The current View
+	 * @param position : The index of the item being clicked
+	 * @param id : The item ID
+	 */
+	@Override
+	public void onListItemClick(ListView l, View v, int position, long id) {
+		super.onListItemClick(l, v, position, id);
+		LunarFeature lf = (LunarFeature) l.getItemAtPosition(position);
+		DialogFragment featureFragment = FeatureDialogFragment.newInstance(lf, 
+				this.getClubName());
+		featureFragment.show(this.getActivity().getSupportFragmentManager(), 
+				this.getClubName() + "_feature");
+	}
+}
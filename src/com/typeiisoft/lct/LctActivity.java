@@ -1,11 +1,12 @@
 package com.typeiisoft.lct;
 
-import com.typeiisoft.lct.db.DataBaseHelper;
+import com.typeiisoft.lct.db.ObservationLog;
+import com.typeiisoft.lct.utils.AndroidLogSink;
 import com.typeiisoft.lct.utils.AppPreferences;
+import com.typeiisoft.lct.utils.Logger;
 
 import com.mhuss.AstroLib.Astro;
 
-import java.io.IOException;
 import java.util.Calendar;
 
 import android.app.ActionBar;
@@ -20,7 +21,7 @@ import android.view.MenuItem;
 
 /**
  * This is the main activity class for the program. It handles creation of 
- * the tabs and setup of the database. 
+ * the tabs and setup of the preferences. 
  * 
  * @author Michael Reuter
  */
@@ -39,6 +40,9 @@ public class LctActivity extends FragmentActivity {
     	Log.i(TAG, "Running onCreate");
         super.onCreate(savedInstanceState);
         
+        // Send the calculation log messages to the Android log
+        Logger.setSink(new AndroidLogSink());
+        
         // Set up the ActionBar
         final ActionBar actionBar = getActionBar();
         actionBar.setNavigationMode(ActionBar.NAVIGATION_MODE_TABS);
@@ -55,24 +59,7 @@ public class LctActivity extends FragmentActivity {
 				now.get(Calendar.HOUR_OF_DAY), now.get(Calendar.MINUTE), 
 				now.get(Calendar.SECOND), offset);
 
-        // Copy the Moon information database
-        DataBaseHelper moonDB = new DataBaseHelper(this);
-        try {
-        	moonDB.createDataBase();
-        }
-        catch (IOException ioe) {
-        	throw new Error("Unable to open Moon info database.");
-        }
-        /**
-        // Open the handle to the Moon information
-        try {
-        	moonDB.openDataBase();
-        }
-        catch (SQLException sqle) {
-        	throw sqle;
-        }
-        // DB should now be open and ready
-        */
+        // The feature catalog is installed when the feature tabs first load
         // Create a tab to set a Fragment (to be reused)
         // Setup the Moon information tab
         Tab tab = actionBar.newTab()
@@ -95,6 +82,13 @@ public class LctActivity extends FragmentActivity {
         				this, "lunar2club", LunarTwoFeaturesFragment.class));
         actionBar.addTab(tab);
         
+        // Setup the map tab
+        tab = actionBar.newTab()
+        		.setText(R.string.map_tab)
+        		.setTabListener(new MainTabListener<MoonMapFragment>(
+        				this, "moonmap", MoonMapFragment.class));
+        actionBar.addTab(tab);
+        
         //moonDB.close();
         if (null != savedInstanceState) {
         	actionBar.setSelectedNavigationItem(savedInstanceState.getInt("tab", 0));
@@ -123,6 +117,18 @@ public class LctActivity extends FragmentActivity {
     	return super.onCreateOptionsMenu(menu);
     }
     
+    /**
+     * This function shows the current state of the live mode in the menu.
+     * @param menu : The options menu.
+     * @return : Whether or not the menu should be shown.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+    	menu.findItem(R.id.live).setChecked(LiveUpdater.isEnabled());
+    	menu.findItem(R.id.hide_observed).setChecked(this.appPrefs.isHideObserved());
+    	return super.onPrepareOptionsMenu(menu);
+    }
+    
     /**
      * This function is responsible for handling the actions when a menu 
      * item is clicked.
@@ -132,6 +138,18 @@ public class LctActivity extends FragmentActivity {
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
     	switch (item.getItemId()) {
+    	case R.id.live:
+    		item.setChecked(!item.isChecked());
+    		LiveUpdater.setEnabled(item.isChecked());
+    		return true;
+    	case R.id.hide_observed:
+    		item.setChecked(!item.isChecked());
+    		this.appPrefs.setHideObserved(item.isChecked());
+    		ObservationLog log = ObservationLog.getLoadedInstance();
+    		if (null != log) {
+    			log.notifyListeners();
+    		}
+    		return true;
     	case R.id.about:
     		DialogFragment newFragment = new AboutDialogFragment();
     		newFragment.show(this.getSupportFragmentManager(), "about");
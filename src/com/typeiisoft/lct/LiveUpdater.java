@@ -0,0 +1,197 @@
+package com.typeiisoft.lct;
+
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LiveVisibilityTracker;
+import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * This class runs the live mode for a feature list. While the live mode is
+ * on, the observation time follows the clock and the list is sent only the
+ * features that were added and removed since the last tick. The live mode
+ * is switched for all of the lists at once. All of the calls must be made
+ * from the main thread.
+ *
+ * @author Michael Reuter
+ */
+public class LiveUpdater {
+	/** Logging identifier. */
+	private static final String TAG = LiveUpdater.class.getName();
+	/** Time between live updates in milliseconds. */
+	private static final long TICK_INTERVAL = 60000L;
+	/** Flag for the live mode being on. */
+	private static boolean enabled;
+	/** The updaters for the lists currently shown. */
+	private static final List<LiveUpdater> updaters = new ArrayList<LiveUpdater>();
+	/** Handler for scheduling the ticks. */
+	private final Handler handler = new Handler();
+	/** The work that loads the features to track. */
+	private final Callable<FeatureTable> tableLoader;
+	/** The object to receive the updates. */
+	private final Listener listener;
+	/** The tracker for the visible features. */
+	private LiveVisibilityTracker tracker;
+	/** The update running on the background thread. */
+	private BackgroundLoader.Load<?> loadTask;
+	/** The scheduled tick. */
+	private final Runnable tick = new Runnable() {
+		@Override
+		public void run() {
+			LiveUpdater.this.update();
+		}
+	};
+
+	/**
+	 * This interface receives the live updates on the main thread.
+	 */
+	public interface Listener {
+		/**
+		 * This function is called with the full list when the live mode
+		 * starts.
+		 * @param features : The visible features in list order.
+		 */
+		void onLiveStarted(ArrayList<LunarFeature> features);
+
+		/**
+		 * This function is called when features were added or removed.
+		 * @param changes : The changes to the visible features.
+		 */
+		void onLiveChanged(LiveVisibilityTracker.Changes changes);
+
+		/**
+		 * This function is called when the live mode stops.
+		 */
+		void onLiveStopped();
+	}
+
+	/**
+	 * This function is the class constructor. The updater starts at once if
+	 * the live mode is on.
+	 * @param tableLoader : The work that loads the features to track. It is
+	 * run on the background thread.
+	 * @param listener : The object to receive the updates.
+	 */
+	public LiveUpdater(Callable<FeatureTable> tableLoader, Listener listener) {
+		this.tableLoader = tableLoader;
+		this.listener = listener;
+		updaters.add(this);
+		if (enabled) {
+			this.update();
+		}
+	}
+
+	/**
+	 * This function checks if the live mode is on.
+	 * @return : True if the live mode is on.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * This function switches the live mode for all of the lists.
+	 * @param isEnabled : True to turn the live mode on.
+	 */
+	public static void setEnabled(boolean isEnabled) {
+		if (enabled == isEnabled) {
+			return;
+		}
+		Log.i(TAG, "Live mode " + (isEnabled ? "on." : "off."));
+		enabled = isEnabled;
+		for (LiveUpdater updater : updaters) {
+			if (isEnabled) {
+				updater.update();
+			}
+			else {
+				updater.stop();
+				updater.listener.onLiveStopped();
+			}
+		}
+	}
+
+	/**
+	 * This function stops the updater for good, for instance when its list
+	 * is destroyed.
+	 */
+	public void release() {
+		this.stop();
+		updaters.remove(this);
+	}
+
+	/**
+	 * This function moves the tracker to the current time on the background
+	 * thread and schedules the next tick.
+	 */
+	private void update() {
+		if (null != this.loadTask) {
+			return;
+		}
+		final Update update = new Update(this.tracker);
+		this.loadTask = BackgroundLoader.start(update,
+				new BackgroundLoader.Callback<LiveVisibilityTracker.Changes>() {
+			@Override
+			public void onLoaded(LiveVisibilityTracker.Changes result) {
+				LiveUpdater updater = LiveUpdater.this;
+				updater.loadTask = null;
+				if (null == updater.tracker) {
+					updater.tracker = update.tracker;
+					updater.listener.onLiveStarted(updater.tracker.getVisibleFeatures());
+				}
+				else if (!result.isEmpty()) {
+					updater.listener.onLiveChanged(result);
+				}
+				updater.handler.postDelayed(updater.tick, TICK_INTERVAL);
+			}
+		});
+	}
+
+	/**
+	 * This function stops the ticks and drops the tracker.
+	 */
+	private void stop() {
+		this.handler.removeCallbacks(this.tick);
+		if (null != this.loadTask) {
+			this.loadTask.cancel();
+			this.loadTask = null;
+		}
+		this.tracker = null;
+	}
+
+	/**
+	 * This class is the work for one tick. The tracker is made on the
+	 * background thread the first time.
+	 */
+	private final class Update implements Callable<LiveVisibilityTracker.Changes> {
+		/** The tracker to move. */
+		private LiveVisibilityTracker tracker;
+
+		/**
+		 * This function is the class constructor.
+		 * @param tracker : The tracker to move or null to make one.
+		 */
+		private Update(LiveVisibilityTracker tracker) {
+			this.tracker = tracker;
+		}
+
+		/**
+		 * This function moves the tracker to the current time.
+		 * @return : The changes to the visible features.
+		 * @throws Exception
+		 */
+		@Override
+		public LiveVisibilityTracker.Changes call() throws Exception {
+			if (null == this.tracker) {
+				this.tracker = new LiveVisibilityTracker(LiveUpdater.this.tableLoader.call());
+			}
+			return this.tracker.advanceTo(
+					LiveVisibilityTracker.julianDate(System.currentTimeMillis()));
+		}
+	}
+}
@@ -1,18 +1,14 @@
 package com.typeiisoft.lct;
 
-import com.typeiisoft.lct.db.DataBaseHelper;
-import com.typeiisoft.lct.features.FeatureAdapter;
-import com.typeiisoft.lct.features.FeatureDialogFragment;
+import com.typeiisoft.lct.features.FeatureCatalog;
+import com.typeiisoft.lct.features.FeatureTable;
 import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.utils.MoonState;
+
+import java.util.ArrayList;
 
 import android.os.Bundle;
-import android.support.v4.app.DialogFragment;
-import android.support.v4.app.ListFragment;
 import android.util.Log;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.ListView;
 
 /**
  * This class handles displaying the features that are visible for the Lunar 
@@ -20,7 +16,7 @@ import android.widget.ListView;
  * 
  * @author Michael Reuter
  */
-public class LunarClubFeaturesFragment extends ListFragment {
+public class LunarClubFeaturesFragment extends FeatureListFragment {
 	/** Logging identifier. */
 	private static final String TAG = LunarClubFeaturesFragment.class.getName();
 	/** Holder for the current feature type. */
@@ -53,49 +49,33 @@ public class LunarClubFeaturesFragment extends ListFragment {
     }
 
 	/**
-	 * This function creates the Lunar Club features view.
-	 * @param inflater : The object that creates the view.
-	 * @param container : The layout container for the view.
-	 * @param savedInstanceState : Object containing any state information.
-	 * @return : The view for the fragment.
+	 * This function gets the observing club the list is for.
+	 * @return : The Lunar Club name.
 	 */
 	@Override
-	public View onCreateView(LayoutInflater inflater, ViewGroup container,
-            Bundle savedInstanceState) {
-		Log.i(TAG, "Creating " + this.currentType + " tab.");
-		// Inflate the layout for this fragment
-    	return inflater.inflate(R.layout.features, container, false);
+	protected String getClubName() {
+		return FeatureCatalog.LUNAR_CLUB;
 	}
 
 	/**
-	 * This function sets the Lunar Club feature adapter, retrieving the 
-	 * correct list of features.
-	 * @param savedInstance : Object containing any state information.
+	 * This function gets all of the Lunar Club features for the target type.
+	 * @param catalog : The feature catalog.
+	 * @return : The Lunar Club feature table for the target type.
 	 */
 	@Override
-	public void onActivityCreated(Bundle savedInstanceState) {
-		super.onActivityCreated(savedInstanceState);
-    	// Set the content
-    	DataBaseHelper moonDB = new DataBaseHelper(this.getActivity());
-		FeatureAdapter adapter = new FeatureAdapter(this.getActivity().getApplicationContext(), 
-				moonDB.getLunarClubFeatures(this.currentType));
-		this.setListAdapter(adapter);
+	protected FeatureTable getFeatureTable(FeatureCatalog catalog) {
+		return catalog.getLunarClubFeatures(this.currentType);
 	}
-	
+
 	/**
-	 * This function shows detailed information on the feature when a list item 
-	 * is clicked.
-	 * @param l : The current ListView
-	 * @param v : The current View
-	 * @param position : The index of the item being clicked
-	 * @param id : The item ID
+	 * This function gets the visible Lunar Club features for the target type.
+	 * @param catalog : The feature catalog.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The visible features.
 	 */
 	@Override
-	public void onListItemClick(ListView l, View v, int position, long id) {
-		super.onListItemClick(l, v, position, id);
-		DialogFragment featureFragment = new FeatureDialogFragment();
-		LunarFeature lf = (LunarFeature) l.getItemAtPosition(position);
-		featureFragment.setArguments(lf.toBundle());
-		featureFragment.show(this.getActivity().getSupportFragmentManager(), "lc_feature");
+	protected ArrayList<LunarFeature> getVisibleFeatures(FeatureCatalog catalog,
+			MoonState moonState) {
+		return catalog.getVisibleLunarClubFeatures(this.currentType, moonState);
 	}
 }
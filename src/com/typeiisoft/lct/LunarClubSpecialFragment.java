@@ -1,11 +1,15 @@
 package com.typeiisoft.lct;
 
 import java.util.Calendar;
+import java.util.concurrent.Callable;
 
 import com.mhuss.AstroLib.Astro;
+import com.mhuss.AstroLib.Lunar;
 import com.typeiisoft.lct.utils.AppPreferences;
-import com.typeiisoft.lct.utils.MoonInfo;
-import com.typeiisoft.lct.utils.StrFormat;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+import com.typeiisoft.lct.utils.FastFormat;
+import com.typeiisoft.lct.utils.MoonState;
+import com.typeiisoft.lct.utils.ObservingSite;
 
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -18,7 +22,9 @@ import android.widget.TextView;
 
 /**
  * This class handles the naked eye observations for the Lunar Club that 
- * are not directly related to features on the Moon.
+ * are not directly related to features on the Moon. The Moon information 
+ * is calculated in the background and the layout, with every star off, is 
+ * shown until it arrives.
  * 
  * @author Michael Reuter
  */
@@ -39,6 +45,8 @@ public class LunarClubSpecialFragment extends Fragment {
 	private AppPreferences appPrefs;
 	/** View for the fragment. */
 	private View view;
+	/** The load running for the current view. */
+	private BackgroundLoader.Load<MoonState> loadTask;
 
 	/**
 	 * This function is the instance constructor.
@@ -49,7 +57,8 @@ public class LunarClubSpecialFragment extends Fragment {
 	}
 
 	/**
-	 * This function creates the Lunar Club special view.
+	 * This function creates the Lunar Club special view and starts 
+	 * calculating the Moon information.
 	 * @param inflater : The object that creates the view.
 	 * @param container : The layout container for the view.
 	 * @param savedInstanceState : Object containing any state information.
@@ -61,32 +70,55 @@ public class LunarClubSpecialFragment extends Fragment {
 		Log.i(TAG, "Creating Special tab.");
 		// Inflate the layout for this fragment
 		this.view = inflater.inflate(R.layout.lc_special, container, false);
+		
+    	this.appPrefs = new AppPreferences(this.getActivity());
+		final int[] dateTime = this.appPrefs.getDateTime();
+		final ObservingSite site = this.appPrefs.getObservingSite();
+		this.loadTask = BackgroundLoader.start(new Callable<MoonState>() {
+			@Override
+			public MoonState call() {
+				return MoonState.getInstance(dateTime, site);
+			}
+		}, new BackgroundLoader.Callback<MoonState>() {
+			@Override
+			public void onLoaded(MoonState result) {
+				LunarClubSpecialFragment.this.showMoonState(result);
+			}
+		});
     	return this.view;
 	}
+	
+	/**
+	 * This function cancels any load still running for the view.
+	 */
+	@Override
+	public void onDestroyView() {
+		if (null != this.loadTask) {
+			this.loadTask.cancel();
+			this.loadTask = null;
+		}
+		super.onDestroyView();
+	}
 
 	/**
 	 * This function sets the information and status of the items in the 
-	 * view.
-	 * @param saveInstanceState : The object containing instance saved state.
+	 * view once the Moon information has been calculated.
+	 * @param moonState : The Moon information for the observation time.
 	 */
-	@Override
-	public void onActivityCreated(Bundle savedInstanceState) {
-		super.onActivityCreated(savedInstanceState);
-		
-    	this.appPrefs = new AppPreferences(this.getActivity());
-		MoonInfo moonInfo = new MoonInfo(appPrefs.getDateTime());
-		Log.i(TAG, "MoonInfo: " + moonInfo.toString());
+	private void showMoonState(MoonState moonState) {
+		this.loadTask = null;
+		Log.i(TAG, "MoonInfo: " + moonState.toString());
 		
 		// Time from new Moon calculations
-		Calendar nmCal = moonInfo.previousNewMoon();
-		Log.i(TAG, "Previous New Moon: " + StrFormat.dateFormat(nmCal));
-		Calendar locCal = moonInfo.getObsLocal();
+		Calendar nmCal = moonState.getPreviousPhase(Lunar.NEW);
+		Log.i(TAG, "Previous New Moon: " + FastFormat.dateFormat(nmCal));
+		Calendar locCal = moonState.getObsLocal();
 		double diffTime = (double)(locCal.getTimeInMillis() - 
 				nmCal.getTimeInMillis());
 		double hrsFromNm = diffTime / Astro.MILLISECONDS_PER_HOUR;
 		Log.i(TAG, "Time from New Moon = " + hrsFromNm);
 		if (hrsFromNm <= this.TIME_CUTOFF) {
-			String hrsFromNmStr = StrFormat.formatDouble(hrsFromNm, 1) + " hours";
+			String hrsFromNmStr = FastFormat.formatDouble(hrsFromNm, 1) + " hours";
 			this.appendText(R.id.time_from_new_moon, hrsFromNmStr);
 			
 			if (hrsFromNm > this.TIME_CRESCENT_WAXING && hrsFromNm <= this.TIME_CUTOFF) {
@@ -102,14 +134,14 @@ public class LunarClubSpecialFragment extends Fragment {
 		}
 		
 		// Time to new Moon calculations
-		nmCal = moonInfo.nextNewMoon();
-		Log.i(TAG, "Next New Moon: " + StrFormat.dateFormat(nmCal));
+		nmCal = moonState.getNextPhase(Lunar.NEW);
+		Log.i(TAG, "Next New Moon: " + FastFormat.dateFormat(nmCal));
 		diffTime = (double)(nmCal.getTimeInMillis() - 
 				locCal.getTimeInMillis());
 		double hrsToNm = diffTime / Astro.MILLISECONDS_PER_HOUR;
 		Log.i(TAG, "Time to New Moon = " + hrsToNm);
 		if (hrsToNm <= this.TIME_CUTOFF) {
-			String hrsToNmStr = StrFormat.formatDouble(hrsToNm, 1) + " hours";
+			String hrsToNmStr = FastFormat.formatDouble(hrsToNm, 1) + " hours";
 			this.appendText(R.id.time_to_new_moon, hrsToNmStr);
 			
 			if (hrsToNm > this.TIME_CRESCENT_WANING && hrsToNm <= this.TIME_CUTOFF) {
@@ -126,8 +158,8 @@ public class LunarClubSpecialFragment extends Fragment {
 		
 		// Time to Full Moon calculation
 		// Only needed for Cow Jumping over the Moon
-		Calendar fmCal = moonInfo.nextFullMoon();
-		Log.i(TAG, "Next Full Moon: " + StrFormat.dateFormat(fmCal));
+		Calendar fmCal = moonState.getNextPhase(Lunar.FULL);
+		Log.i(TAG, "Next Full Moon: " + FastFormat.dateFormat(fmCal));
 		diffTime = (double)(fmCal.getTimeInMillis() - 
 				locCal.getTimeInMillis());
 		double daysToFm = diffTime / (Astro.MILLISECONDS_PER_HOUR * Astro.HOURS_PER_DAY);
@@ -139,7 +171,7 @@ public class LunarClubSpecialFragment extends Fragment {
 		}
 		
 		// All other <Blank> in the Moon will use the illuminated fraction
-		double illum = moonInfo.illumation();
+		double illum = moonState.getIllumination();
 		if (illum >= this.FULL_MOON_FRACTION) {
 			this.toggleStar(R.id.mitm_iv);
 			this.toggleStar(R.id.witm_iv);
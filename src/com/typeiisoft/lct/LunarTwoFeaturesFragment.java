@@ -1,68 +1,46 @@
 package com.typeiisoft.lct;
 
-import com.typeiisoft.lct.db.DataBaseHelper;
-import com.typeiisoft.lct.features.FeatureAdapter;
-import com.typeiisoft.lct.features.FeatureDialogFragment;
+import com.typeiisoft.lct.features.FeatureCatalog;
+import com.typeiisoft.lct.features.FeatureTable;
 import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.utils.MoonState;
 
 import java.util.ArrayList;
 
-import android.os.Bundle;
-import android.support.v4.app.DialogFragment;
-import android.support.v4.app.ListFragment;
-import android.util.Log;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.ListView;
-
 /**
  * This class handles creating the ListView for the Lunar II club features. 
  * 
  * @author Michael Reuter
  */
-public class LunarTwoFeaturesFragment extends ListFragment {
-	/** Logging identifier. */
-	private final static String TAG = LunarTwoFeaturesFragment.class.getName();
-	
+public class LunarTwoFeaturesFragment extends FeatureListFragment {
 	/**
-	 * This function creates the view for the Lunar II Club main tab.
-	 * @param inflater : The object that creates the view.
-	 * @param container : The layout container for the view.
-	 * @param savedInstanceState : Object containing any state information.
-	 * @return : The view for the fragment.
+	 * This function gets the observing club the list is for.
+	 * @return : The Lunar II club name.
 	 */
 	@Override
-	public View onCreateView(LayoutInflater inflater, ViewGroup container,
-            Bundle savedInstanceState) {
-		Log.i(TAG, "Creating tab.");
-
-		// Inflate the layout for this fragment
-    	View view = inflater.inflate(R.layout.features, container, false);
+	protected String getClubName() {
+		return FeatureCatalog.LUNAR_TWO_CLUB;
+	}
 
-       	// Set the content
-		DataBaseHelper moonDB = new DataBaseHelper(this.getActivity());
-        FeatureAdapter adapter = new FeatureAdapter(this.getActivity().getApplicationContext(), 
-        		(ArrayList<LunarFeature>) moonDB.getLunarTwoFeatures());
-    	this.setListAdapter(adapter);
-     	
-    	return view;
+	/**
+	 * This function gets all of the Lunar II Club features.
+	 * @param catalog : The feature catalog.
+	 * @return : The Lunar II Club feature table.
+	 */
+	@Override
+	protected FeatureTable getFeatureTable(FeatureCatalog catalog) {
+		return catalog.getLunarTwoFeatures();
 	}
 
 	/**
-	 * This function shows detailed information on the feature when a list item 
-	 * is clicked.
-	 * @param l : The current ListView
-	 * @param v : The current View
-	 * @param position : The index of the item being clicked
-	 * @param id : The item ID
+	 * This function gets the visible Lunar II Club features.
+	 * @param catalog : The feature catalog.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The visible features.
 	 */
 	@Override
-	public void onListItemClick(ListView l, View v, int position, long id) {
-		super.onListItemClick(l, v, position, id);
-		DialogFragment featureFragment = new FeatureDialogFragment();
-		LunarFeature lf = (LunarFeature) l.getItemAtPosition(position);
-		featureFragment.setArguments(lf.toBundle());
-		featureFragment.show(this.getActivity().getSupportFragmentManager(), "l2_feature");
+	protected ArrayList<LunarFeature> getVisibleFeatures(FeatureCatalog catalog,
+			MoonState moonState) {
+		return catalog.getVisibleLunarTwoFeatures(moonState);
 	}
 }
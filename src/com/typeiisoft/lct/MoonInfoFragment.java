@@ -2,12 +2,19 @@ package com.typeiisoft.lct;
 
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.mhuss.AstroLib.Lunar;
 import com.typeiisoft.lct.utils.AppPreferences;
-import com.typeiisoft.lct.utils.MoonInfo;
-import com.typeiisoft.lct.utils.StrFormat;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+import com.typeiisoft.lct.utils.FastFormat;
+import com.typeiisoft.lct.utils.MoonRiseSet;
+import com.typeiisoft.lct.utils.MoonState;
+import com.typeiisoft.lct.utils.ObservingSite;
+import com.typeiisoft.lct.utils.PhaseImageCache;
+import com.typeiisoft.lct.utils.PhaseRenderer;
 
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.util.Log;
@@ -30,6 +37,10 @@ public class MoonInfoFragment extends Fragment {
 	private AppPreferences appPrefs;
 	/** View for the fragment. */
 	private View view;
+	/** The load running for the current view. */
+	private BackgroundLoader.Load<MoonState> loadTask;
+	/** The phase image load running for the current view. */
+	private BackgroundLoader.Load<Bitmap> phaseImageTask;
 	
 	/**
 	 * This function creates the Moon information fragment.
@@ -45,25 +56,70 @@ public class MoonInfoFragment extends Fragment {
     	this.view = inflater.inflate(R.layout.mooninfo, container, false);
     	
     	this.appPrefs = new AppPreferences(this.getActivity());
-		MoonInfo moonInfo = new MoonInfo(appPrefs.getDateTime());
-		Log.i(TAG, "MoonInfo: " + moonInfo.toString());
+		final int[] dateTime = this.appPrefs.getDateTime();
+		final ObservingSite site = this.appPrefs.getObservingSite();
+		this.loadTask = BackgroundLoader.start(new Callable<MoonState>() {
+			@Override
+			public MoonState call() {
+				return MoonState.getInstance(dateTime, site);
+			}
+		}, new BackgroundLoader.Callback<MoonState>() {
+			@Override
+			public void onLoaded(MoonState result) {
+				MoonInfoFragment.this.showMoonState(result);
+			}
+		});
 		
-		String[] localDateTime = StrFormat.dateFormatNoSeconds(moonInfo.getObsLocal()).split(" ");
+    	return this.view;
+    }
+    
+    /**
+     * This function cancels any load still running for the view.
+     */
+    @Override
+    public void onDestroyView() {
+    	if (null != this.loadTask) {
+    		this.loadTask.cancel();
+    		this.loadTask = null;
+    	}
+    	if (null != this.phaseImageTask) {
+    		this.phaseImageTask.cancel();
+    		this.phaseImageTask = null;
+    	}
+    	super.onDestroyView();
+    }
+    
+    /**
+     * This function fills in the Moon information once it has been 
+     * calculated.
+     * @param moonState : The Moon information for the observation time.
+     */
+    private void showMoonState(MoonState moonState) {
+    	this.loadTask = null;
+		Log.i(TAG, "MoonInfo: " + moonState.toString());
+		
+		String[] localDateTime = FastFormat.dateFormatNoSeconds(moonState.getObsLocal()).split(" ");
 		this.appendText(R.id.local_date_label_tv, "(" + localDateTime[2] + ")");
 		String localDateStr =  localDateTime[0] + " " + localDateTime[1];
 		this.appendText(R.id.local_date_tv, localDateStr);
-		String[] utcDateTime = StrFormat.dateFormatNoSeconds(moonInfo.getObsUtc()).split(" ");
+		String[] utcDateTime = FastFormat.dateFormatNoSeconds(moonState.getObsUtc()).split(" ");
 		this.appendText(R.id.utc_date_tv, utcDateTime[0] + " " + utcDateTime[1]);
-		this.appendText(R.id.moon_phase_tv, moonInfo.phase());
-		String ageStr = StrFormat.formatDouble(moonInfo.age(), 2) + " days";
+		this.appendText(R.id.moon_phase_tv, moonState.getPhase());
+		String ageStr = FastFormat.formatDouble(moonState.getAge(), 2) + " days";
 		this.appendText(R.id.moon_age_tv, ageStr);
-		String illumStr = StrFormat.formatDouble(moonInfo.illumation() * 100.0, 1) + "%";
+		String illumStr = FastFormat.formatDouble(moonState.getIllumination() * 100.0, 1) + "%";
 		this.appendText(R.id.moon_illum_tv, illumStr);
-		String colongStr = StrFormat.dmsFromDd(moonInfo.colong(), false);
+		String colongStr = FastFormat.dmsFromDd(moonState.getColongitude(), false);
 		this.appendText(R.id.moon_colong_tv, colongStr);
+		this.showPhaseImage(moonState);
+		
+		MoonRiseSet riseSet = moonState.getRiseSet();
+		this.appendTime(R.id.moon_rise_tv, riseSet.getRiseJd(), moonState.getObsLocal());
+		this.appendTime(R.id.moon_transit_tv, riseSet.getTransitJd(), moonState.getObsLocal());
+		this.appendTime(R.id.moon_set_tv, riseSet.getSetJd(), moonState.getObsLocal());
 
 		// Find the dates for next four lunar phases.
-		Map<Calendar, Integer> phases = moonInfo.findNextFourPhases();
+		Map<Calendar, Integer> phases = moonState.getNextFourPhases();
 		
 		int[] phaseTextViews = {R.id.first_phase_tv, R.id.second_phase_tv,
 				R.id.third_phase_tv, R.id.fourth_phase_tv};
@@ -77,13 +133,32 @@ public class MoonInfoFragment extends Fragment {
 			Calendar cal = entry.getKey();
 			Integer phase = entry.getValue();
 			this.setPhaseIcon(phaseImageViews[counter], this.getPhaseIcon(phase));
-			this.appendText(phaseTextViews[counter], StrFormat.dateFormatNoSeconds(cal));
+			this.appendText(phaseTextViews[counter], FastFormat.dateFormatNoSeconds(cal));
 			counter -= 1;
 		}
-		
-    	return this.view;
     }
 
+	/**
+	 * This function draws the current phase of the Moon in the background 
+	 * and shows it with the libration marker once it is ready.
+	 * @param moonState : The Moon information for the observation time.
+	 */
+	private void showPhaseImage(MoonState moonState) {
+		int size = this.getResources().getDimensionPixelSize(R.dimen.moon_phase_image_size);
+		PhaseRenderer.Key key = PhaseRenderer.Key.of(moonState, size);
+		final double[] librations = moonState.getLibrations();
+		this.phaseImageTask = PhaseImageCache.load(key, 
+				new BackgroundLoader.Callback<Bitmap>() {
+			@Override
+			public void onLoaded(Bitmap result) {
+				MoonInfoFragment.this.phaseImageTask = null;
+				ImageView iv = (ImageView)MoonInfoFragment.this.view.findViewById(
+						R.id.moon_phase_iv);
+				iv.setImageBitmap(PhaseImageCache.withMarker(result, librations));
+			}
+		});
+	}
+	
 	/**
 	 * This function handles appending text to the labels that are already 
 	 * displayed on the layout.
@@ -97,6 +172,22 @@ public class MoonInfoFragment extends Fragment {
 		tv.setText(buff);
 	}
 	
+	/**
+	 * This function appends the local time of a Moon event to a label or a 
+	 * placeholder if the event does not happen on the date.
+	 * @param layoutResId : The requested resource ID.
+	 * @param jd : The Julian date of the event or NaN.
+	 * @param obsLocal : The local observation time for the time zone.
+	 */
+	private void appendTime(int layoutResId, double jd, Calendar obsLocal) {
+		Calendar cal = MoonRiseSet.toCalendar(jd, obsLocal);
+		if (null == cal) {
+			this.appendText(layoutResId, this.getString(R.string.eph_no_event_text));
+			return;
+		}
+		this.appendText(layoutResId, FastFormat.dateFormatNoSeconds(cal).split(" ")[1]);
+	}
+	
 	/**
 	 * This function gets the phase icon drawable to the corresponding value.
 	 * @param i : The phase icon value.
@@ -0,0 +1,136 @@
+package com.typeiisoft.lct;
+
+import java.util.concurrent.Callable;
+
+import com.typeiisoft.lct.features.FeatureCatalog;
+import com.typeiisoft.lct.features.FeatureDialogFragment;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.features.SpatialIndex;
+import com.typeiisoft.lct.map.CatalogBasemap;
+import com.typeiisoft.lct.map.MoonMapView;
+import com.typeiisoft.lct.map.TileCache;
+import com.typeiisoft.lct.utils.AppPreferences;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+import com.typeiisoft.lct.utils.MoonState;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.Fragment;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * This class handles displaying the map of the near side with the catalog 
+ * features and the terminator for the observation time. Tapping a feature 
+ * shows its information dialog.
+ * 
+ * @author Michael Reuter
+ */
+public class MoonMapFragment extends Fragment {
+	/** The map view. */
+	private MoonMapView mapView;
+	/** The load running for the current view. */
+	private BackgroundLoader.Load<MapData> loadTask;
+	
+	/**
+	 * This function creates the map fragment and starts loading the map.
+	 * @param inflater : The object that creates the view.
+	 * @param container : The layout container for the view.
+	 * @param savedInstanceState : Object containing any state information.
+	 * @return : The view for the fragment.
+	 */
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+    	View view = inflater.inflate(R.layout.moonmap, container, false);
+    	this.mapView = (MoonMapView)view.findViewById(R.id.moon_map);
+    	this.mapView.setFeatureListener(new MoonMapView.FeatureListener() {
+			@Override
+			public void onFeatureTapped(LunarFeature feature) {
+				MoonMapFragment.this.showFeature(feature);
+			}
+		});
+    	
+    	final Activity activity = this.getActivity();
+    	AppPreferences appPrefs = new AppPreferences(activity);
+		final int[] dateTime = appPrefs.getDateTime();
+		final ObservingSite site = appPrefs.getObservingSite();
+		this.loadTask = BackgroundLoader.start(new Callable<MapData>() {
+			@Override
+			public MapData call() {
+				FeatureTable features = FeatureCatalog.getInstance(activity).getAllFeatures();
+				TileCache tileCache = TileCache.getInstance(activity, 
+						new CatalogBasemap(features));
+				return new MapData(tileCache, features, new SpatialIndex(features),
+						MoonState.getInstance(dateTime, site));
+			}
+		}, new BackgroundLoader.Callback<MapData>() {
+			@Override
+			public void onLoaded(MapData result) {
+				MoonMapFragment.this.loadTask = null;
+				MoonMapFragment.this.mapView.setMap(result.tileCache, 
+						result.features, result.index, result.moonState);
+			}
+		});
+    	return view;
+    }
+    
+    /**
+     * This function shows the information dialog for a tapped feature. 
+     * Observations are logged for the Lunar II club only if the feature is 
+     * on that list alone.
+     * @param feature : The tapped feature.
+     */
+    private void showFeature(LunarFeature feature) {
+    	String club = FeatureCatalog.LUNAR_TWO_CLUB.equals(feature.getCodeName()) ? 
+    			FeatureCatalog.LUNAR_TWO_CLUB : FeatureCatalog.LUNAR_CLUB;
+    	DialogFragment featureFragment = FeatureDialogFragment.newInstance(feature, club);
+    	featureFragment.show(this.getActivity().getSupportFragmentManager(), "map_feature");
+    }
+    
+    /**
+     * This function cancels any load still running for the view.
+     */
+    @Override
+    public void onDestroyView() {
+    	if (null != this.loadTask) {
+    		this.loadTask.cancel();
+    		this.loadTask = null;
+    	}
+    	this.mapView = null;
+    	super.onDestroyView();
+    }
+    
+    /**
+     * This class holds what is loaded in the background for the map.
+     */
+    private static final class MapData {
+    	/** The tiles of the basemap. */
+    	final TileCache tileCache;
+    	/** The features to outline. */
+    	final FeatureTable features;
+    	/** The spatial index over the features. */
+    	final SpatialIndex index;
+    	/** The Moon information for the terminator. */
+    	final MoonState moonState;
+    	
+    	/**
+    	 * This function is the class constructor.
+    	 * @param tileCache : The tiles of the basemap.
+    	 * @param features : The features to outline.
+    	 * @param index : The spatial index over the features.
+    	 * @param moonState : The Moon information for the terminator.
+    	 */
+    	MapData(TileCache tileCache, FeatureTable features, SpatialIndex index, 
+    			MoonState moonState) {
+    		this.tileCache = tileCache;
+    		this.features = features;
+    		this.index = index;
+    		this.moonState = moonState;
+    	}
+    }
+}
@@ -0,0 +1,187 @@
+package com.typeiisoft.lct.db;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+/**
+ * This class copies data files out of the program assets so they can be
+ * opened from the file system. Each installed file is recorded with the
+ * program version it came from, its checksum and its length. A file is only
+ * copied again when the program version changes or the file on disk no
+ * longer matches, so a new asset in an update always replaces the old copy.
+ * The copy is written to a temporary file, checked and then renamed into
+ * place, so a reader never sees a partial file. Once a file is found to be
+ * installed the result is kept for the rest of the process. It should only
+ * be used via the static methods as instantiation is not allowed.
+ *
+ * @author Michael Reuter
+ */
+public final class AssetInstaller {
+	/** Logging identifier. */
+	private static final String TAG = AssetInstaller.class.getName();
+	/** Label for the installed asset records. */
+	private static final String INSTALL_PREFS = "com.typeiisoft.lct.installed_assets";
+	/** Size of the chunks used for copying. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	/** Assets known to be installed in this process. */
+	private static final Set<String> installed = new HashSet<String>();
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private AssetInstaller() {
+	}
+
+	/**
+	 * This function makes sure an asset is installed at the target location.
+	 * @param context : The context used to access the assets.
+	 * @param assetName : The name of the asset.
+	 * @param target : The location of the installed file.
+	 * @throws IOException
+	 */
+	public static synchronized void install(Context context, String assetName,
+			File target) throws IOException {
+		if (installed.contains(assetName)) {
+			return;
+		}
+		SharedPreferences prefs = context.getSharedPreferences(INSTALL_PREFS,
+				Context.MODE_PRIVATE);
+		int version = AssetInstaller.getVersion(context);
+		if (prefs.getInt(assetName + "_version", -1) == version &&
+				target.length() == prefs.getLong(assetName + "_length", -1)) {
+			Log.i(TAG, assetName + " already installed.");
+			installed.add(assetName);
+			return;
+		}
+
+		long checksum = AssetInstaller.copy(context, assetName, target);
+		prefs.edit()
+			.putInt(assetName + "_version", version)
+			.putLong(assetName + "_checksum", checksum)
+			.putLong(assetName + "_length", target.length())
+			.commit();
+		Log.i(TAG, assetName + " installed successfully.");
+		installed.add(assetName);
+	}
+
+	/**
+	 * This function checks if an asset has been installed in this process.
+	 * @param assetName : The name of the asset.
+	 * @return : True if the asset is installed.
+	 */
+	public static synchronized boolean isInstalled(String assetName) {
+		return installed.contains(assetName);
+	}
+
+	/**
+	 * This function copies an asset to a temporary file, checks the copy
+	 * against the asset checksum and renames it to the target location.
+	 * @param context : The context used to access the assets.
+	 * @param assetName : The name of the asset.
+	 * @param target : The location of the installed file.
+	 * @return : The checksum of the asset.
+	 * @throws IOException
+	 */
+	private static long copy(Context context, String assetName, File target)
+			throws IOException {
+		File parent = target.getParentFile();
+		if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Unable to create " + parent);
+		}
+		File temp = new File(parent, target.getName() + ".tmp");
+
+		CRC32 assetCrc = new CRC32();
+		InputStream input = new CheckedInputStream(
+				context.getAssets().open(assetName), assetCrc);
+		try {
+			ReadableByteChannel source = Channels.newChannel(input);
+			FileOutputStream output = new FileOutputStream(temp);
+			try {
+				FileChannel destination = output.getChannel();
+				long position = 0;
+				long count;
+				while ((count = destination.transferFrom(source, position, CHUNK_SIZE)) > 0) {
+					position += count;
+				}
+				destination.force(true);
+			}
+			finally {
+				output.close();
+			}
+		}
+		catch (IOException e) {
+			// Do not leave a partial copy behind
+			temp.delete();
+			throw e;
+		}
+		finally {
+			input.close();
+		}
+
+		long checksum = assetCrc.getValue();
+		if (AssetInstaller.checksum(temp) != checksum) {
+			temp.delete();
+			throw new IOException("Checksum mismatch copying " + assetName);
+		}
+		if (!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Unable to install " + target);
+		}
+		return checksum;
+	}
+
+	/**
+	 * This function calculates the checksum of a file.
+	 * @param file : The file to check.
+	 * @return : The CRC-32 of the file contents.
+	 * @throws IOException
+	 */
+	private static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+			while (channel.read(buffer) > 0) {
+				crc.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+		}
+		finally {
+			input.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * This function gets the program version that the assets came from.
+	 * @param context : The context used to access the package information.
+	 * @return : The program version code.
+	 */
+	private static int getVersion(Context context) {
+		try {
+			return context.getPackageManager().getPackageInfo(
+					context.getPackageName(), 0).versionCode;
+		}
+		catch (PackageManager.NameNotFoundException e) {
+			Log.e(TAG, "Unable to find the program version.", e);
+			return 0;
+		}
+	}
+}
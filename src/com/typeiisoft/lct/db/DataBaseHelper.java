@@ -1,23 +1,15 @@
 package com.typeiisoft.lct.db;
 
-import com.typeiisoft.lct.features.FeatureComparator;
-import com.typeiisoft.lct.features.LunarFeature;
-import com.typeiisoft.lct.utils.AppPreferences;
-import com.typeiisoft.lct.utils.MoonInfo;
+import com.typeiisoft.lct.features.FeatureTable;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 import android.app.Activity;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
@@ -29,8 +21,6 @@ import android.util.Log;
 public class DataBaseHelper extends SQLiteOpenHelper {
 	/** Logging identifier. */
 	private static final String TAG = DataBaseHelper.class.getName();
-	/** The Android's default system path of your application database. */
-    private static String DB_PATH = "/data/data/com.typeiisoft.lct/databases/";
     /** Name of the Lunar feature database. */
     private static String DB_NAME = "moon.db";
     /** Main table name in the Lunar feature database. */
@@ -44,6 +34,18 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     	_id, NAME, DIAMETER, LATITUDE, LONGITUDE, DELTA_LAT, DELTA_LONG, TYPE, 
     	QUAD_NAME, QUAD_CODE, LUNAR_CODE, LUNAR_CLUB_TYPE;
     }
+    /** The feature columns in DbFields order, leaving out the precomputed ones. */
+    private static final String[] FEATURE_COLUMNS = {"_id", "Name", "Diameter", 
+    	"Latitude", "Longitude", "Delta_Latitude", "Delta_Longitude", "Type", 
+    	"Quad_Name", "Quad_Code", "Lunar_Code", "Lunar_Club_Type"};
+    /** Selection for features whose morning window holds the SELCO. */
+    private static final String MORNING_WINDOW = 
+    		"Min_Longitude >= ? AND Morning_Start <= ?";
+    /** Selection for features whose evening window holds the SELCO. */
+    private static final String EVENING_WINDOW = 
+    		"Max_Longitude <= ? AND Evening_End >= ?";
+    /** Padding on the SELCO bounds so rounding never drops a feature. */
+    private static final double WINDOW_PADDING = 1e-9;
  
     /**
      * This function is the class constructor. It takes and keeps a reference 
@@ -57,78 +59,40 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     }	
 
     /**
-     * This function creates an empty database on the system and rewrites 
-     * it with your own database.
+     * This function installs the database from the assets into the system 
+     * database folder. The copy is only made on first run or when the 
+     * program has been updated.
      * @throws IOException
      */
     public void createDataBase() throws IOException {
-    	boolean dbExist = checkDataBase();
-    	if (dbExist) {
-    		// Do nothing - database already exist
-    		Log.i(TAG, "Database already exists.");
-    	} else {
-    		// By calling this method and empty database will be created into 
-    		// the default system path of your application so we are going to 
-    		// be able to overwrite that database with our database.
-        	this.getReadableDatabase();
-        	try {
-    			this.copyDataBase();
-    		} catch (IOException e) {
-        		throw new Error("Error copying database");
-        	}
-        	Log.i(TAG, "Database copied successfully.");
-    	}
+    	AssetInstaller.install(this.myActivity, DB_NAME, this.getDataBaseFile());
     }
 
     /**
-     * This function checks if the database already exists to avoid re-copying 
-     * the file each time you open the application.
+     * This function checks if the database is installed, copying it from 
+     * the assets if needed. The check is only done once per process.
      * @return : True if the database exists, false if it doesn't
      */
     private boolean checkDataBase() {
-    	SQLiteDatabase checkDB = null;
+    	if (AssetInstaller.isInstalled(DB_NAME)) {
+    		return true;
+    	}
     	try {
-    		String myPath = DB_PATH + DB_NAME;
-    		checkDB = SQLiteDatabase.openDatabase(myPath, null, 
-    				SQLiteDatabase.OPEN_READONLY);
-    	} catch(SQLiteException e) {
-    		// database does't exist yet.
+    		this.createDataBase();
+    		return true;
     	}
- 
-    	if (checkDB != null) {
-    		checkDB.close();
+    	catch (IOException e) {
+    		Log.e(TAG, "Unable to install database.", e);
+    		return false;
     	}
- 
-    	return checkDB != null ? true : false;
     }
 
     /**
-     * This function copies your database from your local assets-folder to the 
-     * just created empty database in the system folder, from where it can be 
-     * accessed and handled. This is done by transferring a byte stream.
-     * @throws IOException
+     * This function gets the location of the installed database.
+     * @return : The database file.
      */
-    private void copyDataBase() throws IOException {
-    	// Open your local db as the input stream
-    	InputStream myInput = myActivity.getAssets().open(DB_NAME);
- 
-    	// Path to the just created empty db
-    	String outFileName = DB_PATH + DB_NAME;
- 
-    	// Open the empty db as the output stream
-    	OutputStream myOutput = new FileOutputStream(outFileName);
- 
-    	// Transfer bytes from the input file to the output file
-    	byte[] buffer = new byte[1024];
-    	int length;
-    	while ((length = myInput.read(buffer))>0) {
-    		myOutput.write(buffer, 0, length);
-    	}
- 
-    	// Close the streams
-    	myOutput.flush();
-    	myOutput.close();
-    	myInput.close();
+    private File getDataBaseFile() {
+    	return this.myActivity.getDatabasePath(DB_NAME);
     }
  
     /**
@@ -137,7 +101,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public void openDataBase() throws SQLException {
     	// Open the database
-        String myPath = DB_PATH + DB_NAME;
+        String myPath = this.getDataBaseFile().getPath();
     	this.myDataBase = SQLiteDatabase.openDatabase(myPath, null, 
     			SQLiteDatabase.OPEN_READONLY);
     }
@@ -162,7 +126,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 
 	/**
 	 * This function is for updating a database. Since the program uses an existing 
-	 * one that is independent of the program, this does nothing.
+	 * one that is replaced by the asset installer on update, this does nothing.
 	 */
 	@Override
 	public void onUpgrade(SQLiteDatabase arg0, int arg1, int arg2) {
@@ -174,67 +138,22 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     // to you to create adapters for your views.
 
 	/**
-	 * This function gets the Lunar Club feature list based on the target type.
-	 * @param : targetType : The requested type for the Lunar Club features.
-	 * @return : The lists of Lunar Club features.
-	 */
-	public ArrayList<LunarFeature> getLunarClubFeatures(String targetType) {
-		List<LunarFeature> tmp = this.getFeatureList("Lunar");
-		
-		// Setup list for the target category.
-		ArrayList<LunarFeature> features = new ArrayList<LunarFeature>();
-
-		String lTargetType;
-		for (LunarFeature l : tmp) {
-			lTargetType = l.getClubType();
-			Log.d(TAG, "Target type = " + lTargetType);
-			if (lTargetType.equals(targetType)) {
-				features.add(l);
-			}
-		}
-		
-		Log.i(TAG, targetType + " = " + features.size());
-		Collections.sort(features, new FeatureComparator());
-		return features;
-	}
-	
-	/**
-	 * This function gets the Lunar II Club feature list.
-	 * @return : The list of Lunar II Club features.
+	 * This function handles querying the database for every lunar feature 
+	 * and returning the features as a table. The rows are ordered by 
+	 * latitude.
+	 * @return : The full feature table.
 	 */
-	public List<LunarFeature> getLunarTwoFeatures() {
-		List<LunarFeature> tmp = this.getFeatureList("LunarII");
-		Collections.sort(tmp, new FeatureComparator());
-		return tmp;
-	}
-	
-	/**
-	 * This function handles querying the database, creating the list of 
-	 * lunar features and returning that list.
-	 * @param clubName : The observing club to get the feature list for.
-	 * @return : The given feature list.
-	 */
-	private List<LunarFeature> getFeatureList(String clubName) {
-		AppPreferences appPrefs = new AppPreferences(this.myActivity);
-		MoonInfo moonInfo = new MoonInfo(appPrefs.getDateTime());
-		Log.i(TAG, "MoonInfo: " + moonInfo.toString());
-		
-		List<LunarFeature> features = new ArrayList<LunarFeature>();
+	public FeatureTable getFeatureTable() {
+		FeatureTable.Builder builder = new FeatureTable.Builder();
 
 		if (this.checkDataBase()) {
 			this.openDataBase();
-			Cursor cursor = this.myDataBase.query(DB_TABLE, null, 
-					"Lunar_Code=? or Lunar_Code=?", 
-					new String[]{clubName, "Both"}, 
+			Cursor cursor = this.myDataBase.query(DB_TABLE, null, null, null, 
 					null, null, "Latitude DESC");
 
 			cursor.moveToFirst();
 			while (!cursor.isAfterLast()) {
-				LunarFeature feature = this.cursorToLunarFeature(cursor);
-				if (moonInfo.isVisible(feature)) {
-					Log.d(TAG, feature.toString());
-					features.add(feature);
-				}
+				this.addCursorRow(builder, cursor);
 				cursor.moveToNext();
 			}
 			cursor.close();
@@ -244,18 +163,75 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 			Log.e(TAG, "Database has not been initialized!");
 		}
 
-		Log.i(TAG, "Number of " + clubName + " Club features = " + features.size());
+		FeatureTable features = builder.build();
+		Log.i(TAG, "Number of features = " + features.size());
 		return features;
 	}
 	
 	/**
-	 * This function takes the current DB row and creates a LunarFeature 
-	 * object from the information.
+	 * This function queries the database for the features whose SELCO 
+	 * window holds the given SELCO longitude. The window check is done by 
+	 * SQLite against the precomputed bound columns, so only the candidate 
+	 * rows are read. The bounds are padded slightly, so callers must still 
+	 * run the exact visibility checks on the returned rows.
+	 * @param codeNames : The observing club names to select.
+	 * @param clubType : The Lunar Club target type to select or null for all.
+	 * @param selcoLong : The lunar longitude of the current SELCO.
+	 * @param isMorning : True if it is currently morning on the Moon.
+	 * @return : The candidate features sorted in the feature list order.
+	 */
+	public FeatureTable getSelcoCandidates(String[] codeNames, String clubType, 
+			double selcoLong, boolean isMorning) {
+		FeatureTable.Builder builder = new FeatureTable.Builder();
+		if (!this.checkDataBase()) {
+			Log.e(TAG, "Database has not been initialized!");
+			return builder.build();
+		}
+
+		StringBuilder selection = new StringBuilder("Lunar_Code IN (");
+		String[] args = new String[codeNames.length + 3];
+		for (int i = 0; i < codeNames.length; i++) {
+			selection.append(i == 0 ? "?" : ", ?");
+			args[i] = codeNames[i];
+		}
+		selection.append(')');
+		int next = codeNames.length;
+		if (null != clubType) {
+			selection.append(" AND Lunar_Club_Type = ?");
+			args[next++] = clubType;
+		}
+		selection.append(" AND ").append(isMorning ? MORNING_WINDOW : EVENING_WINDOW);
+		if (isMorning) {
+			args[next++] = Double.toString(selcoLong - WINDOW_PADDING);
+			args[next++] = Double.toString(selcoLong + WINDOW_PADDING);
+		}
+		else {
+			args[next++] = Double.toString(selcoLong + WINDOW_PADDING);
+			args[next++] = Double.toString(selcoLong - WINDOW_PADDING);
+		}
+
+		this.openDataBase();
+		Cursor cursor = this.myDataBase.query(DB_TABLE, FEATURE_COLUMNS, 
+				selection.toString(), Arrays.copyOf(args, next), null, null, null);
+		cursor.moveToFirst();
+		while (!cursor.isAfterLast()) {
+			this.addCursorRow(builder, cursor);
+			cursor.moveToNext();
+		}
+		cursor.close();
+		this.myDataBase.close();
+		return builder.buildSorted();
+	}
+	
+	/**
+	 * This function takes the current DB row and adds the information to 
+	 * the feature table being built.
+	 * @param builder : The feature table being built.
 	 * @param cur : The current DB row.
-	 * @return : The LunarFeature corresponding to the information in the row.
 	 */
-	private LunarFeature cursorToLunarFeature(Cursor cur) {
-		return new LunarFeature(cur.getString(DbFields.NAME.ordinal()), 
+	private void addCursorRow(FeatureTable.Builder builder, Cursor cur) {
+		builder.add(cur.getInt(DbFields._id.ordinal()),
+				cur.getString(DbFields.NAME.ordinal()), 
 				cur.getDouble(DbFields.DIAMETER.ordinal()),
 				cur.getDouble(DbFields.LATITUDE.ordinal()), 
 				cur.getDouble(DbFields.LONGITUDE.ordinal()), 
@@ -0,0 +1,429 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.FeatureColumns;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads and writes the binary lunar feature catalog. The file is
+ * made from the Moon information database at build time so the program can
+ * load the features without going through SQLite. The layout is columnar:
+ * a header, the fixed width numeric columns, the string columns as indexes
+ * into a string pool and then the pool itself. All values are big-endian.
+ * <pre>
+ * int    magic, version, rows, strings
+ * double diameter[rows], latitude[rows], longitude[rows],
+ *        deltaLatitude[rows], deltaLongitude[rows]
+ * int    id[rows], name[rows], type[rows], quadName[rows], quadCode[rows],
+ *        codeName[rows], clubType[rows]
+ * int    stringOffsets[strings + 1]
+ * byte   stringData[] (UTF-8)
+ * </pre>
+ * A string index of -1 is a null value. The rows are kept in the order they
+ * were written. The fixed widths let the program read any value by offset
+ * straight from a read-only mapping of the file.
+ *
+ * @author Michael Reuter
+ */
+public final class FeatureFile {
+	/** Identifier at the start of the file ("LCTF"). */
+	public static final int MAGIC = 0x4C435446;
+	/** Version of the file layout. */
+	public static final int VERSION = 1;
+	/** Name of the catalog file. */
+	public static final String FILE_NAME = "moon.lcf";
+	/** Size of the file header in bytes. */
+	private static final int HEADER_SIZE = 16;
+	/** Number of double columns. */
+	private static final int DOUBLE_COLUMNS = 5;
+	/** Number of int columns, including the string indexes. */
+	private static final int INT_COLUMNS = 7;
+	/** String pool index for a null value. */
+	private static final int NULL_STRING = -1;
+	/** Encoding for the string pool. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private FeatureFile() {
+	}
+
+	/**
+	 * This function writes a feature table in the catalog file layout.
+	 * @param features : The features to write.
+	 * @param output : The stream to write to. It is not closed.
+	 * @throws IOException
+	 */
+	public static void write(FeatureTable features, OutputStream output)
+			throws IOException {
+		int rows = features.size();
+		List<String> pool = new ArrayList<String>();
+		Map<String, Integer> poolIndex = new HashMap<String, Integer>();
+		int[][] strings = new int[INT_COLUMNS - 1][rows];
+		for (int i = 0; i < rows; i++) {
+			LunarFeature feature = features.getFeature(i);
+			strings[0][i] = FeatureFile.intern(feature.getName(), pool, poolIndex);
+			strings[1][i] = FeatureFile.intern(feature.getFeatureType(), pool, poolIndex);
+			strings[2][i] = FeatureFile.intern(feature.getQuadName(), pool, poolIndex);
+			strings[3][i] = FeatureFile.intern(feature.getQuadCode(), pool, poolIndex);
+			strings[4][i] = FeatureFile.intern(feature.getCodeName(), pool, poolIndex);
+			strings[5][i] = FeatureFile.intern(feature.getClubType(), pool, poolIndex);
+		}
+
+		DataOutputStream out = new DataOutputStream(output);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(rows);
+		out.writeInt(pool.size());
+		for (int i = 0; i < rows; i++) {
+			out.writeDouble(features.getFeature(i).getDiameter());
+		}
+		for (int i = 0; i < rows; i++) {
+			out.writeDouble(features.getLatitude(i));
+		}
+		for (int i = 0; i < rows; i++) {
+			out.writeDouble(features.getLongitude(i));
+		}
+		for (int i = 0; i < rows; i++) {
+			out.writeDouble(features.getDeltaLatitude(i));
+		}
+		for (int i = 0; i < rows; i++) {
+			out.writeDouble(features.getDeltaLongitude(i));
+		}
+		for (int i = 0; i < rows; i++) {
+			out.writeInt(features.getId(i));
+		}
+		for (int[] column : strings) {
+			for (int value : column) {
+				out.writeInt(value);
+			}
+		}
+
+		byte[][] encoded = new byte[pool.size()][];
+		int offset = 0;
+		out.writeInt(offset);
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = pool.get(i).getBytes(UTF8);
+			offset += encoded[i].length;
+			out.writeInt(offset);
+		}
+		for (byte[] value : encoded) {
+			out.write(value);
+		}
+		out.flush();
+	}
+
+	/**
+	 * This function makes a feature table that reads its columns in place
+	 * from a buffer holding the catalog file. Nothing is copied out of the
+	 * buffer; the values of a row are read by offset when asked for and a
+	 * string is decoded from the pool the first time it is used. The layout
+	 * and the string indexes are checked here, so a bad file fails now
+	 * rather than when a row is read. The buffer is normally a read-only
+	 * mapping of the file and must not change while the table is in use.
+	 * @param buffer : The catalog file contents starting at position zero.
+	 * @return : The feature table in file order.
+	 * @throws IOException
+	 */
+	public static FeatureTable read(ByteBuffer buffer) throws IOException {
+		return new FeatureTable(new MappedColumns(buffer));
+	}
+
+	/**
+	 * This function finds or adds a string in the string pool.
+	 * @param value : The string to add.
+	 * @param pool : The pool strings in index order.
+	 * @param poolIndex : The pool index of each string.
+	 * @return : The pool index or NULL_STRING for a null value.
+	 */
+	private static int intern(String value, List<String> pool,
+			Map<String, Integer> poolIndex) {
+		if (null == value) {
+			return NULL_STRING;
+		}
+		Integer index = poolIndex.get(value);
+		if (null == index) {
+			index = Integer.valueOf(pool.size());
+			pool.add(value);
+			poolIndex.put(value, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * This class reads the feature columns in place from the catalog file.
+	 * The buffer is only read with absolute positions, so one table can be
+	 * read from several threads.
+	 */
+	private static final class MappedColumns implements FeatureColumns {
+		/** The catalog file contents. */
+		private final ByteBuffer buffer;
+		/** Number of rows. */
+		private final int rows;
+		/** Start of the double columns. */
+		private final int doubleStart;
+		/** Start of the int columns. */
+		private final int intStart;
+		/** Start of the string offsets. */
+		private final int offsetStart;
+		/** Start of the string data. */
+		private final int dataStart;
+		/** The pool strings decoded so far. */
+		private final String[] pool;
+
+		/**
+		 * This function is the class constructor. It checks the header, the
+		 * column sizes and the string indexes.
+		 * @param buffer : The catalog file contents starting at position zero.
+		 * @throws IOException
+		 */
+		MappedColumns(ByteBuffer buffer) throws IOException {
+			this.buffer = buffer.duplicate();
+			if (this.buffer.limit() < HEADER_SIZE) {
+				throw new IOException("Catalog file is truncated.");
+			}
+			if (this.buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a lunar feature catalog file.");
+			}
+			if (this.buffer.getInt(4) != VERSION) {
+				throw new IOException("Unsupported catalog version " + this.buffer.getInt(4));
+			}
+			this.rows = this.buffer.getInt(8);
+			int numStrings = this.buffer.getInt(12);
+			if (this.rows < 0 || numStrings < 0) {
+				throw new IOException("Catalog file is corrupt.");
+			}
+			long intStart = HEADER_SIZE + 8L * DOUBLE_COLUMNS * this.rows;
+			long offsetStart = intStart + 4L * INT_COLUMNS * this.rows;
+			long dataStart = offsetStart + 4L * (numStrings + 1);
+			if (dataStart > this.buffer.limit()) {
+				throw new IOException("Catalog file is truncated.");
+			}
+			this.doubleStart = HEADER_SIZE;
+			this.intStart = (int)intStart;
+			this.offsetStart = (int)offsetStart;
+			this.dataStart = (int)dataStart;
+			this.pool = new String[numStrings];
+
+			int previous = 0;
+			for (int i = 0; i <= numStrings; i++) {
+				int offset = this.buffer.getInt(this.offsetStart + 4 * i);
+				if ((0 == i && 0 != offset) || offset < previous) {
+					throw new IOException("Catalog file is corrupt.");
+				}
+				previous = offset;
+			}
+			if ((long)this.dataStart + previous > this.buffer.limit()) {
+				throw new IOException("Catalog file is truncated.");
+			}
+			for (int column = 1; column < INT_COLUMNS; column++) {
+				for (int row = 0; row < this.rows; row++) {
+					int index = this.getInt(column, row);
+					if (index < NULL_STRING || index >= numStrings) {
+						throw new IOException("Catalog file is corrupt.");
+					}
+				}
+			}
+		}
+
+		/**
+		 * This function gets the number of rows.
+		 * @return : The number of features.
+		 */
+		@Override
+		public int size() {
+			return this.rows;
+		}
+
+		/**
+		 * Getter for the database identifier of a row.
+		 * @param row : The storage row.
+		 * @return : The database identifier.
+		 */
+		@Override
+		public int getId(int row) {
+			return this.getInt(0, row);
+		}
+
+		/**
+		 * Getter for the name of a row.
+		 * @param row : The storage row.
+		 * @return : The feature name.
+		 */
+		@Override
+		public String getName(int row) {
+			return this.getString(1, row);
+		}
+
+		/**
+		 * Getter for the diameter of a row.
+		 * @param row : The storage row.
+		 * @return : The feature diameter in kilometers.
+		 */
+		@Override
+		public double getDiameter(int row) {
+			return this.getDouble(0, row);
+		}
+
+		/**
+		 * Getter for the latitude of a row.
+		 * @param row : The storage row.
+		 * @return : The feature latitude.
+		 */
+		@Override
+		public double getLatitude(int row) {
+			return this.getDouble(1, row);
+		}
+
+		/**
+		 * Getter for the longitude of a row.
+		 * @param row : The storage row.
+		 * @return : The feature longitude.
+		 */
+		@Override
+		public double getLongitude(int row) {
+			return this.getDouble(2, row);
+		}
+
+		/**
+		 * Getter for the latitude width of a row.
+		 * @param row : The storage row.
+		 * @return : The feature latitude width.
+		 */
+		@Override
+		public double getDeltaLatitude(int row) {
+			return this.getDouble(3, row);
+		}
+
+		/**
+		 * Getter for the longitude width of a row.
+		 * @param row : The storage row.
+		 * @return : The feature longitude width.
+		 */
+		@Override
+		public double getDeltaLongitude(int row) {
+			return this.getDouble(4, row);
+		}
+
+		/**
+		 * Getter for the feature type name of a row.
+		 * @param row : The storage row.
+		 * @return : The feature type name.
+		 */
+		@Override
+		public String getFeatureType(int row) {
+			return this.getString(2, row);
+		}
+
+		/**
+		 * Getter for the lunar quadrant name of a row.
+		 * @param row : The storage row.
+		 * @return : The lunar quadrant name.
+		 */
+		@Override
+		public String getQuadName(int row) {
+			return this.getString(3, row);
+		}
+
+		/**
+		 * Getter for the lunar quadrant code of a row.
+		 * @param row : The storage row.
+		 * @return : The lunar quadrant code.
+		 */
+		@Override
+		public String getQuadCode(int row) {
+			return this.getString(4, row);
+		}
+
+		/**
+		 * Getter for the observing club name of a row.
+		 * @param row : The storage row.
+		 * @return : The observing club name.
+		 */
+		@Override
+		public String getCodeName(int row) {
+			return this.getString(5, row);
+		}
+
+		/**
+		 * Getter for the Lunar Club target type of a row.
+		 * @param row : The storage row.
+		 * @return : The Lunar Club target type.
+		 */
+		@Override
+		public String getClubType(int row) {
+			return this.getString(6, row);
+		}
+
+		/**
+		 * This function reads a value from a double column.
+		 * @param column : The double column number.
+		 * @param row : The row.
+		 * @return : The value.
+		 */
+		private double getDouble(int column, int row) {
+			this.checkRow(row);
+			return this.buffer.getDouble(this.doubleStart + 8 * (column * this.rows + row));
+		}
+
+		/**
+		 * This function reads a value from an int column.
+		 * @param column : The int column number.
+		 * @param row : The row.
+		 * @return : The value.
+		 */
+		private int getInt(int column, int row) {
+			this.checkRow(row);
+			return this.buffer.getInt(this.intStart + 4 * (column * this.rows + row));
+		}
+
+		/**
+		 * This function reads a string column, decoding the pool string the
+		 * first time it is used. Two threads may both decode a string, which
+		 * only costs the extra work.
+		 * @param column : The int column number holding the string index.
+		 * @param row : The row.
+		 * @return : The string or null for the NULL_STRING index.
+		 */
+		private String getString(int column, int row) {
+			int index = this.getInt(column, row);
+			if (NULL_STRING == index) {
+				return null;
+			}
+			String value = this.pool[index];
+			if (null == value) {
+				int start = this.buffer.getInt(this.offsetStart + 4 * index);
+				int end = this.buffer.getInt(this.offsetStart + 4 * (index + 1));
+				byte[] data = new byte[end - start];
+				ByteBuffer view = this.buffer.duplicate();
+				view.position(this.dataStart + start);
+				view.get(data);
+				value = new String(data, UTF8);
+				this.pool[index] = value;
+			}
+			return value;
+		}
+
+		/**
+		 * This function checks a row number, since a row past the end would
+		 * read another column.
+		 * @param row : The row.
+		 */
+		private void checkRow(int row) {
+			if (row < 0 || row >= this.rows) {
+				throw new IndexOutOfBoundsException("Row " + row + " of " + this.rows);
+			}
+		}
+	}
+}
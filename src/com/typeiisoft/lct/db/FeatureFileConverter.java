@@ -0,0 +1,169 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.utils.MoonInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class is the build time tool that turns the Moon information
+ * database into the binary feature catalog. It also fills in the
+ * precomputed visibility columns and indexes of the database that the
+ * SQL visibility queries use. It runs on a desktop JVM with
+ * a SQLite JDBC driver on the classpath:
+ * <pre>
+ * java -cp bin/classes:sqlite-jdbc.jar com.typeiisoft.lct.db.FeatureFileConverter \
+ *     assets/moon.db assets/moon.lcf
+ * </pre>
+ * The round trip from the database through the catalog file is checked by
+ * FeatureFileConverterTest in the core module.
+ *
+ * @author Michael Reuter
+ */
+public final class FeatureFileConverter {
+	/** Query for the features in the order the program uses them. */
+	private static final String QUERY = "SELECT _id, Name, Diameter, Latitude, " +
+			"Longitude, Delta_Latitude, Delta_Longitude, Type, Quad_Name, " +
+			"Quad_Code, Lunar_Code, Lunar_Club_Type FROM Features " +
+			"ORDER BY Latitude DESC";
+	/** Precomputed columns and their types. */
+	private static final String[][] PRECOMPUTED_COLUMNS = {
+		{"Min_Longitude", "REAL"}, {"Max_Longitude", "REAL"},
+		{"Morning_Start", "REAL"}, {"Evening_End", "REAL"},
+		{"No_Cutoff", "INTEGER"}, {"Limb_Zone", "INTEGER"}};
+	/** Statements creating the indexes. */
+	private static final String[] INDEXES = {
+		"CREATE INDEX IF NOT EXISTS Features_Club ON Features " +
+				"(Lunar_Code, Lunar_Club_Type)",
+		"CREATE INDEX IF NOT EXISTS Features_Morning ON Features " +
+				"(Min_Longitude, Morning_Start)",
+		"CREATE INDEX IF NOT EXISTS Features_Evening ON Features " +
+				"(Max_Longitude, Evening_End)"};
+	/** Open window bound for the features with no longitude cutoff. */
+	private static final double OPEN_BOUND = 360D;
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private FeatureFileConverter() {
+	}
+
+	/**
+	 * This function runs the conversion.
+	 * @param args : The database file and the catalog file to write.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: FeatureFileConverter <moon.db> <moon.lcf>");
+			System.exit(2);
+		}
+		FeatureTable features = FeatureFileConverter.readDatabase(args[0]);
+		FeatureFileConverter.updateDatabase(args[0], features);
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(args[1]));
+		try {
+			FeatureFile.write(features, output);
+		}
+		finally {
+			output.close();
+		}
+		System.out.println("Wrote " + features.size() + " features to " + args[1]);
+	}
+
+	/**
+	 * This function reads the features from the Moon information database.
+	 * @param path : The database file.
+	 * @return : The features in latitude order.
+	 * @throws SQLException
+	 */
+	public static FeatureTable readDatabase(String path) throws SQLException {
+		FeatureTable.Builder builder = new FeatureTable.Builder();
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+		try {
+			Statement statement = connection.createStatement();
+			ResultSet results = statement.executeQuery(QUERY);
+			while (results.next()) {
+				builder.add(results.getInt(1), results.getString(2),
+						results.getDouble(3), results.getDouble(4),
+						results.getDouble(5), results.getString(8),
+						results.getDouble(6), results.getDouble(7),
+						results.getString(9), results.getString(10),
+						results.getString(11), results.getString(12));
+			}
+			results.close();
+			statement.close();
+		}
+		finally {
+			connection.close();
+		}
+		return builder.build();
+	}
+
+	/**
+	 * This function fills in the precomputed visibility columns of the
+	 * database and creates the indexes. The values come from the feature
+	 * table, so they match the in-memory checks. Features with no cutoff get
+	 * open window bounds.
+	 * @param path : The database file.
+	 * @param features : The features read from the database.
+	 * @throws SQLException
+	 */
+	public static void updateDatabase(String path, FeatureTable features)
+			throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+		try {
+			Set<String> columns = new HashSet<String>();
+			Statement statement = connection.createStatement();
+			ResultSet results = statement.executeQuery("PRAGMA table_info(Features)");
+			while (results.next()) {
+				columns.add(results.getString("name"));
+			}
+			results.close();
+			for (String[] column : PRECOMPUTED_COLUMNS) {
+				if (!columns.contains(column[0])) {
+					statement.executeUpdate("ALTER TABLE Features ADD COLUMN " +
+							column[0] + " " + column[1]);
+				}
+			}
+
+			connection.setAutoCommit(false);
+			PreparedStatement update = connection.prepareStatement(
+					"UPDATE Features SET Min_Longitude = ?, Max_Longitude = ?, " +
+					"Morning_Start = ?, Evening_End = ?, No_Cutoff = ?, " +
+					"Limb_Zone = ? WHERE _id = ?");
+			for (int i = 0; i < features.size(); i++) {
+				boolean noCutoff = features.isNoCutoff(i);
+				double cutoff = MoonInfo.featureCutoff(features.getLatitude(i));
+				update.setDouble(1, features.getMinLongitude(i));
+				update.setDouble(2, features.getMaxLongitude(i));
+				update.setDouble(3, noCutoff ? -OPEN_BOUND :
+						features.getMinLongitude(i) - cutoff);
+				update.setDouble(4, noCutoff ? OPEN_BOUND :
+						features.getMaxLongitude(i) + cutoff);
+				update.setInt(5, noCutoff ? 1 : 0);
+				update.setInt(6, features.isInLimbZone(i) ? 1 : 0);
+				update.setInt(7, features.getId(i));
+				update.executeUpdate();
+			}
+			update.close();
+			for (String index : INDEXES) {
+				statement.executeUpdate(index);
+			}
+			statement.close();
+			connection.commit();
+		}
+		finally {
+			connection.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.FeatureTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.app.Activity;
+import android.util.Log;
+
+/**
+ * This class handles loading the lunar features from the binary catalog
+ * file. The file is installed out of the assets, since assets cannot be
+ * mapped directly, and is then read through a read-only memory mapping.
+ *
+ * @author Michael Reuter
+ */
+public class FeatureFileHelper {
+	/** Logging identifier. */
+	private static final String TAG = FeatureFileHelper.class.getName();
+	/** Holder for an activity. */
+	private final Activity myActivity;
+
+	/**
+	 * This function is the class constructor.
+	 * @param activity : The top-level activity object.
+	 */
+	public FeatureFileHelper(Activity activity) {
+		this.myActivity = activity;
+	}
+
+	/**
+	 * This function loads the feature table from the catalog file. The rows
+	 * are ordered by latitude.
+	 * @return : The full feature table.
+	 * @throws IOException
+	 */
+	public FeatureTable getFeatureTable() throws IOException {
+		File catalog = new File(this.myActivity.getFilesDir(), FeatureFile.FILE_NAME);
+		AssetInstaller.install(this.myActivity, FeatureFile.FILE_NAME, catalog);
+
+		RandomAccessFile file = new RandomAccessFile(catalog, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			FeatureTable features = FeatureFile.read(buffer);
+			Log.i(TAG, "Number of features = " + features.size());
+			return features;
+		}
+		finally {
+			file.close();
+		}
+	}
+}
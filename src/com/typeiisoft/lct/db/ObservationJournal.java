@@ -0,0 +1,273 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.Observation;
+import com.typeiisoft.lct.utils.Logger;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class is the append-only journal of the observation log. Each
+ * record is the length of the entry, the entry and the CRC-32 of the entry.
+ * A batch of entries is written with one write and one sync, so all of the
+ * entries logged while the previous batch was being synced are committed
+ * together. Records are never changed once written. A record cut short by
+ * a crash fails its length or checksum check when the journal is read back,
+ * and the journal is truncated to the last good record. The journal is
+ * emptied once its entries have been compacted into the
+ * {@link ObservationStore}. Only the observation log's writer thread may
+ * append to or empty the journal.
+ *
+ * @author Michael Reuter
+ */
+final class ObservationJournal {
+	/** Logging identifier. */
+	private static final String TAG = ObservationJournal.class.getName();
+	/** Size of the length and checksum around each entry in bytes. */
+	private static final int RECORD_OVERHEAD = 8;
+	/** Largest entry that will be read back in bytes. */
+	private static final int MAX_ENTRY_SIZE = 1024 * 1024;
+	/** The journal file. */
+	private final RandomAccessFile file;
+	/** The channel for writing and syncing the file. */
+	private final FileChannel channel;
+
+	/**
+	 * This function is the class constructor. It opens or creates the
+	 * journal file.
+	 * @param journalFile : The location of the journal.
+	 * @throws IOException
+	 */
+	ObservationJournal(File journalFile) throws IOException {
+		this.file = new RandomAccessFile(journalFile, "rw");
+		this.channel = this.file.getChannel();
+	}
+
+	/**
+	 * This function reads back the entries in the journal. Entries already
+	 * in the store are skipped. A damaged tail is cut off so that new
+	 * records follow the last good one.
+	 * @param afterSequence : The last sequence number held by the store.
+	 * @return : The entries after the given sequence number in the order
+	 * written.
+	 * @throws IOException
+	 */
+	List<Entry> replay(long afterSequence) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		long size = this.channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate((int)size);
+		this.channel.position(0);
+		while (buffer.hasRemaining() && this.channel.read(buffer) > 0) {
+			// Keep reading until the whole file is in the buffer
+		}
+		buffer.flip();
+
+		CRC32 crc = new CRC32();
+		int goodLength = 0;
+		while (buffer.remaining() >= RECORD_OVERHEAD) {
+			int length = buffer.getInt();
+			if (length <= 0 || length > MAX_ENTRY_SIZE ||
+					length + 4 > buffer.remaining()) {
+				break;
+			}
+			byte[] data = new byte[length];
+			buffer.get(data);
+			crc.reset();
+			crc.update(data, 0, length);
+			if ((int)crc.getValue() != buffer.getInt()) {
+				break;
+			}
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+			long sequence = input.readLong();
+			Observation observation = ObservationJournal.readObservation(input);
+			if (sequence > afterSequence) {
+				entries.add(new Entry(sequence, observation));
+			}
+			goodLength = buffer.position();
+		}
+		if (goodLength < size) {
+			Logger.w(TAG, "Dropping " + (size - goodLength) + " damaged journal bytes.");
+			this.channel.truncate(goodLength);
+			this.channel.force(true);
+		}
+		this.channel.position(goodLength);
+		return entries;
+	}
+
+	/**
+	 * This function writes a batch of entries at the end of the journal and
+	 * syncs them to the disk.
+	 * @param entries : The entries to write in sequence order.
+	 * @throws IOException
+	 */
+	void append(List<Entry> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+		DataOutputStream entryOutput = new DataOutputStream(entryBytes);
+		CRC32 crc = new CRC32();
+		for (Entry entry : entries) {
+			entryBytes.reset();
+			entryOutput.writeLong(entry.sequence);
+			ObservationJournal.writeObservation(entryOutput, entry.observation);
+			entryOutput.flush();
+			byte[] data = entryBytes.toByteArray();
+			crc.reset();
+			crc.update(data, 0, data.length);
+			output.writeInt(data.length);
+			output.write(data);
+			output.writeInt((int)crc.getValue());
+		}
+		output.flush();
+
+		long start = this.channel.position();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		try {
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.channel.force(false);
+		}
+		catch (IOException e) {
+			// Leave no partial batch behind for the next one to follow
+			this.channel.truncate(start);
+			this.channel.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * This function gets the size of the journal.
+	 * @return : The size of the journal in bytes.
+	 * @throws IOException
+	 */
+	long size() throws IOException {
+		return this.channel.size();
+	}
+
+	/**
+	 * This function empties the journal once its entries are in the store.
+	 * @throws IOException
+	 */
+	void clear() throws IOException {
+		this.channel.truncate(0);
+		this.channel.position(0);
+		this.channel.force(true);
+	}
+
+	/**
+	 * This function closes the journal file.
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		this.file.close();
+	}
+
+	/**
+	 * This function checks that an observation can be written. Each text
+	 * field is written as modified UTF-8 with a two byte length, so a field
+	 * longer than 65535 bytes cannot be. The instrument and notes are
+	 * capped well under that by Observation, but the other fields are not.
+	 * @param observation : The observation to check.
+	 * @return : True if the observation can be written.
+	 */
+	static boolean isWritable(Observation observation) {
+		DataOutputStream output = new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				// Only the encoding is checked
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				// Only the encoding is checked
+			}
+		});
+		try {
+			ObservationJournal.writeObservation(output, observation);
+			return true;
+		}
+		catch (UTFDataFormatException e) {
+			return false;
+		}
+		catch (IOException e) {
+			// The output never fails, so this is not reached
+			return false;
+		}
+	}
+
+	/**
+	 * This function writes the fields of an observation.
+	 * @param output : The object to write to.
+	 * @param observation : The observation to write.
+	 * @throws IOException
+	 */
+	static void writeObservation(DataOutput output, Observation observation)
+			throws IOException {
+		ObservingSite site = observation.getSite();
+		output.writeInt(observation.getFeatureId());
+		output.writeUTF(observation.getFeatureName());
+		output.writeUTF(observation.getClub());
+		output.writeLong(observation.getUtcTime());
+		output.writeUTF(site.getName());
+		output.writeDouble(site.getLatitude());
+		output.writeDouble(site.getLongitude());
+		output.writeInt(site.getTzOffset());
+		output.writeUTF(observation.getInstrument());
+		output.writeUTF(observation.getNotes());
+	}
+
+	/**
+	 * This function reads the fields of an observation.
+	 * @param input : The object to read from.
+	 * @return : The observation.
+	 * @throws IOException
+	 */
+	static Observation readObservation(DataInput input) throws IOException {
+		int featureId = input.readInt();
+		String featureName = input.readUTF();
+		String club = input.readUTF();
+		long utcTime = input.readLong();
+		ObservingSite site = new ObservingSite(input.readUTF(), input.readDouble(),
+				input.readDouble(), input.readInt());
+		String instrument = input.readUTF();
+		String notes = input.readUTF();
+		return new Observation(featureId, featureName, club, utcTime, site,
+				instrument, notes);
+	}
+
+	/**
+	 * This class is an observation along with its place in the log.
+	 */
+	static final class Entry {
+		/** The sequence number of the entry. */
+		final long sequence;
+		/** The logged observation. */
+		final Observation observation;
+
+		/**
+		 * This function is the class constructor.
+		 * @param sequence : The sequence number of the entry.
+		 * @param observation : The logged observation.
+		 */
+		Entry(long sequence, Observation observation) {
+			this.sequence = sequence;
+			this.observation = observation;
+		}
+	}
+}
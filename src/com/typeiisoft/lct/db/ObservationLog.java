@@ -0,0 +1,373 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.Observation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * This class is the log of the lunar features that have been observed. New
+ * observations are added to the in-memory state right away and handed to a
+ * writer thread, so logging never waits on the disk. The writer appends the
+ * waiting observations to the {@link ObservationJournal} as one batch with a
+ * single sync (group commit). A failed write is tried again after a wait
+ * that doubles with each failure. An observation that can never be written
+ * is dropped before the batch is written, so it cannot hold up the ones
+ * after it. Once the journal grows past a limit, the
+ * writer merges it into the {@link ObservationStore} and empties it. The
+ * store records the last sequence number it holds, so journal entries that
+ * were already compacted before a crash are not read back twice.
+ * <p>
+ * The observed features of each club are kept as a BitSet keyed by catalog
+ * identifier, so the feature lists can check a feature with one lookup. The
+ * log is loaded once per process. Listeners are told about new
+ * observations on the thread that logged them, which is the main thread for
+ * the program.
+ *
+ * @author Michael Reuter
+ */
+public final class ObservationLog implements ObservationSource {
+	/** Logging identifier. */
+	private static final String TAG = ObservationLog.class.getName();
+	/** Name of the journal file. */
+	public static final String JOURNAL_NAME = "observations.journal";
+	/** Name of the store file. */
+	public static final String STORE_NAME = "observations.store";
+	/** Journal size in bytes that starts a compaction. */
+	private static final long COMPACT_SIZE = 32 * 1024;
+	/** Wait in milliseconds before the first retry of a failed write. */
+	private static final long RETRY_DELAY = 1000L;
+	/** Longest wait in milliseconds between retries of a failed write. */
+	private static final long MAX_RETRY_DELAY = 60 * 1000L;
+	/** The process wide log instance. */
+	private static ObservationLog instance;
+	/** The thread that writes the journal and store. */
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "lct-observations");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	/** The task that writes the waiting observations. */
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			ObservationLog.this.flush();
+		}
+	};
+	/** The location of the store. */
+	private final File storeFile;
+	/** The journal of observations not yet in the store. */
+	private final ObservationJournal journal;
+	/** The compacted observations. */
+	private ObservationStore store;
+	/** Observations logged since the last compaction in sequence order. */
+	private final List<ObservationJournal.Entry> tail =
+			new ArrayList<ObservationJournal.Entry>();
+	/** Observations waiting to be written to the journal. */
+	private List<ObservationJournal.Entry> pending =
+			new ArrayList<ObservationJournal.Entry>();
+	/** Flag for a write that has been handed to the writer thread. */
+	private boolean flushQueued;
+	/** Wait in milliseconds before the next retry of a failed write. */
+	private long retryDelay = RETRY_DELAY;
+	/** The sequence number for the next observation. */
+	private long nextSequence;
+	/** The observed catalog identifiers keyed by observing club. */
+	private final Map<String, BitSet> observed = new HashMap<String, BitSet>();
+	/** The objects to tell about new observations. */
+	private final List<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * This interface is told about changes to the observed features.
+	 */
+	public interface Listener {
+		/**
+		 * This function is called after an observation is logged or the
+		 * display of the observed features should be updated.
+		 */
+		void onObservationsChanged();
+	}
+
+	/**
+	 * This function is the class constructor. It reads the store and the
+	 * journal entries that are not in it.
+	 * @param directory : The directory holding the log files.
+	 * @throws IOException
+	 */
+	private ObservationLog(File directory) throws IOException {
+		this.storeFile = new File(directory, STORE_NAME);
+		this.store = ObservationStore.open(this.storeFile);
+		this.journal = new ObservationJournal(new File(directory, JOURNAL_NAME));
+		this.observed.putAll(this.store.getObserved());
+		this.tail.addAll(this.journal.replay(this.store.getLastSequence()));
+		this.nextSequence = this.store.getLastSequence() + 1;
+		for (ObservationJournal.Entry entry : this.tail) {
+			this.nextSequence = Math.max(this.nextSequence, entry.sequence + 1);
+			this.markObserved(entry.observation);
+		}
+		Log.i(TAG, "Observations = " + (this.store.size() + this.tail.size()));
+	}
+
+	/**
+	 * This function returns the process wide log, loading it on first use.
+	 * The first call reads the log files, so it should be made off the main
+	 * thread.
+	 * @param context : The context used to find the log files.
+	 * @return : The observation log.
+	 * @throws IOException
+	 */
+	public static synchronized ObservationLog getInstance(Context context)
+			throws IOException {
+		if (null == instance) {
+			instance = new ObservationLog(context.getFilesDir());
+		}
+		return instance;
+	}
+
+	/**
+	 * This function returns the process wide log if it has been loaded. It
+	 * never reads the log files, so it can be used on the main thread.
+	 * @return : The observation log or null if it is not loaded.
+	 */
+	public static synchronized ObservationLog getLoadedInstance() {
+		return instance;
+	}
+
+	/**
+	 * This function adds an observation to the log. The observation counts
+	 * right away and is written to the journal in the background.
+	 * @param observation : The observation to add.
+	 */
+	public void log(Observation observation) {
+		synchronized (this) {
+			ObservationJournal.Entry entry = new ObservationJournal.Entry(
+					this.nextSequence++, observation);
+			this.tail.add(entry);
+			this.pending.add(entry);
+			this.markObserved(observation);
+			if (!this.flushQueued) {
+				this.flushQueued = true;
+				this.writer.execute(this.flushTask);
+			}
+		}
+		this.notifyListeners();
+	}
+
+	/**
+	 * This function checks if a feature has been observed for a club.
+	 * @param club : The observing club.
+	 * @param featureId : The catalog identifier of the feature.
+	 * @return : True if the feature has been observed.
+	 */
+	public synchronized boolean isObserved(String club, int featureId) {
+		BitSet clubObserved = this.observed.get(club);
+		return null != clubObserved && clubObserved.get(featureId);
+	}
+
+	/**
+	 * This function gets the features that have been observed for a club.
+	 * @param club : The observing club.
+	 * @return : A copy of the set of observed catalog identifiers.
+	 */
+	public synchronized BitSet getObserved(String club) {
+		BitSet clubObserved = this.observed.get(club);
+		return (null == clubObserved) ? new BitSet() : (BitSet)clubObserved.clone();
+	}
+
+	/**
+	 * This function gets the observations of a feature for a club.
+	 * @param club : The observing club.
+	 * @param featureId : The catalog identifier of the feature.
+	 * @return : The observations, the compacted ones in time order first.
+	 * @throws IOException
+	 */
+	public List<Observation> getObservations(String club, int featureId)
+			throws IOException {
+		ObservationStore current;
+		List<Observation> newer = new ArrayList<Observation>();
+		synchronized (this) {
+			current = this.store;
+			for (ObservationJournal.Entry entry : this.tail) {
+				Observation observation = entry.observation;
+				if (observation.getFeatureId() == featureId &&
+						observation.getClub().equals(club)) {
+					newer.add(observation);
+				}
+			}
+		}
+		List<Observation> observations = current.getObservations(club, featureId);
+		observations.addAll(newer);
+		return observations;
+	}
+
+	/**
+	 * This function hands every observation to a visitor without reading
+	 * the whole log into memory. The compacted observations come first in
+	 * club, feature and time order, followed by the newer ones in the order
+	 * logged. Observations logged during the visit may be left out.
+	 * @param visitor : The object to hand the observations to.
+	 * @throws IOException
+	 */
+	@Override
+	public void forEach(ObservationVisitor visitor) throws IOException {
+		ObservationStore current;
+		List<ObservationJournal.Entry> newer;
+		synchronized (this) {
+			current = this.store;
+			newer = new ArrayList<ObservationJournal.Entry>(this.tail);
+		}
+		current.forEach(visitor);
+		for (ObservationJournal.Entry entry : newer) {
+			visitor.visit(entry.observation);
+		}
+	}
+
+	/**
+	 * This function adds a listener for changes to the observed features.
+	 * It must be called from the main thread.
+	 * @param listener : The object to tell about changes.
+	 */
+	public void addListener(Listener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * This function removes a listener. It must be called from the main
+	 * thread.
+	 * @param listener : The object to stop telling about changes.
+	 */
+	public void removeListener(Listener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * This function tells the listeners that the observed features should
+	 * be shown again. It must be called from the main thread.
+	 */
+	public void notifyListeners() {
+		for (Listener listener : new ArrayList<Listener>(this.listeners)) {
+			listener.onObservationsChanged();
+		}
+	}
+
+	/**
+	 * This function sets the bit for an observed feature.
+	 * @param observation : The observation to add.
+	 */
+	private void markObserved(Observation observation) {
+		BitSet clubObserved = this.observed.get(observation.getClub());
+		if (null == clubObserved) {
+			clubObserved = new BitSet();
+			this.observed.put(observation.getClub(), clubObserved);
+		}
+		clubObserved.set(observation.getFeatureId());
+	}
+
+	/**
+	 * This function writes the waiting observations to the journal as one
+	 * batch and compacts the journal once it is large enough. It runs on the
+	 * writer thread. Observations logged while the batch is being synced
+	 * wait for the next batch. Observations that cannot be written at all
+	 * are dropped from the log first. If the write fails, the batch goes
+	 * back in front of the waiting observations and the write is tried
+	 * again later.
+	 */
+	private void flush() {
+		List<ObservationJournal.Entry> batch;
+		synchronized (this) {
+			batch = this.pending;
+			this.pending = new ArrayList<ObservationJournal.Entry>();
+			this.flushQueued = false;
+		}
+		for (int i = batch.size() - 1; i >= 0; i--) {
+			ObservationJournal.Entry entry = batch.get(i);
+			if (!ObservationJournal.isWritable(entry.observation)) {
+				// Retrying would fail the same way, so drop the entry rather
+				// than hold up the observations after it
+				Log.e(TAG, "Dropping observation " + entry.sequence +
+						" of feature " + entry.observation.getFeatureId() +
+						" as it is too large to write.");
+				batch.remove(i);
+				synchronized (this) {
+					this.tail.remove(entry);
+				}
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			this.journal.append(batch);
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Unable to write observations, retrying in " +
+					this.retryDelay + " ms.", e);
+			synchronized (this) {
+				batch.addAll(this.pending);
+				this.pending = batch;
+				// Observations logged before the retry join the batch
+				this.flushQueued = true;
+			}
+			this.writer.schedule(this.flushTask, this.retryDelay, TimeUnit.MILLISECONDS);
+			this.retryDelay = Math.min(this.retryDelay * 2, MAX_RETRY_DELAY);
+			return;
+		}
+		this.retryDelay = RETRY_DELAY;
+		try {
+			if (this.journal.size() >= COMPACT_SIZE) {
+				this.compact(batch.get(batch.size() - 1).sequence);
+			}
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Unable to compact observations.", e);
+		}
+	}
+
+	/**
+	 * This function merges the journal into a new store and empties the
+	 * journal. It runs on the writer thread after a batch, so the journal
+	 * holds exactly the entries up to the given sequence number.
+	 * @param lastSequence : The sequence number of the last written entry.
+	 * @throws IOException
+	 */
+	private void compact(long lastSequence) throws IOException {
+		ObservationStore current;
+		List<Observation> written = new ArrayList<Observation>();
+		synchronized (this) {
+			current = this.store;
+			for (ObservationJournal.Entry entry : this.tail) {
+				if (entry.sequence <= lastSequence) {
+					written.add(entry.observation);
+				}
+			}
+		}
+		ObservationStore compacted = ObservationStore.compact(this.storeFile,
+				current, written, lastSequence);
+		synchronized (this) {
+			this.store = compacted;
+			while (!this.tail.isEmpty() && this.tail.get(0).sequence <= lastSequence) {
+				this.tail.remove(0);
+			}
+		}
+		// The store now holds the entries, so a crash here only leaves
+		// journal entries that the next replay skips
+		this.journal.clear();
+		Log.i(TAG, "Compacted " + written.size() + " observations.");
+	}
+}
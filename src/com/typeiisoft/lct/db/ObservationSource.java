@@ -0,0 +1,19 @@
+package com.typeiisoft.lct.db;
+
+import java.io.IOException;
+
+/**
+ * This interface is a set of observations that can be read one entry at a
+ * time, so the exporters never need the whole set in memory. It keeps the
+ * exporters free of the Android parts of the observation log.
+ *
+ * @author Michael Reuter
+ */
+public interface ObservationSource {
+	/**
+	 * This function hands every observation to a visitor.
+	 * @param visitor : The object to hand the observations to.
+	 * @throws IOException
+	 */
+	void forEach(ObservationVisitor visitor) throws IOException;
+}
@@ -0,0 +1,451 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.Observation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class is the compacted part of the observation log. The store file
+ * holds every observation up to a sequence number, sorted by club, feature
+ * and time, with an index in front of the entries. The index gives the club
+ * and feature of each entry and where the entry starts, so the set of
+ * observed features comes from the index alone and the entries for one
+ * feature are found with a binary search. The file is read through a
+ * read-only memory mapping and is never changed. A compaction merges the
+ * old entries with the new ones into a new file beside it, syncs it and
+ * renames it into place, so a reader never sees a partial store.
+ * <p>
+ * The file layout is the magic number, the version, the last sequence
+ * number, the club names, the number of entries, the index rows (club code,
+ * feature identifier, entry offset and entry length) and then the entries.
+ *
+ * @author Michael Reuter
+ */
+final class ObservationStore {
+	/** Identifier at the start of the file ("LCTO"). */
+	private static final int MAGIC = 0x4c43544f;
+	/** Version of the file layout. */
+	private static final int VERSION = 1;
+	/** Size of an index row in bytes. */
+	private static final int INDEX_ROW_SIZE = 2 + 4 + 4 + 4;
+	/** Size of the buffer for entries being written. */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	/** The order of the entries in the store. */
+	private static final Comparator<Observation> ORDER = new Comparator<Observation>() {
+		@Override
+		public int compare(Observation arg0, Observation arg1) {
+			int value = arg0.getClub().compareTo(arg1.getClub());
+			if (0 == value) {
+				value = (arg0.getFeatureId() < arg1.getFeatureId()) ? -1 :
+					((arg0.getFeatureId() == arg1.getFeatureId()) ? 0 : 1);
+			}
+			if (0 == value) {
+				value = (arg0.getUtcTime() < arg1.getUtcTime()) ? -1 :
+					((arg0.getUtcTime() == arg1.getUtcTime()) ? 0 : 1);
+			}
+			return value;
+		}
+	};
+	/** The last sequence number held by the store. */
+	private final long lastSequence;
+	/** The club names by club code. */
+	private final String[] clubs;
+	/** The club code of each entry. */
+	private final short[] clubCodes;
+	/** The feature identifier of each entry. */
+	private final int[] featureIds;
+	/** The start of each entry in the mapped file. */
+	private final int[] offsets;
+	/** The length of each entry. */
+	private final int[] lengths;
+	/** The mapped file or null for an empty store. */
+	private final ByteBuffer buffer;
+
+	/**
+	 * This function is the class constructor for an empty store.
+	 */
+	private ObservationStore() {
+		this.lastSequence = 0L;
+		this.clubs = new String[0];
+		this.clubCodes = new short[0];
+		this.featureIds = new int[0];
+		this.offsets = new int[0];
+		this.lengths = new int[0];
+		this.buffer = null;
+	}
+
+	/**
+	 * This function is the class constructor. It reads the header and index
+	 * from the mapped file.
+	 * @param buffer : The mapped store file.
+	 * @throws IOException
+	 */
+	private ObservationStore(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Unknown observation store format.");
+		}
+		this.lastSequence = buffer.getLong();
+		this.clubs = new String[buffer.getShort()];
+		for (int i = 0; i < this.clubs.length; i++) {
+			this.clubs[i] = ObservationStore.readUtf(buffer);
+		}
+		int count = buffer.getInt();
+		this.clubCodes = new short[count];
+		this.featureIds = new int[count];
+		this.offsets = new int[count];
+		this.lengths = new int[count];
+		int entriesStart = buffer.position() + count * INDEX_ROW_SIZE;
+		for (int i = 0; i < count; i++) {
+			this.clubCodes[i] = buffer.getShort();
+			this.featureIds[i] = buffer.getInt();
+			this.offsets[i] = entriesStart + buffer.getInt();
+			this.lengths[i] = buffer.getInt();
+			if (this.offsets[i] + this.lengths[i] > buffer.limit()) {
+				throw new IOException("Observation store is truncated.");
+			}
+		}
+		this.buffer = buffer;
+	}
+
+	/**
+	 * This function opens a store file. A missing file is an empty store.
+	 * @param storeFile : The location of the store.
+	 * @return : The store.
+	 * @throws IOException
+	 */
+	static ObservationStore open(File storeFile) throws IOException {
+		if (!storeFile.exists()) {
+			return new ObservationStore();
+		}
+		RandomAccessFile file = new RandomAccessFile(storeFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			return new ObservationStore(buffer);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * This function writes a new store holding the entries of an old store
+	 * and a list of newer observations, then opens it. The old entries are
+	 * already sorted, so only the newer observations are sorted and the two
+	 * are merged straight into the new file. The bytes of an old entry are
+	 * copied from the mapped file without being read back, and the index
+	 * rows are written into the space left for them in front of the
+	 * entries, so only one entry is held in memory at a time.
+	 * @param storeFile : The location of the store.
+	 * @param old : The store being replaced.
+	 * @param newer : The observations to add in the order logged.
+	 * @param lastSequence : The sequence number of the last added entry.
+	 * @return : The new store.
+	 * @throws IOException
+	 */
+	static ObservationStore compact(File storeFile, ObservationStore old,
+			List<Observation> newer, long lastSequence) throws IOException {
+		List<Observation> added = new ArrayList<Observation>(newer);
+		// The sort is stable, so entries with the same time keep log order
+		Collections.sort(added, ORDER);
+
+		// The club codes follow the entry order, which is club name order
+		TreeSet<String> clubSet = new TreeSet<String>(Arrays.asList(old.clubs));
+		for (Observation observation : added) {
+			clubSet.add(observation.getClub());
+		}
+		String[] clubNames = clubSet.toArray(new String[clubSet.size()]);
+		short[] oldCodes = new short[old.clubs.length];
+		for (int i = 0; i < old.clubs.length; i++) {
+			oldCodes[i] = (short)Arrays.binarySearch(clubNames, old.clubs[i]);
+		}
+		int count = old.size() + added.size();
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeLong(lastSequence);
+		header.writeShort(clubNames.length);
+		for (String club : clubNames) {
+			header.writeUTF(club);
+		}
+		header.writeInt(count);
+
+		File parent = storeFile.getParentFile();
+		File temp = new File(parent, storeFile.getName() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(temp, "rw");
+		boolean complete = false;
+		try {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			long indexPosition = ObservationStore.write(channel,
+					ByteBuffer.wrap(headerBytes.toByteArray()), 0L);
+			long entryPosition = indexPosition + (long)count * INDEX_ROW_SIZE;
+			ByteBuffer indexRows = ByteBuffer.allocate(INDEX_ROW_SIZE * 256);
+			ByteBuffer entries = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+			ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+			DataOutputStream entryOutput = new DataOutputStream(entryBytes);
+			int offset = 0;
+			int oldRow = 0;
+			int addedRow = 0;
+			while (oldRow < old.size() || addedRow < added.size()) {
+				ByteBuffer entry;
+				int clubCode;
+				int featureId;
+				// Old entries come first on a tie since they were logged first
+				if (addedRow == added.size() || (oldRow < old.size() &&
+						old.compareTo(oldRow, added.get(addedRow)) <= 0)) {
+					entry = old.buffer.duplicate();
+					entry.limit(old.offsets[oldRow] + old.lengths[oldRow]);
+					entry.position(old.offsets[oldRow]);
+					clubCode = oldCodes[old.clubCodes[oldRow]];
+					featureId = old.featureIds[oldRow];
+					oldRow++;
+				}
+				else {
+					Observation observation = added.get(addedRow++);
+					entryBytes.reset();
+					ObservationJournal.writeObservation(entryOutput, observation);
+					entry = ByteBuffer.wrap(entryBytes.toByteArray());
+					clubCode = Arrays.binarySearch(clubNames, observation.getClub());
+					featureId = observation.getFeatureId();
+				}
+				int length = entry.remaining();
+				if (indexRows.remaining() < INDEX_ROW_SIZE) {
+					indexRows.flip();
+					indexPosition = ObservationStore.write(channel, indexRows, indexPosition);
+					indexRows.clear();
+				}
+				indexRows.putShort((short)clubCode);
+				indexRows.putInt(featureId);
+				indexRows.putInt(offset);
+				indexRows.putInt(length);
+				if (entries.remaining() < length) {
+					entries.flip();
+					entryPosition = ObservationStore.write(channel, entries, entryPosition);
+					entries.clear();
+				}
+				if (entries.remaining() < length) {
+					entryPosition = ObservationStore.write(channel, entry, entryPosition);
+				}
+				else {
+					entries.put(entry);
+				}
+				offset += length;
+			}
+			indexRows.flip();
+			ObservationStore.write(channel, indexRows, indexPosition);
+			entries.flip();
+			ObservationStore.write(channel, entries, entryPosition);
+			channel.force(true);
+			complete = true;
+		}
+		finally {
+			file.close();
+			if (!complete) {
+				temp.delete();
+			}
+		}
+		if (!temp.renameTo(storeFile)) {
+			temp.delete();
+			throw new IOException("Unable to replace " + storeFile);
+		}
+		return ObservationStore.open(storeFile);
+	}
+
+	/**
+	 * Getter for the last sequence number held by the store.
+	 * @return : The sequence number or zero for an empty store.
+	 */
+	long getLastSequence() {
+		return this.lastSequence;
+	}
+
+	/**
+	 * This function gets the number of entries in the store.
+	 * @return : The number of observations.
+	 */
+	int size() {
+		return this.featureIds.length;
+	}
+
+	/**
+	 * This function gets the features that have been observed for each club
+	 * from the index.
+	 * @return : The sets of observed catalog identifiers keyed by club.
+	 */
+	Map<String, BitSet> getObserved() {
+		Map<String, BitSet> observed = new HashMap<String, BitSet>();
+		BitSet[] byCode = new BitSet[this.clubs.length];
+		for (int i = 0; i < this.clubs.length; i++) {
+			byCode[i] = new BitSet();
+			observed.put(this.clubs[i], byCode[i]);
+		}
+		for (int i = 0; i < this.featureIds.length; i++) {
+			byCode[this.clubCodes[i]].set(this.featureIds[i]);
+		}
+		return observed;
+	}
+
+	/**
+	 * This function gets the observations of a feature for a club.
+	 * @param club : The observing club.
+	 * @param featureId : The catalog identifier of the feature.
+	 * @return : The observations in time order.
+	 * @throws IOException
+	 */
+	List<Observation> getObservations(String club, int featureId) throws IOException {
+		List<Observation> observations = new ArrayList<Observation>();
+		int code = this.getClubCode(club);
+		if (-1 == code) {
+			return observations;
+		}
+		// Find the first index row for the club and feature
+		int low = 0;
+		int high = this.featureIds.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.clubCodes[mid] < code || (this.clubCodes[mid] == code &&
+					this.featureIds[mid] < featureId)) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		for (int i = low; i < this.featureIds.length &&
+				this.clubCodes[i] == code && this.featureIds[i] == featureId; i++) {
+			observations.add(this.read(i));
+		}
+		return observations;
+	}
+
+	/**
+	 * This function reads the entries one at a time in store order. Only
+	 * the entry being visited is held in memory.
+	 * @param visitor : The object to hand the entries to.
+	 * @throws IOException
+	 */
+	void forEach(ObservationVisitor visitor) throws IOException {
+		for (int i = 0; i < this.featureIds.length; i++) {
+			visitor.visit(this.read(i));
+		}
+	}
+
+	/**
+	 * This function compares an entry with an observation in store order.
+	 * @param row : The index row of the entry.
+	 * @param observation : The observation to compare with.
+	 * @return : A negative number, zero or a positive number if the entry
+	 * comes before, with or after the observation.
+	 */
+	private int compareTo(int row, Observation observation) {
+		int value = this.clubs[this.clubCodes[row]].compareTo(observation.getClub());
+		if (0 == value) {
+			int featureId = this.featureIds[row];
+			value = (featureId < observation.getFeatureId()) ? -1 :
+				((featureId == observation.getFeatureId()) ? 0 : 1);
+		}
+		if (0 == value) {
+			long utcTime = this.getUtcTime(row);
+			value = (utcTime < observation.getUtcTime()) ? -1 :
+				((utcTime == observation.getUtcTime()) ? 0 : 1);
+		}
+		return value;
+	}
+
+	/**
+	 * This function reads the time of an entry without decoding the rest of
+	 * it. The time follows the feature identifier, the feature name and the
+	 * club name.
+	 * @param row : The index row of the entry.
+	 * @return : The UTC time of the observation.
+	 */
+	private long getUtcTime(int row) {
+		int position = this.offsets[row] + 4;
+		position += 2 + (this.buffer.getShort(position) & 0xffff);
+		position += 2 + (this.buffer.getShort(position) & 0xffff);
+		return this.buffer.getLong(position);
+	}
+
+	/**
+	 * This function finds the code of a club. The club names are written in
+	 * the order first found in the sorted entries, so the codes follow the
+	 * entry order.
+	 * @param club : The observing club.
+	 * @return : The club code or -1 if the club has no entries.
+	 */
+	private int getClubCode(String club) {
+		for (int i = 0; i < this.clubs.length; i++) {
+			if (this.clubs[i].equals(club)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * This function reads one entry.
+	 * @param row : The index row of the entry.
+	 * @return : The observation.
+	 * @throws IOException
+	 */
+	private Observation read(int row) throws IOException {
+		byte[] data = new byte[this.lengths[row]];
+		ByteBuffer entry = this.buffer.duplicate();
+		entry.position(this.offsets[row]);
+		entry.get(data);
+		return ObservationJournal.readObservation(
+				new DataInputStream(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * This function writes the rest of a buffer to a channel.
+	 * @param channel : The channel to write to.
+	 * @param data : The bytes to write.
+	 * @param position : The place in the channel to write them.
+	 * @return : The place just after the written bytes.
+	 * @throws IOException
+	 */
+	private static long write(FileChannel channel, ByteBuffer data, long position)
+			throws IOException {
+		while (data.hasRemaining()) {
+			position += channel.write(data, position);
+		}
+		return position;
+	}
+
+	/**
+	 * This function reads a string written by DataOutput.writeUTF.
+	 * @param buffer : The buffer to read from.
+	 * @return : The string.
+	 * @throws IOException
+	 */
+	private static String readUtf(ByteBuffer buffer) throws IOException {
+		int length = buffer.getShort() & 0xffff;
+		byte[] data = new byte[length + 2];
+		data[0] = (byte)(length >>> 8);
+		data[1] = (byte)length;
+		buffer.get(data, 2, length);
+		return new DataInputStream(new ByteArrayInputStream(data)).readUTF();
+	}
+}
@@ -0,0 +1,20 @@
+package com.typeiisoft.lct.db;
+
+import com.typeiisoft.lct.features.Observation;
+
+import java.io.IOException;
+
+/**
+ * This interface receives the observations when a log is read one entry
+ * at a time.
+ *
+ * @author Michael Reuter
+ */
+public interface ObservationVisitor {
+	/**
+	 * This function is called for each observation.
+	 * @param observation : The observation.
+	 * @throws IOException
+	 */
+	void visit(Observation observation) throws IOException;
+}
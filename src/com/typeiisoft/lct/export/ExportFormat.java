@@ -0,0 +1,46 @@
+package com.typeiisoft.lct.export;
+
+/**
+ * This enum holds the file formats the exporters can write.
+ *
+ * @author Michael Reuter
+ */
+public enum ExportFormat {
+	/** Comma separated values with a header row (RFC 4180). */
+	CSV("csv", "text/csv"),
+	/** A JSON array with one object per record. */
+	JSON("json", "application/json"),
+	/** An iCalendar file with one event per record (RFC 5545). */
+	ICALENDAR("ics", "text/calendar");
+
+	/** The file name extension. */
+	private final String extension;
+	/** The MIME type. */
+	private final String mimeType;
+
+	/**
+	 * This function is the enum constructor.
+	 * @param extension : The file name extension.
+	 * @param mimeType : The MIME type.
+	 */
+	private ExportFormat(String extension, String mimeType) {
+		this.extension = extension;
+		this.mimeType = mimeType;
+	}
+
+	/**
+	 * Getter for the file name extension.
+	 * @return : The extension without the dot.
+	 */
+	public String getExtension() {
+		return this.extension;
+	}
+
+	/**
+	 * Getter for the MIME type.
+	 * @return : The MIME type for sharing the file.
+	 */
+	public String getMimeType() {
+		return this.mimeType;
+	}
+}
@@ -0,0 +1,162 @@
+package com.typeiisoft.lct.export;
+
+import com.typeiisoft.lct.db.ObservationSource;
+import com.typeiisoft.lct.db.ObservationVisitor;
+import com.typeiisoft.lct.features.Observation;
+import com.typeiisoft.lct.utils.FastFormat;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class exports observation log entries for club submissions. The
+ * whole log can be streamed straight from the observation log files, so the
+ * entries are never all held in memory. Times are written in UTC and site
+ * coordinates as decimal degrees (north and east positive).
+ *
+ * @author Michael Reuter
+ */
+public final class ObservationExporter extends StreamingExporter<Observation> {
+	/** Digits kept after the decimal for the site coordinates. */
+	private static final int COORD_PRECISION = 4;
+
+	/**
+	 * This function is the class constructor.
+	 * @param out : The output to write to.
+	 * @param format : The format to write.
+	 */
+	public ObservationExporter(Writer out, ExportFormat format) {
+		super(out, format);
+	}
+
+	/**
+	 * This function writes every observation in a log and finishes the
+	 * file.
+	 * @param log : The observation log to export.
+	 * @return : The number of observations written.
+	 * @throws IOException
+	 */
+	public int export(ObservationSource log) throws IOException {
+		log.forEach(new ObservationVisitor() {
+			@Override
+			public void visit(Observation observation) throws IOException {
+				ObservationExporter.this.write(observation);
+			}
+		});
+		this.finish();
+		return this.getCount();
+	}
+
+	/**
+	 * This function appends the CSV header row.
+	 * @param buf : The buffer to append to.
+	 */
+	@Override
+	protected void appendCsvHeader(StringBuilder buf) {
+		buf.append("feature_id,feature,club,utc_time,site,site_latitude,")
+		.append("site_longitude,instrument,notes");
+	}
+
+	/**
+	 * This function appends an observation as a CSV row.
+	 * @param buf : The buffer to append to.
+	 * @param observation : The observation to write.
+	 */
+	@Override
+	protected void appendCsv(StringBuilder buf, Observation observation) {
+		ObservingSite site = observation.getSite();
+		buf.append(observation.getFeatureId()).append(',');
+		StreamingExporter.appendCsvField(buf, observation.getFeatureName());
+		buf.append(',');
+		StreamingExporter.appendCsvField(buf, observation.getClub());
+		buf.append(',');
+		FastFormat.appendUtcTime(buf, observation.getUtcTime(), false).append(',');
+		StreamingExporter.appendCsvField(buf, site.getName());
+		buf.append(',');
+		FastFormat.appendPlainDouble(buf, site.getLatitude(), COORD_PRECISION).append(',');
+		FastFormat.appendPlainDouble(buf, site.getLongitude(), COORD_PRECISION).append(',');
+		StreamingExporter.appendCsvField(buf, observation.getInstrument());
+		buf.append(',');
+		StreamingExporter.appendCsvField(buf, observation.getNotes());
+	}
+
+	/**
+	 * This function appends an observation as a JSON object.
+	 * @param buf : The buffer to append to.
+	 * @param observation : The observation to write.
+	 */
+	@Override
+	protected void appendJson(StringBuilder buf, Observation observation) {
+		ObservingSite site = observation.getSite();
+		buf.append("{\"featureId\":").append(observation.getFeatureId());
+		buf.append(",\"feature\":");
+		StreamingExporter.appendJsonString(buf, observation.getFeatureName());
+		buf.append(",\"club\":");
+		StreamingExporter.appendJsonString(buf, observation.getClub());
+		buf.append(",\"utcTime\":\"");
+		FastFormat.appendUtcTime(buf, observation.getUtcTime(), false).append('"');
+		buf.append(",\"site\":{\"name\":");
+		StreamingExporter.appendJsonString(buf, site.getName());
+		buf.append(",\"latitude\":");
+		StreamingExporter.appendJsonNumber(buf, site.getLatitude(), COORD_PRECISION);
+		buf.append(",\"longitude\":");
+		StreamingExporter.appendJsonNumber(buf, site.getLongitude(), COORD_PRECISION);
+		buf.append("},\"instrument\":");
+		StreamingExporter.appendJsonString(buf, observation.getInstrument());
+		buf.append(",\"notes\":");
+		StreamingExporter.appendJsonString(buf, observation.getNotes());
+		buf.append('}');
+	}
+
+	/**
+	 * This function appends an observation as an iCalendar event at the
+	 * time of the observation.
+	 * @param buf : The buffer to append to.
+	 * @param observation : The observation to write.
+	 */
+	@Override
+	protected void appendEvent(StringBuilder buf, Observation observation) {
+		ObservingSite site = observation.getSite();
+		int line = buf.length();
+		buf.append("UID:obs-");
+		StreamingExporter.appendIcsText(buf, observation.getClub());
+		buf.append('-').append(observation.getFeatureId()).append('-')
+		.append(observation.getUtcTime()).append("@lct.typeiisoft.com");
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("DTSTART:");
+		FastFormat.appendUtcTime(buf, observation.getUtcTime(), true);
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("SUMMARY:");
+		StreamingExporter.appendIcsText(buf, observation.getFeatureName());
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("LOCATION:");
+		StreamingExporter.appendIcsText(buf, site.getName());
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("GEO:");
+		FastFormat.appendPlainDouble(buf, site.getLatitude(), COORD_PRECISION).append(';');
+		FastFormat.appendPlainDouble(buf, site.getLongitude(), COORD_PRECISION);
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("DESCRIPTION:Club: ");
+		StreamingExporter.appendIcsText(buf, observation.getClub());
+		if (observation.getInstrument().length() > 0) {
+			buf.append("\\nInstrument: ");
+			StreamingExporter.appendIcsText(buf, observation.getInstrument());
+		}
+		if (observation.getNotes().length() > 0) {
+			buf.append("\\n");
+			StreamingExporter.appendIcsText(buf, observation.getNotes());
+		}
+		StreamingExporter.endIcsLine(buf, line);
+	}
+}
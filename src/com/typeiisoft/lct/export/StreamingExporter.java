@@ -0,0 +1,368 @@
+package com.typeiisoft.lct.export;
+
+import com.typeiisoft.lct.utils.FastFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class is the base for the exporters that write records as CSV, JSON
+ * or iCalendar. Records are written one at a time: each one is formatted
+ * into a reused row buffer and copied to the output through a reused
+ * character array, so memory use does not grow with the number of records
+ * and the output is never built up as a whole. The output is wrapped in a
+ * BufferedWriter unless it already is one. To write to an NIO channel, use
+ * a writer from {@link java.nio.channels.Channels#newWriter}. The writer is
+ * flushed but not closed by {@link #finish()}.
+ *
+ * @author Michael Reuter
+ * @param <T> : The type of the exported records.
+ */
+public abstract class StreamingExporter<T> {
+	/** Size of the output buffer in characters. */
+	private static final int BUFFER_SIZE = 8192;
+	/** Largest row buffer kept between records in characters. */
+	private static final int MAX_KEPT_ROW = 4096;
+	/** Initial size of the row buffer in characters. */
+	private static final int ROW_SIZE = 256;
+	/** Largest length of an iCalendar line in octets. */
+	private static final int ICS_LINE_OCTETS = 75;
+	/** Line ending for CSV and iCalendar. */
+	private static final String CRLF = "\r\n";
+	/** Product identifier for the iCalendar files. */
+	private static final String ICS_PRODUCT = "-//Type II Software//Lunar Club Tools//EN";
+	/** The output. */
+	private final Writer out;
+	/** The format being written. */
+	private final ExportFormat format;
+	/** The time of the export for the iCalendar time stamps. */
+	private final long exportTime;
+	/** The buffer each record is formatted into. */
+	private StringBuilder row = new StringBuilder(ROW_SIZE);
+	/** The array used to copy the row buffer to the output. */
+	private char[] chars = new char[ROW_SIZE];
+	/** Number of records written. */
+	private int count;
+	/** Flag for the start of the file having been written. */
+	private boolean started;
+	/** Flag for the end of the file having been written. */
+	private boolean finished;
+
+	/**
+	 * This function is the class constructor.
+	 * @param out : The output to write to.
+	 * @param format : The format to write.
+	 */
+	protected StreamingExporter(Writer out, ExportFormat format) {
+		this.out = (out instanceof BufferedWriter) ? out :
+			new BufferedWriter(out, BUFFER_SIZE);
+		this.format = format;
+		this.exportTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Getter for the format being written.
+	 * @return : The export format.
+	 */
+	public ExportFormat getFormat() {
+		return this.format;
+	}
+
+	/**
+	 * This function gets the number of records written so far.
+	 * @return : The number of records.
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * This function writes one record.
+	 * @param record : The record to write.
+	 * @throws IOException
+	 */
+	public void write(T record) throws IOException {
+		if (this.finished) {
+			throw new IllegalStateException("Export is finished.");
+		}
+		this.start();
+		StringBuilder buf = this.row;
+		buf.setLength(0);
+		switch (this.format) {
+		case CSV:
+			this.appendCsv(buf, record);
+			buf.append(CRLF);
+			break;
+		case JSON:
+			buf.append(0 == this.count ? "\n" : ",\n");
+			this.appendJson(buf, record);
+			break;
+		case ICALENDAR:
+			buf.append("BEGIN:VEVENT").append(CRLF);
+			int line = buf.length();
+			buf.append("DTSTAMP:");
+			FastFormat.appendUtcTime(buf, this.exportTime, true);
+			StreamingExporter.endIcsLine(buf, line);
+			this.appendEvent(buf, record);
+			buf.append("END:VEVENT").append(CRLF);
+			break;
+		}
+		this.flushRow();
+		this.count++;
+	}
+
+	/**
+	 * This function writes the end of the file and flushes the output. An
+	 * export with no records is still a complete file.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (this.finished) {
+			return;
+		}
+		this.start();
+		this.row.setLength(0);
+		switch (this.format) {
+		case CSV:
+			break;
+		case JSON:
+			this.row.append(0 == this.count ? "]\n" : "\n]\n");
+			break;
+		case ICALENDAR:
+			this.row.append("END:VCALENDAR").append(CRLF);
+			break;
+		}
+		this.flushRow();
+		this.out.flush();
+		this.finished = true;
+	}
+
+	/**
+	 * This function appends the CSV header row without the line ending.
+	 * @param buf : The buffer to append to.
+	 */
+	protected abstract void appendCsvHeader(StringBuilder buf);
+
+	/**
+	 * This function appends a record as a CSV row without the line ending.
+	 * @param buf : The buffer to append to.
+	 * @param record : The record to write.
+	 */
+	protected abstract void appendCsv(StringBuilder buf, T record);
+
+	/**
+	 * This function appends a record as a JSON object.
+	 * @param buf : The buffer to append to.
+	 * @param record : The record to write.
+	 */
+	protected abstract void appendJson(StringBuilder buf, T record);
+
+	/**
+	 * This function appends the properties of an iCalendar event for a
+	 * record. The event start and end lines and the time stamp are written
+	 * by the caller.
+	 * @param buf : The buffer to append to.
+	 * @param record : The record to write.
+	 */
+	protected abstract void appendEvent(StringBuilder buf, T record);
+
+	/**
+	 * This function appends a CSV field, quoting it if it holds a comma,
+	 * quote or line break.
+	 * @param buf : The buffer to append to.
+	 * @param value : The field value.
+	 */
+	protected static void appendCsvField(StringBuilder buf, CharSequence value) {
+		int length = value.length();
+		boolean quote = false;
+		for (int i = 0; i < length && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			buf.append(value);
+			return;
+		}
+		buf.append('"');
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				buf.append('"');
+			}
+			buf.append(c);
+		}
+		buf.append('"');
+	}
+
+	/**
+	 * This function appends a JSON string with its quotes.
+	 * @param buf : The buffer to append to.
+	 * @param value : The string value.
+	 */
+	protected static void appendJsonString(StringBuilder buf, CharSequence value) {
+		buf.append('"');
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				// Control characters and the JavaScript line separators
+				if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+					buf.append("\\u");
+					for (int shift = 12; shift >= 0; shift -= 4) {
+						buf.append(Character.forDigit((c >> shift) & 0xf, 16));
+					}
+				}
+				else {
+					buf.append(c);
+				}
+			}
+		}
+		buf.append('"');
+	}
+
+	/**
+	 * This function appends a JSON number in the fixed form. Values that
+	 * JSON cannot hold are written as null.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value.
+	 * @param precision : The number of digits after the decimal to keep.
+	 */
+	protected static void appendJsonNumber(StringBuilder buf, double value,
+			int precision) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			buf.append("null");
+		}
+		else {
+			FastFormat.appendPlainDouble(buf, value, precision);
+		}
+	}
+
+	/**
+	 * This function appends iCalendar text with the special characters
+	 * escaped.
+	 * @param buf : The buffer to append to.
+	 * @param value : The text value.
+	 */
+	protected static void appendIcsText(StringBuilder buf, CharSequence value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+			case ';':
+			case ',':
+				buf.append('\\').append(c);
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				break;
+			default:
+				buf.append(c);
+			}
+		}
+	}
+
+	/**
+	 * This function ends an iCalendar content line, folding it so that no
+	 * line is longer than 75 octets of UTF-8. Characters outside the Basic
+	 * Multilingual Plane are not split.
+	 * @param buf : The buffer holding the line.
+	 * @param start : The start of the line in the buffer.
+	 */
+	protected static void endIcsLine(StringBuilder buf, int start) {
+		int octets = 0;
+		for (int i = start; i < buf.length(); i++) {
+			char c = buf.charAt(i);
+			int size;
+			if (c < 0x80) {
+				size = 1;
+			}
+			else if (c < 0x800) {
+				size = 2;
+			}
+			else if (Character.isHighSurrogate(c)) {
+				size = 4;
+			}
+			else if (Character.isLowSurrogate(c)) {
+				size = 0;
+			}
+			else {
+				size = 3;
+			}
+			if (octets + size > ICS_LINE_OCTETS) {
+				// The leading space of the next line counts toward its length
+				buf.insert(i, CRLF + " ");
+				i += 3;
+				octets = 1;
+			}
+			octets += size;
+		}
+		buf.append(CRLF);
+	}
+
+	/**
+	 * This function writes the start of the file if it has not been written.
+	 * @throws IOException
+	 */
+	private void start() throws IOException {
+		if (this.started) {
+			return;
+		}
+		this.started = true;
+		this.row.setLength(0);
+		switch (this.format) {
+		case CSV:
+			this.appendCsvHeader(this.row);
+			this.row.append(CRLF);
+			break;
+		case JSON:
+			this.row.append('[');
+			break;
+		case ICALENDAR:
+			this.row.append("BEGIN:VCALENDAR").append(CRLF);
+			this.row.append("VERSION:2.0").append(CRLF);
+			this.row.append("PRODID:").append(ICS_PRODUCT).append(CRLF);
+			this.row.append("CALSCALE:GREGORIAN").append(CRLF);
+			break;
+		}
+		this.flushRow();
+	}
+
+	/**
+	 * This function copies the row buffer to the output. A row buffer that
+	 * grew large for one record is dropped so it is not held for the rest of
+	 * the export.
+	 * @throws IOException
+	 */
+	private void flushRow() throws IOException {
+		int length = this.row.length();
+		if (this.chars.length < length) {
+			this.chars = new char[Math.max(length, this.chars.length * 2)];
+		}
+		this.row.getChars(0, length, this.chars, 0);
+		this.out.write(this.chars, 0, length);
+		if (this.row.capacity() > MAX_KEPT_ROW) {
+			this.row = new StringBuilder(ROW_SIZE);
+			this.chars = new char[ROW_SIZE];
+		}
+	}
+}
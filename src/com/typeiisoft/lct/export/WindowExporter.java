@@ -0,0 +1,161 @@
+package com.typeiisoft.lct.export;
+
+import com.typeiisoft.lct.features.LiveVisibilityTracker;
+import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.features.VisibilityWindow;
+import com.typeiisoft.lct.utils.FastFormat;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class exports feature visibility windows so they can be planned
+ * around in a spreadsheet or calendar. The windows are written as they come
+ * from the source, so a long search can be streamed without being held in
+ * memory. Window times are written in UTC to the second and feature
+ * coordinates as selenographic decimal degrees.
+ *
+ * @author Michael Reuter
+ */
+public final class WindowExporter extends StreamingExporter<VisibilityWindow> {
+	/** Milliseconds in a day. */
+	private static final double MILLISECONDS_PER_DAY = 86400000.0;
+	/** Digits kept after the decimal for the feature coordinates. */
+	private static final int COORD_PRECISION = 2;
+	/** Digits kept after the decimal for the window durations. */
+	private static final int DURATION_PRECISION = 4;
+
+	/**
+	 * This function is the class constructor.
+	 * @param out : The output to write to.
+	 * @param format : The format to write.
+	 */
+	public WindowExporter(Writer out, ExportFormat format) {
+		super(out, format);
+	}
+
+	/**
+	 * This function writes every window from a source and finishes the
+	 * file.
+	 * @param windows : The windows to export.
+	 * @return : The number of windows written.
+	 * @throws IOException
+	 */
+	public int export(Iterable<VisibilityWindow> windows) throws IOException {
+		for (VisibilityWindow window : windows) {
+			this.write(window);
+		}
+		this.finish();
+		return this.getCount();
+	}
+
+	/**
+	 * This function appends the CSV header row.
+	 * @param buf : The buffer to append to.
+	 */
+	@Override
+	protected void appendCsvHeader(StringBuilder buf) {
+		buf.append("feature_id,feature,feature_type,latitude,longitude,")
+		.append("start_utc,end_utc,duration_days");
+	}
+
+	/**
+	 * This function appends a window as a CSV row.
+	 * @param buf : The buffer to append to.
+	 * @param window : The window to write.
+	 */
+	@Override
+	protected void appendCsv(StringBuilder buf, VisibilityWindow window) {
+		LunarFeature feature = window.getFeature();
+		buf.append(feature.getId()).append(',');
+		StreamingExporter.appendCsvField(buf, feature.getName());
+		buf.append(',');
+		StreamingExporter.appendCsvField(buf, feature.getFeatureType());
+		buf.append(',');
+		FastFormat.appendPlainDouble(buf, feature.getLatitude(), COORD_PRECISION).append(',');
+		FastFormat.appendPlainDouble(buf, feature.getLongitude(), COORD_PRECISION).append(',');
+		FastFormat.appendUtcTime(buf, WindowExporter.toUtcTime(window.getStartJd()),
+				false).append(',');
+		FastFormat.appendUtcTime(buf, WindowExporter.toUtcTime(window.getEndJd()),
+				false).append(',');
+		FastFormat.appendPlainDouble(buf, window.getDuration(), DURATION_PRECISION);
+	}
+
+	/**
+	 * This function appends a window as a JSON object.
+	 * @param buf : The buffer to append to.
+	 * @param window : The window to write.
+	 */
+	@Override
+	protected void appendJson(StringBuilder buf, VisibilityWindow window) {
+		LunarFeature feature = window.getFeature();
+		buf.append("{\"featureId\":").append(feature.getId());
+		buf.append(",\"feature\":");
+		StreamingExporter.appendJsonString(buf, feature.getName());
+		buf.append(",\"featureType\":");
+		StreamingExporter.appendJsonString(buf, feature.getFeatureType());
+		buf.append(",\"latitude\":");
+		StreamingExporter.appendJsonNumber(buf, feature.getLatitude(), COORD_PRECISION);
+		buf.append(",\"longitude\":");
+		StreamingExporter.appendJsonNumber(buf, feature.getLongitude(), COORD_PRECISION);
+		buf.append(",\"start\":\"");
+		FastFormat.appendUtcTime(buf, WindowExporter.toUtcTime(window.getStartJd()),
+				false).append('"');
+		buf.append(",\"end\":\"");
+		FastFormat.appendUtcTime(buf, WindowExporter.toUtcTime(window.getEndJd()),
+				false).append('"');
+		buf.append(",\"durationDays\":");
+		StreamingExporter.appendJsonNumber(buf, window.getDuration(), DURATION_PRECISION);
+		buf.append('}');
+	}
+
+	/**
+	 * This function appends a window as an iCalendar event spanning the
+	 * window.
+	 * @param buf : The buffer to append to.
+	 * @param window : The window to write.
+	 */
+	@Override
+	protected void appendEvent(StringBuilder buf, VisibilityWindow window) {
+		LunarFeature feature = window.getFeature();
+		long start = WindowExporter.toUtcTime(window.getStartJd());
+		int line = buf.length();
+		buf.append("UID:vis-").append(feature.getId()).append('-').append(start)
+		.append("@lct.typeiisoft.com");
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("DTSTART:");
+		FastFormat.appendUtcTime(buf, start, true);
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("DTEND:");
+		FastFormat.appendUtcTime(buf, WindowExporter.toUtcTime(window.getEndJd()), true);
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("SUMMARY:");
+		StreamingExporter.appendIcsText(buf, feature.getName());
+		buf.append(" visible");
+		StreamingExporter.endIcsLine(buf, line);
+
+		line = buf.length();
+		buf.append("DESCRIPTION:");
+		StreamingExporter.appendIcsText(buf, feature.getFeatureType());
+		buf.append(" at ");
+		FastFormat.appendLatitude(buf, feature.getLatitude()).append(' ');
+		FastFormat.appendLongitude(buf, feature.getLongitude());
+		StreamingExporter.endIcsLine(buf, line);
+	}
+
+	/**
+	 * This function converts a Julian date to a Java time rounded to the
+	 * millisecond.
+	 * @param jd : The Julian date.
+	 * @return : The UTC time in milliseconds since the epoch.
+	 */
+	private static long toUtcTime(double jd) {
+		return Math.round((jd - LiveVisibilityTracker.EPOCH_JD) * MILLISECONDS_PER_DAY);
+	}
+}
@@ -0,0 +1,77 @@
+package com.typeiisoft.lct.features;
+
+/**
+ * This class holds the best time in a night to observe a lunar feature
+ * along with the score of that time. The time is a UTC Julian date. Best
+ * times are ordered by time, then by highest score.
+ *
+ * @author Michael Reuter
+ */
+public final class BestTime implements Comparable<BestTime> {
+	/** The lunar feature to observe. */
+	private final LunarFeature feature;
+	/** Julian date of the best time. */
+	private final double jd;
+	/** Score of the best time between zero and one. */
+	private final double score;
+
+	/**
+	 * This function is the class constructor.
+	 * @param feature : The lunar feature to observe.
+	 * @param jd : The Julian date of the best time.
+	 * @param score : The score of the best time.
+	 */
+	public BestTime(LunarFeature feature, double jd, double score) {
+		this.feature = feature;
+		this.jd = jd;
+		this.score = score;
+	}
+
+	/**
+	 * Getter for the feature to observe.
+	 * @return : The lunar feature.
+	 */
+	public LunarFeature getFeature() {
+		return this.feature;
+	}
+
+	/**
+	 * Getter for the best time.
+	 * @return : The Julian date of the best time.
+	 */
+	public double getJd() {
+		return this.jd;
+	}
+
+	/**
+	 * Getter for the score of the best time. One is the Moon high in a
+	 * dark sky with the terminator right at the feature.
+	 * @return : The score between zero and one.
+	 */
+	public double getScore() {
+		return this.score;
+	}
+
+	/**
+	 * This function orders the best times by time, then by highest score.
+	 * @param other : The best time to compare against.
+	 * @return : The standard comparison value.
+	 */
+	@Override
+	public int compareTo(BestTime other) {
+		int value = Double.compare(this.jd, other.jd);
+		if (0 == value) {
+			value = Double.compare(other.score, this.score);
+		}
+		return value;
+	}
+
+	/**
+	 * This function creates a string representation of the best time.
+	 * @return : The best time's string representation.
+	 */
+	public String toString() {
+		return this.feature.getName() + ": " + Double.toString(this.jd) +
+				" (" + Double.toString(this.score) + ")";
+	}
+}
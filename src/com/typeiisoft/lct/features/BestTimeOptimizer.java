@@ -0,0 +1,249 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.EphemerisCache;
+import com.typeiisoft.lct.utils.MoonInfo;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import com.mhuss.AstroLib.NoInitException;
+import com.mhuss.AstroLib.ObsInfo;
+import com.mhuss.AstroLib.PlanetData;
+import com.mhuss.AstroLib.Planets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class finds the best time in a night to observe each feature of a
+ * table from an observing site. The night is sampled at a fixed step and
+ * every sample is given a score for each feature from three factors:
+ * <ul>
+ * <li>The Moon's altitude at the site, as the sine of the altitude, and
+ * zero below {@link #MIN_MOON_ALTITUDE}.</li>
+ * <li>The darkness of the sky, going from zero at sunset to one when the
+ * Sun is {@link #DARK_ALTITUDE} degrees below the horizon.</li>
+ * <li>The closeness of the terminator, going from one with the SELCO at the
+ * feature's edge to zero at the feature's cutoff. Features with no cutoff
+ * always get one. The feature must also pass the {@link MoonInfo} SELCO
+ * window and libration checks.</li>
+ * </ul>
+ * The Moon and Sun positions and the Moon state are calculated once per
+ * sample and shared by the whole table, so the catalog is covered in one
+ * pass over the samples instead of one Moon calculation per sample per
+ * feature.
+ *
+ * @author Michael Reuter
+ */
+public final class BestTimeOptimizer {
+	/** Default time between samples in days (ten minutes). */
+	public static final double DEFAULT_STEP = 1.0 / 144.0;
+	/** Lowest Moon altitude worth observing at in degrees. */
+	public static final double MIN_MOON_ALTITUDE = 10D;
+	/** Sun altitude at sunset in degrees. */
+	public static final double SUNSET_ALTITUDE = -0.833;
+	/** Sun altitude where the sky is fully dark in degrees. */
+	public static final double DARK_ALTITUDE = -12D;
+	/** The features to find the best times for. */
+	private final FeatureTable table;
+	/** The observer location for the Moon and Sun positions. */
+	private final ObsInfo obsInfo;
+	/** The longitude of the site in degrees. East is positive. */
+	private final double siteLongitude;
+	/** Time between samples in days. */
+	private final double step;
+	/** The ephemeris to calculate the Moon state from. */
+	private EphemerisCache ephemeris;
+
+	/**
+	 * This function is the class constructor with the default step.
+	 * @param table : The features to find the best times for.
+	 * @param site : The observing site.
+	 * @param ephemeris : The ephemeris to calculate the Moon state from or
+	 * null to make one for each night.
+	 */
+	public BestTimeOptimizer(FeatureTable table, ObservingSite site,
+			EphemerisCache ephemeris) {
+		this(table, site, ephemeris, DEFAULT_STEP);
+	}
+
+	/**
+	 * This function is the class constructor.
+	 * @param table : The features to find the best times for.
+	 * @param site : The observing site.
+	 * @param ephemeris : The ephemeris to calculate the Moon state from or
+	 * null to make one for each night.
+	 * @param step : The time between samples in days.
+	 */
+	public BestTimeOptimizer(FeatureTable table, ObservingSite site,
+			EphemerisCache ephemeris, double step) {
+		if (step <= 0.0) {
+			throw new IllegalArgumentException("Bad best time step.");
+		}
+		this.table = table;
+		this.obsInfo = new ObsInfo();
+		this.obsInfo.setLatitudeDeg(site.getLatitude());
+		this.obsInfo.setLongitudeDeg(site.getLongitude());
+		this.siteLongitude = site.getLongitude();
+		this.ephemeris = ephemeris;
+		this.step = step;
+	}
+
+	/**
+	 * This function finds the start of the night holding the given time. The
+	 * night runs from local mean noon at the site to the next local mean
+	 * noon, so it does not depend on the time zone or daylight time.
+	 * @param jd : The Julian date within the night.
+	 * @return : The Julian date of the night's start.
+	 */
+	public double getNightStart(double jd) {
+		double dayFraction = (jd + this.siteLongitude / 360.0) % 1.0;
+		if (dayFraction < 0.0) {
+			dayFraction += 1.0;
+		}
+		return jd - dayFraction;
+	}
+
+	/**
+	 * This function finds the best times for the night holding the given
+	 * time.
+	 * @param jd : The Julian date within the night.
+	 * @return : The best times sorted by time.
+	 */
+	public List<BestTime> optimizeNight(double jd) {
+		double startJd = this.getNightStart(jd);
+		return this.optimize(startJd, startJd + 1.0);
+	}
+
+	/**
+	 * This function finds the best time between two dates for each feature.
+	 * Features that cannot be observed at any of the samples are left out.
+	 * @param startJd : The Julian date to start from.
+	 * @param endJd : The Julian date to end at.
+	 * @return : The best times sorted by time.
+	 */
+	public List<BestTime> optimize(double startJd, double endJd) {
+		if (endJd <= startJd) {
+			throw new IllegalArgumentException("Bad best time span.");
+		}
+		if (null == this.ephemeris || !this.ephemeris.covers(startJd) ||
+				!this.ephemeris.covers(endJd)) {
+			this.ephemeris = new EphemerisCache(startJd, endJd);
+		}
+		int numSteps = (int)Math.ceil((endJd - startJd) / this.step);
+		double stepSize = (endJd - startJd) / numSteps;
+
+		// The shared per sample values
+		double[] sampleJd = new double[numSteps + 1];
+		double[] weight = new double[numSteps + 1];
+		for (int k = 0; k <= numSteps; k++) {
+			sampleJd[k] = (k == numSteps) ? endJd : startJd + k * stepSize;
+			weight[k] = this.moonFactor(sampleJd[k]) * this.darkFactor(sampleJd[k]);
+		}
+
+		int size = this.table.size();
+		double[] cutoff = new double[size];
+		for (int i = 0; i < size; i++) {
+			cutoff[i] = MoonInfo.featureCutoff(this.table.getLatitude(i));
+		}
+		double[] bestScore = new double[size];
+		double[] bestJd = new double[size];
+		Arrays.fill(bestJd, Double.NaN);
+
+		for (int k = 0; k <= numSteps; k++) {
+			if (weight[k] <= 0.0) {
+				continue;
+			}
+			double jd = sampleJd[k];
+			double phaseAngle = this.ephemeris.evaluate(
+					EphemerisCache.Quantity.PHASE_ANGLE, jd);
+			double selcoLong = MoonInfo.selcoLongitude(this.ephemeris.evaluate(
+					EphemerisCache.Quantity.COLONGITUDE, jd), phaseAngle);
+			boolean isMorning = MoonInfo.isMorning(phaseAngle);
+			double libLatitude = this.ephemeris.evaluate(
+					EphemerisCache.Quantity.LIBRATION_LATITUDE, jd);
+			double libLongitude = this.ephemeris.evaluate(
+					EphemerisCache.Quantity.LIBRATION_LONGITUDE, jd);
+			for (int i = 0; i < size; i++) {
+				if (!MoonInfo.isVisible(this.table, i, selcoLong, isMorning,
+						libLatitude, libLongitude)) {
+					continue;
+				}
+				double score = weight[k] * this.terminatorFactor(i, selcoLong,
+						isMorning, cutoff[i]);
+				if (score > bestScore[i]) {
+					bestScore[i] = score;
+					bestJd[i] = jd;
+				}
+			}
+		}
+
+		List<BestTime> bestTimes = new ArrayList<BestTime>();
+		for (int i = 0; i < size; i++) {
+			if (bestScore[i] > 0.0) {
+				bestTimes.add(new BestTime(this.table.getFeature(i), bestJd[i],
+						bestScore[i]));
+			}
+		}
+		Collections.sort(bestTimes);
+		return bestTimes;
+	}
+
+	/**
+	 * This function calculates the Moon altitude factor for a sample.
+	 * @param jd : The Julian date of the sample.
+	 * @return : The sine of the Moon's altitude or zero if it is too low.
+	 */
+	private double moonFactor(double jd) {
+		double altitude = this.altitude(Planets.LUNA, jd);
+		if (altitude < MIN_MOON_ALTITUDE) {
+			return 0.0;
+		}
+		return Math.sin(Math.toRadians(altitude));
+	}
+
+	/**
+	 * This function calculates the darkness factor for a sample.
+	 * @param jd : The Julian date of the sample.
+	 * @return : Zero in daylight rising to one in a dark sky.
+	 */
+	private double darkFactor(double jd) {
+		double altitude = this.altitude(Planets.SUN, jd);
+		double factor = (SUNSET_ALTITUDE - altitude) / (SUNSET_ALTITUDE - DARK_ALTITUDE);
+		return Math.max(0.0, Math.min(1.0, factor));
+	}
+
+	/**
+	 * This function calculates the altitude of the Moon or Sun at the site.
+	 * @param planet : The body to calculate the altitude of.
+	 * @param jd : The Julian date of the sample.
+	 * @return : The altitude in degrees.
+	 */
+	private double altitude(int planet, double jd) {
+		try {
+			return Math.toDegrees(new PlanetData(planet, jd, this.obsInfo).getAltAzLat());
+		}
+		catch (NoInitException nie) {
+			throw new IllegalStateException("Planet data is not initialized.");
+		}
+	}
+
+	/**
+	 * This function calculates the terminator factor for a visible feature.
+	 * @param row : The table row of the feature.
+	 * @param selcoLong : The lunar longitude of the SELCO.
+	 * @param isMorning : True if it is morning on the Moon.
+	 * @param cutoff : The latitude scaled longitude cutoff of the feature.
+	 * @return : One with the terminator at the feature's edge, falling to
+	 * zero at the cutoff.
+	 */
+	private double terminatorFactor(int row, double selcoLong, boolean isMorning,
+			double cutoff) {
+		if (this.table.isNoCutoff(row)) {
+			return 1.0;
+		}
+		double distance = isMorning ? this.table.getMinLongitude(row) - selcoLong :
+			selcoLong - this.table.getMaxLongitude(row);
+		return Math.max(0.0, 1.0 - distance / cutoff);
+	}
+}
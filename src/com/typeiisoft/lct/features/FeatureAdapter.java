@@ -1,11 +1,17 @@
 package com.typeiisoft.lct.features;
 
 import com.typeiisoft.lct.R;
+import com.typeiisoft.lct.db.ObservationLog;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import android.animation.ObjectAnimator;
 import android.content.Context;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,18 +19,40 @@ import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
 /**
- * This class handles creating the item views for any of the Lunar feature 
- * lists.
- * 
+ * This class handles creating the item views for any of the Lunar feature
+ * lists. Item views are recycled through a holder. When the list changes,
+ * the backing list is merged with the new features, so rows that stay keep
+ * their objects, the list keeps its scroll position and only the new rows
+ * are faded in. ListView has no way to be told about single inserted or
+ * removed rows, so each change still ends with notifyDataSetChanged, which
+ * binds every row on screen again through the recycled views. Features
+ * already in the observation log for the list's club are greyed out or
+ * hidden.
+ *
  * @author Michael Reuter
  */
 public class FeatureAdapter extends ArrayAdapter<LunarFeature> {
-	/** Logging identifier. */
-	private static final String TAG = FeatureAdapter.class.getName();
-	/** Associated activity context. */
-	private final Context context;
-	/** Holder for the list of features. */
+	/** Time for fading in a new row in milliseconds. */
+	private static final long FADE_DURATION = 300L;
+	/** Transparency of the rows for observed features. */
+	private static final float OBSERVED_ALPHA = 0.4f;
+	/** Object for creating the item views. */
+	private final LayoutInflater inflater;
+	/** Holder for the list of features shown. */
 	private final ArrayList<LunarFeature> features;
+	/** Holder for the list of visible features including hidden ones. */
+	private ArrayList<LunarFeature> allFeatures;
+	/** The sort order of the list. */
+	private final FeatureComparator comparator = new FeatureComparator();
+	/** Features added by an update that have not been shown yet. */
+	private final Map<LunarFeature, Boolean> addedFeatures =
+			new IdentityHashMap<LunarFeature, Boolean>();
+	/** The log of observed features or null to show all features alike. */
+	private ObservationLog observationLog;
+	/** The observing club to check the observed features for. */
+	private String club;
+	/** Flag for hiding the observed features instead of greying them out. */
+	private boolean hideObserved;
 
 	/**
 	 * This function is the class constructor.
@@ -33,29 +61,185 @@ public class FeatureAdapter extends ArrayAdapter<LunarFeature> {
 	 */
 	public FeatureAdapter(Context context, ArrayList<LunarFeature> values) {
 		super(context, R.layout.featureitem, values);
-		this.context = context;
+		this.inflater = (LayoutInflater) context
+				.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
 		this.features = values;
+		this.allFeatures = new ArrayList<LunarFeature>(values);
 	}
-	
+
 	/**
 	 * This function creates the item view for the list view.
 	 * @param position : The location within the list view.
-	 * @param convertView : Other view to convert to?
+	 * @param convertView : An old item view to reuse or null.
 	 * @param parent : The containing list view.
 	 * @return : The populated item view.
 	 */
 	@Override
 	public View getView(int position, View convertView, ViewGroup parent) {
-		Log.d(TAG, "RowView for " + this.features.get(position).getName() + " starting.");
+		ViewHolder holder;
+		if (null == convertView) {
+			convertView = this.inflater.inflate(R.layout.featureitem, parent, false);
+			holder = new ViewHolder();
+			holder.featureName = (TextView) convertView.findViewById(R.id.feature_name);
+			convertView.setTag(holder);
+		}
+		else {
+			holder = (ViewHolder) convertView.getTag();
+		}
 
-		LayoutInflater inflater = (LayoutInflater) context
-				.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-		View rowView = inflater.inflate(R.layout.featureitem, parent, false);
-		
-		TextView featureNameView = (TextView) rowView.findViewById(R.id.feature_name);
-		featureNameView.setText(this.features.get(position).getName());
+		LunarFeature feature = this.features.get(position);
+		holder.featureName.setText(feature.getName());
+		holder.featureName.setAlpha(this.isObserved(feature) ? OBSERVED_ALPHA : 1f);
+		if (null != holder.fadeIn) {
+			holder.fadeIn.end();
+			holder.fadeIn = null;
+		}
+		if (null != this.addedFeatures.remove(feature)) {
+			holder.fadeIn = ObjectAnimator.ofFloat(convertView, "alpha", 0f, 1f)
+					.setDuration(FADE_DURATION);
+			holder.fadeIn.start();
+		}
+		return convertView;
+	}
+
+	/**
+	 * This function replaces the list contents with a new list in the same
+	 * sort order.
+	 * @param newFeatures : The new sorted list of features.
+	 */
+	public void setFeatures(List<LunarFeature> newFeatures) {
+		this.allFeatures = new ArrayList<LunarFeature>(newFeatures);
+		this.showFeatures(this.filterObserved(this.allFeatures));
+	}
+
+	/**
+	 * This function sets how the observed features are shown. The list is
+	 * updated for the current observation log.
+	 * @param log : The log of observed features.
+	 * @param listClub : The observing club of the list.
+	 * @param hide : True to hide the observed features, false to grey them
+	 * out.
+	 */
+	public void setObservationLog(ObservationLog log, String listClub, boolean hide) {
+		this.observationLog = log;
+		this.club = listClub;
+		this.hideObserved = hide;
+		this.showFeatures(this.filterObserved(this.allFeatures));
+	}
+
+	/**
+	 * This function replaces the shown features with a new list in the same
+	 * sort order. The two lists are walked together and only the features
+	 * that are not in both are removed or inserted.
+	 * @param newFeatures : The new sorted list of features to show.
+	 */
+	private void showFeatures(List<LunarFeature> newFeatures) {
+		this.addedFeatures.clear();
+		int row = 0;
+		for (LunarFeature feature : newFeatures) {
+			// Drop the old features that sort before the new one
+			while (row < this.features.size() &&
+					this.comparator.compare(this.features.get(row), feature) < 0) {
+				this.features.remove(row);
+			}
+			if (row < this.features.size() &&
+					FeatureAdapter.isSameFeature(this.features.get(row), feature)) {
+				this.features.set(row, feature);
+			}
+			else {
+				this.features.add(row, feature);
+				this.addedFeatures.put(feature, Boolean.TRUE);
+			}
+			row++;
+		}
+		while (this.features.size() > row) {
+			this.features.remove(this.features.size() - 1);
+		}
+		// ListView can only be told the whole list changed
+		this.notifyDataSetChanged();
+	}
+
+	/**
+	 * This function applies the live mode changes to the list. Only the
+	 * added and removed features are changed in the backing list and it
+	 * stays sorted. The rows on screen are all bound again.
+	 * @param changes : The changes to the visible features.
+	 */
+	public void applyChanges(LiveVisibilityTracker.Changes changes) {
+		this.addedFeatures.clear();
+		for (LunarFeature feature : changes.getRemoved()) {
+			this.allFeatures.remove(feature);
+			this.features.remove(feature);
+		}
+		for (LunarFeature feature : changes.getAdded()) {
+			this.insertSorted(this.allFeatures, feature);
+			if (!this.hideObserved || !this.isObserved(feature)) {
+				this.insertSorted(this.features, feature);
+				this.addedFeatures.put(feature, Boolean.TRUE);
+			}
+		}
+		this.notifyDataSetChanged();
+	}
+
+	/**
+	 * This function adds a feature to a list in sort order.
+	 * @param list : The sorted list.
+	 * @param feature : The feature to add.
+	 */
+	private void insertSorted(List<LunarFeature> list, LunarFeature feature) {
+		int position = Collections.binarySearch(list, feature, this.comparator);
+		list.add(position < 0 ? -(position + 1) : position, feature);
+	}
 
-		Log.d(TAG, "RowView for " + this.features.get(position).getName() + " done.");
-		return rowView;
+	/**
+	 * This function checks if a feature is in the observation log.
+	 * @param feature : The feature to check.
+	 * @return : True if the feature has been observed for the list's club.
+	 */
+	private boolean isObserved(LunarFeature feature) {
+		return null != this.observationLog &&
+				this.observationLog.isObserved(this.club, feature.getId());
+	}
+
+	/**
+	 * This function removes the observed features from a list if they are
+	 * being hidden.
+	 * @param list : The sorted list of features.
+	 * @return : The features to show.
+	 */
+	private List<LunarFeature> filterObserved(List<LunarFeature> list) {
+		if (!this.hideObserved || null == this.observationLog) {
+			return list;
+		}
+		BitSet observed = this.observationLog.getObserved(this.club);
+		List<LunarFeature> shown = new ArrayList<LunarFeature>(list.size());
+		for (LunarFeature feature : list) {
+			if (!observed.get(feature.getId())) {
+				shown.add(feature);
+			}
+		}
+		return shown;
+	}
+
+	/**
+	 * This function checks if two feature objects describe the same feature.
+	 * @param lf1 : The first feature.
+	 * @param lf2 : The second feature.
+	 * @return : True if the features have the same name and location.
+	 */
+	private static boolean isSameFeature(LunarFeature lf1, LunarFeature lf2) {
+		return lf1 == lf2 || (lf1.getName().equals(lf2.getName()) &&
+				lf1.getLatitude() == lf2.getLatitude() &&
+				lf1.getLongitude() == lf2.getLongitude());
+	}
+
+	/**
+	 * This class holds the child views of an item view.
+	 */
+	private static class ViewHolder {
+		/** The feature name view. */
+		TextView featureName;
+		/** The running fade in of a new row. */
+		ObjectAnimator fadeIn;
 	}
 }
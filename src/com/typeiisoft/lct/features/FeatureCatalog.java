@@ -0,0 +1,272 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.db.DataBaseHelper;
+import com.typeiisoft.lct.db.FeatureFileHelper;
+import com.typeiisoft.lct.utils.MoonInfo;
+import com.typeiisoft.lct.utils.MoonState;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.app.Activity;
+import android.util.Log;
+
+/**
+ * This class holds the lunar features for all of the observing clubs. The
+ * catalog is loaded from the binary feature catalog once per process and is
+ * not changed afterwards. If the catalog file cannot be read, the Moon
+ * information database is used instead and the visible features are
+ * prefiltered by SQLite so only the candidate rows are read. The features
+ * are partitioned by observing club and Lunar Club target type and are
+ * already sorted for display, so the tabs only need to run the visibility
+ * checks.
+ *
+ * @author Michael Reuter
+ */
+public final class FeatureCatalog {
+	/** Logging identifier. */
+	private static final String TAG = FeatureCatalog.class.getName();
+	/** Observing club name for the Lunar Club. */
+	public static final String LUNAR_CLUB = "Lunar";
+	/** Observing club name for the Lunar II Club. */
+	public static final String LUNAR_TWO_CLUB = "LunarII";
+	/** Observing club name for features in both clubs. */
+	private static final String BOTH_CLUBS = "Both";
+	/** The process wide catalog instance. */
+	private static FeatureCatalog instance;
+	/** The database catalog used while the catalog file cannot be read. */
+	private static FeatureCatalog fallback;
+	/** All of the lunar features in the catalog. */
+	private FeatureTable allFeatures;
+	/** The Lunar Club features keyed by target type. */
+	private Map<String, FeatureTable> lunarClubFeatures;
+	/** The Lunar II Club features. */
+	private FeatureTable lunarTwoFeatures;
+	/** The SELCO window indexes for the Lunar Club features. */
+	private Map<String, VisibilityIndex> lunarClubIndexes;
+	/** The SELCO window index for the Lunar II Club features. */
+	private VisibilityIndex lunarTwoIndex;
+	/** The Moon information database when the catalog file is not used. */
+	private final DataBaseHelper database;
+
+	/**
+	 * This function is the class constructor. It partitions and sorts the
+	 * given features.
+	 * @param features : The full table of lunar features.
+	 */
+	private FeatureCatalog(FeatureTable features) {
+		this.database = null;
+		this.partition(features);
+	}
+
+	/**
+	 * This function is the class constructor for the database mode. The
+	 * visibility queries go to the database and the full tables are only
+	 * read if the feature lists are requested.
+	 * @param database : The Moon information database.
+	 */
+	private FeatureCatalog(DataBaseHelper database) {
+		this.database = database;
+	}
+
+	/**
+	 * This function returns the process wide catalog, loading it from the
+	 * binary feature catalog on first use. If the catalog file cannot be
+	 * read the database is used for this call, and the file is tried again
+	 * on the next one, so a failure that passes does not stick for the rest
+	 * of the process.
+	 * @param activity : The activity used to access the catalog.
+	 * @return : The feature catalog.
+	 */
+	public static synchronized FeatureCatalog getInstance(Activity activity) {
+		if (null == instance) {
+			try {
+				instance = new FeatureCatalog(
+						new FeatureFileHelper(activity).getFeatureTable());
+				fallback = null;
+			}
+			catch (IOException e) {
+				Log.e(TAG, "Unable to read feature catalog, using database.", e);
+				if (null == fallback) {
+					fallback = new FeatureCatalog(new DataBaseHelper(activity));
+				}
+				return fallback;
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * This function gets every feature in the catalog.
+	 * @return : The full feature table.
+	 */
+	public FeatureTable getAllFeatures() {
+		this.loadTables();
+		return this.allFeatures;
+	}
+
+	/**
+	 * This function gets the Lunar Club features for the target type.
+	 * @param targetType : The requested type for the Lunar Club features.
+	 * @return : The sorted Lunar Club features or null if the type is unknown.
+	 */
+	public FeatureTable getLunarClubFeatures(String targetType) {
+		this.loadTables();
+		return this.lunarClubFeatures.get(targetType);
+	}
+
+	/**
+	 * This function gets the Lunar II Club features.
+	 * @return : The sorted Lunar II Club features.
+	 */
+	public FeatureTable getLunarTwoFeatures() {
+		this.loadTables();
+		return this.lunarTwoFeatures;
+	}
+
+	/**
+	 * This function gets the currently visible Lunar Club features for the
+	 * target type.
+	 * @param targetType : The requested type for the Lunar Club features.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The sorted list of visible features.
+	 */
+	public ArrayList<LunarFeature> getVisibleLunarClubFeatures(String targetType,
+			MoonState moonState) {
+		if (null != this.database) {
+			return FeatureCatalog.filterVisible(this.database.getSelcoCandidates(
+					new String[] {LUNAR_CLUB, BOTH_CLUBS}, targetType,
+					moonState.getSelcoLongitude(), moonState.isMorning()), moonState);
+		}
+		VisibilityIndex index = this.lunarClubIndexes.get(targetType);
+		if (null == index) {
+			return new ArrayList<LunarFeature>();
+		}
+		return FeatureCatalog.filterVisible(this.lunarClubFeatures.get(targetType),
+				index, moonState);
+	}
+
+	/**
+	 * This function gets the currently visible Lunar II Club features.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The sorted list of visible features.
+	 */
+	public ArrayList<LunarFeature> getVisibleLunarTwoFeatures(MoonState moonState) {
+		if (null != this.database) {
+			return FeatureCatalog.filterVisible(this.database.getSelcoCandidates(
+					new String[] {LUNAR_TWO_CLUB, BOTH_CLUBS}, null,
+					moonState.getSelcoLongitude(), moonState.isMorning()), moonState);
+		}
+		return FeatureCatalog.filterVisible(this.lunarTwoFeatures,
+				this.lunarTwoIndex, moonState);
+	}
+
+	/**
+	 * This function reads and partitions the full feature table from the
+	 * database if that has not been done yet.
+	 */
+	private synchronized void loadTables() {
+		if (null == this.lunarTwoFeatures) {
+			this.partition(this.database.getFeatureTable());
+		}
+	}
+
+	/**
+	 * This function partitions and sorts the features and builds the SELCO
+	 * window indexes.
+	 * @param features : The full table of lunar features.
+	 */
+	private void partition(FeatureTable features) {
+		this.allFeatures = features;
+		Map<String, List<Integer>> clubRows = new HashMap<String, List<Integer>>();
+		List<Integer> twoRows = new ArrayList<Integer>();
+
+		for (int i = 0; i < features.size(); i++) {
+			String codeName = features.getCodeName(i);
+			boolean isBoth = BOTH_CLUBS.equals(codeName);
+			if (isBoth || LUNAR_CLUB.equals(codeName)) {
+				List<Integer> typeRows = clubRows.get(features.getClubType(i));
+				if (null == typeRows) {
+					typeRows = new ArrayList<Integer>();
+					clubRows.put(features.getClubType(i), typeRows);
+				}
+				typeRows.add(Integer.valueOf(i));
+			}
+			if (isBoth || LUNAR_TWO_CLUB.equals(codeName)) {
+				twoRows.add(Integer.valueOf(i));
+			}
+		}
+
+		this.lunarClubFeatures = new HashMap<String, FeatureTable>();
+		this.lunarClubIndexes = new HashMap<String, VisibilityIndex>();
+		for (Map.Entry<String, List<Integer>> entry : clubRows.entrySet()) {
+			FeatureTable typeFeatures = features.select(FeatureCatalog.toArray(entry.getValue()));
+			Log.i(TAG, entry.getKey() + " = " + typeFeatures.size());
+			this.lunarClubFeatures.put(entry.getKey(), typeFeatures);
+			this.lunarClubIndexes.put(entry.getKey(), new VisibilityIndex(typeFeatures));
+		}
+		this.lunarTwoFeatures = features.select(FeatureCatalog.toArray(twoRows));
+		Log.i(TAG, LUNAR_TWO_CLUB + " = " + this.lunarTwoFeatures.size());
+		this.lunarTwoIndex = new VisibilityIndex(this.lunarTwoFeatures);
+	}
+
+	/**
+	 * This function runs the visibility checks over a feature table. The
+	 * index finds the features whose SELCO window matches and only those
+	 * get the libration check. Feature objects are only created for the
+	 * visible rows.
+	 * @param features : The features to check.
+	 * @param index : The SELCO window index for the features.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The visible features in table order.
+	 */
+	private static ArrayList<LunarFeature> filterVisible(FeatureTable features,
+			VisibilityIndex index, MoonState moonState) {
+		BitSet matches = index.query(moonState.getSelcoLongitude(), moonState.isMorning());
+		ArrayList<LunarFeature> visibleFeatures =
+				new ArrayList<LunarFeature>(matches.cardinality());
+		for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+			if (moonState.isLibrationOk(features, i)) {
+				visibleFeatures.add(features.getFeature(i));
+			}
+		}
+		return visibleFeatures;
+	}
+
+	/**
+	 * This function runs the full visibility checks over the candidate
+	 * features from a database query.
+	 * @param candidates : The candidate features.
+	 * @param moonState : The Moon information for the observation time.
+	 * @return : The visible features in table order.
+	 */
+	private static ArrayList<LunarFeature> filterVisible(FeatureTable candidates,
+			MoonState moonState) {
+		double[] librations = moonState.getLibrations();
+		ArrayList<LunarFeature> visibleFeatures = new ArrayList<LunarFeature>();
+		for (int i = 0; i < candidates.size(); i++) {
+			if (MoonInfo.isVisible(candidates, i, moonState.getSelcoLongitude(),
+					moonState.isMorning(), librations[0], librations[1])) {
+				visibleFeatures.add(candidates.getFeature(i));
+			}
+		}
+		return visibleFeatures;
+	}
+
+	/**
+	 * This function converts a list of row numbers to an array.
+	 * @param rows : The list of rows.
+	 * @return : The array of rows.
+	 */
+	private static int[] toArray(List<Integer> rows) {
+		int[] values = new int[rows.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = rows.get(i).intValue();
+		}
+		return values;
+	}
+}
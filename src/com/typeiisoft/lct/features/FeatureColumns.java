@@ -0,0 +1,101 @@
+package com.typeiisoft.lct.features;
+
+/**
+ * This interface is the storage behind a {@link FeatureTable}. The columns
+ * can be held in arrays or read in place from the binary feature catalog,
+ * and the table only asks for the values of one row at a time. The columns
+ * must not change once a table has been made from them.
+ *
+ * @author Michael Reuter
+ */
+public interface FeatureColumns {
+	/**
+	 * This function gets the number of rows.
+	 * @return : The number of features.
+	 */
+	int size();
+
+	/**
+	 * Getter for the database identifier of a row.
+	 * @param row : The storage row.
+	 * @return : The database identifier.
+	 */
+	int getId(int row);
+
+	/**
+	 * Getter for the name of a row.
+	 * @param row : The storage row.
+	 * @return : The feature name.
+	 */
+	String getName(int row);
+
+	/**
+	 * Getter for the diameter of a row.
+	 * @param row : The storage row.
+	 * @return : The feature diameter in kilometers.
+	 */
+	double getDiameter(int row);
+
+	/**
+	 * Getter for the latitude of a row.
+	 * @param row : The storage row.
+	 * @return : The feature latitude.
+	 */
+	double getLatitude(int row);
+
+	/**
+	 * Getter for the longitude of a row.
+	 * @param row : The storage row.
+	 * @return : The feature longitude.
+	 */
+	double getLongitude(int row);
+
+	/**
+	 * Getter for the latitude width of a row.
+	 * @param row : The storage row.
+	 * @return : The feature latitude width.
+	 */
+	double getDeltaLatitude(int row);
+
+	/**
+	 * Getter for the longitude width of a row.
+	 * @param row : The storage row.
+	 * @return : The feature longitude width.
+	 */
+	double getDeltaLongitude(int row);
+
+	/**
+	 * Getter for the feature type name of a row.
+	 * @param row : The storage row.
+	 * @return : The feature type name.
+	 */
+	String getFeatureType(int row);
+
+	/**
+	 * Getter for the lunar quadrant name of a row.
+	 * @param row : The storage row.
+	 * @return : The lunar quadrant name.
+	 */
+	String getQuadName(int row);
+
+	/**
+	 * Getter for the lunar quadrant code of a row.
+	 * @param row : The storage row.
+	 * @return : The lunar quadrant code.
+	 */
+	String getQuadCode(int row);
+
+	/**
+	 * Getter for the observing club name of a row.
+	 * @param row : The storage row.
+	 * @return : The observing club name.
+	 */
+	String getCodeName(int row);
+
+	/**
+	 * Getter for the Lunar Club target type of a row.
+	 * @param row : The storage row.
+	 * @return : The Lunar Club target type.
+	 */
+	String getClubType(int row);
+}
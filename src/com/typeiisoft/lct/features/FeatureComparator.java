@@ -20,12 +20,27 @@ public class FeatureComparator implements Comparator<LunarFeature> {
 	 */
 	@Override
 	public int compare(LunarFeature arg0, LunarFeature arg1) {
-		int value = arg0.getFeatureType().compareTo(arg1.getFeatureType());
+		return FeatureComparator.compare(arg0.getFeatureType(), arg0.getLatitude(), 
+				arg1.getFeatureType(), arg1.getLatitude());
+	}
+	
+	/**
+	 * This function provides the same comparison for feature information 
+	 * that is not held in LunarFeature objects.
+	 * @param type0 : The first feature's type.
+	 * @param latitude0 : The first feature's latitude.
+	 * @param type1 : The second feature's type.
+	 * @param latitude1 : The second feature's latitude.
+	 * @return : 0 if equal, -1 if greater, 1 if less
+	 */
+	public static int compare(String type0, double latitude0, String type1, 
+			double latitude1) {
+		int value = type0.compareTo(type1);
 		if (0 != value) {
 			return value;
 		}
 		else {
-			return -1 * Double.compare(arg0.getLatitude(), arg1.getLatitude());
+			return -1 * Double.compare(latitude0, latitude1);
 		}
 	}
 }
@@ -1,18 +1,37 @@
 package com.typeiisoft.lct.features;
 
 import com.typeiisoft.lct.R;
+import com.typeiisoft.lct.db.ObservationLog;
+import com.typeiisoft.lct.utils.AppPreferences;
+import com.typeiisoft.lct.utils.BackgroundLoader;
+import com.typeiisoft.lct.utils.FastFormat;
+import com.typeiisoft.lct.utils.MoonRiseSet;
+import com.typeiisoft.lct.utils.MoonState;
+import com.typeiisoft.lct.utils.ObservingSite;
 import com.typeiisoft.lct.utils.StrFormat;
 
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.DialogInterface;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 /**
- * This class handles creating a dialog for the requested Lunar feature.
+ * This class handles creating a dialog for the requested Lunar feature. The 
+ * best time to observe the feature in the night of the observation time is 
+ * found in the background by {@link BestTimeOptimizer}. The dialog can also 
+ * log an observation of the feature for the club of the list it was opened 
+ * from.
  * 
  * @author Michael Reuter
  */
@@ -21,6 +40,33 @@ public class FeatureDialogFragment extends DialogFragment {
 	private final int BLANK_BUFFER = 2;
 	/** Holder for the view */
 	private View view;
+	/** The best time search running for the dialog. */
+	private BackgroundLoader.Load<Calendar> bestTimeTask;
+	
+	/**
+	 * This function is the instance constructor. It places all of the 
+	 * feature information into the arguments so that it can be used in the 
+	 * dialog.
+	 * @param feature : The lunar feature to show.
+	 * @param club : The observing club to log observations for.
+	 * @return : A new instance of the object for the feature.
+	 */
+	public static FeatureDialogFragment newInstance(LunarFeature feature, 
+			String club) {
+		FeatureDialogFragment fdf = new FeatureDialogFragment();
+		Bundle data = new Bundle();
+		data.putInt("id", feature.getId());
+		data.putString("club", club);
+		data.putString("name", feature.getName());
+		data.putString("type", feature.getFeatureType());
+		data.putString("latitude", FastFormat.latitude(feature.getLatitude()));
+		data.putString("longitude", FastFormat.longitude(feature.getLongitude()));
+		data.putString("diameter", FastFormat.formatDouble(feature.getDiameter(), 2) + " km");
+		data.putString("quad_name", feature.getQuadName());
+		data.putString("quad_code", feature.getQuadCode());
+		fdf.setArguments(data);
+		return fdf;
+	}
 	
 	/**
 	 * This function creates the view for the dialog.
@@ -35,6 +81,13 @@ public class FeatureDialogFragment extends DialogFragment {
 		this.view = inflater.inflate(R.layout.featureinfo, null);
 		builder.setView(this.view);
 		builder.setPositiveButton("Dismiss", null);
+		builder.setNeutralButton(R.string.observation_log_label, 
+				new DialogInterface.OnClickListener() {
+			@Override
+			public void onClick(DialogInterface dialog, int which) {
+				FeatureDialogFragment.this.logObservation();
+			}
+		});
 		
 		Bundle args = this.getArguments();
 		this.appendText(R.id.feature_name, args.getString("name"));
@@ -44,9 +97,97 @@ public class FeatureDialogFragment extends DialogFragment {
 		this.appendText(R.id.feature_diameter, args.getString("diameter"));
 		this.appendText(R.id.feature_quadname, args.getString("quad_name"));
 		this.appendText(R.id.feature_quadcode, args.getString("quad_code"));
+		((EditText) this.view.findViewById(R.id.observation_instrument)).setText(
+				new AppPreferences(this.getActivity()).getInstrument());
+		this.findBestTime(args.getInt("id"));
 		
 		return builder.create();
 	}
+
+	/**
+	 * This function starts the search for the best time to observe the 
+	 * feature in the night of the observation time in the preferences. The 
+	 * time is shown once it is found.
+	 * @param featureId : The catalog identifier of the feature.
+	 */
+	private void findBestTime(final int featureId) {
+		final Activity activity = this.getActivity();
+		AppPreferences appPrefs = new AppPreferences(activity);
+		final int[] dateTime = appPrefs.getDateTime();
+		final ObservingSite site = appPrefs.getObservingSite();
+		this.bestTimeTask = BackgroundLoader.start(new Callable<Calendar>() {
+			@Override
+			public Calendar call() {
+				FeatureTable features = FeatureCatalog.getInstance(activity).getAllFeatures();
+				int row = 0;
+				while (row < features.size() && features.getId(row) != featureId) {
+					row++;
+				}
+				if (row == features.size()) {
+					return null;
+				}
+				MoonState moonState = MoonState.getInstance(dateTime, site);
+				BestTimeOptimizer optimizer = new BestTimeOptimizer(
+						features.select(new int[] {row}), site, null);
+				List<BestTime> bestTimes = optimizer.optimizeNight(
+						MoonRiseSet.toJd(moonState.getObsUtc()));
+				if (bestTimes.isEmpty()) {
+					return null;
+				}
+				return MoonRiseSet.toCalendar(bestTimes.get(0).getJd(), 
+						moonState.getObsLocal());
+			}
+		}, new BackgroundLoader.Callback<Calendar>() {
+			@Override
+			public void onLoaded(Calendar result) {
+				FeatureDialogFragment.this.bestTimeTask = null;
+				FeatureDialogFragment.this.appendText(R.id.feature_best_time, 
+						null == result ? FeatureDialogFragment.this.getString(
+								R.string.eph_no_event_text) : 
+									FastFormat.dateFormatNoSeconds(result));
+			}
+		});
+	}
+
+	/**
+	 * This function cancels the best time search if it is still running.
+	 */
+	@Override
+	public void onDestroyView() {
+		if (null != this.bestTimeTask) {
+			this.bestTimeTask.cancel();
+			this.bestTimeTask = null;
+		}
+		super.onDestroyView();
+	}
+	
+	/**
+	 * This function logs an observation of the feature at the current time 
+	 * from the observing site in the preferences. The instrument is kept for 
+	 * the next observation.
+	 */
+	private void logObservation() {
+		Activity activity = this.getActivity();
+		ObservationLog log = ObservationLog.getLoadedInstance();
+		if (null == log) {
+			Toast.makeText(activity, R.string.observation_failed_text, 
+					Toast.LENGTH_SHORT).show();
+			return;
+		}
+		AppPreferences appPrefs = new AppPreferences(activity);
+		String instrument = ((EditText) this.view.findViewById(
+				R.id.observation_instrument)).getText().toString().trim();
+		String notes = ((EditText) this.view.findViewById(
+				R.id.observation_notes)).getText().toString().trim();
+		appPrefs.setInstrument(instrument);
+		
+		Bundle args = this.getArguments();
+		log.log(new Observation(args.getInt("id"), args.getString("name"), 
+				args.getString("club"), System.currentTimeMillis(), 
+				appPrefs.getObservingSite(), instrument, notes));
+		Toast.makeText(activity, R.string.observation_logged_text, 
+				Toast.LENGTH_SHORT).show();
+	}
 	
 	/**
 	 * This function handles appending text to the labels that are already 
@@ -0,0 +1,603 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.MoonInfo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class holds a list of lunar features as columns of primitive values.
+ * The columns come from a {@link FeatureColumns} store, which is either a
+ * set of arrays or the mapped binary feature catalog read in place. A table
+ * is a list of store rows, so a selection of the rows shares the store and
+ * no feature values or strings are copied. The visibility checks also need
+ * values that can be calculated ahead of time (cosine of latitude,
+ * longitude range, libration zone and cutoff flag). Those are worked out
+ * once per store and each table keeps them in its own row order, since
+ * they are read for every row on every check. LunarFeature objects are only
+ * created for the rows that are requested. They are shared by every table
+ * over the same store, so a feature is always the same object whichever
+ * table or thread it is requested from. The table is not changed after it
+ * is built, so it can be read from any thread.
+ *
+ * @author Michael Reuter
+ */
+public final class FeatureTable {
+	/** The feature columns shared by the selections. */
+	private final FeatureColumns columns;
+	/** The store row of each table row. */
+	private final int[] rows;
+	/** Cosine of the absolute latitude. */
+	private final double[] cosLatitude;
+	/** Minimum longitudes in decimal degrees. */
+	private final double[] minLongitude;
+	/** Maximum longitudes in decimal degrees. */
+	private final double[] maxLongitude;
+	/** Flag for features in the region where libration has a big effect. */
+	private final boolean[] limbZone;
+	/** Flag for features with no selenographic longitude cutoff. */
+	private final boolean[] noCutoff;
+	/** Feature objects created for the requested store rows. */
+	private final AtomicReferenceArray<LunarFeature> features;
+
+	/**
+	 * This function is the class constructor. The table holds every row of
+	 * the columns in storage order.
+	 * @param columns : The feature columns.
+	 */
+	public FeatureTable(FeatureColumns columns) {
+		int size = columns.size();
+		this.columns = columns;
+		this.rows = new int[size];
+		this.cosLatitude = new double[size];
+		this.minLongitude = new double[size];
+		this.maxLongitude = new double[size];
+		this.limbZone = new boolean[size];
+		this.noCutoff = new boolean[size];
+		this.features = new AtomicReferenceArray<LunarFeature>(size);
+		for (int i = 0; i < size; i++) {
+			double lat = columns.getLatitude(i);
+			double lon = columns.getLongitude(i);
+			double halfWidth = columns.getDeltaLongitude(i) / 2.0;
+			this.rows[i] = i;
+			this.cosLatitude[i] = Math.cos(Math.toRadians(Math.abs(lat)));
+			this.minLongitude[i] = Math.min(lon - halfWidth, lon + halfWidth);
+			this.maxLongitude[i] = Math.max(lon - halfWidth, lon + halfWidth);
+			this.limbZone[i] = MoonInfo.isInLibrationZone(lat, lon);
+			this.noCutoff[i] = MoonInfo.noCutoffFeature(columns.getFeatureType(i));
+		}
+	}
+
+	/**
+	 * This function is the class constructor for a selection of the rows of
+	 * another table.
+	 * @param table : The table to select from.
+	 * @param rows : The rows of that table to keep in order.
+	 */
+	private FeatureTable(FeatureTable table, int[] rows) {
+		int size = rows.length;
+		this.columns = table.columns;
+		this.rows = new int[size];
+		this.cosLatitude = new double[size];
+		this.minLongitude = new double[size];
+		this.maxLongitude = new double[size];
+		this.limbZone = new boolean[size];
+		this.noCutoff = new boolean[size];
+		this.features = table.features;
+		for (int i = 0; i < size; i++) {
+			int row = rows[i];
+			this.rows[i] = table.rows[row];
+			this.cosLatitude[i] = table.cosLatitude[row];
+			this.minLongitude[i] = table.minLongitude[row];
+			this.maxLongitude[i] = table.maxLongitude[row];
+			this.limbZone[i] = table.limbZone[row];
+			this.noCutoff[i] = table.noCutoff[row];
+		}
+	}
+
+	/**
+	 * This function gets the number of rows in the table.
+	 * @return : The number of features.
+	 */
+	public int size() {
+		return this.rows.length;
+	}
+
+	/**
+	 * Getter for the database identifier of a row.
+	 * @param row : The table row.
+	 * @return : The database identifier.
+	 */
+	public int getId(int row) {
+		return this.columns.getId(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the name of a row.
+	 * @param row : The table row.
+	 * @return : The feature name.
+	 */
+	public String getName(int row) {
+		return this.columns.getName(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the diameter of a row.
+	 * @param row : The table row.
+	 * @return : The feature diameter in kilometers.
+	 */
+	public double getDiameter(int row) {
+		return this.columns.getDiameter(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the latitude of a row.
+	 * @param row : The table row.
+	 * @return : The feature latitude.
+	 */
+	public double getLatitude(int row) {
+		return this.columns.getLatitude(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the longitude of a row.
+	 * @param row : The table row.
+	 * @return : The feature longitude.
+	 */
+	public double getLongitude(int row) {
+		return this.columns.getLongitude(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the latitude width of a row.
+	 * @param row : The table row.
+	 * @return : The feature latitude width.
+	 */
+	public double getDeltaLatitude(int row) {
+		return this.columns.getDeltaLatitude(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the longitude width of a row.
+	 * @param row : The table row.
+	 * @return : The feature longitude width.
+	 */
+	public double getDeltaLongitude(int row) {
+		return this.columns.getDeltaLongitude(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the cosine of the absolute latitude of a row.
+	 * @param row : The table row.
+	 * @return : The cosine of the feature latitude.
+	 */
+	public double getCosLatitude(int row) {
+		return this.cosLatitude[row];
+	}
+
+	/**
+	 * Getter for the minimum longitude of a row.
+	 * @param row : The table row.
+	 * @return : The feature minimum longitude.
+	 */
+	public double getMinLongitude(int row) {
+		return this.minLongitude[row];
+	}
+
+	/**
+	 * Getter for the maximum longitude of a row.
+	 * @param row : The table row.
+	 * @return : The feature maximum longitude.
+	 */
+	public double getMaxLongitude(int row) {
+		return this.maxLongitude[row];
+	}
+
+	/**
+	 * This function checks if a row is in the region where libration has
+	 * a big effect.
+	 * @param row : The table row.
+	 * @return : True if the feature is in the libration zone.
+	 */
+	public boolean isInLimbZone(int row) {
+		return this.limbZone[row];
+	}
+
+	/**
+	 * This function checks if a row has no selenographic longitude cutoff.
+	 * @param row : The table row.
+	 * @return : True if the feature has no cutoff.
+	 */
+	public boolean isNoCutoff(int row) {
+		return this.noCutoff[row];
+	}
+
+	/**
+	 * Getter for the feature type name of a row.
+	 * @param row : The table row.
+	 * @return : The feature type name.
+	 */
+	public String getFeatureType(int row) {
+		return this.columns.getFeatureType(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the observing club name of a row.
+	 * @param row : The table row.
+	 * @return : The observing club name.
+	 */
+	public String getCodeName(int row) {
+		return this.columns.getCodeName(this.rows[row]);
+	}
+
+	/**
+	 * Getter for the Lunar Club target type of a row.
+	 * @param row : The table row.
+	 * @return : The Lunar Club target type.
+	 */
+	public String getClubType(int row) {
+		return this.columns.getClubType(this.rows[row]);
+	}
+
+	/**
+	 * This function gets the feature object for a row. The object is created
+	 * the first time the store row is requested. Threads that race to create
+	 * it all get the object that was stored first.
+	 * @param row : The table row.
+	 * @return : The lunar feature.
+	 */
+	public LunarFeature getFeature(int row) {
+		int index = this.rows[row];
+		LunarFeature feature = this.features.get(index);
+		if (null == feature) {
+			FeatureColumns columns = this.columns;
+			feature = new LunarFeature(columns.getId(index), columns.getName(index),
+					columns.getDiameter(index), columns.getLatitude(index),
+					columns.getLongitude(index), columns.getFeatureType(index),
+					columns.getDeltaLatitude(index), columns.getDeltaLongitude(index),
+					columns.getQuadName(index), columns.getQuadCode(index),
+					columns.getCodeName(index), columns.getClubType(index));
+			if (!this.features.compareAndSet(index, null, feature)) {
+				feature = this.features.get(index);
+			}
+		}
+		return feature;
+	}
+
+	/**
+	 * This function creates a new table from a subset of the rows. The new
+	 * table is sorted in the standard feature list order and rows that
+	 * compare equal keep their order. It shares the columns of this table,
+	 * so only the row list and the precalculated values are gathered.
+	 * @param rows : The rows to keep.
+	 * @return : The new sorted table.
+	 */
+	public FeatureTable select(int[] rows) {
+		Integer[] order = new Integer[rows.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(rows[i]);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer arg0, Integer arg1) {
+				int row0 = arg0.intValue();
+				int row1 = arg1.intValue();
+				return FeatureComparator.compare(
+						FeatureTable.this.getFeatureType(row0),
+						FeatureTable.this.getLatitude(row0),
+						FeatureTable.this.getFeatureType(row1),
+						FeatureTable.this.getLatitude(row1));
+			}
+		});
+		int[] sorted = new int[order.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = order[i].intValue();
+		}
+		return new FeatureTable(this, sorted);
+	}
+
+	/**
+	 * This function makes the list of every row of a table.
+	 * @param size : The number of rows.
+	 * @return : The rows in storage order.
+	 */
+	private static int[] allRows(int size) {
+		int[] rows = new int[size];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
+	/**
+	 * This class collects the feature rows for a table.
+	 */
+	public static final class Builder {
+		/** Initial number of rows to hold. */
+		private static final int INITIAL_CAPACITY = 64;
+		/** Number of rows added. */
+		private int size;
+		/** Database identifiers. */
+		private int[] ids = new int[INITIAL_CAPACITY];
+		/** Latitudes. */
+		private double[] latitude = new double[INITIAL_CAPACITY];
+		/** Longitudes. */
+		private double[] longitude = new double[INITIAL_CAPACITY];
+		/** Latitude widths. */
+		private double[] deltaLatitude = new double[INITIAL_CAPACITY];
+		/** Longitude widths. */
+		private double[] deltaLongitude = new double[INITIAL_CAPACITY];
+		/** Diameters. */
+		private double[] diameter = new double[INITIAL_CAPACITY];
+		/** Feature type names. */
+		private String[] featureTypes = new String[INITIAL_CAPACITY];
+		/** Feature names. */
+		private String[] names = new String[INITIAL_CAPACITY];
+		/** Lunar quadrant names. */
+		private String[] quadNames = new String[INITIAL_CAPACITY];
+		/** Lunar quadrant codes. */
+		private String[] quadCodes = new String[INITIAL_CAPACITY];
+		/** Observing club names. */
+		private String[] codeNames = new String[INITIAL_CAPACITY];
+		/** Lunar Club target types. */
+		private String[] clubTypes = new String[INITIAL_CAPACITY];
+
+		/**
+		 * This function adds a feature row.
+		 * @param id : database identifier
+		 * @param name : clean name of feature
+		 * @param diameter : diameter of feature
+		 * @param latitude : latitude of feature
+		 * @param longitude : longitude of feature
+		 * @param featureType : description of feature
+		 * @param deltaLatitude : latitude width of feature
+		 * @param deltaLongitude : longitude width of feature
+		 * @param quadName : lunar quadrant name
+		 * @param quadCode : lunar quadrant code
+		 * @param codeName : Club list for feature
+		 * @param clubType : Lunar Club target type
+		 * @return : The builder.
+		 */
+		public Builder add(int id, String name, double diameter, double latitude,
+				double longitude, String featureType, double deltaLatitude,
+				double deltaLongitude, String quadName, String quadCode,
+				String codeName, String clubType) {
+			if (this.size == this.ids.length) {
+				this.grow();
+			}
+			int row = this.size;
+			this.ids[row] = id;
+			this.names[row] = name;
+			this.diameter[row] = diameter;
+			this.latitude[row] = latitude;
+			this.longitude[row] = longitude;
+			this.featureTypes[row] = featureType;
+			this.deltaLatitude[row] = deltaLatitude;
+			this.deltaLongitude[row] = deltaLongitude;
+			this.quadNames[row] = quadName;
+			this.quadCodes[row] = quadCode;
+			this.codeNames[row] = codeName;
+			this.clubTypes[row] = clubType;
+			this.size++;
+			return this;
+		}
+
+		/**
+		 * This function creates the table with the rows in the order added.
+		 * @return : The feature table.
+		 */
+		public FeatureTable build() {
+			return new FeatureTable(new ArrayColumns(this));
+		}
+
+		/**
+		 * This function creates the table with the rows in the standard
+		 * feature list order. Rows that compare equal keep the order added.
+		 * @return : The sorted feature table.
+		 */
+		public FeatureTable buildSorted() {
+			FeatureTable table = this.build();
+			return table.select(FeatureTable.allRows(table.size()));
+		}
+
+		/**
+		 * This function doubles the row capacity.
+		 */
+		private void grow() {
+			int capacity = this.ids.length * 2;
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.latitude = Arrays.copyOf(this.latitude, capacity);
+			this.longitude = Arrays.copyOf(this.longitude, capacity);
+			this.deltaLatitude = Arrays.copyOf(this.deltaLatitude, capacity);
+			this.deltaLongitude = Arrays.copyOf(this.deltaLongitude, capacity);
+			this.diameter = Arrays.copyOf(this.diameter, capacity);
+			this.featureTypes = Arrays.copyOf(this.featureTypes, capacity);
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.quadNames = Arrays.copyOf(this.quadNames, capacity);
+			this.quadCodes = Arrays.copyOf(this.quadCodes, capacity);
+			this.codeNames = Arrays.copyOf(this.codeNames, capacity);
+			this.clubTypes = Arrays.copyOf(this.clubTypes, capacity);
+		}
+	}
+
+	/**
+	 * This class holds the feature columns in arrays. The arrays are copied
+	 * out of a builder, so the builder can keep adding rows.
+	 */
+	private static final class ArrayColumns implements FeatureColumns {
+		/** Database identifiers. */
+		private final int[] ids;
+		/** Latitudes. */
+		private final double[] latitude;
+		/** Longitudes. */
+		private final double[] longitude;
+		/** Latitude widths. */
+		private final double[] deltaLatitude;
+		/** Longitude widths. */
+		private final double[] deltaLongitude;
+		/** Diameters. */
+		private final double[] diameter;
+		/** Feature type names. */
+		private final String[] featureTypes;
+		/** Feature names. */
+		private final String[] names;
+		/** Lunar quadrant names. */
+		private final String[] quadNames;
+		/** Lunar quadrant codes. */
+		private final String[] quadCodes;
+		/** Observing club names. */
+		private final String[] codeNames;
+		/** Lunar Club target types. */
+		private final String[] clubTypes;
+
+		/**
+		 * This function is the class constructor.
+		 * @param builder : The builder holding the rows.
+		 */
+		ArrayColumns(Builder builder) {
+			int size = builder.size;
+			this.ids = Arrays.copyOf(builder.ids, size);
+			this.latitude = Arrays.copyOf(builder.latitude, size);
+			this.longitude = Arrays.copyOf(builder.longitude, size);
+			this.deltaLatitude = Arrays.copyOf(builder.deltaLatitude, size);
+			this.deltaLongitude = Arrays.copyOf(builder.deltaLongitude, size);
+			this.diameter = Arrays.copyOf(builder.diameter, size);
+			this.featureTypes = Arrays.copyOf(builder.featureTypes, size);
+			this.names = Arrays.copyOf(builder.names, size);
+			this.quadNames = Arrays.copyOf(builder.quadNames, size);
+			this.quadCodes = Arrays.copyOf(builder.quadCodes, size);
+			this.codeNames = Arrays.copyOf(builder.codeNames, size);
+			this.clubTypes = Arrays.copyOf(builder.clubTypes, size);
+		}
+
+		/**
+		 * This function gets the number of rows.
+		 * @return : The number of features.
+		 */
+		@Override
+		public int size() {
+			return this.ids.length;
+		}
+
+		/**
+		 * Getter for the database identifier of a row.
+		 * @param row : The storage row.
+		 * @return : The database identifier.
+		 */
+		@Override
+		public int getId(int row) {
+			return this.ids[row];
+		}
+
+		/**
+		 * Getter for the name of a row.
+		 * @param row : The storage row.
+		 * @return : The feature name.
+		 */
+		@Override
+		public String getName(int row) {
+			return this.names[row];
+		}
+
+		/**
+		 * Getter for the diameter of a row.
+		 * @param row : The storage row.
+		 * @return : The feature diameter in kilometers.
+		 */
+		@Override
+		public double getDiameter(int row) {
+			return this.diameter[row];
+		}
+
+		/**
+		 * Getter for the latitude of a row.
+		 * @param row : The storage row.
+		 * @return : The feature latitude.
+		 */
+		@Override
+		public double getLatitude(int row) {
+			return this.latitude[row];
+		}
+
+		/**
+		 * Getter for the longitude of a row.
+		 * @param row : The storage row.
+		 * @return : The feature longitude.
+		 */
+		@Override
+		public double getLongitude(int row) {
+			return this.longitude[row];
+		}
+
+		/**
+		 * Getter for the latitude width of a row.
+		 * @param row : The storage row.
+		 * @return : The feature latitude width.
+		 */
+		@Override
+		public double getDeltaLatitude(int row) {
+			return this.deltaLatitude[row];
+		}
+
+		/**
+		 * Getter for the longitude width of a row.
+		 * @param row : The storage row.
+		 * @return : The feature longitude width.
+		 */
+		@Override
+		public double getDeltaLongitude(int row) {
+			return this.deltaLongitude[row];
+		}
+
+		/**
+		 * Getter for the feature type name of a row.
+		 * @param row : The storage row.
+		 * @return : The feature type name.
+		 */
+		@Override
+		public String getFeatureType(int row) {
+			return this.featureTypes[row];
+		}
+
+		/**
+		 * Getter for the lunar quadrant name of a row.
+		 * @param row : The storage row.
+		 * @return : The lunar quadrant name.
+		 */
+		@Override
+		public String getQuadName(int row) {
+			return this.quadNames[row];
+		}
+
+		/**
+		 * Getter for the lunar quadrant code of a row.
+		 * @param row : The storage row.
+		 * @return : The lunar quadrant code.
+		 */
+		@Override
+		public String getQuadCode(int row) {
+			return this.quadCodes[row];
+		}
+
+		/**
+		 * Getter for the observing club name of a row.
+		 * @param row : The storage row.
+		 * @return : The observing club name.
+		 */
+		@Override
+		public String getCodeName(int row) {
+			return this.codeNames[row];
+		}
+
+		/**
+		 * Getter for the Lunar Club target type of a row.
+		 * @param row : The storage row.
+		 * @return : The Lunar Club target type.
+		 */
+		@Override
+		public String getClubType(int row) {
+			return this.clubTypes[row];
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.EphemerisCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This class keeps the set of visible features up to date as the
+ * observation time moves, as it does in the live mode. Instead of running
+ * every feature through the visibility checks on each tick, the visibility
+ * windows for the next day are solved once and turned into a queue of the
+ * instants where features enter and leave their windows. Moving the time
+ * forward only pops the events that have passed and reports the features
+ * that were added and removed. Moving the time backward, or past the end of
+ * the solved span, solves the windows again and reports the difference.
+ * The tracker is not thread safe.
+ *
+ * @author Michael Reuter
+ */
+public final class LiveVisibilityTracker {
+	/** Julian date of the Java time epoch (1970-01-01 00:00 UTC). */
+	public static final double EPOCH_JD = 2440587.5;
+	/** Milliseconds in a day. */
+	private static final double MILLISECONDS_PER_DAY = 86400000.0;
+	/** Span of the visibility windows solved at a time in days. */
+	private static final double HORIZON = 1.0;
+	/** Span of the ephemeris cache made at a time in days. */
+	private static final double CACHE_SPAN = 7.0;
+	/**
+	 * Time between visibility checks in days (15 minutes). This is much
+	 * finer than the solver default so the short windows near the quarter
+	 * phases are not skipped.
+	 */
+	private static final double STEP = 1.0 / 96.0;
+	/** Accuracy of the entry and exit events in days (one second). */
+	private static final double TOLERANCE = 1.0 / 86400.0;
+	/** The features to track. */
+	private final FeatureTable table;
+	/** The ephemeris for the solved span. */
+	private EphemerisCache ephemeris;
+	/** The features visible at the current time. */
+	private final Set<LunarFeature> visible = new HashSet<LunarFeature>();
+	/** The upcoming window entry and exit events. */
+	private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+	/** The current observation time as a Julian date. */
+	private double currentJd = Double.NaN;
+	/** The end of the solved span as a Julian date. */
+	private double horizonJd = Double.NaN;
+
+	/**
+	 * This function is the class constructor.
+	 * @param table : The features to track.
+	 */
+	public LiveVisibilityTracker(FeatureTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * This function converts a Java time to a Julian date.
+	 * @param millis : The milliseconds since 1970-01-01 00:00 UTC.
+	 * @return : The UTC Julian date.
+	 */
+	public static double julianDate(long millis) {
+		return EPOCH_JD + millis / MILLISECONDS_PER_DAY;
+	}
+
+	/**
+	 * This function gets the current observation time.
+	 * @return : The current Julian date or NaN before the first update.
+	 */
+	public double getCurrentJd() {
+		return this.currentJd;
+	}
+
+	/**
+	 * This function gets the features visible at the current time.
+	 * @return : The visible features in the standard feature list order.
+	 */
+	public ArrayList<LunarFeature> getVisibleFeatures() {
+		ArrayList<LunarFeature> features = new ArrayList<LunarFeature>(this.visible);
+		Collections.sort(features, new FeatureComparator());
+		return features;
+	}
+
+	/**
+	 * This function moves the observation time and finds the features that
+	 * became visible or stopped being visible since the last update. The
+	 * first update reports all of the visible features as added.
+	 * @param jd : The new observation time as a UTC Julian date.
+	 * @return : The changes to the visible features.
+	 */
+	public Changes advanceTo(double jd) {
+		Set<LunarFeature> before = new HashSet<LunarFeature>(this.visible);
+		if (jd < this.currentJd || !(jd < this.horizonJd)) {
+			this.solve(jd);
+		}
+		else {
+			while (!this.events.isEmpty() && this.events.peek().jd <= jd) {
+				Event event = this.events.poll();
+				if (event.entering) {
+					this.visible.add(event.feature);
+				}
+				else {
+					this.visible.remove(event.feature);
+				}
+			}
+		}
+		this.currentJd = jd;
+
+		List<LunarFeature> added = new ArrayList<LunarFeature>();
+		for (LunarFeature feature : this.visible) {
+			if (!before.contains(feature)) {
+				added.add(feature);
+			}
+		}
+		before.removeAll(this.visible);
+		return new Changes(added, new ArrayList<LunarFeature>(before));
+	}
+
+	/**
+	 * This function solves the visibility windows from the given time to the
+	 * horizon and rebuilds the visible features and the event queue.
+	 * @param jd : The Julian date to start from.
+	 */
+	private void solve(double jd) {
+		double endJd = jd + HORIZON;
+		if (null == this.ephemeris || !this.ephemeris.covers(jd) ||
+				!this.ephemeris.covers(endJd)) {
+			this.ephemeris = new EphemerisCache(jd - HORIZON, jd + CACHE_SPAN);
+		}
+		VisibilityWindowSolver solver = new VisibilityWindowSolver(this.table,
+				this.ephemeris, STEP, TOLERANCE);
+		this.visible.clear();
+		this.events.clear();
+		for (VisibilityWindow window : solver.solve(jd, endJd)) {
+			if (window.getStartJd() <= jd) {
+				this.visible.add(window.getFeature());
+			}
+			else {
+				this.events.add(new Event(window.getStartJd(), window.getFeature(), true));
+			}
+			// Windows still open at the horizon are closed by the next solve
+			if (window.getEndJd() < endJd) {
+				this.events.add(new Event(window.getEndJd(), window.getFeature(), false));
+			}
+		}
+		this.horizonJd = endJd;
+	}
+
+	/**
+	 * This class holds the features added and removed by an update.
+	 */
+	public static final class Changes {
+		/** The features that became visible. */
+		private final List<LunarFeature> added;
+		/** The features that stopped being visible. */
+		private final List<LunarFeature> removed;
+
+		/**
+		 * This function is the class constructor.
+		 * @param added : The features that became visible.
+		 * @param removed : The features that stopped being visible.
+		 */
+		private Changes(List<LunarFeature> added, List<LunarFeature> removed) {
+			this.added = Collections.unmodifiableList(added);
+			this.removed = Collections.unmodifiableList(removed);
+		}
+
+		/**
+		 * Getter for the features that became visible.
+		 * @return : The added features.
+		 */
+		public List<LunarFeature> getAdded() {
+			return this.added;
+		}
+
+		/**
+		 * Getter for the features that stopped being visible.
+		 * @return : The removed features.
+		 */
+		public List<LunarFeature> getRemoved() {
+			return this.removed;
+		}
+
+		/**
+		 * This function checks if the update changed anything.
+		 * @return : True if no features were added or removed.
+		 */
+		public boolean isEmpty() {
+			return this.added.isEmpty() && this.removed.isEmpty();
+		}
+	}
+
+	/**
+	 * This class is a feature entering or leaving its visibility window.
+	 * Events are ordered by time.
+	 */
+	private static final class Event implements Comparable<Event> {
+		/** The Julian date of the event. */
+		private final double jd;
+		/** The feature the event is for. */
+		private final LunarFeature feature;
+		/** True if the feature becomes visible, false if it stops. */
+		private final boolean entering;
+
+		/**
+		 * This function is the class constructor.
+		 * @param jd : The Julian date of the event.
+		 * @param feature : The feature the event is for.
+		 * @param entering : True if the feature becomes visible.
+		 */
+		private Event(double jd, LunarFeature feature, boolean entering) {
+			this.jd = jd;
+			this.feature = feature;
+			this.entering = entering;
+		}
+
+		/**
+		 * This function orders the events by time.
+		 * @param other : The event to compare with.
+		 * @return : The comparison of the event times.
+		 */
+		@Override
+		public int compareTo(Event other) {
+			return Double.compare(this.jd, other.jd);
+		}
+	}
+}
@@ -1,45 +1,47 @@
 package com.typeiisoft.lct.features;
 
-import android.os.Bundle;
-
-import com.typeiisoft.lct.utils.StrFormat;
+import com.typeiisoft.lct.utils.FastFormat;
 
 /**
  * This class is responsible for containing the relevant information for 
- * a given lunar feature.
+ * a given lunar feature. It is not changed after it is created, so it can 
+ * be shared between threads.
  * 
  * @author Michael Reuter
  */
 public class LunarFeature {
+	/** Catalog identifier of the lunar feature. */
+	private final int id;
 	/** Clean name of the lunar feature (no dicritical marks). */
-	private String name;
+	private final String name;
 	/** Diameter or longest axis of lunar feature. */
-	private double diameter;
+	private final double diameter;
 	/** Latitude of the lunar feature in decimal degrees. North is positive. */
-	private double latitude;
+	private final double latitude;
 	/** Longitude of the lunar feature in decimal degrees. East is positive. */
-	private double longitude;
+	private final double longitude;
 	/** Short description of feature type. */
-	private String featureType;
+	private final String featureType;
 	/** Width of the lunar feature in latitude in decimal degrees. */
-	private double deltaLatitude;
+	private final double deltaLatitude;
 	/** Width of the lunar feature in longitude in decimal degrees. */
-	private double deltaLongitude;
+	private final double deltaLongitude;
 	/** Name of lunar quadrant containing feature's center point as determined 
 	 * by the International Astronomical Union (IAU) Working Group for 
 	 * Planetary System Nomenclature (WGPSN) */
-	private String quadName;
+	private final String quadName;
 	/** Specific lunar quadrant containing feature's center point as determined 
 	 * by the IAU WGPSN. 
 	 */
-	private String quadCode;
+	private final String quadCode;
 	/** Observing club lunar feature belongs to. */	
-	private String codeName;
+	private final String codeName;
 	/** Target type name for Lunar Club */
-	private String clubType;
+	private final String clubType;
 	
 	/**
 	 * This function is the class constructor with parameters.
+	 * @param id : catalog identifier of feature
 	 * @param name : clean name of feature
 	 * @param latitude : latitude of feature
 	 * @param longitude : longitude of feature
@@ -51,10 +53,11 @@ public class LunarFeature {
 	 * @param codeName : Club list for feature
 	 * @param clubType : Lunar Club target type
 	 */
-	public LunarFeature(String name, double diameter, double latitude, double longitude,
+	public LunarFeature(int id, String name, double diameter, double latitude, double longitude,
 			String featureType, double deltaLatitude, double deltaLongitude,
 			String quadName, String quadCode, String codeName, 
 			String clubType) {
+		this.id = id;
 		this.name = name;
 		this.diameter = diameter;
 		this.latitude = latitude;
@@ -68,6 +71,14 @@ public class LunarFeature {
 		this.clubType = clubType;
 	}
 	
+	/**
+	 * Getter for feature catalog identifier
+	 * @return : the catalog identifier of the feature
+	 */
+	public int getId() {
+		return this.id;
+	}
+	
 	/**
 	 * Getter for feature name
 	 * @return : the clean lunar feature name
@@ -200,31 +211,12 @@ public class LunarFeature {
 		StringBuilder stb = new StringBuilder();
 		stb.append("Name: ").append(this.name).append(lsp)
 		.append("Type: ").append(this.featureType).append(lsp)
-		.append("Latitude: ").append(StrFormat.coordFormat("lat", 
-				this.latitude)).append(lsp)
-		.append("Longitude: ").append(StrFormat.coordFormat("lon", 
-				this.longitude)).append(lsp)
-		.append("Diameter: ").append(StrFormat.formatDouble(this.diameter, 2))
+		.append("Latitude: ").append(FastFormat.latitude(this.latitude)).append(lsp)
+		.append("Longitude: ").append(FastFormat.longitude(this.longitude)).append(lsp)
+		.append("Diameter: ").append(FastFormat.formatDouble(this.diameter, 2))
 		.append(" km").append(lsp)
 		.append("Quad Name: ").append(this.quadName).append(lsp)
 		.append("Quad Code: ").append(this.quadCode).append(lsp);
 		return stb.toString();
 	}
-	
-	/**
-	 * This function creates a Bundle object that contains all of the 
-	 * feature information so that it can be used in a fragment.
-	 * @return : The feature's information in a Bundle object.
-	 */
-	public Bundle toBundle() {
-		Bundle data = new Bundle();
-		data.putString("name", this.name);
-		data.putString("type", this.featureType);
-		data.putString("latitude", StrFormat.coordFormat("lat", this.latitude));
-		data.putString("longitude", StrFormat.coordFormat("lon", this.longitude));
-		data.putString("diameter", StrFormat.formatDouble(this.diameter, 2) + " km");
-		data.putString("quad_name", this.quadName);
-		data.putString("quad_code", this.quadCode);
-		return data;
-	}
 }
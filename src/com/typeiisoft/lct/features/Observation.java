@@ -0,0 +1,142 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.ObservingSite;
+
+/**
+ * This class holds one entry of the observation log: a lunar feature that
+ * was observed for an observing club, along with when, where and how it was
+ * observed. The feature is kept by its catalog identifier so the observed
+ * features of a club can be held as a set of identifiers. The instrument
+ * and notes are cut to {@link #MAX_TEXT_LENGTH} characters, which keeps
+ * every entry small enough for the observation log files. An observation
+ * is not changed after it is created, so it can be shared between threads.
+ *
+ * @author Michael Reuter
+ */
+public final class Observation {
+	/** Longest instrument or notes text kept in characters. */
+	public static final int MAX_TEXT_LENGTH = 4000;
+	/** Catalog identifier of the observed feature. */
+	private final int featureId;
+	/** Name of the observed feature. */
+	private final String featureName;
+	/** Observing club the observation counts for. */
+	private final String club;
+	/** Time of the observation in milliseconds since the epoch (UTC). */
+	private final long utcTime;
+	/** The observing site. */
+	private final ObservingSite site;
+	/** The instrument used for the observation. */
+	private final String instrument;
+	/** The observer's notes. */
+	private final String notes;
+
+	/**
+	 * This function is the class constructor.
+	 * @param featureId : The catalog identifier of the observed feature.
+	 * @param featureName : The name of the observed feature.
+	 * @param club : The observing club the observation counts for.
+	 * @param utcTime : The time of the observation in milliseconds since the
+	 * epoch.
+	 * @param site : The observing site.
+	 * @param instrument : The instrument used for the observation. Longer
+	 * text than {@link #MAX_TEXT_LENGTH} characters is cut.
+	 * @param notes : The observer's notes. Longer text than
+	 * {@link #MAX_TEXT_LENGTH} characters is cut.
+	 */
+	public Observation(int featureId, String featureName, String club,
+			long utcTime, ObservingSite site, String instrument, String notes) {
+		this.featureId = featureId;
+		this.featureName = featureName;
+		this.club = club;
+		this.utcTime = utcTime;
+		this.site = site;
+		this.instrument = Observation.cap(instrument);
+		this.notes = Observation.cap(notes);
+	}
+
+	/**
+	 * This function cuts a text to the longest length kept, without
+	 * splitting a surrogate pair.
+	 * @param text : The text to cut or null.
+	 * @return : The cut text or an empty string for null.
+	 */
+	private static String cap(String text) {
+		if (null == text) {
+			return "";
+		}
+		if (text.length() <= MAX_TEXT_LENGTH) {
+			return text;
+		}
+		int end = MAX_TEXT_LENGTH;
+		if (Character.isHighSurrogate(text.charAt(end - 1))) {
+			end--;
+		}
+		return text.substring(0, end);
+	}
+
+	/**
+	 * Getter for the observed feature.
+	 * @return : The catalog identifier of the feature.
+	 */
+	public int getFeatureId() {
+		return this.featureId;
+	}
+
+	/**
+	 * Getter for the name of the observed feature.
+	 * @return : The feature name.
+	 */
+	public String getFeatureName() {
+		return this.featureName;
+	}
+
+	/**
+	 * Getter for the observing club.
+	 * @return : The club name as used by {@link FeatureCatalog}.
+	 */
+	public String getClub() {
+		return this.club;
+	}
+
+	/**
+	 * Getter for the observation time.
+	 * @return : The time in milliseconds since the epoch (UTC).
+	 */
+	public long getUtcTime() {
+		return this.utcTime;
+	}
+
+	/**
+	 * Getter for the observing site.
+	 * @return : The observing site.
+	 */
+	public ObservingSite getSite() {
+		return this.site;
+	}
+
+	/**
+	 * Getter for the instrument.
+	 * @return : The instrument used or an empty string.
+	 */
+	public String getInstrument() {
+		return this.instrument;
+	}
+
+	/**
+	 * Getter for the notes.
+	 * @return : The observer's notes or an empty string.
+	 */
+	public String getNotes() {
+		return this.notes;
+	}
+
+	/**
+	 * This function creates a string representation of the observation.
+	 * @return : The observation's string representation.
+	 */
+	public String toString() {
+		return this.featureName + " (" + this.club + "): " +
+				Long.toString(this.utcTime) + " " + this.site.getName();
+	}
+}
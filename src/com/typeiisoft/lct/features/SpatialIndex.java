@@ -0,0 +1,575 @@
+package com.typeiisoft.lct.features;
+
+import java.util.BitSet;
+
+/**
+ * This class is a spatial index over the selenographic positions of a
+ * feature table. Each feature is held as a point on the unit sphere with x
+ * toward the east limb, y toward the north pole and z toward the Earth, so
+ * distances do not break down at the poles or where the longitude wraps,
+ * and x and y are the position on the disk as seen from the Earth. The
+ * points are held in a static k-d tree that is implicit in the arrays with
+ * the middle of every range as the node, split along the widest axis of
+ * its range. Each node also keeps the box around its subtree with every
+ * feature widened by its half size, so whole subtrees can be skipped when
+ * looking for the features that reach into a part of the disk. The index
+ * is not changed after it is built, so it can be queried from any thread.
+ *
+ * @author Michael Reuter
+ */
+public final class SpatialIndex {
+	/** Axis toward the east limb. */
+	private static final int X = 0;
+	/** Axis toward the north pole. */
+	private static final int Y = 1;
+	/** Axis toward the Earth. */
+	private static final int Z = 2;
+	/** Allowance for rounding in the box bounds. */
+	private static final double EPSILON = 1e-12;
+	/** Number of features in the indexed table. */
+	private final int size;
+	/** Point coordinates in tree order for each axis. */
+	private final double[][] point;
+	/** Half sizes in radians in tree order. */
+	private final double[] reach;
+	/** Latitudes in tree order. */
+	private final double[] latitude;
+	/** Longitudes in tree order. */
+	private final double[] longitude;
+	/** Table row for each node. */
+	private final int[] ids;
+	/** Split axis for each node. */
+	private final byte[] axis;
+	/** Lower corner of the widened subtree box for each axis. */
+	private final double[][] lower;
+	/** Upper corner of the widened subtree box for each axis. */
+	private final double[][] upper;
+
+	/**
+	 * This function is the class constructor. It builds the index for the
+	 * given features. Query results use the rows of this table.
+	 * @param table : The features to index.
+	 */
+	public SpatialIndex(FeatureTable table) {
+		this.size = table.size();
+		double[][] coords = new double[3][this.size];
+		double[] halfSize = new double[this.size];
+		int[] order = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			double lat = Math.toRadians(table.getLatitude(i));
+			double lon = Math.toRadians(table.getLongitude(i));
+			double cosLat = Math.cos(lat);
+			coords[X][i] = cosLat * Math.sin(lon);
+			coords[Y][i] = Math.sin(lat);
+			coords[Z][i] = cosLat * Math.cos(lon);
+			halfSize[i] = Math.max(Math.toRadians(Math.abs(table.getDeltaLatitude(i))),
+					cosLat * Math.toRadians(Math.abs(table.getDeltaLongitude(i)))) / 2.0;
+			order[i] = i;
+		}
+		this.axis = new byte[this.size];
+		this.arrange(order, coords, 0, this.size);
+
+		this.point = new double[3][this.size];
+		this.lower = new double[3][this.size];
+		this.upper = new double[3][this.size];
+		this.reach = new double[this.size];
+		this.latitude = new double[this.size];
+		this.longitude = new double[this.size];
+		this.ids = order;
+		for (int i = 0; i < this.size; i++) {
+			int row = order[i];
+			for (int a = X; a <= Z; a++) {
+				this.point[a][i] = coords[a][row];
+			}
+			this.reach[i] = halfSize[row];
+			this.latitude[i] = table.getLatitude(row);
+			this.longitude[i] = table.getLongitude(row);
+		}
+		if (this.size > 0) {
+			this.bound(0, this.size);
+		}
+	}
+
+	/**
+	 * This function gets the number of features in the index.
+	 * @return : The number of indexed features.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * This function finds the features closest to a position.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @param count : The number of features to find.
+	 * @return : The table rows of the closest features, nearest first.
+	 */
+	public int[] findNearest(double latitude, double longitude, int count) {
+		Nearest nearest = new Nearest(SpatialIndex.toPoint(latitude, longitude),
+				Math.min(count, this.size));
+		if (nearest.capacity > 0) {
+			this.findNearest(0, this.size, nearest);
+		}
+		return nearest.toRows();
+	}
+
+	/**
+	 * This function finds the features within an angular distance of a
+	 * position.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @param radius : The angular distance in degrees.
+	 * @param matches : The set to record the table rows of the features in.
+	 */
+	public void findWithin(double latitude, double longitude, double radius,
+			BitSet matches) {
+		double chord = 2.0 * Math.sin(Math.toRadians(Math.min(radius, 180.0)) / 2.0);
+		this.findWithin(0, this.size, SpatialIndex.toPoint(latitude, longitude),
+				chord, chord * chord, matches);
+	}
+
+	/**
+	 * This function finds the features whose positions are inside a range
+	 * of latitude and longitude. A range with the minimum longitude above
+	 * the maximum crosses the 180 degree meridian.
+	 * @param minLatitude : The southern edge in degrees.
+	 * @param maxLatitude : The northern edge in degrees.
+	 * @param minLongitude : The western edge in degrees from -180 to 180.
+	 * @param maxLongitude : The eastern edge in degrees from -180 to 180.
+	 * @param matches : The set to record the table rows of the features in.
+	 */
+	public void findInBox(double minLatitude, double maxLatitude,
+			double minLongitude, double maxLongitude, BitSet matches) {
+		if (minLongitude > maxLongitude) {
+			this.findInBox(minLatitude, maxLatitude, minLongitude, 180.0, matches);
+			this.findInBox(minLatitude, maxLatitude, -180.0, maxLongitude, matches);
+			return;
+		}
+		if (this.size == 0 || minLatitude > maxLatitude) {
+			return;
+		}
+		double[] low = new double[3];
+		double[] high = new double[3];
+		double minLat = Math.toRadians(minLatitude);
+		double maxLat = Math.toRadians(maxLatitude);
+		double minLon = Math.toRadians(minLongitude);
+		double maxLon = Math.toRadians(maxLongitude);
+		// The box around the patch, from the ranges of the factors of each
+		// coordinate. The cosine of latitude is never negative.
+		double cosLatMin = Math.min(Math.cos(minLat), Math.cos(maxLat));
+		double cosLatMax = (minLat <= 0.0 && maxLat >= 0.0) ? 1.0 :
+				Math.max(Math.cos(minLat), Math.cos(maxLat));
+		double sinLonMin = (minLon <= -Math.PI / 2.0 && maxLon >= -Math.PI / 2.0) ? -1.0 :
+				Math.min(Math.sin(minLon), Math.sin(maxLon));
+		double sinLonMax = (minLon <= Math.PI / 2.0 && maxLon >= Math.PI / 2.0) ? 1.0 :
+				Math.max(Math.sin(minLon), Math.sin(maxLon));
+		double cosLonMin = (minLon <= -Math.PI || maxLon >= Math.PI) ? -1.0 :
+				Math.min(Math.cos(minLon), Math.cos(maxLon));
+		double cosLonMax = (minLon <= 0.0 && maxLon >= 0.0) ? 1.0 :
+				Math.max(Math.cos(minLon), Math.cos(maxLon));
+		low[X] = sinLonMin * ((sinLonMin < 0.0) ? cosLatMax : cosLatMin) - EPSILON;
+		high[X] = sinLonMax * ((sinLonMax > 0.0) ? cosLatMax : cosLatMin) + EPSILON;
+		low[Y] = Math.sin(minLat) - EPSILON;
+		high[Y] = Math.sin(maxLat) + EPSILON;
+		low[Z] = cosLonMin * ((cosLonMin < 0.0) ? cosLatMax : cosLatMin) - EPSILON;
+		high[Z] = cosLonMax * ((cosLonMax > 0.0) ? cosLatMax : cosLatMin) + EPSILON;
+		this.findInBox(0, this.size, low, high, minLatitude, maxLatitude,
+				minLongitude, maxLongitude, matches);
+	}
+
+	/**
+	 * This function finds the near side features that may reach into a
+	 * rectangle of the disk as seen from the Earth. A feature reaches as
+	 * far as its half size from its position, so features centered outside
+	 * the rectangle are found if they are big enough to cross into it.
+	 * @param minX : The western edge in units of the lunar radius.
+	 * @param maxX : The eastern edge in units of the lunar radius.
+	 * @param minY : The southern edge in units of the lunar radius.
+	 * @param maxY : The northern edge in units of the lunar radius.
+	 * @param matches : The set to record the table rows of the features in.
+	 */
+	public void findOverlapping(double minX, double maxX, double minY, double maxY,
+			BitSet matches) {
+		this.findOverlapping(0, this.size, minX, maxX, minY, maxY, matches);
+	}
+
+	/**
+	 * This function orders a range of points into a subtree, choosing the
+	 * split axis of every node.
+	 * @param order : The point numbers to arrange.
+	 * @param coords : The point coordinates for each axis.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 */
+	private void arrange(int[] order, double[][] coords, int lo, int hi) {
+		if (hi - lo < 2) {
+			return;
+		}
+		int splitAxis = X;
+		double widest = -1.0;
+		for (int a = X; a <= Z; a++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = lo; i < hi; i++) {
+				double value = coords[a][order[i]];
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			if (max - min > widest) {
+				widest = max - min;
+				splitAxis = a;
+			}
+		}
+		int mid = (lo + hi) >>> 1;
+		SpatialIndex.select(order, coords[splitAxis], lo, hi, mid);
+		this.axis[mid] = (byte)splitAxis;
+		this.arrange(order, coords, lo, mid);
+		this.arrange(order, coords, mid + 1, hi);
+	}
+
+	/**
+	 * This function moves the point with the given rank within a range to
+	 * its sorted position, with smaller values before it and larger values
+	 * after it.
+	 * @param order : The point numbers to rearrange.
+	 * @param key : The values to order the points by.
+	 * @param lo : The first position of the range.
+	 * @param hi : One past the last position of the range.
+	 * @param rank : The position to fill.
+	 */
+	private static void select(int[] order, double[] key, int lo, int hi, int rank) {
+		hi--;
+		while (lo < hi) {
+			double pivot = key[order[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key[order[i]] < pivot) {
+					i++;
+				}
+				while (key[order[j]] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int swap = order[i];
+					order[i] = order[j];
+					order[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (rank <= j) {
+				hi = j;
+			}
+			else if (rank >= i) {
+				lo = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * This function fills in the widened boxes for a subtree.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 */
+	private void bound(int lo, int hi) {
+		int mid = (lo + hi) >>> 1;
+		for (int a = X; a <= Z; a++) {
+			this.lower[a][mid] = this.point[a][mid] - this.reach[mid];
+			this.upper[a][mid] = this.point[a][mid] + this.reach[mid];
+		}
+		if (lo < mid) {
+			this.bound(lo, mid);
+			this.merge(mid, (lo + mid) >>> 1);
+		}
+		if (mid + 1 < hi) {
+			this.bound(mid + 1, hi);
+			this.merge(mid, (mid + 1 + hi) >>> 1);
+		}
+	}
+
+	/**
+	 * This function widens the box of a node to hold the box of a child.
+	 * @param node : The node position.
+	 * @param child : The child position.
+	 */
+	private void merge(int node, int child) {
+		for (int a = X; a <= Z; a++) {
+			this.lower[a][node] = Math.min(this.lower[a][node], this.lower[a][child]);
+			this.upper[a][node] = Math.max(this.upper[a][node], this.upper[a][child]);
+		}
+	}
+
+	/**
+	 * This function finds the squared distance from a node to a point.
+	 * @param node : The node position.
+	 * @param target : The point coordinates.
+	 * @return : The squared straight line distance.
+	 */
+	private double distance2(int node, double[] target) {
+		double dx = this.point[X][node] - target[X];
+		double dy = this.point[Y][node] - target[Y];
+		double dz = this.point[Z][node] - target[Z];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * This function looks for closer features in a subtree. The side of
+	 * each split holding the target is searched first, and the other side
+	 * only if the split is closer than the farthest feature kept.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 * @param nearest : The closest features found so far.
+	 */
+	private void findNearest(int lo, int hi, Nearest nearest) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			nearest.offer(this.distance2(mid, nearest.target), this.ids[mid]);
+			int a = this.axis[mid];
+			double offset = nearest.target[a] - this.point[a][mid];
+			if (offset < 0.0) {
+				this.findNearest(lo, mid, nearest);
+				lo = mid + 1;
+			}
+			else {
+				this.findNearest(mid + 1, hi, nearest);
+				hi = mid;
+			}
+			if (nearest.isFull() && offset * offset >= nearest.farthest()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * This function finds the features in a subtree within a distance of
+	 * a point.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 * @param target : The point coordinates.
+	 * @param chord : The straight line distance.
+	 * @param chord2 : The squared straight line distance.
+	 * @param matches : The set to record the matching features in.
+	 */
+	private void findWithin(int lo, int hi, double[] target, double chord,
+			double chord2, BitSet matches) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.distance2(mid, target) <= chord2) {
+				matches.set(this.ids[mid]);
+			}
+			int a = this.axis[mid];
+			double offset = target[a] - this.point[a][mid];
+			if (offset <= chord) {
+				this.findWithin(lo, mid, target, chord, chord2, matches);
+			}
+			if (offset < -chord) {
+				return;
+			}
+			lo = mid + 1;
+		}
+	}
+
+	/**
+	 * This function finds the features in a subtree inside a box and a
+	 * range of latitude and longitude.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 * @param low : The lower corner of the box around the range.
+	 * @param high : The upper corner of the box around the range.
+	 * @param minLatitude : The southern edge in degrees.
+	 * @param maxLatitude : The northern edge in degrees.
+	 * @param minLongitude : The western edge in degrees.
+	 * @param maxLongitude : The eastern edge in degrees.
+	 * @param matches : The set to record the matching features in.
+	 */
+	private void findInBox(int lo, int hi, double[] low, double[] high,
+			double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude, BitSet matches) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			double lat = this.latitude[mid];
+			double lon = this.longitude[mid];
+			if (lat >= minLatitude && lat <= maxLatitude && lon >= minLongitude &&
+					lon <= maxLongitude) {
+				matches.set(this.ids[mid]);
+			}
+			int a = this.axis[mid];
+			double split = this.point[a][mid];
+			if (low[a] <= split) {
+				this.findInBox(lo, mid, low, high, minLatitude, maxLatitude,
+						minLongitude, maxLongitude, matches);
+			}
+			if (high[a] < split) {
+				return;
+			}
+			lo = mid + 1;
+		}
+	}
+
+	/**
+	 * This function finds the near side features in a subtree that may
+	 * reach into a rectangle of the disk.
+	 * @param lo : The first position of the subtree.
+	 * @param hi : One past the last position of the subtree.
+	 * @param minX : The western edge.
+	 * @param maxX : The eastern edge.
+	 * @param minY : The southern edge.
+	 * @param maxY : The northern edge.
+	 * @param matches : The set to record the matching features in.
+	 */
+	private void findOverlapping(int lo, int hi, double minX, double maxX,
+			double minY, double maxY, BitSet matches) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.upper[X][mid] < minX || this.lower[X][mid] > maxX ||
+					this.upper[Y][mid] < minY || this.lower[Y][mid] > maxY ||
+					this.upper[Z][mid] < 0.0) {
+				return;
+			}
+			double x = this.point[X][mid];
+			double y = this.point[Y][mid];
+			double r = this.reach[mid];
+			if (this.point[Z][mid] >= 0.0 && x + r >= minX && x - r <= maxX &&
+					y + r >= minY && y - r <= maxY) {
+				matches.set(this.ids[mid]);
+			}
+			this.findOverlapping(lo, mid, minX, maxX, minY, maxY, matches);
+			lo = mid + 1;
+		}
+	}
+
+	/**
+	 * This function finds the point on the unit sphere for a position.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @return : The point coordinates.
+	 */
+	private static double[] toPoint(double latitude, double longitude) {
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		return new double[] {cosLat * Math.sin(lon), Math.sin(lat),
+				cosLat * Math.cos(lon)};
+	}
+
+	/**
+	 * This class keeps the closest features found during a search in a
+	 * heap with the farthest one on top.
+	 */
+	private static final class Nearest {
+		/** The point being searched around. */
+		final double[] target;
+		/** Number of features to keep. */
+		final int capacity;
+		/** Squared distances in heap order. */
+		private final double[] distance2;
+		/** Table rows in heap order. */
+		private final int[] rows;
+		/** Number of features kept. */
+		private int count;
+
+		/**
+		 * This function is the class constructor.
+		 * @param target : The point being searched around.
+		 * @param capacity : The number of features to keep.
+		 */
+		Nearest(double[] target, int capacity) {
+			this.target = target;
+			this.capacity = Math.max(0, capacity);
+			this.distance2 = new double[this.capacity];
+			this.rows = new int[this.capacity];
+		}
+
+		/**
+		 * This function checks if the heap is full.
+		 * @return : True if capacity features are kept.
+		 */
+		boolean isFull() {
+			return this.count == this.capacity;
+		}
+
+		/**
+		 * This function gets the distance of the farthest feature kept.
+		 * @return : The largest squared distance.
+		 */
+		double farthest() {
+			return this.distance2[0];
+		}
+
+		/**
+		 * This function keeps a feature if it is closer than the farthest
+		 * one kept.
+		 * @param d2 : The squared distance of the feature.
+		 * @param row : The table row of the feature.
+		 */
+		void offer(double d2, int row) {
+			if (this.count < this.capacity) {
+				int i = this.count++;
+				while (i > 0) {
+					int parent = (i - 1) >>> 1;
+					if (this.distance2[parent] >= d2) {
+						break;
+					}
+					this.distance2[i] = this.distance2[parent];
+					this.rows[i] = this.rows[parent];
+					i = parent;
+				}
+				this.distance2[i] = d2;
+				this.rows[i] = row;
+			}
+			else if (this.capacity > 0 && d2 < this.distance2[0]) {
+				this.siftDown(d2, row, this.count);
+			}
+		}
+
+		/**
+		 * This function puts a feature on top of the heap and moves it down
+		 * to its place.
+		 * @param d2 : The squared distance of the feature.
+		 * @param row : The table row of the feature.
+		 * @param length : The number of heap entries in use.
+		 */
+		private void siftDown(double d2, int row, int length) {
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= length) {
+					break;
+				}
+				if (child + 1 < length && this.distance2[child + 1] > this.distance2[child]) {
+					child++;
+				}
+				if (this.distance2[child] <= d2) {
+					break;
+				}
+				this.distance2[i] = this.distance2[child];
+				this.rows[i] = this.rows[child];
+				i = child;
+			}
+			this.distance2[i] = d2;
+			this.rows[i] = row;
+		}
+
+		/**
+		 * This function empties the heap into a list.
+		 * @return : The table rows kept, nearest first.
+		 */
+		int[] toRows() {
+			int[] sorted = new int[this.count];
+			for (int length = this.count; length > 0; length--) {
+				sorted[length - 1] = this.rows[0];
+				if (length > 1) {
+					this.siftDown(this.distance2[length - 1], this.rows[length - 1],
+							length - 1);
+				}
+			}
+			this.count = 0;
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.MoonInfo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * This class is an index over the selenographic colongitude (SELCO) windows
+ * of a feature table. Each feature is visible in the morning while the SELCO
+ * longitude is within the latitude scaled cutoff below the feature's minimum
+ * longitude and in the evening while it is within the cutoff above the
+ * maximum longitude. These windows are held in augmented interval trees so
+ * a query only visits the features whose window contains the SELCO. Features
+ * without a cutoff (Mare and Oceanus) have half-open windows and are held in
+ * sorted endpoint arrays instead.
+ *
+ * @author Michael Reuter
+ */
+public final class VisibilityIndex {
+	/** Number of features in the indexed table. */
+	private final int size;
+	/** Tree of the morning windows. */
+	private final IntervalTree morning;
+	/** Tree of the evening windows. */
+	private final IntervalTree evening;
+	/** Minimum longitudes of the no cutoff features in ascending order. */
+	private final double[] noCutoffMinLon;
+	/** Feature indices for the minimum longitude array. */
+	private final int[] noCutoffMinIds;
+	/** Maximum longitudes of the no cutoff features in ascending order. */
+	private final double[] noCutoffMaxLon;
+	/** Feature indices for the maximum longitude array. */
+	private final int[] noCutoffMaxIds;
+
+	/**
+	 * This function is the class constructor. It builds the index for the
+	 * given features. Query results use the rows of this table.
+	 * @param table : The features to index.
+	 */
+	public VisibilityIndex(FeatureTable table) {
+		this.size = table.size();
+		int numNoCutoff = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (table.isNoCutoff(i)) {
+				numNoCutoff++;
+			}
+		}
+
+		int numCutoff = this.size - numNoCutoff;
+		double[] morningStart = new double[numCutoff];
+		double[] morningEnd = new double[numCutoff];
+		double[] eveningStart = new double[numCutoff];
+		double[] eveningEnd = new double[numCutoff];
+		int[] cutoffIds = new int[numCutoff];
+		double[] minLon = new double[numNoCutoff];
+		double[] maxLon = new double[numNoCutoff];
+		int[] noCutoffIds = new int[numNoCutoff];
+
+		int c = 0;
+		int n = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (table.isNoCutoff(i)) {
+				minLon[n] = table.getMinLongitude(i);
+				maxLon[n] = table.getMaxLongitude(i);
+				noCutoffIds[n] = i;
+				n++;
+			}
+			else {
+				double cutoff = MoonInfo.featureCutoff(table.getLatitude(i));
+				morningStart[c] = table.getMinLongitude(i) - cutoff;
+				morningEnd[c] = table.getMinLongitude(i);
+				eveningStart[c] = table.getMaxLongitude(i);
+				eveningEnd[c] = table.getMaxLongitude(i) + cutoff;
+				cutoffIds[c] = i;
+				c++;
+			}
+		}
+
+		this.morning = new IntervalTree(morningStart, morningEnd, cutoffIds);
+		this.evening = new IntervalTree(eveningStart, eveningEnd, cutoffIds);
+		int[] minOrder = VisibilityIndex.sortedOrder(minLon);
+		this.noCutoffMinLon = VisibilityIndex.permute(minLon, minOrder);
+		this.noCutoffMinIds = VisibilityIndex.permute(noCutoffIds, minOrder);
+		int[] maxOrder = VisibilityIndex.sortedOrder(maxLon);
+		this.noCutoffMaxLon = VisibilityIndex.permute(maxLon, maxOrder);
+		this.noCutoffMaxIds = VisibilityIndex.permute(noCutoffIds, maxOrder);
+	}
+
+	/**
+	 * This function gets the number of features in the index.
+	 * @return : The number of indexed features.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * This function finds the features whose SELCO window contains the
+	 * given SELCO longitude. No libration checks are done here.
+	 * @param selcoLong : The lunar longitude of the current SELCO.
+	 * @param isMorning : True if it is currently morning on the Moon.
+	 * @return : The set of table rows of the matching features.
+	 */
+	public BitSet query(double selcoLong, boolean isMorning) {
+		BitSet matches = new BitSet(this.size);
+		if (isMorning) {
+			this.morning.stab(selcoLong, matches);
+			// Visible while the SELCO is at or below the minimum longitude
+			int first = VisibilityIndex.lowerBound(this.noCutoffMinLon, selcoLong);
+			for (int i = first; i < this.noCutoffMinIds.length; i++) {
+				matches.set(this.noCutoffMinIds[i]);
+			}
+		}
+		else {
+			this.evening.stab(selcoLong, matches);
+			// Visible while the SELCO is at or above the maximum longitude
+			int last = VisibilityIndex.upperBound(this.noCutoffMaxLon, selcoLong);
+			for (int i = 0; i < last; i++) {
+				matches.set(this.noCutoffMaxIds[i]);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * This function finds the first position whose value is not less than
+	 * the key.
+	 * @param values : The values in ascending order.
+	 * @param key : The value to search for.
+	 * @return : The first position with a value >= key.
+	 */
+	private static int lowerBound(double[] values, double key) {
+		int lo = 0;
+		int hi = values.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (values[mid] < key) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * This function finds the first position whose value is greater than
+	 * the key.
+	 * @param values : The values in ascending order.
+	 * @param key : The value to search for.
+	 * @return : The first position with a value > key.
+	 */
+	private static int upperBound(double[] values, double key) {
+		int lo = 0;
+		int hi = values.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (values[mid] <= key) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * This function determines the ascending order of a set of values.
+	 * @param values : The values to order.
+	 * @return : The positions of the values in ascending value order.
+	 */
+	private static int[] sortedOrder(final double[] values) {
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer arg0, Integer arg1) {
+				return Double.compare(values[arg0.intValue()], values[arg1.intValue()]);
+			}
+		});
+		int[] positions = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			positions[i] = order[i].intValue();
+		}
+		return positions;
+	}
+
+	/**
+	 * This function rearranges values into the given order.
+	 * @param values : The values in the original order.
+	 * @param order : The original positions in the new order.
+	 * @return : The rearranged values.
+	 */
+	private static double[] permute(double[] values, int[] order) {
+		double[] permuted = new double[order.length];
+		for (int i = 0; i < order.length; i++) {
+			permuted[i] = values[order[i]];
+		}
+		return permuted;
+	}
+
+	/**
+	 * This function rearranges identifiers into the given order.
+	 * @param values : The identifiers in the original order.
+	 * @param order : The original positions in the new order.
+	 * @return : The rearranged identifiers.
+	 */
+	private static int[] permute(int[] values, int[] order) {
+		int[] permuted = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			permuted[i] = values[order[i]];
+		}
+		return permuted;
+	}
+
+	/**
+	 * This class is a static augmented interval tree. The intervals are
+	 * sorted by start and the tree is implicit in the array with the middle
+	 * of every range as the node. Each node keeps the largest end within its
+	 * subtree so whole subtrees can be skipped during a query.
+	 */
+	private static final class IntervalTree {
+		/** Interval starts in ascending order. */
+		private final double[] start;
+		/** Interval ends. */
+		private final double[] end;
+		/** Largest interval end within each node's subtree. */
+		private final double[] maxEnd;
+		/** Feature index for each interval. */
+		private final int[] ids;
+
+		/**
+		 * This function is the class constructor.
+		 * @param start : The interval starts.
+		 * @param end : The interval ends.
+		 * @param ids : The feature index for each interval.
+		 */
+		IntervalTree(double[] start, double[] end, int[] ids) {
+			int[] order = VisibilityIndex.sortedOrder(start);
+			this.start = VisibilityIndex.permute(start, order);
+			this.end = VisibilityIndex.permute(end, order);
+			this.ids = VisibilityIndex.permute(ids, order);
+			this.maxEnd = new double[this.start.length];
+			this.build(0, this.start.length);
+		}
+
+		/**
+		 * This function fills in the largest end for a subtree.
+		 * @param lo : The first position of the subtree.
+		 * @param hi : One past the last position of the subtree.
+		 * @return : The largest end within the subtree.
+		 */
+		private double build(int lo, int hi) {
+			if (lo >= hi) {
+				return Double.NEGATIVE_INFINITY;
+			}
+			int mid = (lo + hi) >>> 1;
+			double value = Math.max(this.end[mid],
+					Math.max(this.build(lo, mid), this.build(mid + 1, hi)));
+			this.maxEnd[mid] = value;
+			return value;
+		}
+
+		/**
+		 * This function finds all intervals containing the point.
+		 * @param point : The value to search for.
+		 * @param matches : The set to record the matching features in.
+		 */
+		void stab(double point, BitSet matches) {
+			this.stab(0, this.start.length, point, matches);
+		}
+
+		/**
+		 * This function finds all intervals in a subtree containing the point.
+		 * @param lo : The first position of the subtree.
+		 * @param hi : One past the last position of the subtree.
+		 * @param point : The value to search for.
+		 * @param matches : The set to record the matching features in.
+		 */
+		private void stab(int lo, int hi, double point, BitSet matches) {
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (this.maxEnd[mid] < point) {
+					return;
+				}
+				this.stab(lo, mid, point, matches);
+				if (this.start[mid] > point) {
+					// Everything to the right starts later
+					return;
+				}
+				if (this.end[mid] >= point) {
+					matches.set(this.ids[mid]);
+				}
+				lo = mid + 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the result of a visibility report run. Every
+ * (date, site) cell has one bit per feature table row, packed into a
+ * single array of words. The report is filled in by the report engine and
+ * is not changed afterwards.
+ *
+ * @author Michael Reuter
+ */
+public final class VisibilityReport {
+	/** Number of bits in each word. */
+	private static final int WORD_SIZE = 64;
+	/** The features the report covers. */
+	private final FeatureTable table;
+	/** The observing sites the report covers. */
+	private final List<ObservingSite> sites;
+	/** Number of dates the report covers. */
+	private final int numDates;
+	/** Number of words for each cell. */
+	private final int wordsPerCell;
+	/** Observation Julian date of each cell. */
+	private final double[] julianDates;
+	/** Visibility bits by cell, then table row. */
+	private final long[] bits;
+
+	/**
+	 * This function is the class constructor. It creates an empty report.
+	 * @param table : The features the report covers.
+	 * @param sites : The observing sites the report covers.
+	 * @param numDates : The number of dates the report covers.
+	 */
+	VisibilityReport(FeatureTable table, List<ObservingSite> sites, int numDates) {
+		this.table = table;
+		this.sites = Collections.unmodifiableList(sites);
+		this.numDates = numDates;
+		this.wordsPerCell = (table.size() + WORD_SIZE - 1) / WORD_SIZE;
+		int numCells = numDates * sites.size();
+		this.julianDates = new double[numCells];
+		this.bits = new long[numCells * this.wordsPerCell];
+	}
+
+	/**
+	 * Getter for the feature table.
+	 * @return : The features the report covers.
+	 */
+	public FeatureTable getFeatures() {
+		return this.table;
+	}
+
+	/**
+	 * Getter for the observing sites.
+	 * @return : The sites the report covers.
+	 */
+	public List<ObservingSite> getSites() {
+		return this.sites;
+	}
+
+	/**
+	 * Getter for the number of dates.
+	 * @return : The number of dates the report covers.
+	 */
+	public int getNumDates() {
+		return this.numDates;
+	}
+
+	/**
+	 * This function gets the observation time of a cell.
+	 * @param date : The date index.
+	 * @param site : The site index.
+	 * @return : The UTC Julian date of the observation.
+	 */
+	public double getJulianDate(int date, int site) {
+		return this.julianDates[this.cell(date, site)];
+	}
+
+	/**
+	 * This function checks if a feature is visible for a cell.
+	 * @param date : The date index.
+	 * @param site : The site index.
+	 * @param row : The feature table row.
+	 * @return : True if the feature is visible.
+	 */
+	public boolean isVisible(int date, int site, int row) {
+		long word = this.bits[this.cell(date, site) * this.wordsPerCell + row / WORD_SIZE];
+		return 0L != (word & (1L << (row % WORD_SIZE)));
+	}
+
+	/**
+	 * This function gets all of the visible features for a cell.
+	 * @param date : The date index.
+	 * @param site : The site index.
+	 * @return : The set of visible feature table rows.
+	 */
+	public BitSet getVisibleRows(int date, int site) {
+		BitSet visible = new BitSet(this.table.size());
+		int offset = this.cell(date, site) * this.wordsPerCell;
+		for (int w = 0; w < this.wordsPerCell; w++) {
+			long word = this.bits[offset + w];
+			while (0L != word) {
+				int bit = Long.numberOfTrailingZeros(word);
+				visible.set(w * WORD_SIZE + bit);
+				word &= word - 1;
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * This function counts the visible features for a cell.
+	 * @param date : The date index.
+	 * @param site : The site index.
+	 * @return : The number of visible features.
+	 */
+	public int getVisibleCount(int date, int site) {
+		int count = 0;
+		int offset = this.cell(date, site) * this.wordsPerCell;
+		for (int w = 0; w < this.wordsPerCell; w++) {
+			count += Long.bitCount(this.bits[offset + w]);
+		}
+		return count;
+	}
+
+	/**
+	 * This function records the observation time of a cell.
+	 * @param cell : The cell index.
+	 * @param jd : The UTC Julian date of the observation.
+	 */
+	void setJulianDate(int cell, double jd) {
+		this.julianDates[cell] = jd;
+	}
+
+	/**
+	 * This function gets the observation time of a cell.
+	 * @param cell : The cell index.
+	 * @return : The UTC Julian date of the observation.
+	 */
+	double getCellJulianDate(int cell) {
+		return this.julianDates[cell];
+	}
+
+	/**
+	 * This function marks a feature as visible for a cell.
+	 * @param cell : The cell index.
+	 * @param row : The feature table row.
+	 */
+	void setVisible(int cell, int row) {
+		this.bits[cell * this.wordsPerCell + row / WORD_SIZE] |= 1L << (row % WORD_SIZE);
+	}
+
+	/**
+	 * This function gets the number of cells in the report.
+	 * @return : The number of (date, site) cells.
+	 */
+	int getNumCells() {
+		return this.julianDates.length;
+	}
+
+	/**
+	 * This function calculates the cell index for a date and site.
+	 * @param date : The date index.
+	 * @param site : The site index.
+	 * @return : The cell index.
+	 */
+	private int cell(int date, int site) {
+		if (date < 0 || date >= this.numDates || site < 0 || site >= this.sites.size()) {
+			throw new IndexOutOfBoundsException("Bad report date or site.");
+		}
+		return date * this.sites.size() + site;
+	}
+}
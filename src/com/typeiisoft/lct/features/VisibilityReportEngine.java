@@ -0,0 +1,171 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.EphemerisCache;
+import com.typeiisoft.lct.utils.MoonInfo;
+import com.typeiisoft.lct.utils.ObservingSite;
+
+import com.mhuss.AstroLib.AstroDate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs the feature visibility checks over a grid of observing
+ * dates and sites. Each date is observed at the same local time at every
+ * site, so sites in different time zones see the Moon at different
+ * instants. The grid is split into blocks of cells that are run on a pool
+ * of threads. Every cell works from its own Moon state and only writes its
+ * own part of the report, so the threads share nothing but the read only
+ * feature table and ephemeris. No Android classes are used, so reports can
+ * be run on a plain JVM.
+ *
+ * @author Michael Reuter
+ */
+public final class VisibilityReportEngine {
+	/** Number of blocks of cells given to each thread. */
+	private static final int BLOCKS_PER_THREAD = 4;
+	/** Number of Moon state values. */
+	private static final int NUM_QUANTITIES = EphemerisCache.Quantity.values().length;
+	/** The features to check. */
+	private final FeatureTable table;
+	/** The ephemeris to interpolate from (null for exact calculations). */
+	private final EphemerisCache ephemeris;
+	/** Number of threads to run the checks on. */
+	private final int numThreads;
+
+	/**
+	 * This function is the class constructor using one thread per
+	 * processor.
+	 * @param table : The features to check.
+	 * @param ephemeris : The ephemeris to interpolate from or null for exact
+	 * calculations.
+	 */
+	public VisibilityReportEngine(FeatureTable table, EphemerisCache ephemeris) {
+		this(table, ephemeris, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * This function is the class constructor.
+	 * @param table : The features to check.
+	 * @param ephemeris : The ephemeris to interpolate from or null for exact
+	 * calculations.
+	 * @param numThreads : The number of threads to run the checks on.
+	 */
+	public VisibilityReportEngine(FeatureTable table, EphemerisCache ephemeris,
+			int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Report engine needs at least one thread.");
+		}
+		this.table = table;
+		this.ephemeris = ephemeris;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * This function runs the visibility checks for every date and site.
+	 * @param startDate : The first date as (day_of_month, month, year).
+	 * @param numDates : The number of consecutive dates to check.
+	 * @param sites : The observing sites to check.
+	 * @param hours : The local observation hour of day.
+	 * @param minutes : The local observation minutes of hour.
+	 * @return : The visibility report.
+	 */
+	public VisibilityReport run(int[] startDate, int numDates, List<ObservingSite> sites,
+			int hours, int minutes) {
+		if (numDates < 1 || sites.isEmpty()) {
+			throw new IllegalArgumentException("Report needs at least one date and site.");
+		}
+		final VisibilityReport report = new VisibilityReport(this.table,
+				new ArrayList<ObservingSite>(sites), numDates);
+		double startJd = new AstroDate(startDate[0], startDate[1], startDate[2]).jd();
+		double localTime = (hours + minutes / 60.0) / 24.0;
+		for (int d = 0; d < numDates; d++) {
+			for (int s = 0; s < sites.size(); s++) {
+				double jd = startJd + d + localTime - sites.get(s).getTzOffset() / 24.0;
+				report.setJulianDate(d * sites.size() + s, jd);
+			}
+		}
+
+		int numCells = report.getNumCells();
+		int numBlocks = Math.min(numCells, this.numThreads * BLOCKS_PER_THREAD);
+		List<Callable<Void>> blocks = new ArrayList<Callable<Void>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int first = (int)((long)numCells * b / numBlocks);
+			final int last = (int)((long)numCells * (b + 1) / numBlocks);
+			blocks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					VisibilityReportEngine.this.runCells(report, first, last);
+					return null;
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+		try {
+			for (Future<Void> future : pool.invokeAll(blocks)) {
+				future.get();
+			}
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Visibility report was interrupted.");
+		}
+		catch (ExecutionException ee) {
+			throw new IllegalStateException("Visibility report failed.", ee.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return report;
+	}
+
+	/**
+	 * This function runs the visibility checks for a block of cells.
+	 * @param report : The report to fill in.
+	 * @param first : The first cell of the block.
+	 * @param last : One past the last cell of the block.
+	 */
+	private void runCells(VisibilityReport report, int first, int last) {
+		double[] values = new double[NUM_QUANTITIES];
+		int size = this.table.size();
+		for (int cell = first; cell < last; cell++) {
+			double jd = report.getCellJulianDate(cell);
+			this.moonState(jd, values);
+			double phaseAngle = values[EphemerisCache.Quantity.PHASE_ANGLE.ordinal()];
+			double selcoLong = MoonInfo.selcoLongitude(
+					values[EphemerisCache.Quantity.COLONGITUDE.ordinal()], phaseAngle);
+			boolean isMorning = MoonInfo.isMorning(phaseAngle);
+			double libLatitude = values[EphemerisCache.Quantity.LIBRATION_LATITUDE.ordinal()];
+			double libLongitude = values[EphemerisCache.Quantity.LIBRATION_LONGITUDE.ordinal()];
+			for (int i = 0; i < size; i++) {
+				if (MoonInfo.isVisible(this.table, i, selcoLong, isMorning,
+						libLatitude, libLongitude)) {
+					report.setVisible(cell, i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This function calculates the Moon state for a cell. The ephemeris is
+	 * used when it covers the date, otherwise AstroLib is called directly.
+	 * @param jd : The Julian date for the calculation.
+	 * @param values : The array to store the values in by Quantity ordinal.
+	 */
+	private void moonState(double jd, double[] values) {
+		if (null != this.ephemeris && this.ephemeris.covers(jd)) {
+			for (EphemerisCache.Quantity quantity : EphemerisCache.Quantity.values()) {
+				values[quantity.ordinal()] = this.ephemeris.evaluate(quantity, jd);
+			}
+		}
+		else {
+			EphemerisCache.computeExact(jd, values);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.typeiisoft.lct.features;
+
+/**
+ * This class holds a span of time during which a lunar feature is visible.
+ * The start and end are UTC Julian dates. Windows are ordered by start,
+ * then end.
+ *
+ * @author Michael Reuter
+ */
+public final class VisibilityWindow implements Comparable<VisibilityWindow> {
+	/** The visible lunar feature. */
+	private final LunarFeature feature;
+	/** Julian date when the feature becomes visible. */
+	private final double startJd;
+	/** Julian date when the feature stops being visible. */
+	private final double endJd;
+
+	/**
+	 * This function is the class constructor.
+	 * @param feature : The visible lunar feature.
+	 * @param startJd : The Julian date when the feature becomes visible.
+	 * @param endJd : The Julian date when the feature stops being visible.
+	 */
+	public VisibilityWindow(LunarFeature feature, double startJd, double endJd) {
+		this.feature = feature;
+		this.startJd = startJd;
+		this.endJd = endJd;
+	}
+
+	/**
+	 * Getter for the visible feature.
+	 * @return : The lunar feature.
+	 */
+	public LunarFeature getFeature() {
+		return this.feature;
+	}
+
+	/**
+	 * Getter for the window start.
+	 * @return : The Julian date when the feature becomes visible.
+	 */
+	public double getStartJd() {
+		return this.startJd;
+	}
+
+	/**
+	 * Getter for the window end.
+	 * @return : The Julian date when the feature stops being visible.
+	 */
+	public double getEndJd() {
+		return this.endJd;
+	}
+
+	/**
+	 * This function calculates the length of the window.
+	 * @return : The window length in days.
+	 */
+	public double getDuration() {
+		return this.endJd - this.startJd;
+	}
+
+	/**
+	 * This function orders the windows by start, then end.
+	 * @param other : The window to compare against.
+	 * @return : The standard comparison value.
+	 */
+	@Override
+	public int compareTo(VisibilityWindow other) {
+		int value = Double.compare(this.startJd, other.startJd);
+		if (0 == value) {
+			value = Double.compare(this.endJd, other.endJd);
+		}
+		return value;
+	}
+
+	/**
+	 * This function creates a string representation of the window.
+	 * @return : The window's string representation.
+	 */
+	public String toString() {
+		return this.feature.getName() + ": " + Double.toString(this.startJd) +
+				" - " + Double.toString(this.endJd);
+	}
+}
@@ -0,0 +1,200 @@
+package com.typeiisoft.lct.features;
+
+import com.typeiisoft.lct.utils.EphemerisCache;
+import com.typeiisoft.lct.utils.MoonInfo;
+
+import com.mhuss.AstroLib.LunarCalc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class finds the spans of time when the features of a table are
+ * visible. The Moon state is stepped through time from the ephemeris cache
+ * and every feature is run through the same SELCO window and libration
+ * checks as {@link MoonInfo}. When a feature's visibility changes between
+ * two steps, the instant of the change is found by bisection. The SELCO
+ * moves about 12 degrees a day and the shortest SELCO window is 15 degrees
+ * wide, so the default step of six hours cannot skip over a window. Changes
+ * that last less than a step, such as near the quarter phases where the
+ * phase angle and colongitude cross their boundaries at slightly different
+ * times, are not reported.
+ *
+ * @author Michael Reuter
+ */
+public final class VisibilityWindowSolver {
+	/** Default time between visibility checks in days. */
+	public static final double DEFAULT_STEP = 0.25;
+	/** Default accuracy of the window start and end in days (one minute). */
+	public static final double DEFAULT_TOLERANCE = 1.0 / 1440.0;
+	/** The features to find the windows for. */
+	private final FeatureTable table;
+	/** The ephemeris to calculate the Moon state from. */
+	private final EphemerisCache ephemeris;
+	/** Time between visibility checks in days. */
+	private final double step;
+	/** Accuracy of the window start and end in days. */
+	private final double tolerance;
+
+	/**
+	 * This function is the class constructor with the default step and
+	 * tolerance.
+	 * @param table : The features to find the windows for.
+	 * @param ephemeris : The ephemeris to calculate the Moon state from.
+	 */
+	public VisibilityWindowSolver(FeatureTable table, EphemerisCache ephemeris) {
+		this(table, ephemeris, DEFAULT_STEP, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * This function is the class constructor.
+	 * @param table : The features to find the windows for.
+	 * @param ephemeris : The ephemeris to calculate the Moon state from.
+	 * @param step : The time between visibility checks in days.
+	 * @param tolerance : The accuracy of the window start and end in days.
+	 */
+	public VisibilityWindowSolver(FeatureTable table, EphemerisCache ephemeris,
+			double step, double tolerance) {
+		if (step <= 0.0 || tolerance <= 0.0) {
+			throw new IllegalArgumentException("Bad window solver step or tolerance.");
+		}
+		this.table = table;
+		this.ephemeris = ephemeris;
+		this.step = step;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * This function finds the visibility windows over a number of lunations.
+	 * @param startJd : The Julian date to start from.
+	 * @param lunations : The number of lunations to cover.
+	 * @return : The windows sorted by start.
+	 */
+	public List<VisibilityWindow> solveLunations(double startJd, int lunations) {
+		return this.solve(startJd, startJd + lunations * LunarCalc.SYNODIC_MONTH);
+	}
+
+	/**
+	 * This function finds the visibility windows between two dates. Windows
+	 * that are open at either date are cut off at that date. The ephemeris
+	 * cache must cover the entire span.
+	 * @param startJd : The Julian date to start from.
+	 * @param endJd : The Julian date to end at.
+	 * @return : The windows sorted by start.
+	 */
+	public List<VisibilityWindow> solve(double startJd, double endJd) {
+		if (endJd <= startJd || !this.ephemeris.covers(startJd) ||
+				!this.ephemeris.covers(endJd)) {
+			throw new IllegalArgumentException("Window span is outside the ephemeris cache.");
+		}
+		int size = this.table.size();
+		List<VisibilityWindow> windows = new ArrayList<VisibilityWindow>();
+		double[] openStart = new double[size];
+		int numSteps = (int)Math.ceil((endJd - startJd) / this.step);
+		double stepSize = (endJd - startJd) / numSteps;
+
+		BitSet previous = this.visibleRows(startJd);
+		for (int i = previous.nextSetBit(0); i >= 0; i = previous.nextSetBit(i + 1)) {
+			openStart[i] = startJd;
+		}
+		double previousJd = startJd;
+		for (int k = 1; k <= numSteps; k++) {
+			double jd = (k == numSteps) ? endJd : startJd + k * stepSize;
+			BitSet current = this.visibleRows(jd);
+			BitSet changed = (BitSet)current.clone();
+			changed.xor(previous);
+			for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+				boolean wasVisible = previous.get(i);
+				double crossing = this.findCrossing(i, previousJd, jd, wasVisible);
+				if (wasVisible) {
+					windows.add(new VisibilityWindow(this.table.getFeature(i),
+							openStart[i], crossing));
+				}
+				else {
+					openStart[i] = crossing;
+				}
+			}
+			previous = current;
+			previousJd = jd;
+		}
+		for (int i = previous.nextSetBit(0); i >= 0; i = previous.nextSetBit(i + 1)) {
+			windows.add(new VisibilityWindow(this.table.getFeature(i), openStart[i], endJd));
+		}
+		Collections.sort(windows);
+		return windows;
+	}
+
+	/**
+	 * This function finds the visible table rows at the given date. The
+	 * Moon state is evaluated once for all of the rows.
+	 * @param jd : The Julian date to check.
+	 * @return : The set of visible table rows.
+	 */
+	private BitSet visibleRows(double jd) {
+		int size = this.table.size();
+		BitSet visible = new BitSet(size);
+		double[] state = this.moonState(jd);
+		boolean isMorning = MoonInfo.isMorning(state[1]);
+		for (int i = 0; i < size; i++) {
+			if (MoonInfo.isVisible(this.table, i, state[0], isMorning, state[2],
+					state[3])) {
+				visible.set(i);
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * This function checks if a single table row is visible at the given
+	 * date.
+	 * @param row : The table row to check.
+	 * @param jd : The Julian date to check.
+	 * @return : True if the feature is visible.
+	 */
+	private boolean isVisible(int row, double jd) {
+		double[] state = this.moonState(jd);
+		return MoonInfo.isVisible(this.table, row, state[0],
+				MoonInfo.isMorning(state[1]), state[2], state[3]);
+	}
+
+	/**
+	 * This function finds the instant a feature's visibility changes by
+	 * bisection.
+	 * @param row : The table row of the feature.
+	 * @param lowJd : A Julian date before the change.
+	 * @param highJd : A Julian date after the change.
+	 * @param wasVisible : The visibility before the change.
+	 * @return : The Julian date of the change.
+	 */
+	private double findCrossing(int row, double lowJd, double highJd,
+			boolean wasVisible) {
+		while (highJd - lowJd > this.tolerance) {
+			double midJd = (lowJd + highJd) / 2.0;
+			if (this.isVisible(row, midJd) == wasVisible) {
+				lowJd = midJd;
+			}
+			else {
+				highJd = midJd;
+			}
+		}
+		return (lowJd + highJd) / 2.0;
+	}
+
+	/**
+	 * This function calculates the Moon state needed for the visibility
+	 * checks.
+	 * @param jd : The Julian date for the calculation.
+	 * @return : The SELCO longitude, phase angle and librations in latitude
+	 * and longitude.
+	 */
+	private double[] moonState(double jd) {
+		double phaseAngle = this.ephemeris.evaluate(EphemerisCache.Quantity.PHASE_ANGLE, jd);
+		double colongitude = this.ephemeris.evaluate(EphemerisCache.Quantity.COLONGITUDE, jd);
+		double[] state = {MoonInfo.selcoLongitude(colongitude, phaseAngle), phaseAngle,
+				this.ephemeris.evaluate(EphemerisCache.Quantity.LIBRATION_LATITUDE, jd),
+				this.ephemeris.evaluate(EphemerisCache.Quantity.LIBRATION_LONGITUDE, jd)};
+		return state;
+	}
+}
@@ -0,0 +1,26 @@
+package com.typeiisoft.lct.map;
+
+/**
+ * This interface is the imagery the map tiles are made from. The tile
+ * renderer asks for the color at the point on the Moon under each tile
+ * pixel, so the imagery can be held in any projection and is never drawn
+ * whole.
+ *
+ * @author Michael Reuter
+ */
+public interface Basemap {
+	/**
+	 * This function gets the color of the Moon at a point.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @return : The opaque RGB color.
+	 */
+	int getColor(double latitude, double longitude);
+
+	/**
+	 * This function gets a value that changes whenever the imagery does, so
+	 * stored tiles from other imagery are not used.
+	 * @return : The imagery signature.
+	 */
+	long getSignature();
+}
@@ -0,0 +1,159 @@
+package com.typeiisoft.lct.map;
+
+import com.typeiisoft.lct.features.FeatureTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is the basemap drawn from the feature catalog. The maria and
+ * the other dark plains are shaded as dark ellipses from their positions
+ * and sizes, and the large craters get a darker floor inside a bright rim,
+ * over an even highland tone. The ellipse edges are softened so the tiles
+ * have no hard steps. It is a plain albedo sketch rather than a photograph,
+ * but it needs no bundled imagery and always matches the features plotted
+ * over it.
+ *
+ * @author Michael Reuter
+ */
+public final class CatalogBasemap implements Basemap {
+	/** Version of the drawing, part of the signature. */
+	private static final int VERSION = 1;
+	/** Color of the highlands. */
+	private static final int HIGHLAND_COLOR = 0xb5b1a8;
+	/** Color of the maria. */
+	private static final int MARE_COLOR = 0x6b6862;
+	/** Color of the crater rims. */
+	private static final int RIM_COLOR = 0xdcd8cf;
+	/** Feature types drawn as dark plains. */
+	private static final String[] PLAIN_TYPES = {"Mare", "Oceanus", "Lacus",
+		"Sinus", "Palus"};
+	/** Smallest crater width drawn in degrees of latitude. */
+	private static final double MIN_CRATER_SIZE = 1.5;
+	/** Width of the softened ellipse edges as a fraction of the radius. */
+	private static final double EDGE = 0.15;
+	/** Width of the crater rims as a fraction of the radius. */
+	private static final double RIM = 0.2;
+	/** Amount a crater floor is darkened toward the mare color. */
+	private static final double FLOOR_SHADE = 0.25;
+	/** The dark plains as latitude, longitude and half widths. */
+	private final double[][] plains;
+	/** The craters as latitude, longitude and half widths. */
+	private final double[][] craters;
+	/** The imagery signature. */
+	private final long signature;
+
+	/**
+	 * This function is the class constructor.
+	 * @param features : The feature catalog.
+	 */
+	public CatalogBasemap(FeatureTable features) {
+		List<double[]> plainList = new ArrayList<double[]>();
+		List<double[]> craterList = new ArrayList<double[]>();
+		long hash = VERSION;
+		for (int i = 0; i < features.size(); i++) {
+			double[] ellipse = {features.getLatitude(i), features.getLongitude(i),
+					Math.abs(features.getDeltaLatitude(i)) / 2.0,
+					Math.abs(features.getDeltaLongitude(i)) / 2.0};
+			if (ellipse[2] <= 0.0 || ellipse[3] <= 0.0) {
+				continue;
+			}
+			String type = features.getFeatureType(i);
+			if (CatalogBasemap.isPlain(type)) {
+				plainList.add(ellipse);
+			}
+			else if ("Crater".equalsIgnoreCase(type) &&
+					2.0 * ellipse[2] >= MIN_CRATER_SIZE) {
+				craterList.add(ellipse);
+			}
+			else {
+				continue;
+			}
+			for (double value : ellipse) {
+				hash = 31 * hash + Double.doubleToLongBits(value);
+			}
+		}
+		this.plains = plainList.toArray(new double[plainList.size()][]);
+		this.craters = craterList.toArray(new double[craterList.size()][]);
+		this.signature = hash;
+	}
+
+	/**
+	 * This function gets the color of the Moon at a point.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @return : The opaque RGB color.
+	 */
+	@Override
+	public int getColor(double latitude, double longitude) {
+		double mare = 0.0;
+		for (double[] plain : this.plains) {
+			double distance = CatalogBasemap.distance(plain, latitude, longitude);
+			if (distance < 1.0) {
+				mare = Math.max(mare, Math.min(1.0, (1.0 - distance) / EDGE));
+			}
+		}
+		int color = TileRenderer.mix(HIGHLAND_COLOR, MARE_COLOR, mare);
+		for (double[] crater : this.craters) {
+			double distance = CatalogBasemap.distance(crater, latitude, longitude);
+			if (distance >= 1.0) {
+				continue;
+			}
+			// Bright rim falling off to either side, darker floor inside
+			double rim = 1.0 - Math.abs(distance - (1.0 - RIM / 2.0)) / (RIM / 2.0);
+			if (distance < 1.0 - RIM) {
+				color = TileRenderer.mix(color, MARE_COLOR, FLOOR_SHADE);
+			}
+			else if (rim > 0.0) {
+				color = TileRenderer.mix(color, RIM_COLOR, rim);
+			}
+		}
+		return color;
+	}
+
+	/**
+	 * Getter for the imagery signature.
+	 * @return : The signature of the catalog features used.
+	 */
+	@Override
+	public long getSignature() {
+		return this.signature;
+	}
+
+	/**
+	 * This function checks if a feature type is drawn as a dark plain.
+	 * @param type : The feature type.
+	 * @return : True for the mare-like types.
+	 */
+	private static boolean isPlain(String type) {
+		for (String plainType : PLAIN_TYPES) {
+			if (plainType.equalsIgnoreCase(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This function finds how far a point is from the center of an ellipse
+	 * relative to the ellipse size. The bounding box is checked first so
+	 * most ellipses cost two comparisons.
+	 * @param ellipse : The latitude, longitude and half widths.
+	 * @param latitude : The latitude of the point in degrees.
+	 * @param longitude : The longitude of the point in degrees.
+	 * @return : The relative distance, one on the ellipse edge, or a value
+	 * of one or more outside it.
+	 */
+	private static double distance(double[] ellipse, double latitude,
+			double longitude) {
+		double dLat = (latitude - ellipse[0]) / ellipse[2];
+		if (dLat >= 1.0 || dLat <= -1.0) {
+			return 1.0;
+		}
+		double dLon = (longitude - ellipse[1]) / ellipse[3];
+		if (dLon >= 1.0 || dLon <= -1.0) {
+			return 1.0;
+		}
+		return Math.sqrt(dLat * dLat + dLon * dLon);
+	}
+}
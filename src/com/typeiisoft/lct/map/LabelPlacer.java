@@ -0,0 +1,127 @@
+package com.typeiisoft.lct.map;
+
+import java.util.Arrays;
+
+/**
+ * This class places map labels greedily so none of them overlap. Labels
+ * are offered in priority order and each one is kept only if it does not
+ * cross a label already kept. The kept labels are filed in a grid of
+ * square cells over the view, so a new label is only checked against the
+ * labels in the cells it covers. The arrays are reused from frame to
+ * frame. No Android classes are used, so placement can be checked on the
+ * JVM.
+ *
+ * @author Michael Reuter
+ */
+final class LabelPlacer {
+	/** Width and height of a grid cell in pixels. */
+	private static final int CELL_SIZE = 64;
+	/** Initial number of labels and grid entries to hold. */
+	private static final int INITIAL_CAPACITY = 64;
+	/** View width in pixels. */
+	private int width;
+	/** View height in pixels. */
+	private int height;
+	/** Number of grid columns. */
+	private int columns;
+	/** Number of grid rows. */
+	private int rows;
+	/** First grid entry of each cell or -1 for none. */
+	private int[] cellHead = new int[0];
+	/** Next grid entry in the same cell or -1 for none. */
+	private int[] entryNext = new int[INITIAL_CAPACITY];
+	/** Label of each grid entry. */
+	private int[] entryLabel = new int[INITIAL_CAPACITY];
+	/** Number of grid entries in use. */
+	private int entryCount;
+	/** Left edges of the kept labels. */
+	private float[] left = new float[INITIAL_CAPACITY];
+	/** Top edges of the kept labels. */
+	private float[] top = new float[INITIAL_CAPACITY];
+	/** Right edges of the kept labels. */
+	private float[] right = new float[INITIAL_CAPACITY];
+	/** Bottom edges of the kept labels. */
+	private float[] bottom = new float[INITIAL_CAPACITY];
+	/** Number of kept labels. */
+	private int count;
+
+	/**
+	 * This function removes all labels and sizes the grid for a view.
+	 * @param width : The view width in pixels.
+	 * @param height : The view height in pixels.
+	 */
+	void reset(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+		this.rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+		int cells = this.columns * this.rows;
+		if (this.cellHead.length < cells) {
+			this.cellHead = new int[cells];
+		}
+		Arrays.fill(this.cellHead, 0, cells, -1);
+		this.entryCount = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * This function keeps a label if it does not overlap the labels kept so
+	 * far. Labels wholly outside the view are never kept.
+	 * @param labelLeft : The left edge in pixels.
+	 * @param labelTop : The top edge in pixels.
+	 * @param labelRight : The right edge in pixels.
+	 * @param labelBottom : The bottom edge in pixels.
+	 * @return : True if the label was kept.
+	 */
+	boolean place(float labelLeft, float labelTop, float labelRight, float labelBottom) {
+		if (labelRight < 0.0f || labelLeft >= this.width || labelBottom < 0.0f ||
+				labelTop >= this.height) {
+			return false;
+		}
+		int firstColumn = Math.max(0, (int)Math.floor(labelLeft / CELL_SIZE));
+		int lastColumn = Math.min(this.columns - 1, (int)Math.floor(labelRight / CELL_SIZE));
+		int firstRow = Math.max(0, (int)Math.floor(labelTop / CELL_SIZE));
+		int lastRow = Math.min(this.rows - 1, (int)Math.floor(labelBottom / CELL_SIZE));
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int entry = this.cellHead[row * this.columns + column];
+				while (-1 != entry) {
+					int label = this.entryLabel[entry];
+					if (labelLeft < this.right[label] && labelRight > this.left[label] &&
+							labelTop < this.bottom[label] && labelBottom > this.top[label]) {
+						return false;
+					}
+					entry = this.entryNext[entry];
+				}
+			}
+		}
+
+		if (this.count == this.left.length) {
+			int capacity = this.count * 2;
+			this.left = Arrays.copyOf(this.left, capacity);
+			this.top = Arrays.copyOf(this.top, capacity);
+			this.right = Arrays.copyOf(this.right, capacity);
+			this.bottom = Arrays.copyOf(this.bottom, capacity);
+		}
+		int label = this.count++;
+		this.left[label] = labelLeft;
+		this.top[label] = labelTop;
+		this.right[label] = labelRight;
+		this.bottom[label] = labelBottom;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				if (this.entryCount == this.entryNext.length) {
+					int capacity = this.entryCount * 2;
+					this.entryNext = Arrays.copyOf(this.entryNext, capacity);
+					this.entryLabel = Arrays.copyOf(this.entryLabel, capacity);
+				}
+				int cell = row * this.columns + column;
+				int entry = this.entryCount++;
+				this.entryLabel[entry] = label;
+				this.entryNext[entry] = this.cellHead[cell];
+				this.cellHead[cell] = entry;
+			}
+		}
+		return true;
+	}
+}
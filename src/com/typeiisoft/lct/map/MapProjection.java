@@ -0,0 +1,83 @@
+package com.typeiisoft.lct.map;
+
+/**
+ * This class converts between selenographic coordinates and positions on
+ * the Moon map. The map is an orthographic view of the near side centered
+ * on the mean center of the disk, with north up and east (positive
+ * longitude) to the right. Map positions run from zero to one across a
+ * square that just holds the disk, so a map drawn at any size or tile zoom
+ * uses the same positions.
+ *
+ * @author Michael Reuter
+ */
+public final class MapProjection {
+	/** Map position of the center of the disk. */
+	public static final double CENTER = 0.5;
+	/** Radius of the disk in map units. */
+	public static final double RADIUS = 0.5;
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private MapProjection() {
+	}
+
+	/**
+	 * This function finds the map position of a point on the Moon.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @param position : The array to hold the map x and y.
+	 * @return : True if the point is on the near side.
+	 */
+	public static boolean project(double latitude, double longitude,
+			double[] position) {
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		position[0] = CENTER + RADIUS * cosLat * Math.sin(lon);
+		position[1] = CENTER - RADIUS * Math.sin(lat);
+		return cosLat * Math.cos(lon) >= 0.0;
+	}
+
+	/**
+	 * This function finds the point on the Moon at a map position.
+	 * @param x : The map x position.
+	 * @param y : The map y position.
+	 * @param coordinates : The array to hold the latitude and longitude in
+	 * degrees.
+	 * @return : True if the position is on the disk.
+	 */
+	public static boolean unproject(double x, double y, double[] coordinates) {
+		double nx = (x - CENTER) / RADIUS;
+		double ny = (CENTER - y) / RADIUS;
+		double rho2 = nx * nx + ny * ny;
+		if (rho2 > 1.0) {
+			return false;
+		}
+		double nz = Math.sqrt(1.0 - rho2);
+		coordinates[0] = Math.toDegrees(Math.asin(ny));
+		coordinates[1] = Math.toDegrees(Math.atan2(nx, nz));
+		return true;
+	}
+
+	/**
+	 * This function finds the size of a feature on the map. The widths are
+	 * scaled by the foreshortening at the feature's position.
+	 * @param latitude : The selenographic latitude in degrees.
+	 * @param longitude : The selenographic longitude in degrees.
+	 * @param deltaLatitude : The latitude width of the feature in degrees.
+	 * @param deltaLongitude : The longitude width of the feature in degrees.
+	 * @param halfSize : The array to hold the half width and half height in
+	 * map units.
+	 */
+	public static void featureSize(double latitude, double longitude,
+			double deltaLatitude, double deltaLongitude, double[] halfSize) {
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		halfSize[0] = RADIUS * cosLat * Math.abs(Math.cos(lon)) *
+				Math.toRadians(Math.abs(deltaLongitude) / 2.0);
+		halfSize[1] = RADIUS * cosLat *
+				Math.toRadians(Math.abs(deltaLatitude) / 2.0);
+	}
+}
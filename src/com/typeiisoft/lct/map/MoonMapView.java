@@ -0,0 +1,652 @@
+package com.typeiisoft.lct.map;
+
+import com.typeiisoft.lct.R;
+import com.typeiisoft.lct.features.FeatureTable;
+import com.typeiisoft.lct.features.LunarFeature;
+import com.typeiisoft.lct.features.SpatialIndex;
+import com.typeiisoft.lct.utils.MoonState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+/**
+ * This class shows the near side map with the catalog features and the
+ * terminator over it. The map can be panned by dragging and zoomed by
+ * pinching or double tapping. The map is drawn from the tiles of the zoom
+ * level closest to the screen resolution. A tile that is not ready yet is
+ * stood in for by the matching part of a lower level tile, and the tile
+ * cache is asked for it, so a frame never waits on tile drawing or the
+ * disk. The features are outlined as ellipses from their positions and
+ * sizes. Only the features the spatial index finds reaching into the view
+ * are visited, and their names are placed largest feature first, leaving
+ * out any label that would overlap one already placed. Tapping a feature
+ * outline reports the smallest feature under the tap. The night side is
+ * shaded up to the terminator, which is the meridian at the longitude of
+ * the selenographic colongitude.
+ *
+ * @author Michael Reuter
+ */
+public class MoonMapView extends View implements TileCache.Listener {
+	/** Largest zoom relative to the map filling the view. */
+	private static final float MAX_SCALE = 16.0f;
+	/** Zoom change for a double tap. */
+	private static final float DOUBLE_TAP_SCALE = 2.0f;
+	/** Latitude step for drawing the terminator in degrees. */
+	private static final int TERMINATOR_STEP = 5;
+	/** Smallest feature outline radius in pixels. */
+	private static final float MIN_FEATURE_RADIUS = 2.0f;
+	/** Color of the night side shading. */
+	private static final int NIGHT_COLOR = 0x99000000;
+	/** Color of the terminator line. */
+	private static final int TERMINATOR_COLOR = 0xffffb300;
+	/** Color of the feature outlines. */
+	private static final int FEATURE_COLOR = 0xff4fc3f7;
+	/** Color of the feature labels. */
+	private static final int LABEL_COLOR = 0xffe1f5fe;
+	/** Space between a feature outline and its label in pixels. */
+	private static final float LABEL_GAP = 2.0f;
+	/** The tiles to draw or null until the map is loaded. */
+	private TileCache tileCache;
+	/** The features to outline or null for none. */
+	private FeatureTable features;
+	/** The spatial index over the features. */
+	private SpatialIndex index;
+	/** Label order of each feature row, largest feature first. */
+	private int[] labelRank;
+	/** Feature row for each label order. */
+	private int[] rankedRows;
+	/** Measured label widths or NaN until a label is first drawn. */
+	private float[] labelWidths;
+	/** View x position of the outlined features. */
+	private float[] anchorX;
+	/** View y position of the bottom of the outlined features. */
+	private float[] anchorY;
+	/** Reused label orders of the features outlined in a frame. */
+	private int[] outlined;
+	/** The object to tell about tapped features. */
+	private FeatureListener featureListener;
+	/** The lunar longitude of the terminator or NaN for none. */
+	private double terminatorLongitude = Double.NaN;
+	/** Flag for the morning terminator, where the night side is west. */
+	private boolean isMorning;
+	/** Zoom relative to the map filling the view. */
+	private float scale = 1.0f;
+	/** Map x position at the center of the view. */
+	private double centerX = MapProjection.CENTER;
+	/** Map y position at the center of the view. */
+	private double centerY = MapProjection.CENTER;
+	/** Size of the map in pixels when it fills the view. */
+	private float baseSize;
+	/** Detector for drags and double taps. */
+	private final GestureDetector gestureDetector;
+	/** Detector for pinches. */
+	private final ScaleGestureDetector scaleDetector;
+	/** Paint for the tiles. */
+	private final Paint tilePaint = new Paint();
+	/** Paint for the night side. */
+	private final Paint nightPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	/** Paint for the terminator line. */
+	private final Paint terminatorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	/** Paint for the feature outlines. */
+	private final Paint featurePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	/** Paint for the feature labels. */
+	private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	/** Distance from a feature outline that still counts as a tap. */
+	private final float tapRadius;
+	/** The label placement for a frame. */
+	private final LabelPlacer labelPlacer = new LabelPlacer();
+	/** Reused set of the features reaching into the view. */
+	private final BitSet inView = new BitSet();
+	/** Reused set of the features near a tap. */
+	private final BitSet nearTap = new BitSet();
+	/** Reused tile source rectangle. */
+	private final Rect source = new Rect();
+	/** Reused destination rectangle. */
+	private final RectF destination = new RectF();
+	/** Reused night side outline. */
+	private final Path nightPath = new Path();
+	/** Reused terminator line. */
+	private final Path terminatorPath = new Path();
+	/** Reused map position. */
+	private final double[] position = new double[2];
+	/** Reused feature size. */
+	private final double[] halfSize = new double[2];
+	/** Reused list of the tiles needed for a frame. */
+	private final List<TileKey> needed = new ArrayList<TileKey>();
+
+	/**
+	 * This interface is told when a feature on the map is tapped.
+	 */
+	public interface FeatureListener {
+		/**
+		 * This function is called on the main thread with the tapped
+		 * feature.
+		 * @param feature : The feature under the tap.
+		 */
+		void onFeatureTapped(LunarFeature feature);
+	}
+
+	/**
+	 * This function is the class constructor used by the layout inflater.
+	 * @param context : The context the view runs in.
+	 * @param attrs : The layout attributes.
+	 */
+	public MoonMapView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		this.tilePaint.setFilterBitmap(true);
+		this.nightPaint.setColor(NIGHT_COLOR);
+		this.nightPaint.setStyle(Paint.Style.FILL);
+		this.terminatorPaint.setColor(TERMINATOR_COLOR);
+		this.terminatorPaint.setStyle(Paint.Style.STROKE);
+		this.terminatorPaint.setStrokeWidth(2.0f);
+		this.featurePaint.setColor(FEATURE_COLOR);
+		this.featurePaint.setStyle(Paint.Style.STROKE);
+		this.featurePaint.setStrokeWidth(1.5f);
+		this.labelPaint.setColor(LABEL_COLOR);
+		this.labelPaint.setTextSize(this.getResources().getDimensionPixelSize(
+				R.dimen.map_label_text_size));
+		this.tapRadius = this.getResources().getDimensionPixelSize(R.dimen.map_tap_radius);
+		this.gestureDetector = new GestureDetector(context,
+				new GestureDetector.SimpleOnGestureListener() {
+			@Override
+			public boolean onDown(MotionEvent e) {
+				return true;
+			}
+
+			@Override
+			public boolean onScroll(MotionEvent e1, MotionEvent e2,
+					float distanceX, float distanceY) {
+				MoonMapView.this.panBy(distanceX, distanceY);
+				return true;
+			}
+
+			@Override
+			public boolean onSingleTapConfirmed(MotionEvent e) {
+				return MoonMapView.this.tapAt(e.getX(), e.getY());
+			}
+
+			@Override
+			public boolean onDoubleTap(MotionEvent e) {
+				MoonMapView.this.zoomBy(DOUBLE_TAP_SCALE, e.getX(), e.getY());
+				return true;
+			}
+		});
+		this.scaleDetector = new ScaleGestureDetector(context,
+				new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+			@Override
+			public boolean onScale(ScaleGestureDetector detector) {
+				MoonMapView.this.zoomBy(detector.getScaleFactor(),
+						detector.getFocusX(), detector.getFocusY());
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * This function sets what the map shows. It must be called from the
+	 * main thread.
+	 * @param tileCache : The tiles of the basemap.
+	 * @param features : The features to outline or null for none.
+	 * @param index : The spatial index over the features.
+	 * @param moonState : The Moon information for the terminator or null
+	 * for none.
+	 */
+	public void setMap(TileCache tileCache, FeatureTable features, SpatialIndex index,
+			MoonState moonState) {
+		if (null != this.tileCache) {
+			this.tileCache.setListener(null);
+		}
+		this.tileCache = tileCache;
+		this.tileCache.setListener(this);
+		this.features = features;
+		this.index = index;
+		if (null != features) {
+			this.rankLabels();
+		}
+		if (null == moonState) {
+			this.terminatorLongitude = Double.NaN;
+		}
+		else {
+			this.terminatorLongitude = moonState.getSelcoLongitude();
+			this.isMorning = moonState.isMorning();
+		}
+		this.invalidate();
+	}
+
+	/**
+	 * This function sets the object to tell about tapped features.
+	 * @param listener : The listener or null for none.
+	 */
+	public void setFeatureListener(FeatureListener listener) {
+		this.featureListener = listener;
+	}
+
+	/**
+	 * This function redraws the map once requested tiles are ready.
+	 */
+	@Override
+	public void onTilesLoaded() {
+		this.invalidate();
+	}
+
+	/**
+	 * This function handles the touch gestures.
+	 * @param event : The touch event.
+	 * @return : True as the map handles all touches.
+	 */
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		this.scaleDetector.onTouchEvent(event);
+		if (!this.scaleDetector.isInProgress()) {
+			this.gestureDetector.onTouchEvent(event);
+		}
+		return true;
+	}
+
+	/**
+	 * This function keeps the map size in step with the view size.
+	 * @param w : The new width.
+	 * @param h : The new height.
+	 * @param oldw : The old width.
+	 * @param oldh : The old height.
+	 */
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		this.baseSize = Math.min(w, h);
+	}
+
+	/**
+	 * This function stops listening for tiles once the view is gone.
+	 */
+	@Override
+	protected void onDetachedFromWindow() {
+		if (null != this.tileCache) {
+			this.tileCache.setListener(null);
+		}
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * This function draws the map.
+	 * @param canvas : The canvas to draw on.
+	 */
+	@Override
+	protected void onDraw(Canvas canvas) {
+		canvas.drawColor(TileRenderer.SKY_COLOR);
+		if (null == this.tileCache || this.baseSize <= 0.0f) {
+			return;
+		}
+		this.drawTiles(canvas);
+		this.drawTerminator(canvas);
+		this.drawFeatures(canvas);
+	}
+
+	/**
+	 * This function draws the tiles in view and asks for the missing ones.
+	 * @param canvas : The canvas to draw on.
+	 */
+	private void drawTiles(Canvas canvas) {
+		double mapSize = this.getMapSize();
+		int zoom = 0;
+		while (zoom < TileRenderer.MAX_ZOOM &&
+				(TileRenderer.TILE_SIZE << zoom) < mapSize) {
+			zoom++;
+		}
+		int count = 1 << zoom;
+		double halfWidth = this.getWidth() / 2.0 / mapSize;
+		double halfHeight = this.getHeight() / 2.0 / mapSize;
+		int firstColumn = Math.max(0, (int)Math.floor((this.centerX - halfWidth) * count));
+		int lastColumn = Math.min(count - 1, (int)Math.floor((this.centerX + halfWidth) * count));
+		int firstRow = Math.max(0, (int)Math.floor((this.centerY - halfHeight) * count));
+		int lastRow = Math.min(count - 1, (int)Math.floor((this.centerY + halfHeight) * count));
+
+		this.needed.clear();
+		// The whole map tile is always wanted as the last resort stand-in
+		TileKey root = new TileKey(0, 0, 0);
+		this.needed.add(root);
+		boolean missing = null == this.tileCache.getTile(root);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				TileKey key = new TileKey(zoom, column, row);
+				if (!TileRenderer.hasDisk(key)) {
+					continue;
+				}
+				this.destination.set(this.toViewX((double)column / count),
+						this.toViewY((double)row / count),
+						this.toViewX((double)(column + 1) / count),
+						this.toViewY((double)(row + 1) / count));
+				Bitmap tile = this.tileCache.getTile(key);
+				if (null != tile) {
+					canvas.drawBitmap(tile, null, this.destination, this.tilePaint);
+					continue;
+				}
+				if (0 != zoom) {
+					this.needed.add(key);
+				}
+				missing = true;
+				this.drawStandIn(canvas, key);
+			}
+		}
+		if (missing) {
+			this.tileCache.request(this.needed);
+		}
+	}
+
+	/**
+	 * This function draws the part of the nearest lower level tile in memory
+	 * that covers a missing tile.
+	 * @param canvas : The canvas to draw on.
+	 * @param key : The missing tile.
+	 */
+	private void drawStandIn(Canvas canvas, TileKey key) {
+		TileKey parent = key.getParent();
+		int levels = 1;
+		while (null != parent) {
+			Bitmap tile = this.tileCache.getTile(parent);
+			if (null != tile) {
+				int part = TileRenderer.TILE_SIZE >> levels;
+				int mask = (1 << levels) - 1;
+				int left = (key.getColumn() & mask) * part;
+				int top = (key.getRow() & mask) * part;
+				this.source.set(left, top, left + part, top + part);
+				canvas.drawBitmap(tile, this.source, this.destination, this.tilePaint);
+				return;
+			}
+			parent = parent.getParent();
+			levels++;
+		}
+	}
+
+	/**
+	 * This function shades the night side and draws the terminator.
+	 * @param canvas : The canvas to draw on.
+	 */
+	private void drawTerminator(Canvas canvas) {
+		if (Double.isNaN(this.terminatorLongitude)) {
+			return;
+		}
+		double longitude = this.terminatorLongitude;
+		while (longitude > 180.0) {
+			longitude -= 360.0;
+		}
+		while (longitude <= -180.0) {
+			longitude += 360.0;
+		}
+		// The night side is west of a morning terminator and east of an
+		// evening one. A terminator past the limb leaves all or none of the
+		// near side in night.
+		double nightLimb = this.isMorning ? -90.0 : 90.0;
+		if (this.isMorning ? longitude <= -90.0 : longitude >= 90.0) {
+			return;
+		}
+		if (this.isMorning ? longitude >= 90.0 : longitude <= -90.0) {
+			longitude = -nightLimb;
+		}
+
+		this.nightPath.reset();
+		this.terminatorPath.reset();
+		for (int lat = -90; lat <= 90; lat += TERMINATOR_STEP) {
+			MapProjection.project(lat, longitude, this.position);
+			float x = this.toViewX(this.position[0]);
+			float y = this.toViewY(this.position[1]);
+			if (-90 == lat) {
+				this.nightPath.moveTo(x, y);
+				this.terminatorPath.moveTo(x, y);
+			}
+			else {
+				this.nightPath.lineTo(x, y);
+				this.terminatorPath.lineTo(x, y);
+			}
+		}
+		for (int lat = 90; lat >= -90; lat -= TERMINATOR_STEP) {
+			MapProjection.project(lat, nightLimb, this.position);
+			this.nightPath.lineTo(this.toViewX(this.position[0]),
+					this.toViewY(this.position[1]));
+		}
+		this.nightPath.close();
+		canvas.drawPath(this.nightPath, this.nightPaint);
+		canvas.drawPath(this.terminatorPath, this.terminatorPaint);
+	}
+
+	/**
+	 * This function outlines the near side features in view and labels as
+	 * many of them as fit.
+	 * @param canvas : The canvas to draw on.
+	 */
+	private void drawFeatures(Canvas canvas) {
+		if (null == this.features) {
+			return;
+		}
+		double mapSize = this.getMapSize();
+		int width = this.getWidth();
+		int height = this.getHeight();
+		double margin = MIN_FEATURE_RADIUS / (mapSize * MapProjection.RADIUS);
+		this.inView.clear();
+		this.index.findOverlapping(this.toDiskX(0.0f) - margin,
+				this.toDiskX(width) + margin, this.toDiskY(height) - margin,
+				this.toDiskY(0.0f) + margin, this.inView);
+		int count = 0;
+		for (int i = this.inView.nextSetBit(0); i >= 0; i = this.inView.nextSetBit(i + 1)) {
+			double lat = this.features.getLatitude(i);
+			double lon = this.features.getLongitude(i);
+			MapProjection.project(lat, lon, this.position);
+			MapProjection.featureSize(lat, lon, this.features.getDeltaLatitude(i),
+					this.features.getDeltaLongitude(i), this.halfSize);
+			float x = this.toViewX(this.position[0]);
+			float y = this.toViewY(this.position[1]);
+			float rx = Math.max(MIN_FEATURE_RADIUS, (float)(this.halfSize[0] * mapSize));
+			float ry = Math.max(MIN_FEATURE_RADIUS, (float)(this.halfSize[1] * mapSize));
+			if (x + rx < 0 || x - rx > width || y + ry < 0 || y - ry > height) {
+				continue;
+			}
+			this.destination.set(x - rx, y - ry, x + rx, y + ry);
+			canvas.drawOval(this.destination, this.featurePaint);
+			this.anchorX[i] = x;
+			this.anchorY[i] = y + ry;
+			this.outlined[count++] = this.labelRank[i];
+		}
+		this.drawLabels(canvas, count);
+	}
+
+	/**
+	 * This function labels the outlined features, largest first, leaving
+	 * out the labels that would overlap one already drawn.
+	 * @param canvas : The canvas to draw on.
+	 * @param count : The number of outlined features.
+	 */
+	private void drawLabels(Canvas canvas, int count) {
+		Arrays.sort(this.outlined, 0, count);
+		this.labelPlacer.reset(this.getWidth(), this.getHeight());
+		float ascent = this.labelPaint.ascent();
+		float textHeight = this.labelPaint.descent() - ascent;
+		for (int i = 0; i < count; i++) {
+			int row = this.rankedRows[this.outlined[i]];
+			float labelWidth = this.labelWidths[row];
+			if (Float.isNaN(labelWidth)) {
+				labelWidth = this.labelPaint.measureText(this.features.getName(row));
+				this.labelWidths[row] = labelWidth;
+			}
+			float left = this.anchorX[row] - labelWidth / 2.0f;
+			float top = this.anchorY[row] + LABEL_GAP;
+			if (this.labelPlacer.place(left, top, left + labelWidth, top + textHeight)) {
+				canvas.drawText(this.features.getName(row), left, top - ascent,
+						this.labelPaint);
+			}
+		}
+	}
+
+	/**
+	 * This function orders the features for labeling by diameter, largest
+	 * first, and sizes the arrays used for each frame.
+	 */
+	private void rankLabels() {
+		int size = this.features.size();
+		// Diameters are never negative, so their float bits sort in order
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			long bits = Float.floatToIntBits((float)Math.abs(this.features.getDiameter(i)));
+			keys[i] = (bits << 32) | i;
+		}
+		Arrays.sort(keys);
+		this.labelRank = new int[size];
+		this.rankedRows = new int[size];
+		for (int rank = 0; rank < size; rank++) {
+			int row = (int)keys[size - 1 - rank];
+			this.labelRank[row] = rank;
+			this.rankedRows[rank] = row;
+		}
+		this.labelWidths = new float[size];
+		Arrays.fill(this.labelWidths, Float.NaN);
+		this.anchorX = new float[size];
+		this.anchorY = new float[size];
+		this.outlined = new int[size];
+	}
+
+	/**
+	 * This function tells the listener about the feature under a tap. A
+	 * tap within the tap radius of an outline counts, and the smallest of
+	 * the outlines hit is taken, so craters can be picked inside maria.
+	 * @param viewX : The view x position of the tap.
+	 * @param viewY : The view y position of the tap.
+	 * @return : True if a feature was tapped.
+	 */
+	private boolean tapAt(float viewX, float viewY) {
+		if (null == this.features || null == this.featureListener) {
+			return false;
+		}
+		double mapSize = this.getMapSize();
+		double reach = (this.tapRadius + MIN_FEATURE_RADIUS) /
+				(mapSize * MapProjection.RADIUS);
+		double diskX = this.toDiskX(viewX);
+		double diskY = this.toDiskY(viewY);
+		this.nearTap.clear();
+		this.index.findOverlapping(diskX - reach, diskX + reach, diskY - reach,
+				diskY + reach, this.nearTap);
+		int tapped = -1;
+		float smallest = Float.POSITIVE_INFINITY;
+		for (int i = this.nearTap.nextSetBit(0); i >= 0; i = this.nearTap.nextSetBit(i + 1)) {
+			double lat = this.features.getLatitude(i);
+			double lon = this.features.getLongitude(i);
+			MapProjection.project(lat, lon, this.position);
+			MapProjection.featureSize(lat, lon, this.features.getDeltaLatitude(i),
+					this.features.getDeltaLongitude(i), this.halfSize);
+			float rx = Math.max(MIN_FEATURE_RADIUS, (float)(this.halfSize[0] * mapSize));
+			float ry = Math.max(MIN_FEATURE_RADIUS, (float)(this.halfSize[1] * mapSize));
+			float dx = (viewX - this.toViewX(this.position[0])) / (rx + this.tapRadius);
+			float dy = (viewY - this.toViewY(this.position[1])) / (ry + this.tapRadius);
+			if (dx * dx + dy * dy <= 1.0f && rx * ry < smallest) {
+				smallest = rx * ry;
+				tapped = i;
+			}
+		}
+		if (-1 == tapped) {
+			return false;
+		}
+		this.featureListener.onFeatureTapped(this.features.getFeature(tapped));
+		return true;
+	}
+
+	/**
+	 * This function moves the map.
+	 * @param dx : The distance to move the view right in pixels.
+	 * @param dy : The distance to move the view down in pixels.
+	 */
+	private void panBy(float dx, float dy) {
+		double mapSize = this.getMapSize();
+		this.setCenter(this.centerX + dx / mapSize, this.centerY + dy / mapSize);
+		this.invalidate();
+	}
+
+	/**
+	 * This function zooms the map, keeping the map position under a view
+	 * point in place.
+	 * @param factor : The zoom change.
+	 * @param focusX : The view x position to zoom about.
+	 * @param focusY : The view y position to zoom about.
+	 */
+	private void zoomBy(float factor, float focusX, float focusY) {
+		double offsetX = focusX - this.getWidth() / 2.0;
+		double offsetY = focusY - this.getHeight() / 2.0;
+		double mapX = this.centerX + offsetX / this.getMapSize();
+		double mapY = this.centerY + offsetY / this.getMapSize();
+		this.scale = Math.max(1.0f, Math.min(MAX_SCALE, this.scale * factor));
+		this.setCenter(mapX - offsetX / this.getMapSize(),
+				mapY - offsetY / this.getMapSize());
+		this.invalidate();
+	}
+
+	/**
+	 * This function sets the map position at the center of the view, kept
+	 * on the map.
+	 * @param x : The map x position.
+	 * @param y : The map y position.
+	 */
+	private void setCenter(double x, double y) {
+		this.centerX = Math.max(0.0, Math.min(1.0, x));
+		this.centerY = Math.max(0.0, Math.min(1.0, y));
+	}
+
+	/**
+	 * This function gets the size of the map at the current zoom.
+	 * @return : The map size in pixels.
+	 */
+	private double getMapSize() {
+		return this.baseSize * this.scale;
+	}
+
+	/**
+	 * This function converts a map x position to the view.
+	 * @param x : The map x position.
+	 * @return : The view x position.
+	 */
+	private float toViewX(double x) {
+		return (float)(this.getWidth() / 2.0 + (x - this.centerX) * this.getMapSize());
+	}
+
+	/**
+	 * This function converts a view x position to the disk as seen from
+	 * the Earth.
+	 * @param x : The view x position.
+	 * @return : The disk x position in units of the lunar radius.
+	 */
+	private double toDiskX(float x) {
+		double mapX = this.centerX + (x - this.getWidth() / 2.0) / this.getMapSize();
+		return (mapX - MapProjection.CENTER) / MapProjection.RADIUS;
+	}
+
+	/**
+	 * This function converts a view y position to the disk as seen from
+	 * the Earth.
+	 * @param y : The view y position.
+	 * @return : The disk y position in units of the lunar radius.
+	 */
+	private double toDiskY(float y) {
+		double mapY = this.centerY + (y - this.getHeight() / 2.0) / this.getMapSize();
+		return (MapProjection.CENTER - mapY) / MapProjection.RADIUS;
+	}
+
+	/**
+	 * This function converts a map y position to the view.
+	 * @param y : The map y position.
+	 * @return : The view y position.
+	 */
+	private float toViewY(double y) {
+		return (float)(this.getHeight() / 2.0 + (y - this.centerY) * this.getMapSize());
+	}
+}
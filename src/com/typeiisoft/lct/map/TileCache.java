@@ -0,0 +1,203 @@
+package com.typeiisoft.lct.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * This class holds the map tiles in two levels. Tiles being shown are kept
+ * as bitmaps in a least recently used cache bounded by their size in bytes.
+ * Tiles that fall out of it stay in the {@link TilePack} on disk, so they
+ * can be brought back without drawing them again. Missing tiles are read or
+ * drawn on a tile thread, and the map is told on the main thread once they
+ * are ready, so drawing a frame only ever looks tiles up. Requests for tiles
+ * that have been panned out of view before the tile thread reaches them are
+ * skipped. The cache is made once per process for a basemap.
+ *
+ * @author Michael Reuter
+ */
+public final class TileCache {
+	/** Logging identifier. */
+	private static final String TAG = TileCache.class.getName();
+	/** Name of the tile pack file. */
+	public static final String PACK_NAME = "moonmap.tiles";
+	/** Largest total size of the tile bitmaps in bytes. */
+	private static final long CACHE_BYTES = Runtime.getRuntime().maxMemory() / 8;
+	/** Size of a tile bitmap in bytes. */
+	private static final int TILE_BYTES =
+			TileRenderer.TILE_SIZE * TileRenderer.TILE_SIZE * 2;
+	/** The process wide cache instance. */
+	private static TileCache instance;
+	/** Handler for telling the map on the main thread. */
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+	/** The thread that reads and draws the tiles. */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "lct-tiles");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	/** The task that tells the listener about new tiles. */
+	private final Runnable notifyTask = new Runnable() {
+		@Override
+		public void run() {
+			if (null != TileCache.this.listener) {
+				TileCache.this.listener.onTilesLoaded();
+			}
+		}
+	};
+	/** The imagery the tiles are made from. */
+	private final Basemap basemap;
+	/** The disk cache or null if it could not be opened. */
+	private final TilePack pack;
+	/** The tile bitmaps in least recently used order. */
+	private final Map<TileKey, Bitmap> tiles =
+			new LinkedHashMap<TileKey, Bitmap>(32, 0.75f, true);
+	/** Total size of the tile bitmaps in bytes. */
+	private long cachedBytes;
+	/** Tiles handed to the tile thread and not yet done. */
+	private final Set<TileKey> queued = new HashSet<TileKey>();
+	/** Tiles the map most recently asked for. */
+	private Set<TileKey> wanted = new HashSet<TileKey>();
+	/** The pixel buffer used by the tile thread. */
+	private final int[] pixels = new int[TileRenderer.TILE_SIZE * TileRenderer.TILE_SIZE];
+	/** The object to tell about new tiles. */
+	private Listener listener;
+
+	/**
+	 * This interface is told when requested tiles are ready.
+	 */
+	public interface Listener {
+		/**
+		 * This function is called on the main thread after tiles have been
+		 * added to the cache.
+		 */
+		void onTilesLoaded();
+	}
+
+	/**
+	 * This function is the class constructor. It opens the tile pack.
+	 * @param directory : The directory for the tile pack.
+	 * @param basemap : The imagery the tiles are made from.
+	 */
+	private TileCache(File directory, Basemap basemap) {
+		this.basemap = basemap;
+		TilePack tilePack = null;
+		try {
+			tilePack = new TilePack(new File(directory, PACK_NAME), basemap.getSignature());
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Unable to open tile pack, tiles will not be stored.", e);
+		}
+		this.pack = tilePack;
+	}
+
+	/**
+	 * This function returns the process wide cache for a basemap. A new
+	 * cache is made if the basemap has changed. The first call opens the
+	 * tile pack, so it should be made off the main thread.
+	 * @param context : The context used to find the cache directory.
+	 * @param basemap : The imagery the tiles are made from.
+	 * @return : The tile cache.
+	 */
+	public static synchronized TileCache getInstance(Context context, Basemap basemap) {
+		if (null == instance ||
+				instance.basemap.getSignature() != basemap.getSignature()) {
+			instance = new TileCache(context.getCacheDir(), basemap);
+		}
+		return instance;
+	}
+
+	/**
+	 * This function sets the object to tell about new tiles. It must be
+	 * called from the main thread.
+	 * @param listener : The listener or null for none.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * This function gets a tile if it is in memory. It never reads or draws
+	 * tiles, so it can be used while drawing a frame.
+	 * @param key : The tile.
+	 * @return : The tile bitmap or null if it is not in memory.
+	 */
+	public synchronized Bitmap getTile(TileKey key) {
+		return this.tiles.get(key);
+	}
+
+	/**
+	 * This function sets the tiles the map needs and queues the ones that
+	 * are not in memory. Queued tiles that are no longer needed are skipped.
+	 * @param keys : The tiles needed for the current view.
+	 */
+	public synchronized void request(Collection<TileKey> keys) {
+		this.wanted = new HashSet<TileKey>(keys);
+		for (final TileKey key : keys) {
+			if (this.tiles.containsKey(key) || !this.queued.add(key)) {
+				continue;
+			}
+			this.worker.execute(new Runnable() {
+				@Override
+				public void run() {
+					TileCache.this.load(key);
+				}
+			});
+		}
+	}
+
+	/**
+	 * This function reads a tile from the pack or draws it, then adds it to
+	 * the memory cache. It runs on the tile thread.
+	 * @param key : The tile.
+	 */
+	private void load(TileKey key) {
+		synchronized (this) {
+			if (!this.wanted.contains(key)) {
+				this.queued.remove(key);
+				return;
+			}
+		}
+		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+		if (null == this.pack || !this.pack.read(key, this.pixels)) {
+			TileRenderer.render(this.basemap, key, this.pixels);
+			if (null != this.pack) {
+				this.pack.write(key, this.pixels);
+			}
+		}
+		Bitmap tile = Bitmap.createBitmap(this.pixels, TileRenderer.TILE_SIZE,
+				TileRenderer.TILE_SIZE, Bitmap.Config.RGB_565);
+		synchronized (this) {
+			this.queued.remove(key);
+			if (null == this.tiles.put(key, tile)) {
+				this.cachedBytes += TILE_BYTES;
+			}
+			Iterator<TileKey> keys = this.tiles.keySet().iterator();
+			while (this.cachedBytes > CACHE_BYTES && this.tiles.size() > 1) {
+				keys.next();
+				keys.remove();
+				this.cachedBytes -= TILE_BYTES;
+			}
+		}
+		MAIN_HANDLER.post(this.notifyTask);
+	}
+}
@@ -0,0 +1,124 @@
+package com.typeiisoft.lct.map;
+
+/**
+ * This class identifies a map tile by zoom level, column and row. Zoom
+ * level zero is one tile holding the whole map and each level doubles the
+ * number of columns and rows. The tiles of all levels are also numbered in
+ * one sequence (level zero first, then each level by rows), which gives
+ * their slots in the tile pack.
+ *
+ * @author Michael Reuter
+ */
+public final class TileKey {
+	/** The zoom level. */
+	private final int zoom;
+	/** The tile column from the left. */
+	private final int column;
+	/** The tile row from the top. */
+	private final int row;
+
+	/**
+	 * This function is the class constructor.
+	 * @param zoom : The zoom level.
+	 * @param column : The tile column from the left.
+	 * @param row : The tile row from the top.
+	 */
+	public TileKey(int zoom, int column, int row) {
+		int count = 1 << zoom;
+		if (zoom < 0 || column < 0 || row < 0 || column >= count || row >= count) {
+			throw new IllegalArgumentException("No tile " + zoom + "/" + column +
+					"/" + row);
+		}
+		this.zoom = zoom;
+		this.column = column;
+		this.row = row;
+	}
+
+	/**
+	 * Getter for the zoom level.
+	 * @return : The zoom level.
+	 */
+	public int getZoom() {
+		return this.zoom;
+	}
+
+	/**
+	 * Getter for the tile column.
+	 * @return : The column from the left.
+	 */
+	public int getColumn() {
+		return this.column;
+	}
+
+	/**
+	 * Getter for the tile row.
+	 * @return : The row from the top.
+	 */
+	public int getRow() {
+		return this.row;
+	}
+
+	/**
+	 * This function gets the number of the tile across all zoom levels.
+	 * @return : The tile number.
+	 */
+	public int getIndex() {
+		return TileKey.countTiles(this.zoom) + (this.row << this.zoom) + this.column;
+	}
+
+	/**
+	 * This function gets the tile one zoom level out that holds this tile.
+	 * @return : The parent tile or null for zoom level zero.
+	 */
+	public TileKey getParent() {
+		if (0 == this.zoom) {
+			return null;
+		}
+		return new TileKey(this.zoom - 1, this.column >> 1, this.row >> 1);
+	}
+
+	/**
+	 * This function counts the tiles in the zoom levels below a level.
+	 * @param zoom : The zoom level.
+	 * @return : The number of tiles in levels zero to zoom - 1.
+	 */
+	public static int countTiles(int zoom) {
+		return ((1 << (2 * zoom)) - 1) / 3;
+	}
+
+	/**
+	 * This function compares the key to another object.
+	 * @param obj : The object to compare against.
+	 * @return : True if the keys are the same.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TileKey)) {
+			return false;
+		}
+		TileKey other = (TileKey)obj;
+		return this.zoom == other.zoom && this.column == other.column &&
+				this.row == other.row;
+	}
+
+	/**
+	 * This function creates the hash code for the key.
+	 * @return : The hash code.
+	 */
+	@Override
+	public int hashCode() {
+		return this.getIndex();
+	}
+
+	/**
+	 * This function creates the string representation of the key.
+	 * @return : The zoom level, column and row.
+	 */
+	@Override
+	public String toString() {
+		return this.zoom + "/" + this.column + "/" + this.row;
+	}
+}
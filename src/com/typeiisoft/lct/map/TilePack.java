@@ -0,0 +1,163 @@
+package com.typeiisoft.lct.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * This class is the disk cache of map tiles. The pack is one file with a
+ * fixed slot for every tile of every zoom level, read and written through
+ * a memory mapping, so a stored tile is copied straight out of the page
+ * cache with no image decoding. Tiles are kept as RGB 565 pixels. Each slot
+ * has a CRC-32 in the table at the front of the file, written after the
+ * pixels, and a zero checksum marks an empty slot. A tile cut short by a
+ * crash fails its checksum and is drawn again. The header holds the
+ * basemap signature, and a pack made from other imagery is emptied when it
+ * is opened. The pack is used from the tile thread only.
+ * <p>
+ * The file layout is the magic number, the version, the tile size, the
+ * deepest zoom level, the basemap signature, the slot checksums and then
+ * the slots in tile number order.
+ *
+ * @author Michael Reuter
+ */
+final class TilePack {
+	/** Identifier at the start of the file ("LCTM"). */
+	private static final int MAGIC = 0x4c43544d;
+	/** Version of the file layout. */
+	private static final int VERSION = 1;
+	/** Size of the header in bytes. */
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+	/** The mapped file. */
+	private final MappedByteBuffer buffer;
+	/** Number of tile slots. */
+	private final int slotCount;
+	/** Size of a tile slot in bytes. */
+	private final int slotSize;
+	/** Offset of the first slot in the file. */
+	private final int slotsStart;
+	/** Reused buffer for the bytes of one tile. */
+	private final byte[] bytes;
+	/** Reused checksum calculator. */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * This function is the class constructor. It opens the pack file,
+	 * creating or emptying it if it does not match the basemap.
+	 * @param packFile : The location of the pack.
+	 * @param signature : The basemap signature.
+	 * @throws IOException
+	 */
+	TilePack(File packFile, long signature) throws IOException {
+		int tileSize = TileRenderer.TILE_SIZE;
+		this.slotCount = TileKey.countTiles(TileRenderer.MAX_ZOOM + 1);
+		this.slotSize = tileSize * tileSize * 2;
+		this.slotsStart = HEADER_SIZE + 4 * this.slotCount;
+		long fileSize = this.slotsStart + (long)this.slotCount * this.slotSize;
+		this.bytes = new byte[this.slotSize];
+
+		RandomAccessFile file = new RandomAccessFile(packFile, "rw");
+		try {
+			boolean matches = file.length() == fileSize && file.readInt() == MAGIC &&
+					file.readInt() == VERSION && file.readInt() == tileSize &&
+					file.readInt() == TileRenderer.MAX_ZOOM &&
+					file.readLong() == signature;
+			if (!matches) {
+				// A new pack, with every checksum zero
+				file.setLength(0);
+				file.setLength(fileSize);
+				file.seek(0);
+				file.writeInt(MAGIC);
+				file.writeInt(VERSION);
+				file.writeInt(tileSize);
+				file.writeInt(TileRenderer.MAX_ZOOM);
+				file.writeLong(signature);
+			}
+			this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+					0, fileSize);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * This function reads a stored tile.
+	 * @param key : The tile to read.
+	 * @param pixels : The buffer for the ARGB pixels.
+	 * @return : True if the tile was stored and undamaged.
+	 */
+	boolean read(TileKey key, int[] pixels) {
+		int slot = this.getSlot(key);
+		int checksum = this.buffer.getInt(HEADER_SIZE + 4 * slot);
+		if (0 == checksum) {
+			return false;
+		}
+		ByteBuffer source = this.buffer.duplicate();
+		source.position(this.slotsStart + slot * this.slotSize);
+		source.get(this.bytes, 0, this.slotSize);
+		if (this.checksum() != checksum) {
+			return false;
+		}
+		for (int i = 0, j = 0; j < this.slotSize; i++, j += 2) {
+			int value = ((this.bytes[j] & 0xff) << 8) | (this.bytes[j + 1] & 0xff);
+			int r = (value >> 11) & 0x1f;
+			int g = (value >> 5) & 0x3f;
+			int b = value & 0x1f;
+			pixels[i] = 0xff000000 | (((r << 3) | (r >> 2)) << 16) |
+					(((g << 2) | (g >> 4)) << 8) | ((b << 3) | (b >> 2));
+		}
+		return true;
+	}
+
+	/**
+	 * This function stores a tile.
+	 * @param key : The tile to store.
+	 * @param pixels : The ARGB pixels of the tile.
+	 */
+	void write(TileKey key, int[] pixels) {
+		int slot = this.getSlot(key);
+		int checksumOffset = HEADER_SIZE + 4 * slot;
+		this.buffer.putInt(checksumOffset, 0);
+		for (int i = 0, j = 0; j < this.slotSize; i++, j += 2) {
+			int color = pixels[i];
+			int value = ((color >> 8) & 0xf800) | ((color >> 5) & 0x07e0) |
+					((color >> 3) & 0x001f);
+			this.bytes[j] = (byte)(value >> 8);
+			this.bytes[j + 1] = (byte)value;
+		}
+		ByteBuffer target = this.buffer.duplicate();
+		target.position(this.slotsStart + slot * this.slotSize);
+		target.put(this.bytes, 0, this.slotSize);
+		this.buffer.putInt(checksumOffset, this.checksum());
+	}
+
+	/**
+	 * This function finds the slot of a tile.
+	 * @param key : The tile.
+	 * @return : The slot number.
+	 */
+	private int getSlot(TileKey key) {
+		int slot = key.getIndex();
+		if (slot >= this.slotCount) {
+			throw new IllegalArgumentException("Tile " + key + " is past the deepest zoom.");
+		}
+		return slot;
+	}
+
+	/**
+	 * This function finds the checksum of the tile bytes. A checksum of
+	 * zero would mark an empty slot, so it is stored as one.
+	 * @return : The nonzero checksum.
+	 */
+	private int checksum() {
+		this.crc.reset();
+		this.crc.update(this.bytes, 0, this.slotSize);
+		int value = (int)this.crc.getValue();
+		return (0 == value) ? 1 : value;
+	}
+}
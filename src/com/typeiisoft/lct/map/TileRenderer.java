@@ -0,0 +1,105 @@
+package com.typeiisoft.lct.map;
+
+/**
+ * This class projects the basemap into map tiles. Each tile pixel is taken
+ * back to the point on the Moon under its center and colored from the
+ * basemap, so only the part of the basemap a tile covers is ever sampled.
+ * The limb is anti-aliased against the black sky and the space around the
+ * disk is black, so the tiles are opaque. The pixels are ARGB colors in
+ * rows from the top left. No Android classes are used, so tiles can be
+ * checked on the JVM.
+ *
+ * @author Michael Reuter
+ */
+public final class TileRenderer {
+	/** Width and height of a tile in pixels. */
+	public static final int TILE_SIZE = 256;
+	/** Deepest zoom level. The map is 2048 pixels across at this level. */
+	public static final int MAX_ZOOM = 3;
+	/** Color of the sky around the disk. */
+	public static final int SKY_COLOR = 0xff000000;
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private TileRenderer() {
+	}
+
+	/**
+	 * This function draws a tile.
+	 * @param basemap : The imagery to draw.
+	 * @param key : The tile to draw.
+	 * @param pixels : The buffer for the pixels. It must hold at least
+	 * TILE_SIZE squared values.
+	 */
+	public static void render(Basemap basemap, TileKey key, int[] pixels) {
+		double mapPixels = (double)(TILE_SIZE << key.getZoom());
+		double left = key.getColumn() * TILE_SIZE;
+		double top = key.getRow() * TILE_SIZE;
+		double radiusPixels = MapProjection.RADIUS * mapPixels;
+		double[] coordinates = new double[2];
+		for (int row = 0; row < TILE_SIZE; row++) {
+			double y = (top + row + 0.5) / mapPixels;
+			double dy = (y - MapProjection.CENTER) * mapPixels;
+			for (int column = 0; column < TILE_SIZE; column++) {
+				double x = (left + column + 0.5) / mapPixels;
+				double dx = (x - MapProjection.CENTER) * mapPixels;
+				double coverage = radiusPixels - Math.sqrt(dx * dx + dy * dy) + 0.5;
+				int index = row * TILE_SIZE + column;
+				if (coverage <= 0.0) {
+					pixels[index] = SKY_COLOR;
+					continue;
+				}
+				// Pixels on the limb take the color just inside it
+				double scale = Math.min(1.0, (radiusPixels - 0.5) /
+						Math.max(Math.sqrt(dx * dx + dy * dy), 1e-9));
+				MapProjection.unproject(MapProjection.CENTER + dx * scale / mapPixels,
+						MapProjection.CENTER + dy * scale / mapPixels, coordinates);
+				int color = basemap.getColor(coordinates[0], coordinates[1]);
+				if (coverage < 1.0) {
+					color = TileRenderer.mix(SKY_COLOR & 0xffffff, color, coverage);
+				}
+				pixels[index] = 0xff000000 | color;
+			}
+		}
+	}
+
+	/**
+	 * This function checks if a tile holds any of the disk.
+	 * @param key : The tile to check.
+	 * @return : True if some of the Moon is on the tile.
+	 */
+	public static boolean hasDisk(TileKey key) {
+		double size = 1.0 / (1 << key.getZoom());
+		double left = key.getColumn() * size;
+		double top = key.getRow() * size;
+		double nearX = Math.max(left, Math.min(MapProjection.CENTER, left + size));
+		double nearY = Math.max(top, Math.min(MapProjection.CENTER, top + size));
+		double dx = nearX - MapProjection.CENTER;
+		double dy = nearY - MapProjection.CENTER;
+		return dx * dx + dy * dy < MapProjection.RADIUS * MapProjection.RADIUS;
+	}
+
+	/**
+	 * This function mixes two RGB colors.
+	 * @param from : The color for a zero fraction.
+	 * @param to : The color for a fraction of one.
+	 * @param fraction : The amount of the second color.
+	 * @return : The mixed color.
+	 */
+	static int mix(int from, int to, double fraction) {
+		if (fraction <= 0.0) {
+			return from;
+		}
+		if (fraction >= 1.0) {
+			return to;
+		}
+		int color = 0;
+		for (int shift = 0; shift < 24; shift += 8) {
+			int a = (from >> shift) & 0xff;
+			int b = (to >> shift) & 0xff;
+			color |= ((int)(a + (b - a) * fraction + 0.5)) << shift;
+		}
+		return color;
+	}
+}
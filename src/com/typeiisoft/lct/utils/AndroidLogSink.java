@@ -0,0 +1,25 @@
+package com.typeiisoft.lct.utils;
+
+import android.util.Log;
+
+/**
+ * This class sends the calculation code's log messages to the Android log.
+ *
+ * @author Michael Reuter
+ */
+public class AndroidLogSink implements Logger.Sink {
+	/**
+	 * This function writes a message to the Android log.
+	 * @param priority : The message priority.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 * @param tr : An exception to log or null.
+	 */
+	@Override
+	public void log(int priority, String tag, String msg, Throwable tr) {
+		if (null != tr) {
+			msg = msg + '\n' + Log.getStackTraceString(tr);
+		}
+		Log.println(priority, tag, msg);
+	}
+}
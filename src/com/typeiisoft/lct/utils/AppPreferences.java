@@ -67,4 +67,66 @@ public class AppPreferences {
 				this.sharedPrefs.getInt("obsdate_offset", 0)};
 		return currDateTime;
 	}
+	
+	/**
+	 * This function sets the observing site information.
+	 * @param name : The name of the observing site.
+	 * @param latitude : The site latitude in decimal degrees.
+	 * @param longitude : The site longitude in decimal degrees.
+	 */
+	public void setObservingSite(String name, double latitude, double longitude) {
+		this.prefsEditor.putString("site_name", name);
+		this.prefsEditor.putFloat("site_latitude", (float)latitude);
+		this.prefsEditor.putFloat("site_longitude", (float)longitude);
+		this.prefsEditor.commit();
+	}
+	
+	/**
+	 * This function gathers the currently held observing site information. 
+	 * The time zone offset is the one held with the observation date and 
+	 * time.
+	 * @return : The currently held observing site.
+	 */
+	public ObservingSite getObservingSite() {
+		return new ObservingSite(this.sharedPrefs.getString("site_name", "Default"),
+				this.sharedPrefs.getFloat("site_latitude", 0.0f),
+				this.sharedPrefs.getFloat("site_longitude", 0.0f),
+				this.sharedPrefs.getInt("obsdate_offset", 0));
+	}
+	
+	/**
+	 * This function sets the instrument used for the observations.
+	 * @param instrument : The name of the instrument.
+	 */
+	public void setInstrument(String instrument) {
+		this.prefsEditor.putString("instrument", instrument);
+		this.prefsEditor.commit();
+	}
+	
+	/**
+	 * This function gets the instrument last used for an observation.
+	 * @return : The name of the instrument.
+	 */
+	public String getInstrument() {
+		return this.sharedPrefs.getString("instrument", "");
+	}
+	
+	/**
+	 * This function sets whether observed features are hidden from the 
+	 * feature lists.
+	 * @param hide : True to hide the observed features.
+	 */
+	public void setHideObserved(boolean hide) {
+		this.prefsEditor.putBoolean("hide_observed", hide);
+		this.prefsEditor.commit();
+	}
+	
+	/**
+	 * This function checks whether observed features are hidden from the 
+	 * feature lists instead of greyed out.
+	 * @return : True if the observed features are hidden.
+	 */
+	public boolean isHideObserved() {
+		return this.sharedPrefs.getBoolean("hide_observed", false);
+	}
 }
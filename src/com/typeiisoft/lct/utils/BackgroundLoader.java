@@ -0,0 +1,148 @@
+package com.typeiisoft.lct.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * This class runs the database and ephemeris work for the tabs on a
+ * background thread and hands the results back on the main thread. Loads
+ * run one at a time in the order they are started. A load that is
+ * cancelled, for example because its tab was swiped away, is skipped if it
+ * has not started and never delivers its result if it has. A running load
+ * is not interrupted, since the loads install and map files with channels
+ * that are closed by an interrupt, which would leave them half done.
+ *
+ * @author Michael Reuter
+ */
+public final class BackgroundLoader {
+	/** Logging identifier. */
+	private static final String TAG = BackgroundLoader.class.getName();
+	/** The thread that runs the loads. */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "lct-loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	/** Handler for delivering results on the main thread. */
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	/**
+	 * This interface receives the result of a load on the main thread.
+	 * @param <T> : The type of the loaded result.
+	 */
+	public interface Callback<T> {
+		/**
+		 * This function is called with the result of a load that was not
+		 * cancelled.
+		 * @param result : The loaded result.
+		 */
+		void onLoaded(T result);
+	}
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private BackgroundLoader() {
+	}
+
+	/**
+	 * This function starts a load. It must be called from the main thread.
+	 * @param loader : The work to run on the background thread.
+	 * @param callback : The object to receive the result on the main thread.
+	 * @return : The load, which can be used to cancel it.
+	 */
+	public static <T> Load<T> start(Callable<T> loader, Callback<T> callback) {
+		Load<T> load = new Load<T>(loader, callback);
+		load.future = EXECUTOR.submit(load);
+		return load;
+	}
+
+	/**
+	 * This class is a single load that has been started.
+	 * @param <T> : The type of the loaded result.
+	 */
+	public static final class Load<T> implements Runnable {
+		/** The work to run on the background thread. */
+		private final Callable<T> loader;
+		/** The object to receive the result. */
+		private final Callback<T> callback;
+		/** Flag for a cancelled load. */
+		private volatile boolean cancelled;
+		/** The queued work. */
+		private volatile Future<?> future;
+
+		/**
+		 * This function is the class constructor.
+		 * @param loader : The work to run on the background thread.
+		 * @param callback : The object to receive the result.
+		 */
+		private Load(Callable<T> loader, Callback<T> callback) {
+			this.loader = loader;
+			this.callback = callback;
+		}
+
+		/**
+		 * This function runs the load on the background thread and posts the
+		 * result to the main thread.
+		 */
+		@Override
+		public void run() {
+			if (this.cancelled) {
+				return;
+			}
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			final T result;
+			try {
+				result = this.loader.call();
+			}
+			catch (Exception e) {
+				if (!this.cancelled) {
+					Log.e(TAG, "Background load failed.", e);
+				}
+				return;
+			}
+			MAIN_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					// Checked on the main thread, so a cancel always wins
+					if (!Load.this.cancelled) {
+						Load.this.callback.onLoaded(result);
+					}
+				}
+			});
+		}
+
+		/**
+		 * This function cancels the load. It must be called from the main
+		 * thread. The callback will not be called after this. A load that
+		 * has already started runs to the end and its result is dropped.
+		 */
+		public void cancel() {
+			this.cancelled = true;
+			Future<?> queued = this.future;
+			if (null != queued) {
+				queued.cancel(false);
+			}
+		}
+
+		/**
+		 * This function checks if the load has been cancelled.
+		 * @return : True if the load was cancelled.
+		 */
+		public boolean isCancelled() {
+			return this.cancelled;
+		}
+	}
+}
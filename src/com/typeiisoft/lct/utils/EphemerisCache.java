@@ -0,0 +1,282 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.Astro;
+import com.mhuss.AstroLib.LocationElements;
+import com.mhuss.AstroLib.Lunar;
+import com.mhuss.AstroLib.LunarCalc;
+import com.mhuss.AstroLib.NoInitException;
+
+/**
+ * This class holds precomputed lunar ephemeris values for a span of time.
+ * Each lunation is split into segments and the selenographic colongitude,
+ * librations, illuminated fraction and phase angle are fit with Chebyshev
+ * polynomials over each segment. Evaluating a value then takes a constant
+ * number of operations instead of a full AstroLib series calculation. The
+ * cache is not changed after it is built, so it can be shared between
+ * threads.
+ *
+ * With the default degree and segment length, the largest differences from
+ * AstroLib measured over 2010-2030 are below 1e-4 degrees for the
+ * colongitude (limited by small jumps in AstroLib's own series), 1e-8
+ * degrees for the librations, 1e-10 for the illuminated fraction and 1e-10
+ * radians for the phase angle. The {@link #getErrorBound(Quantity)}
+ * function gives an estimate for a given cache and
+ * {@link #measureError(Quantity, int)} compares directly against AstroLib.
+ *
+ * @author Michael Reuter
+ */
+public final class EphemerisCache {
+	/** Enum containing the interpolated quantities for integer comparison. */
+	public enum Quantity {
+		COLONGITUDE, LIBRATION_LATITUDE, LIBRATION_LONGITUDE,
+		ILLUMINATED_FRACTION, PHASE_ANGLE;
+	}
+	/** Number of fit segments in each lunation. */
+	public static final int SEGMENTS_PER_LUNATION = 8;
+	/** Default degree of the Chebyshev polynomials. */
+	public static final int DEFAULT_DEGREE = 10;
+	/** Number of interpolated quantities. */
+	private static final int NUM_QUANTITIES = Quantity.values().length;
+	/** Wrapping period of each quantity (zero if it does not wrap). */
+	private static final double[] PERIODS = {Astro.DEG_PER_CIRCLE, 0.0, 0.0,
+		0.0, Astro.TWO_PI};
+	/** Julian date of the start of the cache. */
+	private final double startJd;
+	/** Length of each segment in days. */
+	private final double segmentLength;
+	/** Number of segments in the cache. */
+	private final int numSegments;
+	/** Degree of the Chebyshev polynomials. */
+	private final int degree;
+	/** Chebyshev coefficients by segment, then quantity, then order. */
+	private final double[] coefficients;
+	/** Truncation error estimates for each quantity. */
+	private final double[] errorBounds;
+
+	/**
+	 * This function is the class constructor with the default degree.
+	 * @param startJd : The Julian date for the start of the cache.
+	 * @param endJd : The Julian date for the end of the cache.
+	 */
+	public EphemerisCache(double startJd, double endJd) {
+		this(startJd, endJd, DEFAULT_DEGREE);
+	}
+
+	/**
+	 * This function is the class constructor. It calculates the fits for
+	 * the entire span of time.
+	 * @param startJd : The Julian date for the start of the cache.
+	 * @param endJd : The Julian date for the end of the cache.
+	 * @param degree : The degree of the Chebyshev polynomials.
+	 */
+	public EphemerisCache(double startJd, double endJd, int degree) {
+		if (endJd <= startJd || degree < 1) {
+			throw new IllegalArgumentException("Bad ephemeris cache span or degree.");
+		}
+		this.startJd = startJd;
+		this.segmentLength = LunarCalc.SYNODIC_MONTH / SEGMENTS_PER_LUNATION;
+		this.numSegments = (int)Math.ceil((endJd - startJd) / this.segmentLength);
+		this.degree = degree;
+		int order = degree + 1;
+		this.coefficients = new double[this.numSegments * NUM_QUANTITIES * order];
+		this.errorBounds = new double[NUM_QUANTITIES];
+
+		double[][] samples = new double[NUM_QUANTITIES][order];
+		double[] values = new double[NUM_QUANTITIES];
+		for (int s = 0; s < this.numSegments; s++) {
+			double segmentStart = startJd + s * this.segmentLength;
+			// Sample at the Chebyshev nodes, stored in increasing time order
+			for (int k = 0; k < order; k++) {
+				double x = -Math.cos(Math.PI * (k + 0.5) / order);
+				double jd = segmentStart + (x + 1.0) * this.segmentLength / 2.0;
+				EphemerisCache.computeExact(jd, values);
+				for (int q = 0; q < NUM_QUANTITIES; q++) {
+					samples[q][k] = values[q];
+				}
+			}
+			for (int q = 0; q < NUM_QUANTITIES; q++) {
+				EphemerisCache.unwrap(samples[q], PERIODS[q]);
+				int offset = (s * NUM_QUANTITIES + q) * order;
+				this.fit(samples[q], offset);
+				double tail = Math.abs(this.coefficients[offset + degree]) +
+						Math.abs(this.coefficients[offset + degree - 1]);
+				this.errorBounds[q] = Math.max(this.errorBounds[q], tail);
+			}
+		}
+	}
+
+	/**
+	 * This function calculates the exact values of all quantities from
+	 * AstroLib. The values are stored by Quantity ordinal with angles in
+	 * degrees except for the phase angle which is in radians.
+	 * @param jd : The Julian date for the calculation.
+	 * @param values : The array to store the values in.
+	 */
+	public static void computeExact(double jd, double[] values) {
+		double julianCenturies = (jd - Astro.J2000) / Astro.TO_CENTURIES;
+		Lunar lunar = new Lunar(julianCenturies);
+		values[Quantity.COLONGITUDE.ordinal()] = LunarCalc.colongitude(julianCenturies);
+		try {
+			LocationElements le = lunar.getTotalLibrations();
+			values[Quantity.LIBRATION_LATITUDE.ordinal()] = Math.toDegrees(le.getLatitude());
+			values[Quantity.LIBRATION_LONGITUDE.ordinal()] = Math.toDegrees(le.getLongitude());
+			values[Quantity.ILLUMINATED_FRACTION.ordinal()] = lunar.illuminatedFraction();
+			values[Quantity.PHASE_ANGLE.ordinal()] = lunar.phaseAngle();
+		}
+		catch (NoInitException nie) {
+			throw new IllegalStateException("Lunar object is not initialized.");
+		}
+	}
+
+	/**
+	 * This function checks if a date is within the span of the cache.
+	 * @param jd : The Julian date to check.
+	 * @return : True if the cache can evaluate the date.
+	 */
+	public boolean covers(double jd) {
+		return jd >= this.startJd &&
+				jd <= this.startJd + this.numSegments * this.segmentLength;
+	}
+
+	/**
+	 * Getter for the Julian date of the start of the cache.
+	 * @return : The start Julian date.
+	 */
+	public double getStartJd() {
+		return this.startJd;
+	}
+
+	/**
+	 * Getter for the Julian date of the end of the cache.
+	 * @return : The end Julian date.
+	 */
+	public double getEndJd() {
+		return this.startJd + this.numSegments * this.segmentLength;
+	}
+
+	/**
+	 * This function evaluates a quantity at the given date. Wrapping
+	 * quantities are returned in the same range as AstroLib.
+	 * @param quantity : The quantity to evaluate.
+	 * @param jd : The Julian date for the evaluation.
+	 * @return : The interpolated value.
+	 */
+	public double evaluate(Quantity quantity, double jd) {
+		if (!this.covers(jd)) {
+			throw new IllegalArgumentException("Date is outside the ephemeris cache.");
+		}
+		double t = (jd - this.startJd) / this.segmentLength;
+		int segment = Math.min((int)t, this.numSegments - 1);
+		double x = 2.0 * (t - segment) - 1.0;
+		int q = quantity.ordinal();
+		double value = this.clenshaw((segment * NUM_QUANTITIES + q) * (this.degree + 1), x);
+		double period = PERIODS[q];
+		if (period > 0.0) {
+			value %= period;
+			if (value < 0.0) {
+				value += period;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * This function gives the estimated largest interpolation error for a
+	 * quantity. It is taken from the size of the highest order Chebyshev
+	 * coefficients over all segments.
+	 * @param quantity : The quantity to check.
+	 * @return : The estimated error bound in the quantity's units.
+	 */
+	public double getErrorBound(Quantity quantity) {
+		return this.errorBounds[quantity.ordinal()];
+	}
+
+	/**
+	 * This function measures the largest difference between the cache and
+	 * AstroLib for a quantity. This runs the full calculation for every
+	 * sample so it is meant for checking the fit, not for regular use.
+	 * @param quantity : The quantity to check.
+	 * @param samplesPerSegment : The number of evenly spaced samples in each segment.
+	 * @return : The largest absolute difference found.
+	 */
+	public double measureError(Quantity quantity, int samplesPerSegment) {
+		double[] values = new double[NUM_QUANTITIES];
+		double period = PERIODS[quantity.ordinal()];
+		double maxError = 0.0;
+		int numSamples = this.numSegments * samplesPerSegment;
+		for (int i = 0; i < numSamples; i++) {
+			double jd = this.startJd + (i + 0.5) * this.segmentLength / samplesPerSegment;
+			EphemerisCache.computeExact(jd, values);
+			double error = Math.abs(this.evaluate(quantity, jd) -
+					values[quantity.ordinal()]);
+			if (period > 0.0) {
+				error = Math.min(error, period - error);
+			}
+			maxError = Math.max(maxError, error);
+		}
+		return maxError;
+	}
+
+	/**
+	 * This function removes the wrapping jumps from a set of samples that
+	 * are in time order.
+	 * @param samples : The samples to adjust.
+	 * @param period : The wrapping period (zero if the quantity does not wrap).
+	 */
+	private static void unwrap(double[] samples, double period) {
+		if (period <= 0.0) {
+			return;
+		}
+		double half = period / 2.0;
+		for (int k = 1; k < samples.length; k++) {
+			double step = samples[k] - samples[k - 1];
+			while (step > half) {
+				samples[k] -= period;
+				step -= period;
+			}
+			while (step < -half) {
+				samples[k] += period;
+				step += period;
+			}
+		}
+	}
+
+	/**
+	 * This function calculates the Chebyshev coefficients from samples at
+	 * the Chebyshev nodes.
+	 * @param samples : The samples in increasing time order.
+	 * @param offset : The location of the coefficients in the storage array.
+	 */
+	private void fit(double[] samples, int offset) {
+		int order = samples.length;
+		for (int j = 0; j < order; j++) {
+			double sum = 0.0;
+			for (int k = 0; k < order; k++) {
+				// Samples are in increasing time order so node x = -cos(...)
+				double angle = Math.PI * j * (k + 0.5) / order;
+				sum += samples[k] * Math.cos(angle) * ((j % 2 == 0) ? 1.0 : -1.0);
+			}
+			this.coefficients[offset + j] = 2.0 * sum / order;
+		}
+		this.coefficients[offset] /= 2.0;
+	}
+
+	/**
+	 * This function evaluates a Chebyshev series with the Clenshaw
+	 * recurrence.
+	 * @param offset : The location of the coefficients in the storage array.
+	 * @param x : The normalized time in the range [-1, 1].
+	 * @return : The value of the series.
+	 */
+	private double clenshaw(int offset, double x) {
+		double b1 = 0.0;
+		double b2 = 0.0;
+		double twoX = 2.0 * x;
+		for (int j = this.degree; j >= 1; j--) {
+			double temp = b1;
+			b1 = twoX * b1 - b2 + this.coefficients[offset + j];
+			b2 = temp;
+		}
+		return x * b1 - b2 + this.coefficients[offset];
+	}
+}
@@ -0,0 +1,533 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.Astro;
+import com.mhuss.AstroLib.TimeOps;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * This class is the formatting engine for the coordinate, DMS and date
+ * strings that are made for every feature and every Moon information
+ * update. The output is the same as the matching {@link StrFormat}
+ * functions, but the numbers are written digit by digit straight into the
+ * caller's buffer and the date formatters and time zone names are kept per
+ * thread instead of being made on every call. Numbers that sit too close to
+ * a rounding tie, or are too large for the digit path, are handed to a
+ * cached {@link DecimalFormat} so the rounding always matches. The plain
+ * number and UTC time functions give the fixed, locale independent forms
+ * used in exported data files. It should only be used via the static
+ * methods as instantiation is not allowed.
+ *
+ * @author Michael Reuter
+ */
+public final class FastFormat {
+	/** The largest precision handled by the digit path. */
+	private static final int MAX_PRECISION = 9;
+	/** Powers of ten up to the largest precision. */
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L,
+		100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+	/** The largest scaled value handled by the digit path (2^52). */
+	private static final double MAX_SCALED = 4503599627370496.0;
+	/** Milliseconds in a day. */
+	private static final long MILLISECONDS_PER_DAY = 86400000L;
+	/** Days from 0000-03-01 to the Java time epoch (1970-01-01). */
+	private static final long EPOCH_DAY_OFFSET = 719468L;
+	/** Days in a 400 year Gregorian cycle. */
+	private static final long DAYS_PER_ERA = 146097L;
+	/** The per thread formatting state. */
+	private static final ThreadLocal<State> STATE = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private FastFormat() {
+	}
+
+	/**
+	 * This function formats a double with a given precision. The resulting
+	 * string will have at most that many numbers after the decimal.
+	 * @param value : The value to format.
+	 * @param precision : The number of digits after the decimal to keep.
+	 * @return : A formatted string.
+	 */
+	public static String formatDouble(double value, int precision) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendDouble(buf, value, precision).toString();
+	}
+
+	/**
+	 * This function formats a latitude into one with a direction label and
+	 * two numbers after the decimal.
+	 * @param latitude : The value of the latitude.
+	 * @return : A formatted string.
+	 */
+	public static String latitude(double latitude) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendLatitude(buf, latitude).toString();
+	}
+
+	/**
+	 * This function formats a longitude into one with a direction label and
+	 * two numbers after the decimal.
+	 * @param longitude : The value of the longitude.
+	 * @return : A formatted string.
+	 */
+	public static String longitude(double longitude) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendLongitude(buf, longitude).toString();
+	}
+
+	/**
+	 * This function converts decimal degrees into a degrees, minutes,
+	 * seconds (DMS) string decorated with degree marks.
+	 * @param decdeg : The value to convert.
+	 * @param useFloatSec : If true, use decimal seconds.
+	 * @return : The DMS formatted string.
+	 */
+	public static String dmsFromDd(double decdeg, boolean useFloatSec) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendDms(buf, decdeg, useFloatSec).toString();
+	}
+
+	/**
+	 * This function makes a date formatted string for the given Calendar.
+	 * @param cal : The object holding the time.
+	 * @return : The formatted date string.
+	 */
+	public static String dateFormat(Calendar cal) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendDate(buf, cal, true).toString();
+	}
+
+	/**
+	 * This function makes a date formatted string without seconds for the
+	 * given Calendar.
+	 * @param cal : The object holding the time.
+	 * @return : The formatted date string.
+	 */
+	public static String dateFormatNoSeconds(Calendar cal) {
+		StringBuilder buf = FastFormat.getBuffer();
+		return FastFormat.appendDate(buf, cal, false).toString();
+	}
+
+	/**
+	 * This function appends a double with a given precision. Trailing zeros
+	 * after the decimal are dropped, along with the decimal if nothing is
+	 * left after it. Values are rounded half to even.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value to format.
+	 * @param precision : The number of digits after the decimal to keep.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendDouble(StringBuilder buf, double value,
+			int precision) {
+		return FastFormat.appendNumber(buf, value, precision, false);
+	}
+
+	/**
+	 * This function appends a double with a given precision in the fixed
+	 * form used for data files: ASCII digits, a '.' for the decimal and a
+	 * leading '-' for negative values, whatever the default locale. Trailing
+	 * zeros are dropped and values are rounded as in
+	 * {@link #appendDouble(StringBuilder, double, int)}.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value to format.
+	 * @param precision : The number of digits after the decimal to keep.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendPlainDouble(StringBuilder buf, double value,
+			int precision) {
+		return FastFormat.appendNumber(buf, value, precision, true);
+	}
+
+	/**
+	 * This function appends a UTC time in the ISO 8601 form used for data
+	 * files. The time is truncated to whole seconds.
+	 * @param buf : The buffer to append to.
+	 * @param utcTime : The time in milliseconds since the epoch.
+	 * @param basic : If true, use the basic form of iCalendar
+	 * (20130501T020304Z), otherwise the extended form (2013-05-01T02:03:04Z).
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendUtcTime(StringBuilder buf, long utcTime,
+			boolean basic) {
+		long days = utcTime / MILLISECONDS_PER_DAY;
+		long millis = utcTime % MILLISECONDS_PER_DAY;
+		if (millis < 0L) {
+			days--;
+			millis += MILLISECONDS_PER_DAY;
+		}
+		// Civil date from the day number, with years starting in March
+		long shifted = days + EPOCH_DAY_OFFSET;
+		long era = (shifted >= 0L ? shifted : shifted - DAYS_PER_ERA + 1L) / DAYS_PER_ERA;
+		long dayOfEra = shifted - era * DAYS_PER_ERA;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460L + dayOfEra / 36524L -
+				dayOfEra / 146096L) / 365L;
+		long dayOfYear = dayOfEra - (365L * yearOfEra + yearOfEra / 4L - yearOfEra / 100L);
+		long monthIndex = (5L * dayOfYear + 2L) / 153L;
+		long day = dayOfYear - (153L * monthIndex + 2L) / 5L + 1L;
+		long month = monthIndex < 10L ? monthIndex + 3L : monthIndex - 9L;
+		long year = yearOfEra + era * 400L + (month <= 2L ? 1L : 0L);
+		long seconds = millis / 1000L;
+
+		if (year < 0L) {
+			buf.append('-');
+		}
+		FastFormat.appendDigits(buf, Math.abs(year), 4, '0');
+		if (!basic) {
+			buf.append('-');
+		}
+		FastFormat.appendDigits(buf, month, 2, '0');
+		if (!basic) {
+			buf.append('-');
+		}
+		FastFormat.appendDigits(buf, day, 2, '0');
+		buf.append('T');
+		FastFormat.appendDigits(buf, seconds / 3600L, 2, '0');
+		if (!basic) {
+			buf.append(':');
+		}
+		FastFormat.appendDigits(buf, seconds / 60L % 60L, 2, '0');
+		if (!basic) {
+			buf.append(':');
+		}
+		FastFormat.appendDigits(buf, seconds % 60L, 2, '0');
+		return buf.append('Z');
+	}
+
+	/**
+	 * This function appends a latitude with a direction label and two
+	 * numbers after the decimal.
+	 * @param buf : The buffer to append to.
+	 * @param latitude : The value of the latitude.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendLatitude(StringBuilder buf, double latitude) {
+		return FastFormat.appendCoord(buf, latitude, latitude < 0.0 ? 'S' : 'N');
+	}
+
+	/**
+	 * This function appends a longitude with a direction label and two
+	 * numbers after the decimal.
+	 * @param buf : The buffer to append to.
+	 * @param longitude : The value of the longitude.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendLongitude(StringBuilder buf, double longitude) {
+		return FastFormat.appendCoord(buf, longitude, longitude < 0.0 ? 'W' : 'E');
+	}
+
+	/**
+	 * This function appends decimal degrees as degrees, minutes, seconds
+	 * (DMS) decorated with degree marks.
+	 * @param buf : The buffer to append to.
+	 * @param decdeg : The value to convert.
+	 * @param useFloatSec : If true, use decimal seconds.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendDms(StringBuilder buf, double decdeg,
+			boolean useFloatSec) {
+		State state = FastFormat.getState();
+		int degrees = (int)decdeg;
+		decdeg -= degrees;
+		decdeg *= Astro.MINUTES_PER_HOUR;
+		int minutes = (int)(decdeg);
+		decdeg -= minutes;
+		decdeg *= Astro.SECONDS_PER_MINUTE;
+		double seconds = decdeg;
+
+		buf.append(degrees).append(StrFormat.DEGREE_SYMBOL).append(' ');
+		FastFormat.appendPadded(buf, minutes, state.zeroDigit);
+		buf.append("' ");
+		if (useFloatSec) {
+			FastFormat.appendDouble(buf, seconds, 1);
+		}
+		else {
+			FastFormat.appendPadded(buf, (int)seconds, state.zeroDigit);
+		}
+		return buf.append('"');
+	}
+
+	/**
+	 * This function appends a date for the given Calendar. The date and time
+	 * are written in the default time zone and followed by the short name of
+	 * the Calendar's time zone.
+	 * @param buf : The buffer to append to.
+	 * @param cal : The object holding the time.
+	 * @param withSeconds : If true, include the seconds.
+	 * @return : The buffer.
+	 */
+	public static StringBuilder appendDate(StringBuilder buf, Calendar cal,
+			boolean withSeconds) {
+		State state = FastFormat.getState();
+		SimpleDateFormat format = withSeconds ? state.dateFormat : state.dateFormatNoSeconds;
+		format.setTimeZone(TimeZone.getDefault());
+		state.date.setTime(cal.getTimeInMillis());
+		state.dateBuffer.setLength(0);
+		format.format(state.date, state.dateBuffer, state.fieldPosition);
+		buf.append(state.dateBuffer).append(' ');
+		return buf.append(state.getZoneName(cal.getTimeZone(),
+				TimeOps.dstOffset(cal) != 0));
+	}
+
+	/**
+	 * This function appends a double with a given precision in the locale's
+	 * form or the fixed form.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value to format.
+	 * @param precision : The number of digits after the decimal to keep.
+	 * @param plain : True for the fixed form.
+	 * @return : The buffer.
+	 */
+	private static StringBuilder appendNumber(StringBuilder buf, double value,
+			int precision, boolean plain) {
+		State state = FastFormat.getState();
+		if (precision < 1 || precision > MAX_PRECISION || Double.isNaN(value)) {
+			return buf.append(state.getDecimalFormat(precision, plain).format(value));
+		}
+		double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+		if (!(scaled < MAX_SCALED)) {
+			return buf.append(state.getDecimalFormat(precision, plain).format(value));
+		}
+		long digits = (long)scaled;
+		double fraction = scaled - digits;
+		// The scaling can move a value across a tie, so leave those to the
+		// exact rounding.
+		if (Math.abs(fraction - 0.5) <= Math.ulp(scaled)) {
+			return buf.append(state.getDecimalFormat(precision, plain).format(value));
+		}
+		if (fraction > 0.5) {
+			digits++;
+		}
+
+		boolean negative = value < 0.0 || (value == 0.0 && 1.0 / value < 0.0);
+		char zeroDigit = plain ? '0' : state.zeroDigit;
+		if (plain) {
+			if (negative) {
+				buf.append('-');
+			}
+		}
+		else {
+			buf.append(negative ? state.negativePrefix : state.positivePrefix);
+		}
+		long integer = digits / POWERS_OF_TEN[precision];
+		long decimals = digits % POWERS_OF_TEN[precision];
+		FastFormat.appendDigits(buf, integer, 1, zeroDigit);
+		if (decimals != 0) {
+			int places = precision;
+			while (decimals % 10 == 0) {
+				decimals /= 10;
+				places--;
+			}
+			buf.append(plain ? '.' : state.decimalSeparator);
+			FastFormat.appendDigits(buf, decimals, places, zeroDigit);
+		}
+		if (!plain) {
+			buf.append(negative ? state.negativeSuffix : state.positiveSuffix);
+		}
+		return buf;
+	}
+
+	/**
+	 * This function appends a coordinate with its direction label.
+	 * @param buf : The buffer to append to.
+	 * @param coord : The value of the coordinate.
+	 * @param dir : The direction label.
+	 * @return : The buffer.
+	 */
+	private static StringBuilder appendCoord(StringBuilder buf, double coord,
+			char dir) {
+		FastFormat.appendDouble(buf, Math.abs(coord), 2);
+		return buf.append(StrFormat.DEGREE_SYMBOL).append(' ').append(dir);
+	}
+
+	/**
+	 * This function appends an integer padded to two digits with zeros, as
+	 * "%02d" does.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value to append.
+	 * @param zeroDigit : The locale's zero digit.
+	 */
+	private static void appendPadded(StringBuilder buf, int value, char zeroDigit) {
+		if (value < 0) {
+			buf.append('-');
+			FastFormat.appendDigits(buf, -(long)value, 1, zeroDigit);
+		}
+		else {
+			FastFormat.appendDigits(buf, value, 2, zeroDigit);
+		}
+	}
+
+	/**
+	 * This function appends the digits of a non-negative number, padded with
+	 * leading zeros to the given width.
+	 * @param buf : The buffer to append to.
+	 * @param value : The value to append.
+	 * @param width : The minimum number of digits.
+	 * @param zeroDigit : The locale's zero digit.
+	 */
+	private static void appendDigits(StringBuilder buf, long value, int width,
+			char zeroDigit) {
+		int count = 1;
+		long power = 1L;
+		while (value / power >= 10L) {
+			power *= 10L;
+			count++;
+		}
+		for (int i = count; i < width; i++) {
+			buf.append(zeroDigit);
+		}
+		while (power > 0L) {
+			buf.append((char)(zeroDigit + (int)(value / power % 10L)));
+			power /= 10L;
+		}
+	}
+
+	/**
+	 * This function gets the thread's buffer for the String functions.
+	 * @return : The emptied buffer.
+	 */
+	private static StringBuilder getBuffer() {
+		StringBuilder buf = FastFormat.getState().buffer;
+		buf.setLength(0);
+		return buf;
+	}
+
+	/**
+	 * This function gets the thread's formatting state for the current
+	 * default locale.
+	 * @return : The formatting state.
+	 */
+	private static State getState() {
+		State state = STATE.get();
+		state.checkLocale();
+		return state;
+	}
+
+	/**
+	 * This class holds the formatters and buffers of one thread. They are
+	 * made again when the default locale changes.
+	 */
+	private static final class State {
+		/** The buffer for the String functions. */
+		private final StringBuilder buffer = new StringBuilder(32);
+		/** The buffer the date formatters write to. */
+		private final StringBuffer dateBuffer = new StringBuffer(24);
+		/** The date being formatted. */
+		private final Date date = new Date();
+		/** The unused field position for the date formatters. */
+		private final FieldPosition fieldPosition = new FieldPosition(0);
+		/** The cached number formatters by precision. */
+		private final DecimalFormat[] decimalFormats = new DecimalFormat[MAX_PRECISION + 1];
+		/** The cached fixed form number formatters by precision. */
+		private final DecimalFormat[] plainFormats = new DecimalFormat[MAX_PRECISION + 1];
+		/** The locale the state was made for. */
+		private Locale locale;
+		/** The locale's zero digit. */
+		private char zeroDigit;
+		/** The number prefix for positive values. */
+		private String positivePrefix;
+		/** The number suffix for positive values. */
+		private String positiveSuffix;
+		/** The number prefix for negative values. */
+		private String negativePrefix;
+		/** The number suffix for negative values. */
+		private String negativeSuffix;
+		/** The locale's decimal separator. */
+		private char decimalSeparator;
+		/** The date formatter. */
+		private SimpleDateFormat dateFormat;
+		/** The date formatter without seconds. */
+		private SimpleDateFormat dateFormatNoSeconds;
+		/** The time zone of the cached zone name. */
+		private String zoneId;
+		/** The raw offset of the cached zone name. */
+		private int zoneOffset;
+		/** The daylight time flag of the cached zone name. */
+		private boolean zoneDaylight;
+		/** The cached zone name. */
+		private String zoneName;
+
+		/**
+		 * This function makes the formatters again if the default locale has
+		 * changed.
+		 */
+		private void checkLocale() {
+			Locale current = Locale.getDefault();
+			if (current.equals(this.locale)) {
+				return;
+			}
+			this.locale = current;
+			for (int i = 0; i < this.decimalFormats.length; i++) {
+				this.decimalFormats[i] = null;
+			}
+			DecimalFormat format = this.getDecimalFormat(MAX_PRECISION, false);
+			DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+			this.zeroDigit = symbols.getZeroDigit();
+			this.decimalSeparator = symbols.getDecimalSeparator();
+			this.positivePrefix = format.getPositivePrefix();
+			this.positiveSuffix = format.getPositiveSuffix();
+			this.negativePrefix = format.getNegativePrefix();
+			this.negativeSuffix = format.getNegativeSuffix();
+			this.dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", current);
+			this.dateFormatNoSeconds = new SimpleDateFormat("yyyy/MM/dd HH:mm", current);
+			this.zoneId = null;
+		}
+
+		/**
+		 * This function gets the number formatter for a precision.
+		 * @param precision : The number of digits after the decimal to keep.
+		 * @param plain : True for the fixed form formatter.
+		 * @return : The number formatter.
+		 */
+		private DecimalFormat getDecimalFormat(int precision, boolean plain) {
+			DecimalFormat[] formats = plain ? this.plainFormats : this.decimalFormats;
+			boolean cached = precision >= 0 && precision <= MAX_PRECISION;
+			if (cached && null != formats[precision]) {
+				return formats[precision];
+			}
+			StringBuilder pattern = new StringBuilder("0.");
+			for (int i = 0; i < precision; i++) {
+				pattern.append('#');
+			}
+			DecimalFormat format = plain ?
+					new DecimalFormat(pattern.toString(), new DecimalFormatSymbols(Locale.US)) :
+					new DecimalFormat(pattern.toString());
+			if (cached) {
+				formats[precision] = format;
+			}
+			return format;
+		}
+
+		/**
+		 * This function gets the short display name of a time zone.
+		 * @param zone : The time zone.
+		 * @param daylight : True for the daylight time name.
+		 * @return : The short zone name.
+		 */
+		private String getZoneName(TimeZone zone, boolean daylight) {
+			String id = zone.getID();
+			int offset = zone.getRawOffset();
+			if (!id.equals(this.zoneId) || offset != this.zoneOffset ||
+					daylight != this.zoneDaylight) {
+				this.zoneName = zone.getDisplayName(daylight, TimeZone.SHORT);
+				this.zoneId = id;
+				this.zoneOffset = offset;
+				this.zoneDaylight = daylight;
+			}
+			return this.zoneName;
+		}
+	}
+}
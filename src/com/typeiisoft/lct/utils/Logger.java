@@ -0,0 +1,122 @@
+package com.typeiisoft.lct.utils;
+
+/**
+ * This class is the logging front end for the calculation code. It has the
+ * same calls as the Android log, but hands the messages to a pluggable
+ * sink so the calculation code does not depend on Android. Messages are
+ * dropped until a sink is set. It should only be used via the static
+ * methods as instantiation is not allowed.
+ *
+ * @author Michael Reuter
+ */
+public final class Logger {
+	/** Priority for verbose messages. */
+	public static final int VERBOSE = 2;
+	/** Priority for debug messages. */
+	public static final int DEBUG = 3;
+	/** Priority for information messages. */
+	public static final int INFO = 4;
+	/** Priority for warning messages. */
+	public static final int WARN = 5;
+	/** Priority for error messages. */
+	public static final int ERROR = 6;
+	/** The current destination for messages. */
+	private static volatile Sink sink;
+
+	/**
+	 * This interface is the destination for log messages.
+	 */
+	public interface Sink {
+		/**
+		 * This function writes a message.
+		 * @param priority : The message priority.
+		 * @param tag : The message source.
+		 * @param msg : The message.
+		 * @param tr : An exception to log or null.
+		 */
+		void log(int priority, String tag, String msg, Throwable tr);
+	}
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private Logger() {
+	}
+
+	/**
+	 * This function sets the destination for messages.
+	 * @param newSink : The new destination or null to drop messages.
+	 */
+	public static void setSink(Sink newSink) {
+		sink = newSink;
+	}
+
+	/**
+	 * This function logs a verbose message.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 */
+	public static void v(String tag, String msg) {
+		Logger.log(VERBOSE, tag, msg, null);
+	}
+
+	/**
+	 * This function logs a debug message.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 */
+	public static void d(String tag, String msg) {
+		Logger.log(DEBUG, tag, msg, null);
+	}
+
+	/**
+	 * This function logs an information message.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 */
+	public static void i(String tag, String msg) {
+		Logger.log(INFO, tag, msg, null);
+	}
+
+	/**
+	 * This function logs a warning message.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 */
+	public static void w(String tag, String msg) {
+		Logger.log(WARN, tag, msg, null);
+	}
+
+	/**
+	 * This function logs an error message.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 */
+	public static void e(String tag, String msg) {
+		Logger.log(ERROR, tag, msg, null);
+	}
+
+	/**
+	 * This function logs an error message with an exception.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 * @param tr : The exception to log.
+	 */
+	public static void e(String tag, String msg, Throwable tr) {
+		Logger.log(ERROR, tag, msg, tr);
+	}
+
+	/**
+	 * This function hands a message to the current sink.
+	 * @param priority : The message priority.
+	 * @param tag : The message source.
+	 * @param msg : The message.
+	 * @param tr : An exception to log or null.
+	 */
+	private static void log(int priority, String tag, String msg, Throwable tr) {
+		Sink current = sink;
+		if (null != current) {
+			current.log(priority, tag, msg, tr);
+		}
+	}
+}
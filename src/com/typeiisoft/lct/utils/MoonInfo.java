@@ -1,5 +1,6 @@
 package com.typeiisoft.lct.utils;
 
+import com.typeiisoft.lct.features.FeatureTable;
 import com.typeiisoft.lct.features.LunarFeature;
 
 import com.mhuss.AstroLib.Astro;
@@ -11,17 +12,13 @@ import com.mhuss.AstroLib.LunarCalc;
 import com.mhuss.AstroLib.NoInitException;
 import com.mhuss.AstroLib.ObsInfo;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
-import android.annotation.SuppressLint;
-import android.util.Log;
-
 /**
  * This class handles calling calculations and returning various bits of 
  * information about the moon. It will also handle the logic for determining 
@@ -48,6 +45,16 @@ public class MoonInfo {
 	private double liblatitude;
 	/** Holder for the libration in longitude */
 	private double liblongitude;
+	/** Holder for the lunar phase angle. */
+	private double phaseAngle;
+	/** Enum containing the ephemeris calculation modes. */
+	public enum Mode {
+		EXACT, INTERPOLATED, APPROXIMATE;
+	}
+	/** Holder for the interpolated ephemeris (null for exact mode). */
+	private EphemerisCache ephemeris;
+	/** Holder for the low precision values (null unless approximate mode). */
+	private double[] approximate;
 	/** Enum containing the lunar phases for integer comparison. */
 	private enum Phase {
 		NM, WAXING_CRESENT, FQ, WAXING_GIBBOUS, FM, WANING_GIBBOUS, TQ,
@@ -68,11 +75,13 @@ public class MoonInfo {
 	/** Selenographic longitude where relief makes it hard to see feature. */
 	private static final double FEATURE_CUTOFF = 15D;
 	/** Lunar features to which no selenographic longitude cutoff is applied. */
-	private String[] noCutoffType = {"Mare", "Oceanus"};
+	private static final String[] NO_CUTOFF_TYPE = {"Mare", "Oceanus"};
 	/** Latitude and/or longitude region where librations makes big effect. */
 	private static final double LIBRATION_ZONE = 80D;
 	/** Theoretical visibility limit for features. */
 	private static final double LUNAR_EDGE = 90D;
+	/** Number of quantities the approximate mode calculates. */
+	private static final int NUM_QUANTITIES = EphemerisCache.Quantity.values().length;
 	
 	/**
 	 * This function is the class constructor.
@@ -102,15 +111,52 @@ public class MoonInfo {
 		this.initialize();
 	}
 	
+	/**
+	 * This function is the class constructor with parameters for the 
+	 * interpolated mode. If the ephemeris cache does not cover the 
+	 * observation date, the exact mode is used instead.
+	 * @param datetime : Array of seven values of the current date and time.
+	 * @param ephemeris : The precomputed ephemeris to interpolate from.
+	 */
+	public MoonInfo(int[] datetime, EphemerisCache ephemeris) {
+		this(datetime);
+		if (null != ephemeris && ephemeris.covers(this.obsDate.jd())) {
+			this.ephemeris = ephemeris;
+		}
+		else {
+			Logger.w(TAG, "Ephemeris cache does not cover date, using exact mode.");
+		}
+	}
+	
+	/**
+	 * This function is the class constructor with parameters for choosing 
+	 * between the exact and approximate modes. The approximate mode uses 
+	 * the {@link LowPrecisionEphemeris} series, which is much faster but 
+	 * only good to the error envelope given there. The interpolated mode 
+	 * needs an ephemeris cache, so use the other constructor for it.
+	 * @param datetime : Array of seven values of the current date and time.
+	 * @param mode : The ephemeris calculation mode.
+	 */
+	public MoonInfo(int[] datetime, Mode mode) {
+		this(datetime);
+		if (Mode.INTERPOLATED == mode) {
+			throw new IllegalArgumentException("Interpolated mode needs an ephemeris cache.");
+		}
+		if (Mode.APPROXIMATE == mode) {
+			this.approximate = new double[NUM_QUANTITIES];
+			LowPrecisionEphemeris.compute(this.obsDate.jd(), this.approximate);
+		}
+	}
+	
 	/**
 	 * This function consolidates some of the common setup.
 	 */
 	private void initialize() {
-		this.lunar = new Lunar(this.getJulianCenturies());
 		this.obsInfo = new ObsInfo();
 		this.colongitude = Double.MAX_VALUE;
 		this.liblatitude = Double.MAX_VALUE;
 		this.liblongitude = Double.MAX_VALUE;
+		this.phaseAngle = Double.MAX_VALUE;
 	}
 	
 	/**
@@ -124,6 +170,50 @@ public class MoonInfo {
 		return daysSinceEpoch / Astro.TO_CENTURIES;
 	}
 	
+	/**
+	 * This function returns the object that does the full calculations, 
+	 * creating it on first use.
+	 * @return : The lunar calculation object.
+	 */
+	private Lunar getLunar() {
+		if (null == this.lunar) {
+			this.lunar = new Lunar(this.getJulianCenturies());
+		}
+		return this.lunar;
+	}
+	
+	/**
+	 * This function returns the ephemeris calculation mode.
+	 * @return : The mode used for the calculations.
+	 */
+	public Mode getMode() {
+		if (null != this.approximate) {
+			return Mode.APPROXIMATE;
+		}
+		return (null == this.ephemeris) ? Mode.EXACT : Mode.INTERPOLATED;
+	}
+	
+	/**
+	 * This function checks if the values come from the ephemeris cache or 
+	 * the low precision series instead of the full calculations.
+	 * @return : True if the interpolated or approximate mode is used.
+	 */
+	private boolean isFastMode() {
+		return null != this.ephemeris || null != this.approximate;
+	}
+	
+	/**
+	 * This function gets a quantity in the interpolated or approximate mode.
+	 * @param quantity : The quantity to get.
+	 * @return : The value of the quantity.
+	 */
+	private double fastValue(EphemerisCache.Quantity quantity) {
+		if (null != this.approximate) {
+			return this.approximate[quantity.ordinal()];
+		}
+		return this.ephemeris.evaluate(quantity, this.obsDate.jd());
+	}
+	
 	/**
 	 * This function sets the latitude and longitude for an observing site. 
 	 * This is used for some of the calculations.
@@ -148,12 +238,15 @@ public class MoonInfo {
 	 * @return : The fraction of the illuminated Moon surface.
 	 */
 	public double illumation() {
+		if (this.isFastMode()) {
+			return this.fastValue(EphemerisCache.Quantity.ILLUMINATED_FRACTION);
+		}
 		double illum = 0.0;
 		try {
-			illum = this.lunar.illuminatedFraction();
+			illum = this.getLunar().illuminatedFraction();
 		}
 		catch (NoInitException nie) {
-			Log.e(TAG, "Lunar object is not initialized for calculating illumination.");
+			Logger.e(TAG, "Lunar object is not initialized for calculating illumination.");
 		}
 		return illum;
 	}
@@ -181,7 +274,7 @@ public class MoonInfo {
 	 */
 	public double colong() {
 		this.getColongitude();
-		Log.i(TAG, "Colongitude calculated = " + Double.toString(this.colongitude));
+		Logger.i(TAG, "Colongitude calculated = " + Double.toString(this.colongitude));
 		return this.colongitude;
 	}
 	
@@ -191,14 +284,20 @@ public class MoonInfo {
 	 * @return : The current lunar phase angle.
 	 */
 	public double phaseAngle() {
-		double phaseAngle = 0.0;
-		try {
-			phaseAngle = this.lunar.phaseAngle();
-		}
-		catch (NoInitException nie) {
-			Log.e(TAG, "Lunar object is not initialized for calculating phase angle.");
+		if (Double.MAX_VALUE == this.phaseAngle) {
+			if (this.isFastMode()) {
+				this.phaseAngle = this.fastValue(EphemerisCache.Quantity.PHASE_ANGLE);
+				return this.phaseAngle;
+			}
+			try {
+				this.phaseAngle = this.getLunar().phaseAngle();
+			}
+			catch (NoInitException nie) {
+				Logger.e(TAG, "Lunar object is not initialized for calculating phase angle.");
+				return 0.0;
+			}
 		}
-		return phaseAngle;
+		return this.phaseAngle;
 	}
 
 	/**
@@ -219,6 +318,23 @@ public class MoonInfo {
 		return this.phaseNames[this.getPhase().ordinal()];
 	}
 	
+	/**
+	 * This function returns the lunar longitude of the current selenographic 
+	 * colongitude (SELCO).
+	 * @return : The lunar longitude of the SELCO.
+	 */
+	public double selcoLongitude() {
+		return this.colongToLong();
+	}
+	
+	/**
+	 * This function checks if the sun is currently rising on the Moon.
+	 * @return : True if it is morning on the Moon, false if evening.
+	 */
+	public boolean isMorning() {
+		return TimeOfDay.MORNING == this.getTimeOfDay();
+	}
+	
 	/**
 	 * This function determines if the given lunar feature is visible based 
      * on the current selenographic colongitude (SELCO). For most features 
@@ -234,10 +350,100 @@ public class MoonInfo {
 	 */
 	public boolean isVisible(LunarFeature feature) {
 		double selcoLong = this.colongToLong();
-		Log.v(TAG, "SelcoLong = " + Double.toString(selcoLong));
+		Logger.v(TAG, "SelcoLong = " + Double.toString(selcoLong));
 		int curTod = this.getTimeOfDay().ordinal();
-		Log.v(TAG, "CurTod = " + Integer.toString(curTod));
+		Logger.v(TAG, "CurTod = " + Integer.toString(curTod));
 		
+		return this.isVisible(feature, selcoLong, 
+				TimeOfDay.MORNING.ordinal() == curTod);
+	}
+	
+	/**
+	 * This function determines the visibility of a collection of lunar 
+	 * features in a single pass. The Moon state (SELCO longitude, time of 
+	 * day and librations) is calculated once and then each feature is run 
+	 * through the same checks as {@link #isVisible(LunarFeature)}.
+	 * @param features : The lunar features to check for visibility.
+	 * @return : The set of indices (in iteration order) of visible features.
+	 */
+	public BitSet evaluateVisibility(Collection<LunarFeature> features) {
+		BitSet visible = new BitSet(features.size());
+		double selcoLong = this.colongToLong();
+		boolean isMorning = this.isMorning();
+		Logger.v(TAG, "SelcoLong = " + Double.toString(selcoLong) + 
+				", Morning = " + Boolean.toString(isMorning));
+		
+		int index = 0;
+		for (LunarFeature feature : features) {
+			if (this.isVisible(feature, selcoLong, isMorning)) {
+				visible.set(index);
+			}
+			index++;
+		}
+		return visible;
+	}
+	
+	/**
+	 * This function determines the visibility of every row of a feature 
+	 * table in a single pass. The Moon state is calculated once and the 
+	 * scan only reads the table's primitive columns.
+	 * @param table : The lunar features to check for visibility.
+	 * @return : The set of visible table rows.
+	 */
+	public BitSet evaluateVisibility(FeatureTable table) {
+		int size = table.size();
+		BitSet visible = new BitSet(size);
+		double selcoLong = this.colongToLong();
+		boolean isMorning = this.isMorning();
+		
+		for (int i = 0; i < size; i++) {
+			if (!MoonInfo.isInSelcoWindow(selcoLong, isMorning, 
+					table.getMinLongitude(i), table.getMaxLongitude(i), 
+					MoonInfo.FEATURE_CUTOFF / table.getCosLatitude(i), 
+					table.isNoCutoff(i))) {
+				continue;
+			}
+			if (table.isInLimbZone(i) && !this.isLibrationOk(table, i)) {
+				continue;
+			}
+			visible.set(i);
+		}
+		return visible;
+	}
+	
+	/**
+	 * This function determines if a feature table row is visible for a 
+	 * given Moon state. This allows the checks to be run for many instants 
+	 * without creating a MoonInfo object for each one.
+	 * @param table : The table holding the lunar feature.
+	 * @param row : The table row to check for visibility.
+	 * @param selcoLong : The lunar longitude of the SELCO.
+	 * @param isMorning : True if it is morning on the Moon.
+	 * @param libLatitude : The libration in latitude.
+	 * @param libLongitude : The libration in longitude.
+	 * @return : True is the feature is visible.
+	 */
+	public static boolean isVisible(FeatureTable table, int row, double selcoLong, 
+			boolean isMorning, double libLatitude, double libLongitude) {
+		if (!MoonInfo.isInSelcoWindow(selcoLong, isMorning, 
+				table.getMinLongitude(row), table.getMaxLongitude(row), 
+				MoonInfo.FEATURE_CUTOFF / table.getCosLatitude(row), 
+				table.isNoCutoff(row))) {
+			return false;
+		}
+		return MoonInfo.isLibrationOk(table, row, libLatitude, libLongitude);
+	}
+	
+	/**
+	 * This function determines if the given lunar feature is visible for an 
+	 * already calculated Moon state.
+	 * @param feature : The lunar feature to check for visibility.
+	 * @param selcoLong : The lunar longitude of the current SELCO.
+	 * @param isMorning : True if it is currently morning on the Moon.
+	 * @return : True is the feature is visible.
+	 */
+	private boolean isVisible(LunarFeature feature, double selcoLong, 
+			boolean isMorning) {
 		double minLon = feature.getLongitude() - feature.getDeltaLongitude() / 2.0;
 		double maxLon = feature.getLongitude() + feature.getDeltaLongitude() / 2.0;
 		
@@ -248,34 +454,52 @@ public class MoonInfo {
 			maxLon = temp;
 		}
 		
-		boolean isVisible = false;
-		double latitudeScaling = Math.cos(Math.toRadians(Math.abs(feature.getLatitude())));
-		double cutoff = MoonInfo.FEATURE_CUTOFF / latitudeScaling;
+		boolean isVisible = MoonInfo.isInSelcoWindow(selcoLong, isMorning, 
+				minLon, maxLon, MoonInfo.featureCutoff(feature.getLatitude()), 
+				MoonInfo.noCutoffFeature(feature.getFeatureType()));
 		
-		double lonCutoff = 0.0;
-		if (TimeOfDay.MORNING.ordinal() == curTod) {
+		return (isVisible && this.isLibrationOk(feature));
+	}
+	
+	/**
+	 * This function calculates the selenographic longitude cutoff for a 
+	 * feature at the given latitude.
+	 * @param latitude : The latitude of the feature.
+	 * @return : The latitude scaled longitude cutoff.
+	 */
+	public static double featureCutoff(double latitude) {
+		double latitudeScaling = Math.cos(Math.toRadians(Math.abs(latitude)));
+		return MoonInfo.FEATURE_CUTOFF / latitudeScaling;
+	}
+	
+	/**
+	 * This function checks the SELCO longitude against a feature's longitude 
+	 * range. In the morning, the SELCO must be within the cutoff below the 
+	 * minimum longitude. In the evening, the SELCO must be within the cutoff 
+	 * above the maximum longitude. No cutoff features are visible over the 
+	 * entire half-open range.
+	 * @param selcoLong : The lunar longitude of the current SELCO.
+	 * @param isMorning : True if it is currently morning on the Moon.
+	 * @param minLon : The minimum longitude of the feature.
+	 * @param maxLon : The maximum longitude of the feature.
+	 * @param cutoff : The latitude scaled longitude cutoff.
+	 * @param noCutoff : True if the feature has no longitude cutoff.
+	 * @return : True if the SELCO is within the feature's window.
+	 */
+	private static boolean isInSelcoWindow(double selcoLong, boolean isMorning, 
+			double minLon, double maxLon, double cutoff, boolean noCutoff) {
+		if (isMorning) {
 			// Minimum longitude for morning visibility
-			lonCutoff = minLon - cutoff;
-			if (this.noCutoffFeature(feature.getFeatureType())) {
-				
-				isVisible = selcoLong <= minLon;
-			}
-			else {
-				isVisible = (selcoLong >= lonCutoff && selcoLong <= minLon);
+			if (noCutoff) {
+				return selcoLong <= minLon;
 			}
+			return (selcoLong >= minLon - cutoff && selcoLong <= minLon);
 		}
-		if (TimeOfDay.EVENING.ordinal() == curTod) {
-			// Maximum longitude for evening visibility
-			lonCutoff = maxLon + cutoff;
-			if (this.noCutoffFeature(feature.getFeatureType())) {
-				isVisible = maxLon <= selcoLong;
-			}
-			else {
-				isVisible = (selcoLong >= maxLon && selcoLong <= lonCutoff);
-			}
+		// Maximum longitude for evening visibility
+		if (noCutoff) {
+			return maxLon <= selcoLong;
 		}
-		
-		return (isVisible && this.isLibrationOk(feature));
+		return (selcoLong >= maxLon && selcoLong <= maxLon + cutoff);
 	}
 
 	/**
@@ -284,60 +508,112 @@ public class MoonInfo {
 	 * @param feature : The lunar feature to check for the libration effect.
 	 * @return : False if libration obscures feature.
 	 */
-	private boolean isLibrationOk(LunarFeature feature) {
-		boolean isLongitudeInZone = Math.abs(feature.getLongitude()) > LIBRATION_ZONE;
-		boolean isLatitudeInZone = Math.abs(feature.getLatitude()) > LIBRATION_ZONE;
-		if (isLongitudeInZone || isLatitudeInZone) {
-			this.getLibrations();
-			if (isLongitudeInZone) {
-				double longitude = feature.getLongitude();
-				double[] longRange = feature.getLongitudeRange();
-				
-				longitude -= this.liblongitude;
-				longRange[0] -= this.liblongitude;
-				longRange[1] -= this.liblongitude;
-				
-				Log.d(TAG, "Adjusted longitude: " + longitude + " ["
-						+ longRange[0] + ", " + longRange[1] + "]");
-				
-				if (longitude < 0) {
-					if (longRange[1] < -LUNAR_EDGE) {
-						return false;
-					}
-				}
-				else {
-					if (longRange[0] > LUNAR_EDGE) {
-						return false;
-					}
-				}
-			}
-			if (isLatitudeInZone) {
-				double latitude = feature.getLatitude();
-				double[] latRange = feature.getLatitudeRange();
-				
-				latitude -= this.liblatitude;
-				latRange[0] -= this.liblatitude;
-				latRange[1] -= this.liblatitude;
-				
-				Log.d(TAG, "Adjusted latitude: " + latitude + " ["
-						+ latRange[0] + ", " + latRange[1] + "]");
-				
-				if (latitude < 0) {
-					if (latRange[1] < -LUNAR_EDGE) {
-						return false;
-					}
-				}
-				else {
-					if (latRange[0] > LUNAR_EDGE) {
-						return false;
-					}
-				}
-			}
+	public boolean isLibrationOk(LunarFeature feature) {
+		double latitude = feature.getLatitude();
+		double longitude = feature.getLongitude();
+		if (!MoonInfo.isInLibrationZone(latitude, longitude)) {
 			return true;
 		}
+		this.getLibrations();
+		return MoonInfo.isLibrationOk(latitude, longitude, 
+				feature.getDeltaLatitude(), feature.getDeltaLongitude(), 
+				this.liblatitude, this.liblongitude);
+	}
+	
+	/**
+	 * This function determines if a feature table row is effected and 
+	 * possibly obscured by libration.
+	 * @param table : The table holding the lunar feature.
+	 * @param row : The table row to check for the libration effect.
+	 * @return : False if libration obscures feature.
+	 */
+	public boolean isLibrationOk(FeatureTable table, int row) {
+		if (!table.isInLimbZone(row)) {
+			return true;
+		}
+		this.getLibrations();
+		return MoonInfo.isLibrationOk(table, row, this.liblatitude, this.liblongitude);
+	}
+	
+	/**
+	 * This function determines if a feature table row is effected and 
+	 * possibly obscured by the given librations.
+	 * @param table : The table holding the lunar feature.
+	 * @param row : The table row to check for the libration effect.
+	 * @param libLatitude : The libration in latitude.
+	 * @param libLongitude : The libration in longitude.
+	 * @return : False if libration obscures feature.
+	 */
+	public static boolean isLibrationOk(FeatureTable table, int row, 
+			double libLatitude, double libLongitude) {
+		if (!table.isInLimbZone(row)) {
+			return true;
+		}
+		return MoonInfo.isLibrationOk(table.getLatitude(row), 
+				table.getLongitude(row), table.getDeltaLatitude(row), 
+				table.getDeltaLongitude(row), libLatitude, libLongitude);
+	}
+	
+	/**
+	 * This function checks if a feature location is in the region where 
+	 * libration has a big effect.
+	 * @param latitude : The latitude of the feature.
+	 * @param longitude : The longitude of the feature.
+	 * @return : True if the feature is in the libration zone.
+	 */
+	public static boolean isInLibrationZone(double latitude, double longitude) {
+		return Math.abs(longitude) > LIBRATION_ZONE || 
+				Math.abs(latitude) > LIBRATION_ZONE;
+	}
+	
+	/**
+	 * This function checks a feature's extent, adjusted by the librations, 
+	 * against the lunar edge.
+	 * @param latitude : The latitude of the feature.
+	 * @param longitude : The longitude of the feature.
+	 * @param deltaLatitude : The latitude width of the feature.
+	 * @param deltaLongitude : The longitude width of the feature.
+	 * @param libLatitude : The libration in latitude.
+	 * @param libLongitude : The libration in longitude.
+	 * @return : False if libration obscures feature.
+	 */
+	private static boolean isLibrationOk(double latitude, double longitude, 
+			double deltaLatitude, double deltaLongitude, double libLatitude, 
+			double libLongitude) {
+		if (Math.abs(longitude) > LIBRATION_ZONE && 
+				!MoonInfo.isRangeOnDisk(longitude, deltaLongitude, libLongitude)) {
+			return false;
+		}
+		if (Math.abs(latitude) > LIBRATION_ZONE && 
+				!MoonInfo.isRangeOnDisk(latitude, deltaLatitude, libLatitude)) {
+			return false;
+		}
 		return true;
 	}
 	
+	/**
+	 * This function adjusts a coordinate range by the libration and checks 
+	 * that the range has not moved entirely beyond the lunar edge.
+	 * @param coord : The center coordinate.
+	 * @param delta : The width of the coordinate range.
+	 * @param libration : The libration in the same coordinate.
+	 * @return : True if some of the range is still on the disk.
+	 */
+	private static boolean isRangeOnDisk(double coord, double delta, 
+			double libration) {
+		double low = coord - delta / 2.0;
+		double high = coord + delta / 2.0;
+		if (low > high) {
+			double temp = low;
+			low = high;
+			high = temp;
+		}
+		if (coord - libration < 0) {
+			return high - libration >= -LUNAR_EDGE;
+		}
+		return low - libration <= LUNAR_EDGE;
+	}
+	
 	/**
 	 * This function is to set the selenographic colongitude once for a given 
 	 * instance. This will cut down on the number of calculations done by the 
@@ -345,7 +621,12 @@ public class MoonInfo {
 	 */
 	private void getColongitude() {
 		if (Double.MAX_VALUE == this.colongitude) {
-			this.colongitude = LunarCalc.colongitude(this.getJulianCenturies());
+			if (this.isFastMode()) {
+				this.colongitude = this.fastValue(EphemerisCache.Quantity.COLONGITUDE);
+			}
+			else {
+				this.colongitude = LunarCalc.colongitude(this.getJulianCenturies());
+			}
 		}
 	}
 
@@ -355,15 +636,22 @@ public class MoonInfo {
 	private void getLibrations() {
 		if (Double.MAX_VALUE == this.liblatitude && 
 				Double.MAX_VALUE == this.liblongitude) {
+			if (this.isFastMode()) {
+				this.liblatitude = this.fastValue(
+						EphemerisCache.Quantity.LIBRATION_LATITUDE);
+				this.liblongitude = this.fastValue(
+						EphemerisCache.Quantity.LIBRATION_LONGITUDE);
+				return;
+			}
 			try {
-				LocationElements le = this.lunar.getTotalLibrations();
+				LocationElements le = this.getLunar().getTotalLibrations();
 				this.liblatitude = Math.toDegrees(le.getLatitude());
 				this.liblongitude = Math.toDegrees(le.getLongitude());
-				Log.i(TAG, "Libration in Latitude = " + this.liblatitude);
-				Log.i(TAG, "Libration in Longitude = " + this.liblongitude);
+				Logger.i(TAG, "Libration in Latitude = " + this.liblatitude);
+				Logger.i(TAG, "Libration in Longitude = " + this.liblongitude);
 			}
 			catch (NoInitException nie) {
-				Log.e(TAG, "Lunar object is not initialized for calculating librations.");
+				Logger.e(TAG, "Lunar object is not initialized for calculating librations.");
 			}
 		}
 	}
@@ -374,8 +662,8 @@ public class MoonInfo {
 	 * @param type : The string containing the lunar feature type.
 	 * @return : True is the incoming feature type is in no cutoff list.
 	 */
-	private boolean noCutoffFeature(String type) {
-		for (String s : this.noCutoffType) {
+	public static boolean noCutoffFeature(String type) {
+		for (String s : NO_CUTOFF_TYPE) {
 			if (s.equalsIgnoreCase(type)) {
 				return true;
 			}
@@ -432,20 +720,30 @@ public class MoonInfo {
 	 * @return : The current time of day.
 	 */
 	private TimeOfDay getTimeOfDay() {
-		double phaseAngle = this.phaseAngle();
+		return MoonInfo.isMorning(this.phaseAngle()) ? TimeOfDay.MORNING : 
+			TimeOfDay.EVENING;
+	}
+	
+	/**
+	 * This function determines the time of day on the moon for a given 
+	 * phase angle.
+	 * @param phaseAngle : The lunar phase angle in radians.
+	 * @return : True if it is morning on the Moon, false if evening.
+	 */
+	public static boolean isMorning(double phaseAngle) {
 		double sinPhaseAngle = Math.sin(phaseAngle);
 		if (sinPhaseAngle > 0.0) {
-			return TimeOfDay.MORNING;
+			return true;
 		}
 		else if (sinPhaseAngle < 0.0) {
-			return TimeOfDay.EVENING;
+			return false;
 		}
 		else {
 			if (phaseAngle == 0.0 || phaseAngle == Astro.TWO_PI) {
-				return TimeOfDay.EVENING;
+				return false;
 			}
 		}
-		return TimeOfDay.MORNING;
+		return true;
 	}
 	
 	/**
@@ -455,19 +753,29 @@ public class MoonInfo {
 	 */
 	private double colongToLong() {
 		this.getColongitude();
-		double phaseAngle = this.phaseAngle();
+		return MoonInfo.selcoLongitude(this.colongitude, this.phaseAngle());
+	}
+	
+	/**
+	 * This function calculates the conversion between a given selenographic 
+	 * colongitude and actual lunar longitude.
+	 * @param colongitude : The selenographic colongitude.
+	 * @param phaseAngle : The lunar phase angle in radians.
+	 * @return : The lunar longitude for the selenographic colongitude.
+	 */
+	public static double selcoLongitude(double colongitude, double phaseAngle) {
 		double sinPhaseAngle = Math.sin(phaseAngle);
 		if (phaseAngle <= Math.PI && phaseAngle > Astro.PI_OVER_TWO) {
-			return 360.0 - this.colongitude;
+			return 360.0 - colongitude;
 		}
 		if (phaseAngle <= Astro.PI_OVER_TWO && phaseAngle > 0.0) {
-			return -1.0 * this.colongitude;
+			return -1.0 * colongitude;
 		}
 		if (sinPhaseAngle < 0.0 || phaseAngle == 0.0 || phaseAngle == Astro.TWO_PI) {
-			return 180.0 - this.colongitude;
+			return 180.0 - colongitude;
 		}
-		Log.d(TAG, "Oops, shouldn't have gotten here!");
-		return this.colongitude;
+		Logger.d(TAG, "Oops, shouldn't have gotten here!");
+		return colongitude;
 	}
 	
 	/**
@@ -476,7 +784,7 @@ public class MoonInfo {
 	 */
 	public String toString() {
 		StringBuffer buf = new StringBuffer();
-		String[] tmp = StrFormat.dateFormat(this.obsLocal).split(" ", 2);
+		String[] tmp = FastFormat.dateFormat(this.obsLocal).split(" ", 2);
 		buf.append("Date: ").append(tmp[0]).append(System.getProperty("line.separator"));
 		buf.append("Time: ").append(tmp[1]).append(System.getProperty("line.separator"));
 		buf.append("Julian Date: ").append(Double.toString(this.obsDate.jd()));
@@ -558,11 +866,17 @@ public class MoonInfo {
 	
 	/**
 	 * This function determines the previous UTC date of the requested lunar 
-	 * phase. In this context, previous means before the current UTC date.
+	 * phase. In this context, previous means before the current UTC date. 
+	 * The lunation table is used when it covers the date.
 	 * @param phase : The requested phase to find.
 	 * @return : The UTC date of the requested phase.
 	 */
 	private AstroDate findPreviousPhase(int phase) {
+		double tableDate = LunationTable.getInstance().findPreviousPhase(
+				this.obsDate.jd(), phase);
+		if (!Double.isNaN(tableDate)) {
+			return new AstroDate(tableDate);
+		}
 		double date = Lunar.getPhase(DateOps.calendarToDay(this.obsDate.toGCalendar()), 
 				phase);
 		AstroDate phaseDate = new AstroDate(date);
@@ -571,7 +885,7 @@ public class MoonInfo {
 			Calendar cal = this.obsDate.toGCalendar();
 			cal.add(Calendar.DAY_OF_MONTH, 
 					-1*(int)(LunarCalc.SYNODIC_MONTH));
-			Log.d(TAG, "Previous phase date to use: " + StrFormat.dateFormat(cal));
+			Logger.d(TAG, "Previous phase date to use: " + FastFormat.dateFormat(cal));
 			date = Lunar.getPhase(DateOps.calendarToDay(cal), phase);
 			phaseDate = new AstroDate(date);
 		}
@@ -580,11 +894,17 @@ public class MoonInfo {
 	
 	/**
 	 * This function determines the next UTC date of the requested lunar 
-	 * phase. In this context, next means after the current UTC date.
+	 * phase. In this context, next means after the current UTC date. 
+	 * The lunation table is used when it covers the date.
 	 * @param phase : The requested phase to find.
 	 * @return : The UTC date of the requested phase.
 	 */
 	private AstroDate findNextPhase(int phase) {
+		double tableDate = LunationTable.getInstance().findNextPhase(
+				this.obsDate.jd(), phase);
+		if (!Double.isNaN(tableDate)) {
+			return new AstroDate(tableDate);
+		}
 		double date = Lunar.getPhase(DateOps.calendarToDay(this.obsDate.toGCalendar()), 
 				phase);
 		AstroDate phaseDate = new AstroDate(date);
@@ -593,54 +913,24 @@ public class MoonInfo {
 			Calendar cal = this.obsDate.toGCalendar();
 			cal.add(Calendar.DAY_OF_MONTH, 
 					(int)(LunarCalc.SYNODIC_MONTH));
-			Log.d(TAG, "Next phase date to use: " + StrFormat.dateFormat(cal));
+			Logger.d(TAG, "Next phase date to use: " + FastFormat.dateFormat(cal));
 			date = Lunar.getPhase(DateOps.calendarToDay(cal), phase);
 			phaseDate = new AstroDate(date);
 		}
 		return phaseDate;
 	}
 	
-	/**
-	 * This function finds the calendar date of the requested lunar phase.
-	 * @param phase : The value of the lunar phase.
-	 * @return : The calendar date of the lunar phase.
-	 */
-	private Calendar findPhase(int phase) {
-		double date = Lunar.getPhase(DateOps.calendarToDay(this.obsDate.toGCalendar()), 
-				phase);
-		AstroDate phaseDate = new AstroDate(date);
-		GregorianCalendar c = phaseDate.toGCalendar();
-		c.add(Calendar.HOUR_OF_DAY, this.tzOffset);
-		return c;
-	}
-	
 	/**
 	 * This function finds the dates for the next four lunar phases. A map is created that 
 	 * contains the calendar date of the phase as the map key and an integer values for the 
 	 * phases as the map value.
 	 * @return : A map containing the information.
 	 */
-	@SuppressLint("UseSparseArrays")
 	public Map<Calendar, Integer> findNextFourPhases() {
 		Map<Calendar, Integer> phases = new HashMap<Calendar, Integer>();
-		List<Integer> indices = new ArrayList<Integer>();
 		for (int i = 0; i < 4; i++) {
-			Calendar cal = this.findPhase(phaseValues[i]);
-			if (cal.before(this.obsLocal)) {
-				indices.add(Integer.valueOf(i));
-				continue;
-			}
-			else {
-				phases.put(cal, Integer.valueOf(i));
-			}
-		}
-		// If the indices list is not empty, need to fill with next phases.
-		Iterator<Integer> lit = indices.iterator();
-		while (lit.hasNext()) {
-			Integer phase = lit.next();
-			AstroDate ad = this.findNextPhase(phase.intValue());
-			Calendar cal = this.fixTime(ad);
-			phases.put(cal, phase);
+			AstroDate ad = this.findNextPhase(phaseValues[i]);
+			phases.put(this.fixTime(ad), Integer.valueOf(i));
 		}
 		return phases;
 	}
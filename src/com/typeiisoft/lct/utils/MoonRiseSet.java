@@ -0,0 +1,316 @@
+package com.typeiisoft.lct.utils;
+
+import com.mhuss.AstroLib.Astro;
+import com.mhuss.AstroLib.NoInitException;
+import com.mhuss.AstroLib.ObsInfo;
+import com.mhuss.AstroLib.PlanetData;
+import com.mhuss.AstroLib.Planets;
+import com.mhuss.AstroLib.RiseSet;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the moonrise, moonset and meridian transit times for an
+ * observing site on one local date. The date is scanned from its local
+ * midnight to the next one, which is 23 or 25 hours apart when daylight
+ * time starts or ends, in steps of about an hour for changes in the sign of the Moon's altitude (less the standard rise
+ * altitude) and of its hour angle. Each change is then found with a
+ * bracketed false position search, so only a few dozen Moon positions are
+ * needed for a day. The Moon's altitude changes slowly enough that a step
+ * cannot hold both a rise and a set except very close to the poles.
+ * Results are cached by site and local date, so showing a month of dates
+ * again does not redo the calculations. The times are not changed after
+ * they are made, so they can be shared between threads.
+ *
+ * @author Michael Reuter
+ */
+public final class MoonRiseSet {
+	/** Number of days kept in the cache. */
+	private static final int CACHE_SIZE = 62;
+	/** Time between the bracketing checks in days (one hour). */
+	private static final double BRACKET_STEP = 1.0 / 24.0;
+	/** Accuracy of the event times in days (one second). */
+	private static final double TOLERANCE = 1.0 / 86400.0;
+	/** Julian date of the Java time epoch (1970-01-01 00:00 UTC). */
+	private static final double EPOCH_JD = 2440587.5;
+	/** Milliseconds in a day. */
+	private static final double MILLISECONDS_PER_DAY = 86400000.0;
+	/** The cached times by site and local date. */
+	private static final Map<Key, MoonRiseSet> cache =
+			new LinkedHashMap<Key, MoonRiseSet>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, MoonRiseSet> eldest) {
+			return this.size() > CACHE_SIZE;
+		}
+	};
+	/** Julian date of the start of the local date. */
+	private final double dayStartJd;
+	/** Julian date of the start of the next local date. */
+	private final double dayEndJd;
+	/** Julian date of the moonrise or NaN if there is none. */
+	private final double riseJd;
+	/** Julian date of the meridian transit or NaN if there is none. */
+	private final double transitJd;
+	/** Julian date of the moonset or NaN if there is none. */
+	private final double setJd;
+
+	/**
+	 * This function is the class constructor. It does the calculations.
+	 * @param site : The observing site.
+	 * @param dayStartJd : The Julian date of the start of the local date.
+	 * @param dayEndJd : The Julian date of the start of the next local date.
+	 */
+	private MoonRiseSet(ObservingSite site, double dayStartJd, double dayEndJd) {
+		ObsInfo obsInfo = new ObsInfo();
+		obsInfo.setLatitudeDeg(site.getLatitude());
+		obsInfo.setLongitudeDeg(site.getLongitude());
+		this.dayStartJd = dayStartJd;
+		this.dayEndJd = dayEndJd;
+
+		double rise = Double.NaN;
+		double set = Double.NaN;
+		double transit = Double.NaN;
+		double lowJd = dayStartJd;
+		double[] low = MoonRiseSet.position(obsInfo, lowJd);
+		int numSteps = Math.max(1, (int)Math.round((dayEndJd - dayStartJd) / BRACKET_STEP));
+		double stepSize = (dayEndJd - dayStartJd) / numSteps;
+		for (int k = 1; k <= numSteps; k++) {
+			double highJd = (k == numSteps) ? dayEndJd : dayStartJd + k * stepSize;
+			double[] high = MoonRiseSet.position(obsInfo, highJd);
+			if (low[0] < 0.0 && high[0] >= 0.0 && Double.isNaN(rise)) {
+				rise = MoonRiseSet.findRoot(obsInfo, 0, lowJd, highJd, low[0], high[0]);
+			}
+			else if (low[0] >= 0.0 && high[0] < 0.0 && Double.isNaN(set)) {
+				set = MoonRiseSet.findRoot(obsInfo, 0, lowJd, highJd, low[0], high[0]);
+			}
+			// The hour angle also jumps from +pi to -pi, which is not a transit
+			if (low[1] < 0.0 && high[1] >= 0.0 && Double.isNaN(transit)) {
+				transit = MoonRiseSet.findRoot(obsInfo, 1, lowJd, highJd, low[1], high[1]);
+			}
+			lowJd = highJd;
+			low = high;
+		}
+		this.riseJd = rise;
+		this.transitJd = transit;
+		this.setJd = set;
+	}
+
+	/**
+	 * This function returns the times for a site and local date. The date is
+	 * taken in the Calendar's time zone.
+	 * @param site : The observing site.
+	 * @param localDate : A time on the local date.
+	 * @return : The moonrise, transit and moonset times.
+	 */
+	public static MoonRiseSet getInstance(ObservingSite site, Calendar localDate) {
+		Calendar midnight = (Calendar)localDate.clone();
+		midnight.set(Calendar.HOUR_OF_DAY, 0);
+		midnight.set(Calendar.MINUTE, 0);
+		midnight.set(Calendar.SECOND, 0);
+		midnight.set(Calendar.MILLISECOND, 0);
+		long midnightMillis = midnight.getTimeInMillis();
+		Calendar nextMidnight = (Calendar)midnight.clone();
+		nextMidnight.add(Calendar.DATE, 1);
+
+		Key key = new Key(site, midnightMillis);
+		synchronized (cache) {
+			MoonRiseSet times = cache.get(key);
+			if (null != times) {
+				return times;
+			}
+		}
+		MoonRiseSet times = new MoonRiseSet(site, MoonRiseSet.toJd(midnight),
+				MoonRiseSet.toJd(nextMidnight));
+		synchronized (cache) {
+			cache.put(key, times);
+		}
+		return times;
+	}
+
+	/**
+	 * Getter for the start of the local date.
+	 * @return : The Julian date of the local midnight.
+	 */
+	public double getDayStartJd() {
+		return this.dayStartJd;
+	}
+
+	/**
+	 * Getter for the end of the local date.
+	 * @return : The Julian date of the next local midnight.
+	 */
+	public double getDayEndJd() {
+		return this.dayEndJd;
+	}
+
+	/**
+	 * Getter for the moonrise.
+	 * @return : The Julian date of the moonrise or NaN if the Moon does not
+	 * rise on the date.
+	 */
+	public double getRiseJd() {
+		return this.riseJd;
+	}
+
+	/**
+	 * Getter for the meridian transit.
+	 * @return : The Julian date of the transit or NaN if the Moon does not
+	 * cross the meridian on the date.
+	 */
+	public double getTransitJd() {
+		return this.transitJd;
+	}
+
+	/**
+	 * Getter for the moonset.
+	 * @return : The Julian date of the moonset or NaN if the Moon does not
+	 * set on the date.
+	 */
+	public double getSetJd() {
+		return this.setJd;
+	}
+
+	/**
+	 * This function gets the Julian date of a time.
+	 * @param cal : The time in any time zone.
+	 * @return : The Julian date of the time.
+	 */
+	public static double toJd(Calendar cal) {
+		return EPOCH_JD + cal.getTimeInMillis() / MILLISECONDS_PER_DAY;
+	}
+
+	/**
+	 * This function makes a Calendar for one of the times.
+	 * @param jd : The Julian date of the time.
+	 * @param zone : A Calendar holding the time zone to use.
+	 * @return : The time in the Calendar's time zone or null if the time is
+	 * NaN.
+	 */
+	public static Calendar toCalendar(double jd, Calendar zone) {
+		if (Double.isNaN(jd)) {
+			return null;
+		}
+		Calendar cal = (Calendar)zone.clone();
+		cal.setTimeInMillis(Math.round((jd - EPOCH_JD) * MILLISECONDS_PER_DAY));
+		return cal;
+	}
+
+	/**
+	 * This function calculates the Moon values the events are found from.
+	 * @param obsInfo : The observer location.
+	 * @param jd : The Julian date for the calculation.
+	 * @return : The Moon's altitude above the rise altitude and its hour
+	 * angle in the range [-pi, pi), both in radians.
+	 */
+	private static double[] position(ObsInfo obsInfo, double jd) {
+		try {
+			PlanetData moon = new PlanetData(Planets.LUNA, jd, obsInfo);
+			double hourAngle = moon.hourAngle() % Astro.TWO_PI;
+			if (hourAngle >= Math.PI) {
+				hourAngle -= Astro.TWO_PI;
+			}
+			else if (hourAngle < -Math.PI) {
+				hourAngle += Astro.TWO_PI;
+			}
+			double[] values = {moon.getAltAzLat() - RiseSet.MOON_ALT, hourAngle};
+			return values;
+		}
+		catch (NoInitException nie) {
+			throw new IllegalStateException("Planet data is not initialized.");
+		}
+	}
+
+	/**
+	 * This function finds the instant one of the Moon values crosses zero
+	 * with the Illinois variant of the false position method. The value
+	 * must change sign between the two dates.
+	 * @param obsInfo : The observer location.
+	 * @param index : The Moon value to use (0 altitude, 1 hour angle).
+	 * @param lowJd : The Julian date before the crossing.
+	 * @param highJd : The Julian date after the crossing.
+	 * @param lowValue : The value at the low date.
+	 * @param highValue : The value at the high date.
+	 * @return : The Julian date of the crossing.
+	 */
+	private static double findRoot(ObsInfo obsInfo, int index, double lowJd,
+			double highJd, double lowValue, double highValue) {
+		int side = 0;
+		while (highJd - lowJd > TOLERANCE) {
+			double jd = (lowJd * highValue - highJd * lowValue) / (highValue - lowValue);
+			// Fall back to bisection if the estimate is at an end
+			if (!(jd > lowJd && jd < highJd)) {
+				jd = (lowJd + highJd) / 2.0;
+			}
+			double value = MoonRiseSet.position(obsInfo, jd)[index];
+			if ((value < 0.0) == (lowValue < 0.0)) {
+				lowJd = jd;
+				lowValue = value;
+				if (side == -1) {
+					highValue /= 2.0;
+				}
+				side = -1;
+			}
+			else {
+				highJd = jd;
+				highValue = value;
+				if (side == 1) {
+					lowValue /= 2.0;
+				}
+				side = 1;
+			}
+			if (value == 0.0) {
+				return jd;
+			}
+		}
+		return (lowJd + highJd) / 2.0;
+	}
+
+	/**
+	 * This class is the cache key of a site and local date.
+	 */
+	private static final class Key {
+		/** The observing site. */
+		private final ObservingSite site;
+		/** The local midnight in milliseconds since the epoch. */
+		private final long midnightMillis;
+
+		/**
+		 * This function is the class constructor.
+		 * @param site : The observing site.
+		 * @param midnightMillis : The local midnight.
+		 */
+		private Key(ObservingSite site, long midnightMillis) {
+			this.site = site;
+			this.midnightMillis = midnightMillis;
+		}
+
+		/**
+		 * This function checks if two keys are for the same site and date.
+		 * @param obj : The object to compare against.
+		 * @return : True if the keys are the same.
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return this.midnightMillis == other.midnightMillis &&
+					this.site.equals(other.site);
+		}
+
+		/**
+		 * This function creates the hash code for the key.
+		 * @return : The hash code.
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * this.site.hashCode() +
+					(int)(this.midnightMillis ^ (this.midnightMillis >>> 32));
+		}
+	}
+}
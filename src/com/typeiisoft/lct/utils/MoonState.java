@@ -0,0 +1,275 @@
+package com.typeiisoft.lct.utils;
+
+import com.typeiisoft.lct.features.FeatureTable;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is a snapshot of the Moon information for one observation
+ * time and site. All of the values are calculated when the snapshot is
+ * created and are not changed afterwards, so a single snapshot can be
+ * shared by all of the fragments and threads. The last snapshot is kept
+ * and is only recalculated when the observation time or site changes.
+ *
+ * @author Michael Reuter
+ */
+public final class MoonState {
+	/** The most recently created snapshot. */
+	private static volatile MoonState current;
+	/** The observation date and time as held in the preferences. */
+	private final int[] dateTime;
+	/** The observing site. */
+	private final ObservingSite site;
+	/** The observation time in the local timezone. */
+	private final Calendar obsLocal;
+	/** The observation time in UTC. */
+	private final Calendar obsUtc;
+	/** The observation description. */
+	private final String description;
+	/** The Moon phase name. */
+	private final String phase;
+	/** The age of the Moon in days. */
+	private final double age;
+	/** The illuminated fraction of the Moon. */
+	private final double illumination;
+	/** The phase angle of the Moon in radians. */
+	private final double phaseAngle;
+	/** The selenographic colongitude. */
+	private final double colongitude;
+	/** The lunar longitude of the selenographic colongitude. */
+	private final double selcoLongitude;
+	/** True if it is morning on the Moon. */
+	private final boolean isMorning;
+	/** The libration in latitude. */
+	private final double libLatitude;
+	/** The libration in longitude. */
+	private final double libLongitude;
+	/** The previous local new, first quarter, full and third quarter Moons. */
+	private final Calendar[] previousPhases;
+	/** The next local new, first quarter, full and third quarter Moons. */
+	private final Calendar[] nextPhases;
+	/** The dates of the next four lunar phases. */
+	private final Map<Calendar, Integer> nextFourPhases;
+	/** The moonrise, transit and moonset times for the local date. */
+	private final MoonRiseSet riseSet;
+
+	/**
+	 * This function is the class constructor. It does all of the Moon
+	 * information calculations.
+	 * @param dateTime : Array of seven values of the observation date and time.
+	 * @param site : The observing site.
+	 */
+	private MoonState(int[] dateTime, ObservingSite site) {
+		this.dateTime = dateTime.clone();
+		this.site = site;
+		MoonInfo moonInfo = new MoonInfo(this.dateTime);
+		moonInfo.setObservationInfo(site.getLatitude(), site.getLongitude());
+		this.obsLocal = moonInfo.getObsLocal();
+		this.obsUtc = moonInfo.getObsUtc();
+		this.description = moonInfo.toString();
+		this.phase = moonInfo.phase();
+		this.age = moonInfo.age();
+		this.illumination = moonInfo.illumation();
+		this.phaseAngle = moonInfo.phaseAngle();
+		this.colongitude = moonInfo.colong();
+		this.selcoLongitude = moonInfo.selcoLongitude();
+		this.isMorning = moonInfo.isMorning();
+		double[] librations = moonInfo.librations();
+		this.libLatitude = librations[0];
+		this.libLongitude = librations[1];
+		this.previousPhases = new Calendar[] {moonInfo.previousNewMoon(),
+				moonInfo.previousFirstQuarterMoon(), moonInfo.previousFullMoon(),
+				moonInfo.previousThirdQuarterMoon()};
+		this.nextPhases = new Calendar[] {moonInfo.nextNewMoon(),
+				moonInfo.nextFirstQuarterMoon(), moonInfo.nextFullMoon(),
+				moonInfo.nextThirdQuarterMoon()};
+		this.nextFourPhases = moonInfo.findNextFourPhases();
+		this.riseSet = MoonRiseSet.getInstance(site, this.obsLocal);
+	}
+
+	/**
+	 * This function returns the snapshot for the observation time and site.
+	 * The last snapshot is reused if neither has changed.
+	 * @param dateTime : Array of seven values of the observation date and time.
+	 * @param site : The observing site.
+	 * @return : The Moon information snapshot.
+	 */
+	public static MoonState getInstance(int[] dateTime, ObservingSite site) {
+		MoonState state = current;
+		if (null != state && state.matches(dateTime, site)) {
+			return state;
+		}
+		synchronized (MoonState.class) {
+			state = current;
+			if (null == state || !state.matches(dateTime, site)) {
+				state = new MoonState(dateTime, site);
+				current = state;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * This function checks if the snapshot is for the observation time and
+	 * site.
+	 * @param dateTime : Array of seven values of the observation date and time.
+	 * @param site : The observing site.
+	 * @return : True if the snapshot can be reused.
+	 */
+	private boolean matches(int[] dateTime, ObservingSite site) {
+		return Arrays.equals(this.dateTime, dateTime) && this.site.equals(site);
+	}
+
+	/**
+	 * Getter for the observing site.
+	 * @return : The observing site.
+	 */
+	public ObservingSite getSite() {
+		return this.site;
+	}
+
+	/**
+	 * This function gets the local observation time.
+	 * @return : A copy of the local observation time.
+	 */
+	public Calendar getObsLocal() {
+		return (Calendar)this.obsLocal.clone();
+	}
+
+	/**
+	 * This function gets the UTC observation time.
+	 * @return : A copy of the UTC observation time.
+	 */
+	public Calendar getObsUtc() {
+		return (Calendar)this.obsUtc.clone();
+	}
+
+	/**
+	 * Getter for the phase of the Moon.
+	 * @return : The Moon phase as a string.
+	 */
+	public String getPhase() {
+		return this.phase;
+	}
+
+	/**
+	 * Getter for the age of the Moon.
+	 * @return : The Moon's age in days.
+	 */
+	public double getAge() {
+		return this.age;
+	}
+
+	/**
+	 * Getter for the illuminated fraction of the Moon.
+	 * @return : The fraction of the illuminated Moon surface.
+	 */
+	public double getIllumination() {
+		return this.illumination;
+	}
+
+	/**
+	 * Getter for the phase angle of the Moon.
+	 * @return : The lunar phase angle in radians.
+	 */
+	public double getPhaseAngle() {
+		return this.phaseAngle;
+	}
+
+	/**
+	 * Getter for the selenographic colongitude.
+	 * @return : The selenographic colongitude.
+	 */
+	public double getColongitude() {
+		return this.colongitude;
+	}
+
+	/**
+	 * Getter for the lunar longitude of the selenographic colongitude.
+	 * @return : The lunar longitude of the SELCO.
+	 */
+	public double getSelcoLongitude() {
+		return this.selcoLongitude;
+	}
+
+	/**
+	 * This function checks if the sun is rising on the Moon.
+	 * @return : True if it is morning on the Moon, false if evening.
+	 */
+	public boolean isMorning() {
+		return this.isMorning;
+	}
+
+	/**
+	 * This function returns the lunar librations in both latitude and longitude.
+	 * @return : The lunar librations array.
+	 */
+	public double[] getLibrations() {
+		double[] temp = {this.libLatitude, this.libLongitude};
+		return temp;
+	}
+
+	/**
+	 * This function determines if a feature table row is obscured by the
+	 * librations.
+	 * @param table : The table holding the lunar feature.
+	 * @param row : The table row to check for the libration effect.
+	 * @return : False if libration obscures feature.
+	 */
+	public boolean isLibrationOk(FeatureTable table, int row) {
+		return MoonInfo.isLibrationOk(table, row, this.libLatitude, this.libLongitude);
+	}
+
+	/**
+	 * This function returns the local date of the previous lunar phase.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : A copy of the date of the previous phase.
+	 */
+	public Calendar getPreviousPhase(int phase) {
+		return (Calendar)this.previousPhases[phase].clone();
+	}
+
+	/**
+	 * This function returns the local date of the next lunar phase.
+	 * @param phase : The requested phase (Lunar.NEW, Q1, FULL or Q3).
+	 * @return : A copy of the date of the next phase.
+	 */
+	public Calendar getNextPhase(int phase) {
+		return (Calendar)this.nextPhases[phase].clone();
+	}
+
+	/**
+	 * This function returns the dates for the next four lunar phases. The
+	 * map contains the calendar date of the phase as the key and an integer
+	 * value for the phase as the value. The map and its dates are copies, as
+	 * a Calendar can be changed.
+	 * @return : A map containing the information.
+	 */
+	public Map<Calendar, Integer> getNextFourPhases() {
+		Map<Calendar, Integer> phases = new HashMap<Calendar, Integer>();
+		for (Map.Entry<Calendar, Integer> entry : this.nextFourPhases.entrySet()) {
+			phases.put((Calendar)entry.getKey().clone(), entry.getValue());
+		}
+		return phases;
+	}
+
+	/**
+	 * Getter for the moonrise, transit and moonset times at the site on the
+	 * local observation date.
+	 * @return : The rise, transit and set times.
+	 */
+	public MoonRiseSet getRiseSet() {
+		return this.riseSet;
+	}
+
+	/**
+	 * This function creates the string representation of the object.
+	 * @return : The current string representation.
+	 */
+	public String toString() {
+		return this.description;
+	}
+}
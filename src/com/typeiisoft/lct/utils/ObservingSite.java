@@ -0,0 +1,108 @@
+package com.typeiisoft.lct.utils;
+
+/**
+ * This class holds the information for an observer's location. It is not
+ * changed after it is created, so it can be shared between threads.
+ *
+ * @author Michael Reuter
+ */
+public final class ObservingSite {
+	/** Name of the observing site. */
+	private final String name;
+	/** Latitude of the site in decimal degrees. North is positive. */
+	private final double latitude;
+	/** Longitude of the site in decimal degrees. East is positive. */
+	private final double longitude;
+	/** The time in hours from UTC at the site. */
+	private final int tzOffset;
+
+	/**
+	 * This function is the class constructor.
+	 * @param name : The name of the site.
+	 * @param latitude : The latitude of the site.
+	 * @param longitude : The longitude of the site.
+	 * @param tzOffset : The time in hours from UTC at the site.
+	 */
+	public ObservingSite(String name, double latitude, double longitude,
+			int tzOffset) {
+		this.name = name;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.tzOffset = tzOffset;
+	}
+
+	/**
+	 * Getter for the site name.
+	 * @return : The name of the site.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Getter for the site latitude.
+	 * @return : The latitude of the site.
+	 */
+	public double getLatitude() {
+		return this.latitude;
+	}
+
+	/**
+	 * Getter for the site longitude.
+	 * @return : The longitude of the site.
+	 */
+	public double getLongitude() {
+		return this.longitude;
+	}
+
+	/**
+	 * Getter for the site time zone offset.
+	 * @return : The time in hours from UTC.
+	 */
+	public int getTzOffset() {
+		return this.tzOffset;
+	}
+
+	/**
+	 * This function checks if another object is the same observing site.
+	 * @param obj : The object to compare against.
+	 * @return : True if the name, location and time zone are the same.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ObservingSite)) {
+			return false;
+		}
+		ObservingSite other = (ObservingSite)obj;
+		return (null == this.name ? null == other.name : this.name.equals(other.name)) &&
+				Double.compare(this.latitude, other.latitude) == 0 &&
+				Double.compare(this.longitude, other.longitude) == 0 &&
+				this.tzOffset == other.tzOffset;
+	}
+
+	/**
+	 * This function calculates the hash code for the site.
+	 * @return : The hash code.
+	 */
+	@Override
+	public int hashCode() {
+		long lat = Double.doubleToLongBits(this.latitude);
+		long lon = Double.doubleToLongBits(this.longitude);
+		int hash = (null == this.name) ? 0 : this.name.hashCode();
+		hash = 31 * hash + (int)(lat ^ (lat >>> 32));
+		hash = 31 * hash + (int)(lon ^ (lon >>> 32));
+		return 31 * hash + this.tzOffset;
+	}
+
+	/**
+	 * This function creates a string representation of the site.
+	 * @return : The site's string representation.
+	 */
+	public String toString() {
+		return this.name + " (" + FastFormat.latitude(this.latitude) +
+				", " + FastFormat.longitude(this.longitude) + ")";
+	}
+}
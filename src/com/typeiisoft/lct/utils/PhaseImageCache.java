@@ -0,0 +1,127 @@
+package com.typeiisoft.lct.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * This class holds the rendered Moon phase images. Images are kept in a
+ * least recently used cache bounded by their total size in bytes and keyed
+ * by the quantised phase and image size, so moving back and forth over the
+ * dates of a month does not draw the same image twice. Images are drawn by
+ * {@link PhaseRenderer} on the background loader thread. The cached bitmaps
+ * are shared and must not be changed or recycled by the caller, so the
+ * libration marker is drawn over a copy.
+ *
+ * @author Michael Reuter
+ */
+public final class PhaseImageCache {
+	/**
+	 * Largest total size of the cached images in bytes. An eighth of the
+	 * heap holds a month of daily images at the largest screen density.
+	 */
+	private static final long CACHE_BYTES = Runtime.getRuntime().maxMemory() / 8;
+	/** The cached images in least recently used order. */
+	private static final Map<PhaseRenderer.Key, Bitmap> cache =
+			new LinkedHashMap<PhaseRenderer.Key, Bitmap>(16, 0.75f, true);
+	/** Total size of the cached images in bytes. */
+	private static long cachedBytes;
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private PhaseImageCache() {
+	}
+
+	/**
+	 * This function gets an image if it has been drawn. It never draws, so
+	 * it can be used on the main thread.
+	 * @param key : The quantised phase and image size.
+	 * @return : The image or null if it is not in the cache.
+	 */
+	public static Bitmap getCached(PhaseRenderer.Key key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+
+	/**
+	 * This function gets an image, drawing it if it is not in the cache. It
+	 * should be called off the main thread.
+	 * @param key : The quantised phase and image size.
+	 * @return : The image.
+	 */
+	public static Bitmap getImage(PhaseRenderer.Key key) {
+		Bitmap image = PhaseImageCache.getCached(key);
+		if (null != image) {
+			return image;
+		}
+		int size = key.getSize();
+		image = Bitmap.createBitmap(PhaseRenderer.render(key), size, size,
+				Bitmap.Config.ARGB_8888);
+		synchronized (cache) {
+			Bitmap previous = cache.put(key, image);
+			if (null == previous) {
+				cachedBytes += key.getByteCount();
+			}
+			// Drop the least recently used images, always keeping the new one
+			Iterator<Map.Entry<PhaseRenderer.Key, Bitmap>> entries =
+					cache.entrySet().iterator();
+			while (cachedBytes > CACHE_BYTES && cache.size() > 1) {
+				PhaseRenderer.Key eldest = entries.next().getKey();
+				entries.remove();
+				cachedBytes -= eldest.getByteCount();
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * This function gets an image on the background loader thread and hands
+	 * it to a callback on the main thread. A cached image is handed over
+	 * right away. It must be called from the main thread.
+	 * @param key : The quantised phase and image size.
+	 * @param callback : The object to receive the image.
+	 * @return : The load, which can be used to cancel it, or null if the
+	 * image was cached.
+	 */
+	public static BackgroundLoader.Load<Bitmap> load(final PhaseRenderer.Key key,
+			BackgroundLoader.Callback<Bitmap> callback) {
+		Bitmap image = PhaseImageCache.getCached(key);
+		if (null != image) {
+			callback.onLoaded(image);
+			return null;
+		}
+		return BackgroundLoader.start(new Callable<Bitmap>() {
+			@Override
+			public Bitmap call() {
+				return PhaseImageCache.getImage(key);
+			}
+		}, callback);
+	}
+
+	/**
+	 * This function draws the mean center marker for the librations over a
+	 * copy of an image, leaving the cached image as it is.
+	 * @param image : The phase image.
+	 * @param librations : The librations in latitude and longitude in
+	 * degrees.
+	 * @return : The new image with the marker.
+	 */
+	public static Bitmap withMarker(Bitmap image, double[] librations) {
+		int size = image.getWidth();
+		float[] marker = PhaseRenderer.getMarker(librations, size);
+		Bitmap marked = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(marked);
+		canvas.drawBitmap(image, 0.0f, 0.0f, null);
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(PhaseRenderer.MARKER_COLOR);
+		canvas.drawCircle(marker[0], marker[1], marker[2], paint);
+		return marked;
+	}
+}
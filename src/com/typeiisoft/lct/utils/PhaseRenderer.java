@@ -0,0 +1,301 @@
+package com.typeiisoft.lct.utils;
+
+/**
+ * This class draws the Moon as it appears for a phase into a square pixel
+ * buffer. The disk is split into its lit and dark parts by the terminator,
+ * which is half of an ellipse whose width follows from the illuminated
+ * fraction. The lit limb is on the right while the Moon is waxing and on the
+ * left while it is waning, with north up. The disk edge is anti-aliased
+ * from the distance of each pixel center to the limb. Pixels near the
+ * terminator or the limb are sampled on a grid to find the lit part of the
+ * disk inside them, as the two edges meet at the horns and lie on top of
+ * each other near new and full Moon.
+ * <p>
+ * The phase angle is quantised into a {@link Key} before drawing and the
+ * illuminated fraction follows from the quantised angle, so two dates with
+ * the same key always give the same image and the images can be cached by
+ * key. The librations change from day to day independently of the phase,
+ * so the marker for the mean center of the disk is not part of the image.
+ * Its place is given by {@link #getMarker(double[], int)} for drawing over
+ * the cached image. The pixels are ARGB colors that are not premultiplied,
+ * as taken by Bitmap.createBitmap, with a transparent background. No
+ * Android classes are used, so images can be checked on the JVM.
+ *
+ * @author Michael Reuter
+ */
+public final class PhaseRenderer {
+	/** Number of phase angle steps in a lunation (half a degree each). */
+	public static final int PHASE_STEPS = 720;
+	/** Color of the lit part of the disk. */
+	public static final int LIT_COLOR = 0xfff2eedc;
+	/** Color of the dark part of the disk. */
+	public static final int DARK_COLOR = 0xff3c3c3c;
+	/** Color of the mean center marker. */
+	public static final int MARKER_COLOR = 0xffd04030;
+	/** Radius of the mean center marker as a fraction of the disk radius. */
+	private static final double MARKER_RADIUS = 0.05;
+	/** Number of samples along each side of an edge pixel. */
+	private static final int SAMPLES = 4;
+
+	/**
+	 * Instantiation is not allowed.
+	 */
+	private PhaseRenderer() {
+	}
+
+	/**
+	 * This function draws the Moon into a new pixel buffer.
+	 * @param key : The quantised phase and image size.
+	 * @return : The pixels in rows from the top left.
+	 */
+	public static int[] render(Key key) {
+		int[] pixels = new int[key.size * key.size];
+		PhaseRenderer.render(key, pixels);
+		return pixels;
+	}
+
+	/**
+	 * This function draws the Moon into a pixel buffer.
+	 * @param key : The quantised phase and image size.
+	 * @param pixels : The buffer for the pixels in rows from the top left.
+	 * It must hold at least size squared values.
+	 */
+	public static void render(Key key, int[] pixels) {
+		int size = key.size;
+		double radius = size / 2.0;
+		double illumination = key.getIllumination();
+		// Position of the terminator across the disk as a fraction of the
+		// half-chord, from the lit limb (-1, new Moon) to the dark limb (1)
+		double terminator = 1.0 - 2.0 * illumination;
+		double side = key.isWaxing() ? 1.0 : -1.0;
+
+		for (int row = 0; row < size; row++) {
+			double y = (radius - row - 0.5) / radius;
+			double halfChord = Math.sqrt(Math.max(0.0, 1.0 - y * y));
+			for (int column = 0; column < size; column++) {
+				double x = (column + 0.5 - radius) / radius;
+				double distance = Math.sqrt(x * x + y * y);
+				double disk = PhaseRenderer.coverage((1.0 - distance) * radius);
+				if (disk <= 0.0) {
+					pixels[row * size + column] = 0;
+					continue;
+				}
+				// Distance to the terminator ellipse from its slope
+				double slope = terminator * y / Math.max(halfChord, 1.0 / radius);
+				double edge = (side * x - terminator * halfChord) * radius /
+						Math.sqrt(1.0 + slope * slope);
+				double lit;
+				if (disk >= 1.0 && Math.abs(edge) >= 1.0) {
+					lit = edge > 0.0 ? 1.0 : 0.0;
+				}
+				else {
+					lit = PhaseRenderer.sampleLit(x, y, radius, terminator, side);
+				}
+				int color = PhaseRenderer.blend(DARK_COLOR, LIT_COLOR, lit);
+				pixels[row * size + column] = (color & 0x00ffffff) |
+						((int)Math.round(disk * 255.0) << 24);
+			}
+		}
+	}
+
+	/**
+	 * This function finds the lit part of the disk inside a pixel from a
+	 * grid of samples.
+	 * @param x : The pixel center across the disk in radii.
+	 * @param y : The pixel center up the disk in radii.
+	 * @param radius : The disk radius in pixels.
+	 * @param terminator : The terminator position as a fraction of the
+	 * half-chord.
+	 * @param side : One for a lit limb on the right, minus one for the left.
+	 * @return : The lit samples over the samples inside the disk.
+	 */
+	private static double sampleLit(double x, double y, double radius,
+			double terminator, double side) {
+		int inside = 0;
+		int lit = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			double sy = y + ((i + 0.5) / SAMPLES - 0.5) / radius;
+			double rest = 1.0 - sy * sy;
+			for (int j = 0; j < SAMPLES; j++) {
+				double sx = x + ((j + 0.5) / SAMPLES - 0.5) / radius;
+				if (sx * sx > rest) {
+					continue;
+				}
+				inside++;
+				if (side * sx > terminator * Math.sqrt(rest)) {
+					lit++;
+				}
+			}
+		}
+		if (0 == inside) {
+			// A sliver of the limb missed by the samples
+			return side * x > terminator * Math.sqrt(Math.max(0.0, 1.0 - y * y)) ?
+					1.0 : 0.0;
+		}
+		return lit / (double)inside;
+	}
+
+	/**
+	 * This function finds where the mean center of the disk has been moved
+	 * to by the librations, for drawing a marker over an image.
+	 * @param librations : The librations in latitude and longitude in
+	 * degrees.
+	 * @param size : The width and height of the image in pixels.
+	 * @return : The column and row of the marker center and the marker
+	 * radius in pixels.
+	 */
+	public static float[] getMarker(double[] librations, int size) {
+		double radius = size / 2.0;
+		double libLat = Math.toRadians(librations[0]);
+		double libLon = Math.toRadians(librations[1]);
+		double x = -Math.sin(libLon);
+		double y = -Math.sin(libLat) * Math.cos(libLon);
+		return new float[] {(float)(radius + x * radius), (float)(radius - y * radius),
+				(float)Math.max(1.0, MARKER_RADIUS * radius)};
+	}
+
+	/**
+	 * This function gets the fraction of a pixel inside an edge from the
+	 * distance of the pixel center to the edge.
+	 * @param pixelDistance : The distance in pixels, positive inside.
+	 * @return : The fraction from zero to one.
+	 */
+	private static double coverage(double pixelDistance) {
+		return Math.max(0.0, Math.min(1.0, pixelDistance + 0.5));
+	}
+
+	/**
+	 * This function mixes two opaque colors.
+	 * @param from : The color for a zero fraction.
+	 * @param to : The color for a fraction of one.
+	 * @param fraction : The amount of the second color.
+	 * @return : The mixed color.
+	 */
+	private static int blend(int from, int to, double fraction) {
+		if (fraction <= 0.0) {
+			return from;
+		}
+		if (fraction >= 1.0) {
+			return to;
+		}
+		int color = 0xff000000;
+		for (int shift = 0; shift < 24; shift += 8) {
+			int a = (from >> shift) & 0xff;
+			int b = (to >> shift) & 0xff;
+			color |= ((int)Math.round(a + (b - a) * fraction)) << shift;
+		}
+		return color;
+	}
+
+	/**
+	 * This class holds the quantised inputs for an image: the phase angle
+	 * in half degree steps and the image size.
+	 */
+	public static final class Key {
+		/** The phase angle step. */
+		private final int phaseStep;
+		/** The width and height of the image in pixels. */
+		private final int size;
+
+		/**
+		 * This function is the class constructor.
+		 * @param phaseAngle : The lunar phase angle in radians.
+		 * @param size : The width and height of the image in pixels.
+		 */
+		public Key(double phaseAngle, int size) {
+			if (size <= 0) {
+				throw new IllegalArgumentException("Image size must be positive.");
+			}
+			int step = (int)Math.round(phaseAngle / (2.0 * Math.PI) * PHASE_STEPS);
+			this.phaseStep = ((step % PHASE_STEPS) + PHASE_STEPS) % PHASE_STEPS;
+			this.size = size;
+		}
+
+		/**
+		 * This function makes the key for the Moon information.
+		 * @param moonState : The Moon information.
+		 * @param size : The width and height of the image in pixels.
+		 * @return : The image key.
+		 */
+		public static Key of(MoonState moonState, int size) {
+			return new Key(moonState.getPhaseAngle(), size);
+		}
+
+		/**
+		 * Getter for the quantised phase angle.
+		 * @return : The phase angle in radians.
+		 */
+		public double getPhaseAngle() {
+			return 2.0 * Math.PI * this.phaseStep / PHASE_STEPS;
+		}
+
+		/**
+		 * This function gets the illuminated fraction for the quantised
+		 * phase angle, so the terminator always matches the phase step.
+		 * @return : The illuminated fraction.
+		 */
+		public double getIllumination() {
+			return (1.0 + Math.cos(this.getPhaseAngle())) / 2.0;
+		}
+
+		/**
+		 * Getter for the image size.
+		 * @return : The width and height in pixels.
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * This function checks if the Moon is waxing. It is morning on the
+		 * Moon while it waxes.
+		 * @return : True if the Moon is waxing.
+		 */
+		public boolean isWaxing() {
+			return MoonInfo.isMorning(this.getPhaseAngle());
+		}
+
+		/**
+		 * This function gets the memory needed for the image.
+		 * @return : The size of the ARGB image in bytes.
+		 */
+		public int getByteCount() {
+			return this.size * this.size * 4;
+		}
+
+		/**
+		 * This function compares the key to another object.
+		 * @param obj : The object to compare against.
+		 * @return : True if the keys are the same.
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return this.phaseStep == other.phaseStep && this.size == other.size;
+		}
+
+		/**
+		 * This function creates the hash code for the key.
+		 * @return : The hash code.
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * this.phaseStep + this.size;
+		}
+
+		/**
+		 * This function creates the string representation of the key.
+		 * @return : The string representation.
+		 */
+		@Override
+		public String toString() {
+			return "Phase step " + this.phaseStep + ", size " + this.size;
+		}
+	}
+}
@@ -3,8 +3,6 @@ package com.typeiisoft.lct.utils;
 import com.mhuss.AstroLib.Astro;
 import com.mhuss.AstroLib.TimeOps;
 
-import android.annotation.SuppressLint;
-
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -14,7 +12,9 @@ import java.util.TimeZone;
 /**
  * This class is designed to provide various string formatting methods. It 
  * should only be used via the static methods as instantiation is not allowed.
- * 
+ * The number, coordinate, DMS and date functions define the output that
+ * {@link FastFormat} must match. The program uses the latter.
+ *
  * @author Michael Reuter
  */
 public final class StrFormat {
@@ -28,10 +28,9 @@ public final class StrFormat {
 	 * @param coord : The value of the latitude or longitude.
 	 * @return : A formatted string.
 	 */
-	@SuppressLint("DefaultLocale")
 	public static String coordFormat(String coordType, double coord) {
 		String dir = "";
-		if ("lat" == coordType.toLowerCase()) {
+		if ("lat" == coordType.toLowerCase(Locale.US)) {
 			if (coord < 0.0) {
 				dir = "S";
 			}
@@ -39,7 +38,7 @@ public final class StrFormat {
 				dir = "N";
 			}
 		}
-		if ("lon" == coordType.toLowerCase()) {
+		if ("lon" == coordType.toLowerCase(Locale.US)) {
 			if (coord < 0.0) {
 				dir = "W";
 			}